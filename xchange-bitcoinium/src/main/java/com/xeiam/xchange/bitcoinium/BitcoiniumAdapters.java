@@ -27,6 +27,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
 
 import com.xeiam.xchange.bitcoinium.dto.marketdata.BitcoiniumOrderbook;
 import com.xeiam.xchange.bitcoinium.dto.marketdata.BitcoiniumTicker;
@@ -34,6 +35,7 @@ import com.xeiam.xchange.bitcoinium.dto.marketdata.BitcoiniumTickerHistory;
 import com.xeiam.xchange.currency.Currencies;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
 import com.xeiam.xchange.dto.marketdata.Trade;
@@ -68,7 +70,7 @@ public final class BitcoiniumAdapters {
     // place a limit order
     OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
     String tradableIdentifier = Currencies.BTC;
-    BigMoney limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     return new LimitOrder(orderType, amount, tradableIdentifier, currency, limitPrice);
 
@@ -98,12 +100,13 @@ public final class BitcoiniumAdapters {
     }
 	listSize = priceList.size();
     
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    OrderType type = orderType.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(type, Currencies.BTC, currency, listSize);
     for (int i = 0; i < listSize; i++) {
-    	limitOrders.add(adaptOrder(amountList.get(i), priceList.get(i), currency, orderType, id));
+    	side.add(priceList.get(i), amountList.get(i));
     }
 
-    return limitOrders;
+    return side.build();
   }
 
   /**
@@ -114,12 +117,13 @@ public final class BitcoiniumAdapters {
    */
   public static Trades adaptTrades(BitcoiniumTickerHistory bitcoiniumTrades, String currency, String tradableIdentifier) {
 
-    List<Trade> tradesList = new ArrayList<Trade>();
+    CurrencyUnit currencyUnit = CurrencyUnit.of(currency);
+    List<Trade> tradesList = new ArrayList<Trade>(bitcoiniumTrades.getPriceHistoryList().size());
     long baseTime = bitcoiniumTrades.getBaseTimestamp();
 
     for (int i = 0; bitcoiniumTrades.getPriceHistoryList().size() > i; i++) {
     	
-    	BigMoney price = MoneyUtils.parse(currency + " " + bitcoiniumTrades.getPriceHistoryList().get(i));
+    	BigMoney price = MoneyUtils.of(currencyUnit, bitcoiniumTrades.getPriceHistoryList().get(i));
     	
     	// Get the date by adding the time delta of each trade to base timestamp
     	long delta = bitcoiniumTrades.getTimeStampOffsets().get(i).longValue();
@@ -66,4 +66,21 @@ public final class BitcoiniumUtils {
     return CURRENCY_PAIRS.contains(currencyPair);
   }
 
+  /** The pricewindow values Bitcoinium accepts, in percent of the mid price */
+  private static final int[] PRICE_WINDOWS = { 2, 5, 10, 20, 50, 100 };
+
+  /**
+   * @param percent The price window of interest in percent of the mid price
+   * @return The narrowest pricewindow parameter that covers it, or the widest one
+   */
+  public static String getPriceWindow(int percent) {
+
+    for (int priceWindow : PRICE_WINDOWS) {
+      if (percent <= priceWindow) {
+        return priceWindow + "p";
+      }
+    }
+    return PRICE_WINDOWS[PRICE_WINDOWS.length - 1] + "p";
+  }
+
 }
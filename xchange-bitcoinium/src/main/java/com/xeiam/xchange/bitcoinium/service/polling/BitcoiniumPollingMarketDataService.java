@@ -21,6 +21,7 @@
  */
 package com.xeiam.xchange.bitcoinium.service.polling;
 
+import java.math.RoundingMode;
 import java.util.List;
 
 import si.mazi.rescu.RestProxyFactory;
@@ -39,7 +40,8 @@ import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Trades;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.service.polling.BasePollingExchangeService;
-import com.xeiam.xchange.service.polling.PollingMarketDataService;
+import com.xeiam.xchange.service.polling.DepthLimitedMarketDataService;
+import com.xeiam.xchange.service.polling.OrderBookRequest;
 import com.xeiam.xchange.utils.Assert;
 
 /**
@@ -50,7 +52,9 @@ import com.xeiam.xchange.utils.Assert;
  * <li>Provides access to various market data values</li>
  * </ul>
  */
-public class BitcoiniumPollingMarketDataService extends BasePollingExchangeService implements PollingMarketDataService {
+public class BitcoiniumPollingMarketDataService extends BasePollingExchangeService implements DepthLimitedMarketDataService {
+
+  private static final String DEFAULT_PRICE_WINDOW = "20p";
 
   private final Bitcoinium bitcoinium;
 
@@ -87,11 +91,31 @@ public class BitcoiniumPollingMarketDataService extends BasePollingExchangeServi
   @Override
   public OrderBook getFullOrderBook(String tradableIdentifier, String currency) {
 
+    return getOrderBook(tradableIdentifier, currency, DEFAULT_PRICE_WINDOW);
+  }
+
+  /**
+   * Maps the price window to the narrowest of Bitcoinium's pricewindow values that covers it; the levels, and the rest of the window, are
+   * applied on the client side
+   */
+  @Override
+  public OrderBook getOrderBook(String tradableIdentifier, String currency, OrderBookRequest request) {
+
+    String priceWindow = DEFAULT_PRICE_WINDOW;
+    if (request.hasPriceWindow()) {
+      int percent = request.getPriceWindow().movePointRight(2).setScale(0, RoundingMode.CEILING).intValue();
+      priceWindow = BitcoiniumUtils.getPriceWindow(percent);
+    }
+    return request.truncate(getOrderBook(tradableIdentifier, currency, priceWindow));
+  }
+
+  private OrderBook getOrderBook(String tradableIdentifier, String currency, String priceWindow) {
+
     verify(tradableIdentifier, currency);
     String[] currencyExchange = currency.split("_");
 
     // Request data
-    BitcoiniumOrderbook bitcoiniumDepth = bitcoinium.getFullDepth(currencyExchange[0], tradableIdentifier, currencyExchange[1], "20p");
+    BitcoiniumOrderbook bitcoiniumDepth = bitcoinium.getFullDepth(currencyExchange[0], tradableIdentifier, currencyExchange[1], priceWindow);
 
     // Adapt to XChange DTOs
     List<LimitOrder> asks = BitcoiniumAdapters.adaptOrders(bitcoiniumDepth, currencyExchange[1], "ask", "");
@@ -27,12 +27,14 @@ import java.util.Date;
 import java.util.List;
 
 import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
 
 import com.xeiam.xchange.bitcurex.dto.marketdata.BitcurexTicker;
 import com.xeiam.xchange.bitcurex.dto.marketdata.BitcurexTrade;
 import com.xeiam.xchange.currency.Currencies;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
 import com.xeiam.xchange.dto.marketdata.Trade;
@@ -63,13 +65,13 @@ public final class BitcurexAdapters {
    */
   public static List<LimitOrder> adaptOrders(List<BigDecimal[]> bitcurexOrders, String currency, OrderType orderType, String id) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(orderType, Currencies.BTC, currency, bitcurexOrders.size());
 
     for (BigDecimal[] bitcurexOrder : bitcurexOrders) {
-      limitOrders.add(adaptOrder(bitcurexOrder[1], bitcurexOrder[0], currency, orderType, id));
+      side.add(bitcurexOrder[0], bitcurexOrder[1], id, null);
     }
 
-    return limitOrders;
+    return side.build();
   }
 
   /**
@@ -86,7 +88,7 @@ public final class BitcurexAdapters {
 
     // place a limit order
     String tradableIdentifier = Currencies.BTC;
-    BigMoney limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     return new LimitOrder(orderType, amount, tradableIdentifier, currency, id, null, limitPrice);
   }
@@ -99,8 +101,13 @@ public final class BitcurexAdapters {
    */
   public static Trade adaptTrade(BitcurexTrade bitcurexTrade, String currency, String tradableIdentifier) {
 
+    return adaptTrade(bitcurexTrade, CurrencyUnit.of(currency), currency, tradableIdentifier);
+  }
+
+  private static Trade adaptTrade(BitcurexTrade bitcurexTrade, CurrencyUnit currencyUnit, String currency, String tradableIdentifier) {
+
     BigDecimal amount = bitcurexTrade.getAmount();
-    BigMoney price = MoneyUtils.parse(currency + " " + bitcurexTrade.getPrice());
+    BigMoney price = MoneyUtils.of(currencyUnit, bitcurexTrade.getPrice());
     Date date = DateUtils.fromMillisUtc(bitcurexTrade.getDate() * 1000L);
 
     return new Trade(null, amount, tradableIdentifier, currency, price, date, bitcurexTrade.getTid());
@@ -114,9 +121,10 @@ public final class BitcurexAdapters {
    */
   public static Trades adaptTrades(BitcurexTrade[] bitcurexTrades, String currency, String tradableIdentifier) {
 
-    List<Trade> tradesList = new ArrayList<Trade>();
+    CurrencyUnit currencyUnit = CurrencyUnit.of(currency);
+    List<Trade> tradesList = new ArrayList<Trade>(bitcurexTrades.length);
     for (BitcurexTrade bitcurexTrade : bitcurexTrades) {
-      tradesList.add(adaptTrade(bitcurexTrade, currency, tradableIdentifier));
+      tradesList.add(adaptTrade(bitcurexTrade, currencyUnit, currency, tradableIdentifier));
     }
     return new Trades(tradesList);
   }
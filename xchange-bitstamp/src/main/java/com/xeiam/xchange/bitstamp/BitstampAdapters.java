@@ -48,7 +48,7 @@ import com.xeiam.xchange.dto.marketdata.Trade;
 import com.xeiam.xchange.dto.marketdata.Trades;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.Wallet;
-import com.xeiam.xchange.utils.DateUtils;
+import com.xeiam.xchange.utils.Timestamps;
 
 /**
  * Various adapters for converting from Bitstamp DTOs to XChange DTOs
@@ -96,7 +96,7 @@ public final class BitstampAdapters {
 
   private static List<LimitOrder> createOrders(String tradableIdentifier, String currency, Order.OrderType orderType, List<List<BigDecimal>> orders) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>(orders.size());
     for (List<BigDecimal> ask : orders) {
       checkArgument(ask.size() == 2, "Expected a pair (price, amount) but got {0} elements.", ask.size());
       limitOrders.add(createOrder(tradableIdentifier, currency, ask, orderType));
@@ -128,7 +128,7 @@ public final class BitstampAdapters {
 
     List<Trade> trades = new ArrayList<Trade>();
     for (BitstampTransaction tx : transactions) {
-      trades.add(new Trade(null, tx.getAmount(), tradableIdentifier, currency, BigMoney.of(CurrencyUnit.of(currency), tx.getPrice()), DateUtils.fromMillisUtc(tx.getDate() * 1000L), tx.getTid()));
+      trades.add(new Trade(null, tx.getAmount(), tradableIdentifier, currency, BigMoney.of(CurrencyUnit.of(currency), tx.getPrice()), Timestamps.fromSeconds(tx.getDate()), tx.getTid()));
     }
 
     return new Trades(trades);
@@ -176,7 +176,7 @@ public final class BitstampAdapters {
         BigDecimal tradableAmount = bitstampUserTransaction.getBtc();
         String tradableIdentifier = Currencies.BTC;
         String transactionCurrency = Currencies.USD;
-        BigMoney price = MoneyUtils.parse(transactionCurrency + " " + bitstampUserTransaction.getPrice());
+        BigMoney price = MoneyUtils.of(CurrencyUnit.USD, bitstampUserTransaction.getPrice());
         Date timestamp = BitstampUtils.parseDate(bitstampUserTransaction.getDatetime());
         long id = bitstampUserTransaction.getId();
 
@@ -21,21 +21,22 @@
  */
 package com.xeiam.xchange.bitstamp;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.TimeZone;
 
 import com.xeiam.xchange.ExchangeException;
 import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.utils.Timestamps;
 
 /**
  * A central place for shared Bitstamp properties
  */
 public final class BitstampUtils {
 
-	private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+	/** Bitstamp date-times are read in the default zone */
+	private static final TimeZone TIME_ZONE = TimeZone.getDefault();
 
 	/**
 	 * private Constructor
@@ -70,8 +71,8 @@ public final class BitstampUtils {
 	public static Date parseDate(String dateString) {
 
 		try {
-			return DATE_FORMAT.parse(dateString);
-		} catch (ParseException e) {
+			return Timestamps.toDate(Timestamps.parseDateTime(dateString, TIME_ZONE));
+		} catch (IllegalArgumentException e) {
 			throw new ExchangeException("Illegal date/time format", e);
 		}
 	}
@@ -42,6 +42,8 @@ public interface Blockchain {
   public BitcoinAddress getBitcoinAddress(@PathParam("address") String address) throws IOException;
 
   /**
+   * Use {@link com.xeiam.xchange.blockchain.service.polling.BlockchainAddressService} for large, chunked and cached lookups
+   * 
    * @param addresses - Pipe (|) separated addresses
    * @return
    */
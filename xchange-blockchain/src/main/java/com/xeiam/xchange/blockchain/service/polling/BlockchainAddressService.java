@@ -0,0 +1,343 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.blockchain.service.polling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xeiam.xchange.ExchangeException;
+import com.xeiam.xchange.blockchain.Blockchain;
+import com.xeiam.xchange.blockchain.dto.BitcoinAddress;
+import com.xeiam.xchange.blockchain.dto.BitcoinAddresses;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Bulk, cached address lookups on top of the {@link Blockchain} proxy
+ * </p>
+ * <ul>
+ * <li>Addresses are split into <code>multiaddr</code> requests bounded by both address count and query length</li>
+ * <li>Requests run concurrently on a bounded pool, with a minimum interval between request starts to respect the API rate limit</li>
+ * <li>Balances (from <code>multiaddr</code>) and full addresses with transactions (from <code>address</code>) are cached per address with separate TTLs</li>
+ * </ul>
+ */
+public class BlockchainAddressService {
+
+  private static final Logger log = LoggerFactory.getLogger(BlockchainAddressService.class);
+
+  public static final int DEFAULT_MAX_ADDRESSES_PER_REQUEST = 100;
+  public static final int DEFAULT_MAX_QUERY_LENGTH = 4000;
+
+  /** The URL encoded length of the pipe separating addresses in the query */
+  private static final int SEPARATOR_LENGTH = 3;
+
+  private final Blockchain blockchain;
+  private final int maxAddressesPerRequest;
+  private final int maxQueryLength;
+  private final long minRequestIntervalMillis;
+  private final long balanceTtlMillis;
+  private final long transactionsTtlMillis;
+  private final ExecutorService executorService;
+
+  private final Map<String, CacheEntry> balanceCache = new ConcurrentHashMap<String, CacheEntry>();
+  private final Map<String, CacheEntry> transactionsCache = new ConcurrentHashMap<String, CacheEntry>();
+
+  private final Object rateLock = new Object();
+  private long nextRequestTime = 0;
+
+  /**
+   * Constructor with default chunk sizes
+   * 
+   * @param blockchain The Blockchain REST proxy
+   * @param maxConcurrentRequests The maximum number of requests in flight
+   * @param minRequestIntervalMillis The minimum time between the start of two requests
+   * @param balanceTtlMillis How long balances fetched in bulk are served from the cache
+   * @param transactionsTtlMillis How long addresses fetched with their transactions are served from the cache
+   */
+  public BlockchainAddressService(Blockchain blockchain, int maxConcurrentRequests, long minRequestIntervalMillis, long balanceTtlMillis, long transactionsTtlMillis) {
+
+    this(blockchain, DEFAULT_MAX_ADDRESSES_PER_REQUEST, DEFAULT_MAX_QUERY_LENGTH, maxConcurrentRequests, minRequestIntervalMillis, balanceTtlMillis, transactionsTtlMillis);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param blockchain The Blockchain REST proxy
+   * @param maxAddressesPerRequest The maximum number of addresses in one multiaddr request
+   * @param maxQueryLength The maximum length of the encoded address list in one multiaddr request
+   * @param maxConcurrentRequests The maximum number of requests in flight
+   * @param minRequestIntervalMillis The minimum time between the start of two requests
+   * @param balanceTtlMillis How long balances fetched in bulk are served from the cache
+   * @param transactionsTtlMillis How long addresses fetched with their transactions are served from the cache
+   */
+  public BlockchainAddressService(Blockchain blockchain, int maxAddressesPerRequest, int maxQueryLength, int maxConcurrentRequests, long minRequestIntervalMillis, long balanceTtlMillis,
+      long transactionsTtlMillis) {
+
+    Assert.notNull(blockchain, "blockchain cannot be null");
+    Assert.isTrue(maxAddressesPerRequest > 0, "maxAddressesPerRequest must be positive");
+    Assert.isTrue(maxQueryLength > 0, "maxQueryLength must be positive");
+    Assert.isTrue(maxConcurrentRequests > 0, "maxConcurrentRequests must be positive");
+
+    this.blockchain = blockchain;
+    this.maxAddressesPerRequest = maxAddressesPerRequest;
+    this.maxQueryLength = maxQueryLength;
+    this.minRequestIntervalMillis = minRequestIntervalMillis;
+    this.balanceTtlMillis = balanceTtlMillis;
+    this.transactionsTtlMillis = transactionsTtlMillis;
+    this.executorService = Executors.newFixedThreadPool(maxConcurrentRequests);
+  }
+
+  /**
+   * Get the balances of many addresses, serving fresh cached values and fetching the rest in concurrent multiaddr requests
+   * 
+   * @param addresses The addresses, duplicates are ignored
+   * @return The addresses known to Blockchain keyed by address, in the order given
+   * @throws IOException if a request fails
+   */
+  public Map<String, BitcoinAddress> getBitcoinAddresses(Collection<String> addresses) throws IOException {
+
+    Set<String> unique = new LinkedHashSet<String>(addresses);
+    Map<String, BitcoinAddress> result = new LinkedHashMap<String, BitcoinAddress>(unique.size() * 4 / 3 + 1);
+    List<String> missing = new ArrayList<String>();
+
+    long now = System.currentTimeMillis();
+    for (String address : unique) {
+      BitcoinAddress cached = get(transactionsCache, address, now);
+      if (cached == null) {
+        cached = get(balanceCache, address, now);
+      }
+      result.put(address, cached);
+      if (cached == null) {
+        missing.add(address);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      List<List<String>> chunks = chunk(missing);
+      log.debug("Fetching {} of {} addresses in {} requests", missing.size(), unique.size(), chunks.size());
+
+      List<Future<BitcoinAddresses>> futures = new ArrayList<Future<BitcoinAddresses>>(chunks.size());
+      for (final List<String> chunk : chunks) {
+        futures.add(executorService.submit(new Callable<BitcoinAddresses>() {
+
+          @Override
+          public BitcoinAddresses call() throws Exception {
+
+            acquire();
+            return blockchain.getBitcoinAddresses(join(chunk));
+          }
+        }));
+      }
+
+      long expires = System.currentTimeMillis() + balanceTtlMillis;
+      try {
+        for (Future<BitcoinAddresses> future : futures) {
+          BitcoinAddresses bitcoinAddresses = await(future);
+          if (bitcoinAddresses == null || bitcoinAddresses.getBitcoinAddresses() == null) {
+            continue;
+          }
+          for (BitcoinAddress bitcoinAddress : bitcoinAddresses.getBitcoinAddresses()) {
+            balanceCache.put(bitcoinAddress.getAddress(), new CacheEntry(bitcoinAddress, expires));
+            if (result.containsKey(bitcoinAddress.getAddress())) {
+              result.put(bitcoinAddress.getAddress(), bitcoinAddress);
+            }
+          }
+        }
+      } finally {
+        // once a request failed the others are of no use; cancelling the completed ones does nothing
+        for (Future<BitcoinAddresses> future : futures) {
+          future.cancel(true);
+        }
+      }
+    }
+
+    // drop the addresses Blockchain did not report
+    for (String address : missing) {
+      if (result.get(address) == null) {
+        result.remove(address);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get a single address with its transactions, served from the cache while fresh
+   * 
+   * @param address The address
+   * @return The address with its transactions
+   * @throws IOException if the request fails
+   */
+  public BitcoinAddress getBitcoinAddress(String address) throws IOException {
+
+    BitcoinAddress cached = get(transactionsCache, address, System.currentTimeMillis());
+    if (cached != null) {
+      return cached;
+    }
+    acquire();
+    BitcoinAddress bitcoinAddress = blockchain.getBitcoinAddress(address);
+    transactionsCache.put(address, new CacheEntry(bitcoinAddress, System.currentTimeMillis() + transactionsTtlMillis));
+    return bitcoinAddress;
+  }
+
+  /**
+   * Forget any cached state for an address, e.g. after a deposit notification
+   * 
+   * @param address The address
+   */
+  public void invalidate(String address) {
+
+    balanceCache.remove(address);
+    transactionsCache.remove(address);
+  }
+
+  public void invalidateAll() {
+
+    balanceCache.clear();
+    transactionsCache.clear();
+  }
+
+  /**
+   * Stops the request pool; the service cannot be used afterwards
+   */
+  public void shutdown() {
+
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Splits addresses into groups that respect both the address count and the query length limits
+   */
+  /* package */List<List<String>> chunk(List<String> addresses) {
+
+    List<List<String>> chunks = new ArrayList<List<String>>(addresses.size() / maxAddressesPerRequest + 1);
+    List<String> chunk = new ArrayList<String>(Math.min(addresses.size(), maxAddressesPerRequest));
+    int length = 0;
+    for (String address : addresses) {
+      int added = chunk.isEmpty() ? address.length() : address.length() + SEPARATOR_LENGTH;
+      if (!chunk.isEmpty() && (chunk.size() == maxAddressesPerRequest || length + added > maxQueryLength)) {
+        chunks.add(chunk);
+        chunk = new ArrayList<String>(Math.min(addresses.size(), maxAddressesPerRequest));
+        length = 0;
+        added = address.length();
+      }
+      chunk.add(address);
+      length += added;
+    }
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+
+  private static String join(List<String> addresses) {
+
+    StringBuilder sb = new StringBuilder(addresses.size() * 35);
+    for (String address : addresses) {
+      if (sb.length() > 0) {
+        sb.append('|');
+      }
+      sb.append(address);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Blocks until the next request may start
+   */
+  private void acquire() throws IOException {
+
+    long wait;
+    synchronized (rateLock) {
+      long now = System.currentTimeMillis();
+      long start = Math.max(now, nextRequestTime);
+      nextRequestTime = start + minRequestIntervalMillis;
+      wait = start - now;
+    }
+    if (wait > 0) {
+      try {
+        Thread.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for the rate limit", e);
+      }
+    }
+  }
+
+  private static BitcoinAddresses await(Future<BitcoinAddresses> future) throws IOException {
+
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for Blockchain", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ExchangeException("Blockchain request failed", e.getCause());
+    }
+  }
+
+  private static BitcoinAddress get(Map<String, CacheEntry> cache, String address, long now) {
+
+    CacheEntry entry = cache.get(address);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.expires < now) {
+      cache.remove(address);
+      return null;
+    }
+    return entry.bitcoinAddress;
+  }
+
+  private static final class CacheEntry {
+
+    private final BitcoinAddress bitcoinAddress;
+    private final long expires;
+
+    private CacheEntry(BitcoinAddress bitcoinAddress, long expires) {
+
+      this.bitcoinAddress = bitcoinAddress;
+      this.expires = expires;
+    }
+  }
+
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.blockchain.service.polling;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xeiam.xchange.blockchain.Blockchain;
+import com.xeiam.xchange.blockchain.dto.BitcoinAddress;
+import com.xeiam.xchange.blockchain.dto.BitcoinAddresses;
+
+/**
+ * Test class for testing BlockchainAddressService chunking and caching
+ */
+public class BlockchainAddressServiceTest {
+
+  private final StubBlockchain blockchain = new StubBlockchain();
+  private BlockchainAddressService service;
+
+  @After
+  public void tearDown() {
+
+    service.shutdown();
+  }
+
+  @Test
+  public void testChunking() {
+
+    service = new BlockchainAddressService(blockchain, 3, 10, 2, 0, 60000, 60000);
+
+    List<List<String>> chunks = service.chunk(Arrays.asList("a", "b", "c", "d", "eeeeeeeee", "ffff", "g"));
+
+    // count limit, then length limit (one character per address plus three per encoded pipe)
+    assertThat(chunks).hasSize(4);
+    assertThat(chunks.get(0)).containsExactly("a", "b", "c");
+    assertThat(chunks.get(1)).containsExactly("d");
+    assertThat(chunks.get(2)).containsExactly("eeeeeeeee");
+    assertThat(chunks.get(3)).containsExactly("ffff", "g");
+  }
+
+  @Test
+  public void testBulkLookupIsCached() throws IOException {
+
+    service = new BlockchainAddressService(blockchain, 2, 4000, 4, 0, 60000, 60000);
+
+    List<String> addresses = new ArrayList<String>();
+    for (int i = 0; i < 7; i++) {
+      addresses.add("address" + i);
+    }
+    addresses.add("address0");
+
+    Map<String, BitcoinAddress> result = service.getBitcoinAddresses(addresses);
+    assertThat(result).hasSize(7);
+    assertThat(result.get("address3").getFinalBalance()).isEqualTo(3);
+    assertThat(blockchain.multiaddrCalls.get()).isEqualTo(4);
+
+    service.getBitcoinAddresses(addresses);
+    assertThat(blockchain.multiaddrCalls.get()).isEqualTo(4);
+
+    service.invalidate("address5");
+    service.getBitcoinAddresses(addresses);
+    assertThat(blockchain.multiaddrCalls.get()).isEqualTo(5);
+  }
+
+  @Test
+  public void testExpiry() throws IOException {
+
+    service = new BlockchainAddressService(blockchain, 2, 4000, 1, 0, -1, -1);
+
+    service.getBitcoinAddresses(Arrays.asList("address1"));
+    service.getBitcoinAddresses(Arrays.asList("address1"));
+    assertThat(blockchain.multiaddrCalls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testFailedRequestCancelsTheOthers() throws InterruptedException {
+
+    // one address per request, the later ones held back by the rate limit
+    service = new BlockchainAddressService(blockchain, 1, 4000, 1, 200, 60000, 60000);
+    blockchain.failing = "address0";
+
+    try {
+      service.getBitcoinAddresses(Arrays.asList("address0", "address1", "address2", "address3"));
+      fail("Expected the failed request to be reported");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).isEqualTo("address0");
+    }
+    Thread.sleep(500);
+    assertThat(blockchain.multiaddrCalls.get()).isEqualTo(1);
+  }
+
+  private static class StubBlockchain implements Blockchain {
+
+    private final AtomicInteger multiaddrCalls = new AtomicInteger();
+    private volatile String failing;
+
+    @Override
+    public BitcoinAddress getBitcoinAddress(String address) {
+
+      return address(address);
+    }
+
+    @Override
+    public BitcoinAddresses getBitcoinAddresses(String addresses) throws IOException {
+
+      multiaddrCalls.incrementAndGet();
+      if (addresses.equals(failing)) {
+        throw new IOException(addresses);
+      }
+      List<BitcoinAddress> result = new ArrayList<BitcoinAddress>();
+      for (String address : addresses.split("\\|")) {
+        result.add(address(address));
+      }
+      return new BitcoinAddresses(result);
+    }
+
+    private BitcoinAddress address(String address) {
+
+      return new BitcoinAddress(address, Long.parseLong(address.substring("address".length())), null, 0, 0, 0, null);
+    }
+  }
+
+}
@@ -41,6 +41,7 @@ import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
 import com.xeiam.xchange.dto.marketdata.Trade;
@@ -73,13 +74,13 @@ public final class BTCChinaAdapters {
    */
   public static List<LimitOrder> adaptOrders(List<BigDecimal[]> btcchinaOrders, String currency, OrderType orderType) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(orderType, Currencies.BTC, currency, btcchinaOrders.size());
 
     for (BigDecimal[] btcchinaOrder : btcchinaOrders) {
-      limitOrders.add(adaptOrder(btcchinaOrder[1], btcchinaOrder[0], currency, orderType));
+      side.add(btcchinaOrder[0], btcchinaOrder[1]);
     }
 
-    return limitOrders;
+    return side.build();
   }
 
   /**
@@ -96,7 +97,7 @@ public final class BTCChinaAdapters {
 
     // place a limit order
     String tradableIdentifier = Currencies.BTC;
-    BigMoney limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     return new LimitOrder(orderType, amount, tradableIdentifier, currency, "", null, limitPrice);
 
@@ -110,8 +111,13 @@ public final class BTCChinaAdapters {
    */
   public static Trade adaptTrade(BTCChinaTrade btcChinaTrade, String currency, String tradableIdentifier) {
 
+    return adaptTrade(btcChinaTrade, CurrencyUnit.of(currency), currency, tradableIdentifier);
+  }
+
+  private static Trade adaptTrade(BTCChinaTrade btcChinaTrade, CurrencyUnit currencyUnit, String currency, String tradableIdentifier) {
+
     BigDecimal amount = btcChinaTrade.getAmount();
-    BigMoney price = MoneyUtils.parse(currency + " " + btcChinaTrade.getPrice());
+    BigMoney price = MoneyUtils.of(currencyUnit, btcChinaTrade.getPrice());
     Date date = DateUtils.fromMillisUtc(btcChinaTrade.getDate() * 1000L);
 
     return new Trade(null, amount, tradableIdentifier, currency, price, date, btcChinaTrade.getTid());
@@ -125,9 +131,10 @@ public final class BTCChinaAdapters {
    */
   public static Trades adaptTrades(BTCChinaTrade[] btcchinaTrades, String currency, String tradableIdentifier) {
 
-    List<Trade> tradesList = new ArrayList<Trade>();
+    CurrencyUnit currencyUnit = CurrencyUnit.of(currency);
+    List<Trade> tradesList = new ArrayList<Trade>(btcchinaTrades.length);
     for (BTCChinaTrade btcchinaTrade : btcchinaTrades) {
-      tradesList.add(adaptTrade(btcchinaTrade, currency, tradableIdentifier));
+      tradesList.add(adaptTrade(btcchinaTrade, currencyUnit, currency, tradableIdentifier));
     }
     return new Trades(tradesList);
   }
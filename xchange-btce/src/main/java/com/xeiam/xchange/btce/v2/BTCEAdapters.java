@@ -42,6 +42,7 @@ import com.xeiam.xchange.btce.v2.dto.trade.BTCETradeHistoryResult;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
 import com.xeiam.xchange.dto.marketdata.Trade;
@@ -77,19 +78,17 @@ public final class BTCEAdapters {
    */
   public static List<LimitOrder> adaptOrders(List<BigDecimal[]> bTCEOrders, String tradableIdentifier, String currency, String orderType, String id) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
-
+    OrderType type = orderType.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(type, tradableIdentifier, currency, bTCEOrders.size());
+    // Bid orderbook is reversed order
+    if (type == OrderType.BID) {
+      side.reversed();
+    }
     for (BigDecimal[] btceOrder : bTCEOrders) {
-      // Bid orderbook is reversed order. Insert at index 0 instead of appending
-      if (orderType.equalsIgnoreCase("bid")) {
-        limitOrders.add(0, adaptOrder(btceOrder[1], btceOrder[0], tradableIdentifier, currency, orderType, id));
-      }
-      else {
-        limitOrders.add(adaptOrder(btceOrder[1], btceOrder[0], tradableIdentifier, currency, orderType, id));
-      }
+      side.add(btceOrder[0], btceOrder[1], id, null);
     }
 
-    return limitOrders;
+    return side.build();
   }
 
   /**
@@ -106,8 +105,7 @@ public final class BTCEAdapters {
 
     // place a limit order
     OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
-    BigMoney limitPrice;
-    limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     return new LimitOrder(orderType, amount, tradableIdentifier, currency, id, null, limitPrice);
 
@@ -125,7 +123,7 @@ public final class BTCEAdapters {
     OrderType orderType = bTCETrade.getTradeType().equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
     BigDecimal amount = bTCETrade.getAmount();
     String currency = bTCETrade.getCurrency();
-    BigMoney price = MoneyUtils.parse(currency + " " + bTCETrade.getPrice());
+    BigMoney price = MoneyUtils.of(CurrencyUnit.of(currency), bTCETrade.getPrice());
     String tradableIdentifier = bTCETrade.getTradeableIdentifier();
     Date date = DateUtils.fromMillisUtc(bTCETrade.getDate() * 1000L);
 
@@ -141,10 +139,10 @@ public final class BTCEAdapters {
    */
   public static Trades adaptTrades(BTCETrade[] BTCETrades) {
 
-    List<Trade> tradesList = new ArrayList<Trade>();
-    for (BTCETrade BTCETrade : BTCETrades) {
-      // Date is reversed order. Insert at index 0 instead of appending
-      tradesList.add(0, adaptTrade(BTCETrade));
+    List<Trade> tradesList = new ArrayList<Trade>(BTCETrades.length);
+    // Date is reversed order
+    for (int i = BTCETrades.length - 1; i >= 0; i--) {
+      tradesList.add(adaptTrade(BTCETrades[i]));
     }
     return new Trades(tradesList);
   }
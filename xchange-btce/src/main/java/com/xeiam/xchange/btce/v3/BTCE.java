@@ -59,4 +59,29 @@ public interface BTCE {
   BTCETradesWrapper getTrades(@PathParam("ident") String tradeableIdentifier, @PathParam("currency") String currency, @DefaultValue("1") @QueryParam("limit") int limit,
       @DefaultValue("1") @QueryParam("ignore_invalid") int ignoreInvalid) throws IOException;
 
+  /**
+   * @param pairs hyphen separated list of pairs, see {@link BTCEUtils#getPairs(java.util.Collection)}
+   */
+  @GET
+  @Path("3/ticker/{pairs}")
+  BTCETickerWrapper getTickers(@PathParam("pairs") String pairs, @DefaultValue("1") @QueryParam("ignore_invalid") int ignoreInvalid) throws IOException;
+
+  /**
+   * @param pairs hyphen separated list of pairs, see {@link BTCEUtils#getPairs(java.util.Collection)}
+   * @param limit the number of orders per side and pair
+   */
+  @GET
+  @Path("3/depth/{pairs}")
+  BTCEDepthWrapper getDepths(@PathParam("pairs") String pairs, @DefaultValue("1") @QueryParam("limit") int limit, @DefaultValue("1") @QueryParam("ignore_invalid") int ignoreInvalid)
+      throws IOException;
+
+  /**
+   * @param pairs hyphen separated list of pairs, see {@link BTCEUtils#getPairs(java.util.Collection)}
+   * @param limit the number of trades per pair
+   */
+  @GET
+  @Path("3/trades/{pairs}")
+  BTCETradesWrapper getTradesForPairs(@PathParam("pairs") String pairs, @DefaultValue("1") @QueryParam("limit") int limit, @DefaultValue("1") @QueryParam("ignore_invalid") int ignoreInvalid)
+      throws IOException;
+
 }
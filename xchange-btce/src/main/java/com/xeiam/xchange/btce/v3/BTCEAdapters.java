@@ -23,7 +23,9 @@ package com.xeiam.xchange.btce.v3;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -36,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xeiam.xchange.btce.v3.dto.account.BTCEAccountInfo;
+import com.xeiam.xchange.btce.v3.dto.marketdata.BTCEDepth;
 import com.xeiam.xchange.btce.v3.dto.marketdata.BTCEExchangeInfo;
 import com.xeiam.xchange.btce.v3.dto.marketdata.BTCETicker;
 import com.xeiam.xchange.btce.v3.dto.marketdata.BTCETrade;
@@ -46,14 +49,18 @@ import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.ExchangeInfo;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
 import com.xeiam.xchange.dto.marketdata.Trade;
 import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.marketdata.TradesBuilder;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.OpenOrders;
 import com.xeiam.xchange.dto.trade.Wallet;
 import com.xeiam.xchange.utils.DateUtils;
+import com.xeiam.xchange.utils.Timestamps;
 
 /**
  * Various adapters for converting from BTCE DTOs to XChange DTOs
@@ -80,19 +87,17 @@ public final class BTCEAdapters {
    */
   public static List<LimitOrder> adaptOrders(List<BigDecimal[]> bTCEOrders, String tradableIdentifier, String currency, String orderType, String id) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
-
+    OrderType type = orderType.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(type, tradableIdentifier, currency, bTCEOrders.size());
+    // Bid orderbook is reversed order
+    if (type == OrderType.BID) {
+      side.reversed();
+    }
     for (BigDecimal[] btceOrder : bTCEOrders) {
-      // Bid orderbook is reversed order. Insert at index 0 instead of appending
-      if (orderType.equalsIgnoreCase("bid")) {
-        limitOrders.add(0, adaptOrder(btceOrder[1], btceOrder[0], tradableIdentifier, currency, orderType, id));
-      }
-      else {
-        limitOrders.add(adaptOrder(btceOrder[1], btceOrder[0], tradableIdentifier, currency, orderType, id));
-      }
+      side.add(btceOrder[0], btceOrder[1], id, null);
     }
 
-    return limitOrders;
+    return side.build();
   }
 
   /**
@@ -109,8 +114,7 @@ public final class BTCEAdapters {
 
     // place a limit order
     OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
-    BigMoney limitPrice;
-    limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     return new LimitOrder(orderType, amount, tradableIdentifier, currency, id, null, limitPrice);
 
@@ -128,7 +132,7 @@ public final class BTCEAdapters {
 
     OrderType orderType = bTCETrade.getTradeType().equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
     BigDecimal amount = bTCETrade.getAmount();
-    BigMoney price = MoneyUtils.parse(currency + " " + bTCETrade.getPrice());
+    BigMoney price = MoneyUtils.of(CurrencyUnit.of(currency), bTCETrade.getPrice());
     Date date = DateUtils.fromMillisUtc(bTCETrade.getDate() * 1000L);
 
     return new Trade(orderType, amount, tradableIdentifier, currency, price, date, bTCETrade.getTid());
@@ -144,12 +148,13 @@ public final class BTCEAdapters {
    */
   public static Trades adaptTrades(BTCETrade[] BTCETrades, String tradableIdentifier, String currency) {
 
-    List<Trade> tradesList = new ArrayList<Trade>();
-    for (BTCETrade BTCETrade : BTCETrades) {
-      // Date is reversed order. Insert at index 0 instead of appending
-      tradesList.add(0, adaptTrade(BTCETrade, tradableIdentifier, currency));
+    // Date is reversed order
+    TradesBuilder builder = new TradesBuilder(tradableIdentifier, currency, BTCETrades.length).reversed();
+    for (BTCETrade btceTrade : BTCETrades) {
+      OrderType orderType = btceTrade.getTradeType().equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+      builder.add(orderType, btceTrade.getAmount(), btceTrade.getPrice(), Timestamps.fromSeconds(btceTrade.getDate()), btceTrade.getTid());
     }
-    return new Trades(tradesList);
+    return builder.build();
   }
 
   /**
@@ -172,6 +177,65 @@ public final class BTCEAdapters {
         .build();
   }
 
+  /**
+   * Adapts the tickers of a multi-pair call, pairs missing from the result are left out
+   * 
+   * @param btceTickers The BTCE tickers, keyed by BTCE pair
+   * @param currencyPairs The requested pairs
+   * @return The tickers, in the order of the requested pairs
+   */
+  public static Map<CurrencyPair, Ticker> adaptTickers(Map<String, BTCETicker> btceTickers, Collection<CurrencyPair> currencyPairs) {
+
+    Map<CurrencyPair, Ticker> tickers = new LinkedHashMap<CurrencyPair, Ticker>(currencyPairs.size() * 4 / 3 + 1);
+    for (CurrencyPair currencyPair : currencyPairs) {
+      BTCETicker btceTicker = btceTickers.get(BTCEUtils.getPair(currencyPair.baseCurrency, currencyPair.counterCurrency));
+      if (btceTicker != null) {
+        tickers.put(currencyPair, adaptTicker(btceTicker, currencyPair.baseCurrency, currencyPair.counterCurrency));
+      }
+    }
+    return tickers;
+  }
+
+  /**
+   * Adapts the depths of a multi-pair call, pairs missing from the result are left out
+   * 
+   * @param btceDepths The BTCE depths, keyed by BTCE pair
+   * @param currencyPairs The requested pairs
+   * @return The order books, in the order of the requested pairs
+   */
+  public static Map<CurrencyPair, OrderBook> adaptOrderBooks(Map<String, BTCEDepth> btceDepths, Collection<CurrencyPair> currencyPairs) {
+
+    Map<CurrencyPair, OrderBook> orderBooks = new LinkedHashMap<CurrencyPair, OrderBook>(currencyPairs.size() * 4 / 3 + 1);
+    for (CurrencyPair currencyPair : currencyPairs) {
+      BTCEDepth btceDepth = btceDepths.get(BTCEUtils.getPair(currencyPair.baseCurrency, currencyPair.counterCurrency));
+      if (btceDepth != null) {
+        List<LimitOrder> asks = adaptOrders(btceDepth.getAsks(), currencyPair.baseCurrency, currencyPair.counterCurrency, "ask", "");
+        List<LimitOrder> bids = adaptOrders(btceDepth.getBids(), currencyPair.baseCurrency, currencyPair.counterCurrency, "bid", "");
+        orderBooks.put(currencyPair, new OrderBook(null, asks, bids));
+      }
+    }
+    return orderBooks;
+  }
+
+  /**
+   * Adapts the trades of a multi-pair call, pairs missing from the result are left out
+   * 
+   * @param btceTrades The BTCE trades, keyed by BTCE pair
+   * @param currencyPairs The requested pairs
+   * @return The trades, in the order of the requested pairs
+   */
+  public static Map<CurrencyPair, Trades> adaptTrades(Map<String, BTCETrade[]> btceTrades, Collection<CurrencyPair> currencyPairs) {
+
+    Map<CurrencyPair, Trades> trades = new LinkedHashMap<CurrencyPair, Trades>(currencyPairs.size() * 4 / 3 + 1);
+    for (CurrencyPair currencyPair : currencyPairs) {
+      BTCETrade[] pairTrades = btceTrades.get(BTCEUtils.getPair(currencyPair.baseCurrency, currencyPair.counterCurrency));
+      if (pairTrades != null) {
+        trades.put(currencyPair, adaptTrades(pairTrades, currencyPair.baseCurrency, currencyPair.counterCurrency));
+      }
+    }
+    return trades;
+  }
+
   public static AccountInfo adaptAccountInfo(BTCEAccountInfo btceAccountInfo) {
 
     List<Wallet> wallets = new ArrayList<Wallet>();
@@ -22,6 +22,7 @@
 package com.xeiam.xchange.btce.v3;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -95,4 +96,20 @@ public final class BTCEUtils {
 		return tradableIdentifier.toLowerCase() + "_" + currency.toLowerCase();
 	}
 
+	/**
+	 * @param currencyPairs
+	 * @return The pairs in the hyphen separated form the v3 API takes to return several pairs from one call, e.g. "btc_usd-ltc_btc"
+	 */
+	public static String getPairs(Collection<CurrencyPair> currencyPairs) {
+
+		StringBuilder sb = new StringBuilder(currencyPairs.size() * 8);
+		for (CurrencyPair currencyPair : currencyPairs) {
+			if (sb.length() > 0) {
+				sb.append('-');
+			}
+			sb.append(getPair(currencyPair.baseCurrency, currencyPair.counterCurrency));
+		}
+		return sb.toString();
+	}
+
 }
@@ -22,6 +22,8 @@
 package com.xeiam.xchange.btce.v3.service.polling;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,17 +34,21 @@ import com.xeiam.xchange.ExchangeSpecification;
 import com.xeiam.xchange.btce.v3.BTCE;
 import com.xeiam.xchange.btce.v3.BTCEAdapters;
 import com.xeiam.xchange.btce.v3.BTCEUtils;
+import com.xeiam.xchange.btce.v3.dto.marketdata.BTCEDepth;
 import com.xeiam.xchange.btce.v3.dto.marketdata.BTCEDepthWrapper;
 import com.xeiam.xchange.btce.v3.dto.marketdata.BTCEExchangeInfo;
 import com.xeiam.xchange.btce.v3.dto.marketdata.BTCETickerWrapper;
 import com.xeiam.xchange.btce.v3.dto.marketdata.BTCETrade;
+import com.xeiam.xchange.btce.v3.dto.marketdata.BTCETradesWrapper;
 import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.dto.ExchangeInfo;
 import com.xeiam.xchange.dto.marketdata.OrderBook;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Trades;
 import com.xeiam.xchange.dto.trade.LimitOrder;
-import com.xeiam.xchange.service.polling.PollingMarketDataService;
+import com.xeiam.xchange.service.polling.BulkPollingMarketDataService;
+import com.xeiam.xchange.service.polling.DepthLimitedMarketDataService;
+import com.xeiam.xchange.service.polling.OrderBookRequest;
 import com.xeiam.xchange.utils.Assert;
 import com.xeiam.xchange.utils.MovingAverage;
 
@@ -54,7 +60,11 @@ import com.xeiam.xchange.utils.MovingAverage;
  * <li>Provides access to various market data values</li>
  * </ul>
  */
-public class BTCEPollingMarketDataService implements PollingMarketDataService {
+public class BTCEPollingMarketDataService implements DepthLimitedMarketDataService, BulkPollingMarketDataService {
+
+  private static final int PARTIAL_ORDERBOOK_SIZE = 250;
+  /** The maximum limit BTC-E accepts */
+  private static final int FULL_ORDERBOOK_SIZE = 2000;
 
   protected final BTCE btce;
 
@@ -77,29 +87,37 @@ public class BTCEPollingMarketDataService implements PollingMarketDataService {
     return BTCEAdapters.adaptTicker(btceTickerWrapper.getTicker(tradableIdentifier, currency), tradableIdentifier, currency);
   }
 
-  // TODO possibly allow for passing in custom depth size amounts
   @Override
   public OrderBook getPartialOrderBook(String tradableIdentifier, String currency) throws IOException {
 
-    verify(tradableIdentifier, currency);
+    return getOrderBook(tradableIdentifier, currency, PARTIAL_ORDERBOOK_SIZE);
+  }
 
-    BTCEDepthWrapper btceDepthWrapper = btce.getDepth(tradableIdentifier.toLowerCase(), currency.toLowerCase(), 250, 1);
-    // Adapt to XChange DTOs
-    List<LimitOrder> asks = BTCEAdapters.adaptOrders(btceDepthWrapper.getDepth(tradableIdentifier, currency).getAsks(), tradableIdentifier, currency, "ask", "");
-    List<LimitOrder> bids = BTCEAdapters.adaptOrders(btceDepthWrapper.getDepth(tradableIdentifier, currency).getBids(), tradableIdentifier, currency, "bid", "");
+  @Override
+  public OrderBook getFullOrderBook(String tradableIdentifier, String currency) throws IOException {
 
-    return new OrderBook(null, asks, bids);
+    return getOrderBook(tradableIdentifier, currency, FULL_ORDERBOOK_SIZE);
   }
 
+  /**
+   * Maps the levels to BTC-E's limit parameter; a price window is applied on the client side
+   */
   @Override
-  public OrderBook getFullOrderBook(String tradableIdentifier, String currency) throws IOException {
+  public OrderBook getOrderBook(String tradableIdentifier, String currency, OrderBookRequest request) throws IOException {
+
+    int limit = request.hasMaxLevels() ? Math.min(request.getMaxLevels(), FULL_ORDERBOOK_SIZE) : FULL_ORDERBOOK_SIZE;
+    return request.truncate(getOrderBook(tradableIdentifier, currency, limit));
+  }
+
+  private OrderBook getOrderBook(String tradableIdentifier, String currency, int limit) throws IOException {
 
     verify(tradableIdentifier, currency);
 
-    BTCEDepthWrapper btceDepthWrapper = btce.getDepth(tradableIdentifier.toLowerCase(), currency.toLowerCase(), 2000, 1);
+    BTCEDepthWrapper btceDepthWrapper = btce.getDepth(tradableIdentifier.toLowerCase(), currency.toLowerCase(), limit, 1);
     // Adapt to XChange DTOs
-    List<LimitOrder> asks = BTCEAdapters.adaptOrders(btceDepthWrapper.getDepth(tradableIdentifier, currency).getAsks(), tradableIdentifier, currency, "ask", "");
-    List<LimitOrder> bids = BTCEAdapters.adaptOrders(btceDepthWrapper.getDepth(tradableIdentifier, currency).getBids(), tradableIdentifier, currency, "bid", "");
+    BTCEDepth btceDepth = btceDepthWrapper.getDepth(tradableIdentifier, currency);
+    List<LimitOrder> asks = BTCEAdapters.adaptOrders(btceDepth.getAsks(), tradableIdentifier, currency, "ask", "");
+    List<LimitOrder> bids = BTCEAdapters.adaptOrders(btceDepth.getBids(), tradableIdentifier, currency, "bid", "");
 
     return new OrderBook(null, asks, bids);
   }
@@ -139,6 +157,75 @@ public class BTCEPollingMarketDataService implements PollingMarketDataService {
 
   }
 
+  /**
+   * Gets the tickers of several pairs in a single request
+   * 
+   * @param currencyPairs The pairs, e.g. {@link BTCEUtils#CURRENCY_PAIRS}
+   * @return The tickers, in the order of the given pairs; pairs BTC-E did not return are left out
+   * @throws IOException
+   */
+  @Override
+  public Map<CurrencyPair, Ticker> getTickers(Collection<CurrencyPair> currencyPairs) throws IOException {
+
+    verify(currencyPairs);
+    if (currencyPairs.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    BTCETickerWrapper btceTickerWrapper = btce.getTickers(BTCEUtils.getPairs(currencyPairs), 1);
+    return BTCEAdapters.adaptTickers(btceTickerWrapper.getTickerMap(), currencyPairs);
+  }
+
+  /**
+   * Gets the order books of several pairs in a single request
+   * 
+   * @param currencyPairs The pairs, e.g. {@link BTCEUtils#CURRENCY_PAIRS}
+   * @param limit The number of orders per side and pair, at most 2000
+   * @return The order books, in the order of the given pairs; pairs BTC-E did not return are left out
+   * @throws IOException
+   */
+  @Override
+  public Map<CurrencyPair, OrderBook> getOrderBooks(Collection<CurrencyPair> currencyPairs, int limit) throws IOException {
+
+    verify(currencyPairs);
+    if (currencyPairs.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    BTCEDepthWrapper btceDepthWrapper = btce.getDepths(BTCEUtils.getPairs(currencyPairs), limit, 1);
+    return BTCEAdapters.adaptOrderBooks(btceDepthWrapper.getDepthMap(), currencyPairs);
+  }
+
+  /**
+   * Gets the recent trades of several pairs in a single request
+   * 
+   * @param currencyPairs The pairs, e.g. {@link BTCEUtils#CURRENCY_PAIRS}
+   * @param limit The number of trades per pair, at most 2000
+   * @return The trades, in the order of the given pairs; pairs BTC-E did not return are left out
+   * @throws IOException
+   */
+  @Override
+  public Map<CurrencyPair, Trades> getTrades(Collection<CurrencyPair> currencyPairs, int limit) throws IOException {
+
+    verify(currencyPairs);
+    if (currencyPairs.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    BTCETradesWrapper btceTradesWrapper = btce.getTradesForPairs(BTCEUtils.getPairs(currencyPairs), limit, 1);
+    return BTCEAdapters.adaptTrades(btceTradesWrapper.getTradesMap(), currencyPairs);
+  }
+
+  /**
+   * Verify that all pairs are valid
+   * 
+   * @param currencyPairs
+   */
+  private void verify(Collection<CurrencyPair> currencyPairs) {
+
+    Assert.notNull(currencyPairs, "currencyPairs cannot be null");
+    for (CurrencyPair currencyPair : currencyPairs) {
+      Assert.isTrue(BTCEUtils.isValidCurrencyPair(currencyPair), "currencyPair is not valid:" + currencyPair);
+    }
+  }
+
   /**
    * Verify that both currencies can make valid pair
    * 
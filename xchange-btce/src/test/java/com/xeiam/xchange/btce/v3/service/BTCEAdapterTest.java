@@ -26,7 +26,9 @@ import static org.fest.assertions.api.Assertions.assertThat;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -40,6 +42,7 @@ import com.xeiam.xchange.btce.v3.service.marketdata.BTCEDepthJSONTest;
 import com.xeiam.xchange.btce.v3.service.marketdata.BTCETickerJSONTest;
 import com.xeiam.xchange.btce.v3.service.marketdata.BTCETradesJSONTest;
 import com.xeiam.xchange.btce.v3.service.trade.BTCETradeHistoryJSONTest;
+import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.marketdata.Ticker;
@@ -122,6 +125,25 @@ public class BTCEAdapterTest {
 
   }
 
+  @Test
+  public void testMultiPairTickerAdapter() throws IOException {
+
+    // Read in the JSON from the example resources
+    InputStream is = BTCETickerJSONTest.class.getResourceAsStream("/v3/marketdata/example-tickers-data.json");
+
+    // Use Jackson to parse it
+    ObjectMapper mapper = new ObjectMapper();
+    BTCETickerWrapper bTCETickerWrapper = mapper.readValue(is, BTCETickerWrapper.class);
+
+    // NMC/BTC was not returned
+    Map<CurrencyPair, Ticker> tickers = BTCEAdapters.adaptTickers(bTCETickerWrapper.getTickerMap(), Arrays.asList(CurrencyPair.LTC_BTC, CurrencyPair.NMC_BTC, CurrencyPair.BTC_USD));
+
+    assertThat(tickers.keySet()).containsExactly(CurrencyPair.LTC_BTC, CurrencyPair.BTC_USD);
+    assertThat(tickers.get(CurrencyPair.LTC_BTC).getLast().toString()).isEqualTo("BTC 0.04411");
+    assertThat(tickers.get(CurrencyPair.LTC_BTC).getTradableIdentifier()).isEqualTo("LTC");
+    assertThat(tickers.get(CurrencyPair.BTC_USD).getLast().toString()).isEqualTo("USD 757");
+  }
+
   @Test
   public void testUserTradeHistoryAdapter() throws IOException {
 
@@ -23,6 +23,9 @@ package com.xeiam.xchange.btce.v3.service;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import org.junit.Test;
 
 import com.xeiam.xchange.btce.v3.BTCEUtils;
@@ -40,4 +43,11 @@ public class BTCEUtilsTest {
     assertThat(BTCEUtils.isValidCurrencyPair(new CurrencyPair("BTC", "USD"))).isTrue();
     assertThat(BTCEUtils.isValidCurrencyPair(new CurrencyPair("BTC", "CAD"))).isFalse();
   }
+
+  @Test
+  public void testGetPairs() {
+
+    assertThat(BTCEUtils.getPairs(Arrays.asList(CurrencyPair.BTC_USD, CurrencyPair.LTC_BTC))).isEqualTo("btc_usd-ltc_btc");
+    assertThat(BTCEUtils.getPairs(Collections.singletonList(CurrencyPair.BTC_USD))).isEqualTo("btc_usd");
+  }
 }
@@ -23,17 +23,16 @@ package com.xeiam.xchange.campbx;
 
 import java.math.BigDecimal;
 import java.text.MessageFormat;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.joda.money.BigMoney;
-import org.joda.money.CurrencyUnit;
 
 import com.xeiam.xchange.campbx.dto.marketdata.CampBXOrderBook;
 import com.xeiam.xchange.campbx.dto.marketdata.CampBXTicker;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order;
 import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
 import com.xeiam.xchange.dto.trade.LimitOrder;
@@ -60,17 +59,12 @@ public final class CampBXAdapters {
 
   private static List<LimitOrder> createOrders(String tradableIdentifier, String currency, Order.OrderType orderType, List<List<BigDecimal>> orders) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(orderType, tradableIdentifier, currency, orders.size());
     for (List<BigDecimal> ask : orders) {
       checkArgument(ask.size() == 2, "Expected a pair (price, amount) but got {0} elements.", ask.size());
-      limitOrders.add(createOrder(tradableIdentifier, currency, ask, orderType));
+      side.add(ask.get(0), ask.get(1));
     }
-    return limitOrders;
-  }
-
-  private static LimitOrder createOrder(String tradableIdentifier, String currency, List<BigDecimal> priceAndAmount, Order.OrderType orderType) {
-
-    return new LimitOrder(orderType, priceAndAmount.get(1), tradableIdentifier, currency, "", null, BigMoney.of(CurrencyUnit.of("USD"), priceAndAmount.get(0)));
+    return side.build();
   }
 
   private static void checkArgument(boolean argument, String msgPattern, Object... msgArgs) {
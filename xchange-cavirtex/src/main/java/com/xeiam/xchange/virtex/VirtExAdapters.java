@@ -27,10 +27,12 @@ import java.util.Date;
 import java.util.List;
 
 import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
 
 import com.xeiam.xchange.currency.Currencies;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
 import com.xeiam.xchange.dto.marketdata.Trade;
@@ -67,7 +69,7 @@ public final class VirtExAdapters {
     // place a limit order
     OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
     String tradableIdentifier = Currencies.BTC;
-    BigMoney limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     return new LimitOrder(orderType, amount, tradableIdentifier, currency, id, null, limitPrice);
 
@@ -84,13 +86,14 @@ public final class VirtExAdapters {
    */
   public static List<LimitOrder> adaptOrders(List<BigDecimal[]> virtexOrders, String currency, String orderType, String id) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    OrderType type = orderType.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(type, Currencies.BTC, currency, virtexOrders.size());
 
     for (BigDecimal[] virtexOrder : virtexOrders) {
-      limitOrders.add(adaptOrder(virtexOrder[1], virtexOrder[0], currency, orderType, id));
+      side.add(virtexOrder[0], virtexOrder[1], id, null);
     }
 
-    return limitOrders;
+    return side.build();
   }
 
   /**
@@ -101,8 +104,13 @@ public final class VirtExAdapters {
    */
   public static Trade adaptTrade(VirtExTrade virtExTrade, String currency, String tradableIdentifier) {
 
+    return adaptTrade(virtExTrade, CurrencyUnit.of(currency), currency, tradableIdentifier);
+  }
+
+  private static Trade adaptTrade(VirtExTrade virtExTrade, CurrencyUnit currencyUnit, String currency, String tradableIdentifier) {
+
     BigDecimal amount = virtExTrade.getAmount();
-    BigMoney price = MoneyUtils.parse(currency + " " + virtExTrade.getPrice());
+    BigMoney price = MoneyUtils.of(currencyUnit, virtExTrade.getPrice());
     Date date = DateUtils.fromMillisUtc((long) virtExTrade.getDate() * 1000L);
 
     return new Trade(null, amount, tradableIdentifier, currency, price, date, virtExTrade.getTid());
@@ -116,9 +124,10 @@ public final class VirtExAdapters {
    */
   public static Trades adaptTrades(VirtExTrade[] virtexTrades, String currency, String tradableIdentifier) {
 
-    List<Trade> tradesList = new ArrayList<Trade>();
+    CurrencyUnit currencyUnit = CurrencyUnit.of(currency);
+    List<Trade> tradesList = new ArrayList<Trade>(virtexTrades.length);
     for (VirtExTrade virtexTrade : virtexTrades) {
-      tradesList.add(adaptTrade(virtexTrade, currency, tradableIdentifier));
+      tradesList.add(adaptTrade(virtexTrade, currencyUnit, currency, tradableIdentifier));
     }
     return new Trades(tradesList);
   }
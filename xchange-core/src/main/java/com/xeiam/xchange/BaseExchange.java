@@ -21,11 +21,25 @@
  */
 package com.xeiam.xchange;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.xeiam.xchange.service.polling.PollingAccountService;
 import com.xeiam.xchange.service.polling.PollingMarketDataService;
 import com.xeiam.xchange.service.polling.PollingTradeService;
+import com.xeiam.xchange.service.polling.RequestPriority;
+import com.xeiam.xchange.service.polling.RequestScheduler;
+import com.xeiam.xchange.service.polling.TokenBucket;
 import com.xeiam.xchange.service.streaming.ExchangeStreamingConfiguration;
+import com.xeiam.xchange.service.streaming.PollingStreamingConfiguration;
+import com.xeiam.xchange.service.streaming.PollingStreamingExchangeService;
 import com.xeiam.xchange.service.streaming.StreamingExchangeService;
+import com.xeiam.xchange.utils.jackson.JacksonRegistry;
 
 /**
  * <p>
@@ -33,10 +47,20 @@ import com.xeiam.xchange.service.streaming.StreamingExchangeService;
  * </p>
  * <ul>
  * <li>Access to common methods and fields</li>
+ * <li>Routing of the polling service calls through a {@link RequestScheduler} when the {@link ExchangeSpecification} sets request limits</li>
  * </ul>
  */
 public abstract class BaseExchange implements Exchange {
 
+  private static final int PRE_CONNECT_TIMEOUT_IN_MS = 5000;
+
+  private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 2;
+
+  /** One ticker, depth and trades poll per market data refresh interval; the budget is shared by all currency pairs, not kept per pair */
+  private static final int MARKET_DATA_CALLS_PER_REFRESH = 3;
+
+  private final Logger log = LoggerFactory.getLogger(BaseExchange.class);
+
   protected ExchangeSpecification exchangeSpecification;
 
   protected PollingMarketDataService pollingMarketDataService;
@@ -44,6 +68,13 @@ public abstract class BaseExchange implements Exchange {
   protected PollingAccountService pollingAccountService;
   protected StreamingExchangeService streamingExchangeService;
 
+  /** The scheduler and the services wrapped for it are guarded by this */
+  private RequestScheduler requestScheduler;
+
+  private PollingMarketDataService scheduledMarketDataService;
+  private PollingTradeService scheduledTradeService;
+  private PollingAccountService scheduledAccountService;
+
   @Override
   public void applySpecification(ExchangeSpecification exchangeSpecification) {
 
@@ -67,9 +98,61 @@ public abstract class BaseExchange implements Exchange {
       if (exchangeSpecification.getHost() == null) {
         exchangeSpecification.setHost(defaultSpecification.getHost());
       }
+      if (exchangeSpecification.getRequestRateLimit() == null) {
+        exchangeSpecification.setRequestRateLimit(defaultSpecification.getRequestRateLimit());
+      }
+      if (exchangeSpecification.getRequestRateLimitPeriodInMs() == null) {
+        exchangeSpecification.setRequestRateLimitPeriodInMs(defaultSpecification.getRequestRateLimitPeriodInMs());
+      }
+      if (exchangeSpecification.getMarketDataRefreshIntervalInMs() == null) {
+        exchangeSpecification.setMarketDataRefreshIntervalInMs(defaultSpecification.getMarketDataRefreshIntervalInMs());
+      }
+      if (exchangeSpecification.getMaxConcurrentRequests() == null) {
+        exchangeSpecification.setMaxConcurrentRequests(defaultSpecification.getMaxConcurrentRequests());
+      }
       this.exchangeSpecification = exchangeSpecification;
     }
 
+    configureRequestScheduler();
+  }
+
+  /**
+   * Replaces the request scheduler with one enforcing the limits of the specification, or none if it sets no limits
+   */
+  private synchronized void configureRequestScheduler() {
+
+    if (requestScheduler != null) {
+      requestScheduler.shutdown();
+      requestScheduler = null;
+    }
+    scheduledMarketDataService = null;
+    scheduledTradeService = null;
+    scheduledAccountService = null;
+
+    int rateLimit = exchangeSpecification.getRequestRateLimit() == null ? 0 : exchangeSpecification.getRequestRateLimit().intValue();
+    long period = exchangeSpecification.getRequestRateLimitPeriodInMs() == null ? 0 : exchangeSpecification.getRequestRateLimitPeriodInMs().longValue();
+    long refreshInterval = exchangeSpecification.getMarketDataRefreshIntervalInMs() == null ? 0 : exchangeSpecification.getMarketDataRefreshIntervalInMs().longValue();
+
+    TokenBucket exchangeBucket = rateLimit > 0 && period > 0 ? new TokenBucket(rateLimit, rateLimit, period) : null;
+    if (exchangeBucket == null && refreshInterval <= 0) {
+      return;
+    }
+
+    String name = exchangeSpecification.getExchangeName() == null ? getClass().getSimpleName() : exchangeSpecification.getExchangeName();
+    int concurrency = exchangeSpecification.getMaxConcurrentRequests() == null ? DEFAULT_MAX_CONCURRENT_REQUESTS : exchangeSpecification.getMaxConcurrentRequests().intValue();
+    requestScheduler = new RequestScheduler(name, exchangeBucket, concurrency);
+    if (refreshInterval > 0) {
+      requestScheduler.setRateLimit(RequestPriority.MARKET_DATA, new TokenBucket(MARKET_DATA_CALLS_PER_REFRESH, MARKET_DATA_CALLS_PER_REFRESH, refreshInterval));
+    }
+    log.debug("Scheduling {} requests with {}", name, exchangeBucket == null ? "no exchange limit" : exchangeBucket);
+  }
+
+  /**
+   * @return The scheduler the polling services send their calls through, or null if the specification sets no request limits
+   */
+  public synchronized RequestScheduler getRequestScheduler() {
+
+    return requestScheduler;
   }
 
   @Override
@@ -79,15 +162,27 @@ public abstract class BaseExchange implements Exchange {
   }
 
   @Override
-  public PollingMarketDataService getPollingMarketDataService() {
+  public synchronized PollingMarketDataService getPollingMarketDataService() {
 
-    return pollingMarketDataService;
+    if (requestScheduler == null || pollingMarketDataService == null) {
+      return pollingMarketDataService;
+    }
+    if (scheduledMarketDataService == null) {
+      scheduledMarketDataService = requestScheduler.wrapMarketDataService(pollingMarketDataService, 0);
+    }
+    return scheduledMarketDataService;
   }
 
   @Override
-  public PollingTradeService getPollingTradeService() {
+  public synchronized PollingTradeService getPollingTradeService() {
 
-    return pollingTradeService;
+    if (requestScheduler == null || pollingTradeService == null) {
+      return pollingTradeService;
+    }
+    if (scheduledTradeService == null) {
+      scheduledTradeService = requestScheduler.wrapTradeService(pollingTradeService, 0, 0);
+    }
+    return scheduledTradeService;
   }
 
   @Override
@@ -97,43 +192,124 @@ public abstract class BaseExchange implements Exchange {
   }
 
   @Override
-  public PollingAccountService getPollingAccountService() {
+  public synchronized PollingAccountService getPollingAccountService() {
 
-    return pollingAccountService;
+    if (requestScheduler == null || pollingAccountService == null) {
+      return pollingAccountService;
+    }
+    if (scheduledAccountService == null) {
+      scheduledAccountService = requestScheduler.wrapAccountService(pollingAccountService, 0);
+    }
+    return scheduledAccountService;
   }
 
   @Override
   public PollingMarketDataService getPollingMarketDataService(ExchangeStreamingConfiguration configuration) {
 
-    return pollingMarketDataService;
+    return getPollingMarketDataService();
   }
 
   @Override
   public PollingTradeService getPollingTradeService(ExchangeStreamingConfiguration configuration) {
 
-    return pollingTradeService;
+    return getPollingTradeService();
   }
 
   @Override
   public StreamingExchangeService getStreamingExchangeService(ExchangeStreamingConfiguration configuration) {
 
+    // exchanges without a streaming API can be streamed by polling
+    if (streamingExchangeService == null && pollingMarketDataService != null && configuration instanceof PollingStreamingConfiguration) {
+      return new PollingStreamingExchangeService(exchangeSpecification, getPollingMarketDataService(), (PollingStreamingConfiguration) configuration);
+    }
     return streamingExchangeService;
   }
 
   @Override
   public PollingAccountService getPollingAccountService(ExchangeStreamingConfiguration configuration) {
 
-    return pollingAccountService;
+    return getPollingAccountService();
+  }
+
+  @Override
+  public void warmUp(boolean preConnect, int adapterIterations) {
+
+    long start = System.currentTimeMillis();
+
+    JacksonRegistry.warmUp(getWarmUpTypes());
+
+    if (adapterIterations > 0) {
+      try {
+        int adapted = warmUpAdapters(adapterIterations);
+        log.debug("Warmed up adapters with {} payloads", adapted);
+      } catch (Exception e) {
+        log.warn("Adapter warm-up failed", e);
+      }
+    }
+
+    if (preConnect && exchangeSpecification != null && exchangeSpecification.getSslUri() != null) {
+      try {
+        preConnect(exchangeSpecification.getSslUri());
+      } catch (IOException e) {
+        log.warn("Could not pre-connect to {}: {}", exchangeSpecification.getSslUri(), e.getMessage());
+      }
+    }
+
+    log.debug("Warm-up took {} ms", System.currentTimeMillis() - start);
+  }
+
+  /**
+   * @return The DTO types the streaming services map with the {@link JacksonRegistry}, whose JSON mapping to prime, none by default
+   */
+  protected Class<?>[] getWarmUpTypes() {
+
+    return new Class<?>[0];
+  }
+
+  /**
+   * Runs the exchange's adapters over bundled sample payloads, nothing by default
+   * 
+   * @param iterations
+   * @return The number of payloads successfully adapted
+   * @throws IOException
+   */
+  protected int warmUpAdapters(int iterations) throws IOException {
+
+    return 0;
+  }
+
+  /**
+   * Sends a HEAD request so that the connection (and TLS session) is cached for the first real request
+   * 
+   * @param uri
+   * @throws IOException
+   */
+  protected void preConnect(String uri) throws IOException {
+
+    HttpURLConnection connection = (HttpURLConnection) new URL(uri).openConnection();
+    connection.setRequestMethod("HEAD");
+    connection.setConnectTimeout(PRE_CONNECT_TIMEOUT_IN_MS);
+    connection.setReadTimeout(PRE_CONNECT_TIMEOUT_IN_MS);
+
+    int responseCode = connection.getResponseCode();
+    // closing the (empty) stream rather than disconnecting returns the connection to the keep-alive cache
+    InputStream stream = responseCode < 400 ? connection.getInputStream() : connection.getErrorStream();
+    if (stream != null) {
+      stream.close();
+    }
+    log.debug("Pre-connected to {} ({})", uri, responseCode);
   }
 
-  /* package */void setPollingMarketDataService(PollingMarketDataService marketDataService) {
+  /* package */synchronized void setPollingMarketDataService(PollingMarketDataService marketDataService) {
 
     this.pollingMarketDataService = marketDataService;
+    this.scheduledMarketDataService = null;
   }
 
-  /* package */void setPollingTradeService(PollingTradeService tradeService) {
+  /* package */synchronized void setPollingTradeService(PollingTradeService tradeService) {
 
     this.pollingTradeService = tradeService;
+    this.scheduledTradeService = null;
   }
 
   /* package */void setStreamingMarketDataService(StreamingExchangeService streamingExchangeService) {
@@ -141,9 +317,10 @@ public abstract class BaseExchange implements Exchange {
     this.streamingExchangeService = streamingExchangeService;
   }
 
-  /* package */void setPollingAccountService(PollingAccountService pollingAccountService) {
+  /* package */synchronized void setPollingAccountService(PollingAccountService pollingAccountService) {
 
     this.pollingAccountService = pollingAccountService;
+    this.scheduledAccountService = null;
   }
 
 }
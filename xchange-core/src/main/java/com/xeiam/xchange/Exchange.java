@@ -183,4 +183,25 @@ public interface Exchange {
 	PollingAccountService getPollingAccountService(ExchangeStreamingConfiguration configuration);
 
 	public boolean isSupportedCurrencyPair(CurrencyPair aPair);
+
+	/**
+	 * <p>
+	 * Moves the one-off costs of the first requests out of the order path: loads and primes the JSON mapping of the exchange's streaming DTOs, optionally opens a
+	 * connection to the exchange (TCP and TLS handshakes, kept alive for the first real request) and optionally runs the adapters over bundled sample payloads
+	 * so that they are loaded and compiled
+	 * </p>
+	 * <p>
+	 * The JSON mapping primed is the shared one of {@link com.xeiam.xchange.utils.jackson.JacksonRegistry}, used by the streaming services. The polling services
+	 * map their responses with the REST proxies' own mappers, which are not primed; only their connection benefits.
+	 * </p>
+	 * <p>
+	 * Warm-up is best effort: failures are logged, never thrown.
+	 * </p>
+	 * 
+	 * @param preConnect
+	 *          true to connect to the configured SSL URI
+	 * @param adapterIterations
+	 *          the number of times to run the sample payloads through the adapters, 0 for none
+	 */
+	void warmUp(boolean preConnect, int adapterIterations);
 }
@@ -21,6 +21,9 @@
  */
 package com.xeiam.xchange;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +44,8 @@ public enum ExchangeFactory {
 
 	private final Logger log = LoggerFactory.getLogger(ExchangeFactory.class);
 
+	private final Map<String, Class<?>> exchangeClasses = new ConcurrentHashMap<String, Class<?>>();
+
 	/**
 	 * Constructor
 	 */
@@ -48,6 +53,19 @@ public enum ExchangeFactory {
 
 	}
 
+	/**
+	 * Resolving a class by name is costly, and exchanges are often re-created (e.g. on failover)
+	 */
+	private Class<?> getExchangeClass(String exchangeClassName) throws ClassNotFoundException {
+
+		Class<?> exchangeClass = exchangeClasses.get(exchangeClassName);
+		if (exchangeClass == null) {
+			exchangeClass = Class.forName(exchangeClassName);
+			exchangeClasses.put(exchangeClassName, exchangeClass);
+		}
+		return exchangeClass;
+	}
+
   /**
    * Create an Exchange object.
    * <p>
@@ -67,7 +85,7 @@ public enum ExchangeFactory {
 		try {
 
 			// Attempt to locate the exchange provider on the classpath
-			Class<?> exchangeProviderClass = Class.forName(exchangeClassName);
+			Class<?> exchangeProviderClass = getExchangeClass(exchangeClassName);
 
 			// Test that the class implements Exchange
 			if (Exchange.class.isAssignableFrom(exchangeProviderClass)) {
@@ -103,7 +121,7 @@ public enum ExchangeFactory {
 		try {
 
 			// Attempt to locate the exchange provider on the classpath
-			Class<?> exchangeProviderClass = Class.forName(exchangeClassName);
+			Class<?> exchangeProviderClass = getExchangeClass(exchangeClassName);
 
 			// Test that the class implements Exchange
 			if (Exchange.class.isAssignableFrom(exchangeProviderClass)) {
@@ -187,6 +187,18 @@ public class ExchangeSpecification implements Serializable {
 	@JsonProperty
 	private int port = 80;
 
+	@JsonProperty
+	private Integer requestRateLimit;
+
+	@JsonProperty
+	private Long requestRateLimitPeriodInMs;
+
+	@JsonProperty
+	private Long marketDataRefreshIntervalInMs;
+
+	@JsonProperty
+	private Integer maxConcurrentRequests;
+
 	private final String exchangeClassName;
 
 	@JsonProperty
@@ -514,4 +526,88 @@ public class ExchangeSpecification implements Serializable {
 
 		this.minTradeFee = minTradeFee;
 	}
+
+  /**
+   * Get the number of polling calls allowed per {@link #getRequestRateLimitPeriodInMs()} for the exchange as a whole.
+   * 
+   * @return the number of calls, null to use the exchange's default, 0 for no limit
+   */
+  public Integer getRequestRateLimit() {
+
+		return requestRateLimit;
+	}
+
+  /**
+   * Set the number of polling calls allowed per {@link #getRequestRateLimitPeriodInMs()} for the exchange as a whole.
+   * <p>
+   * When any limit is in effect the polling services send their calls through a {@link com.xeiam.xchange.service.polling.RequestScheduler}.
+   * </p>
+   * 
+   * @param requestRateLimit the number of calls, 0 for no limit
+   */
+  public void setRequestRateLimit(Integer requestRateLimit) {
+
+		this.requestRateLimit = requestRateLimit;
+	}
+
+  /**
+   * Get the period of the request rate limit.
+   * 
+   * @return the period in milliseconds, null to use the exchange's default
+   */
+  public Long getRequestRateLimitPeriodInMs() {
+
+		return requestRateLimitPeriodInMs;
+	}
+
+  /**
+   * Set the period of the request rate limit.
+   * 
+   * @param requestRateLimitPeriodInMs the period in milliseconds
+   */
+  public void setRequestRateLimitPeriodInMs(Long requestRateLimitPeriodInMs) {
+
+		this.requestRateLimitPeriodInMs = requestRateLimitPeriodInMs;
+	}
+
+  /**
+   * Get the minimum interval between public market data calls once the initial burst is spent.
+   * 
+   * @return the interval in milliseconds, null to use the exchange's default, 0 for no limit
+   */
+  public Long getMarketDataRefreshIntervalInMs() {
+
+		return marketDataRefreshIntervalInMs;
+	}
+
+  /**
+   * Set the minimum interval between public market data calls once the initial burst is spent (e.g. the rate at which the exchange refreshes its data).
+   * The burst of three calls per interval is shared by all currency pairs. Off unless set.
+   * 
+   * @param marketDataRefreshIntervalInMs the interval in milliseconds, 0 for no limit
+   */
+  public void setMarketDataRefreshIntervalInMs(Long marketDataRefreshIntervalInMs) {
+
+		this.marketDataRefreshIntervalInMs = marketDataRefreshIntervalInMs;
+	}
+
+  /**
+   * Get the maximum number of polling calls in flight when the calls are scheduled.
+   * 
+   * @return the number of calls, null to use the exchange's default
+   */
+  public Integer getMaxConcurrentRequests() {
+
+		return maxConcurrentRequests;
+	}
+
+  /**
+   * Set the maximum number of polling calls in flight when the calls are scheduled.
+   * 
+   * @param maxConcurrentRequests the number of calls
+   */
+  public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
 }
@@ -0,0 +1,488 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Order book view grouped into price buckets of one or more tick sizes (e.g. 0.10 and 1 USD)
+ * </p>
+ * <ul>
+ * <li>Prices and amounts are held as longs at a fixed scale, so updates are exact; values at or below the scale are converted with long arithmetic</li>
+ * <li>Finer prices are rounded to the scale away from the spread (asks up, bids down) and finer amounts half up</li>
+ * <li>Values that do not fit in a long at the scale are rejected with an {@link IllegalArgumentException}</li>
+ * <li>Each {@link OrderBookUpdate} adjusts the exact level and one bucket per tick size by the change in its total volume</li>
+ * <li>Bucket totals are read in O(1) from primitive hash maps; a sorted {@link OrderBook} of buckets is only built on request</li>
+ * <li>Bids are grouped down and asks up to the bucket boundary, so a bucket price is never better than the orders in it</li>
+ * <li>All methods are thread safe</li>
+ * </ul>
+ */
+public final class AggregatedOrderBook {
+
+  private static final int MAX_SCALE = 12;
+
+  /** 10^i for every shift between two scales up to {@link #MAX_SCALE} */
+  private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final int priceScale;
+  private final int amountScale;
+  private final double amountFactor;
+  private final BigDecimal[] bucketSizes;
+  private final long[] bucketTicks;
+
+  private final Side asks;
+  private final Side bids;
+
+  private String tradableIdentifier;
+  private String currency;
+  private CurrencyUnit currencyUnit;
+  private Date timestamp;
+
+  /**
+   * Constructor
+   * 
+   * @param priceScale The number of decimal places kept of prices, e.g. 5 for MtGox USD or 8 for most altcoin pairs
+   * @param amountScale The number of decimal places kept of amounts, e.g. 8 for BTC
+   * @param bucketSizes The tick sizes to group by, each a multiple of 10^-priceScale
+   */
+  public AggregatedOrderBook(int priceScale, int amountScale, BigDecimal... bucketSizes) {
+
+    Assert.isTrue(priceScale >= 0 && priceScale <= MAX_SCALE, "priceScale must be between 0 and " + MAX_SCALE);
+    Assert.isTrue(amountScale >= 0 && amountScale <= MAX_SCALE, "amountScale must be between 0 and " + MAX_SCALE);
+    Assert.isTrue(bucketSizes.length > 0, "at least one bucket size is required");
+
+    this.priceScale = priceScale;
+    this.amountScale = amountScale;
+    this.amountFactor = Math.pow(10, amountScale);
+    this.bucketSizes = bucketSizes.clone();
+    this.bucketTicks = new long[bucketSizes.length];
+    for (int i = 0; i < bucketSizes.length; i++) {
+      Assert.notNull(bucketSizes[i], "bucketSize cannot be null");
+      BigDecimal ticks = bucketSizes[i].movePointRight(priceScale);
+      Assert.isTrue(ticks.signum() > 0 && ticks.stripTrailingZeros().scale() <= 0, "bucketSize must be a positive multiple of 10^-priceScale: " + bucketSizes[i]);
+      bucketTicks[i] = ticks.longValueExact();
+    }
+    this.asks = new Side(true);
+    this.bids = new Side(false);
+  }
+
+  /**
+   * Replaces the held levels with those of a snapshot
+   * 
+   * @param orderBook The order book snapshot
+   */
+  public synchronized void reset(OrderBook orderBook) {
+
+    asks.clear();
+    bids.clear();
+    for (LimitOrder limitOrder : orderBook.getAsks()) {
+      add(asks, limitOrder);
+    }
+    for (LimitOrder limitOrder : orderBook.getBids()) {
+      add(bids, limitOrder);
+    }
+    timestamp = orderBook.getTimeStamp();
+  }
+
+  private void add(Side side, LimitOrder limitOrder) {
+
+    describe(limitOrder);
+    long amount = amountUnits(limitOrder.getTradableAmount());
+    if (amount > 0) {
+      long price = side.priceTicks(limitOrder.getLimitPrice().getAmount());
+      side.set(price, side.levels.get(price) + amount);
+    }
+  }
+
+  /**
+   * Sets the total amount at a price level, removing the level if the total volume is zero
+   * 
+   * @param orderBookUpdate The update
+   */
+  public synchronized void update(OrderBookUpdate orderBookUpdate) {
+
+    LimitOrder limitOrder = orderBookUpdate.getLimitOrder();
+    describe(limitOrder);
+    Side side = limitOrder.getType() == OrderType.ASK ? asks : bids;
+    side.set(side.priceTicks(limitOrder.getLimitPrice().getAmount()), Math.max(0, amountUnits(orderBookUpdate.getTotalVolume())));
+    if (limitOrder.getTimestamp() != null && (timestamp == null || limitOrder.getTimestamp().after(timestamp))) {
+      timestamp = limitOrder.getTimestamp();
+    }
+  }
+
+  /**
+   * Applies a streaming event; only {@link ExchangeEventType#DEPTH} events with an {@link OrderBookUpdate} or {@link OrderBook} payload are considered
+   * 
+   * @param event The exchange event
+   * @return true if the book was changed
+   */
+  public boolean handleEvent(ExchangeEvent event) {
+
+    if (event.getEventType() == ExchangeEventType.DEPTH) {
+      Object payload = event.getPayload();
+      if (payload instanceof OrderBookUpdate) {
+        update((OrderBookUpdate) payload);
+        return true;
+      }
+      if (payload instanceof OrderBook) {
+        reset((OrderBook) payload);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void describe(LimitOrder limitOrder) {
+
+    if (currency == null || !currency.equals(limitOrder.getTransactionCurrency())) {
+      currency = limitOrder.getTransactionCurrency();
+      currencyUnit = limitOrder.getLimitPrice().getCurrencyUnit();
+    }
+    tradableIdentifier = limitOrder.getTradableIdentifier();
+  }
+
+  private long amountUnits(BigDecimal amount) {
+
+    return toUnits(amount, amountScale, RoundingMode.HALF_UP);
+  }
+
+  /**
+   * @return The value in units of 10^-scale
+   * @throws IllegalArgumentException if the value does not fit in a long at the scale
+   */
+  static long toUnits(BigDecimal value, int scale, RoundingMode rounding) {
+
+    int shift = scale - value.scale();
+    if (shift >= 0 && shift <= MAX_SCALE) {
+      // already at or below the scale: no rounding, only a multiplication if it cannot overflow
+      BigInteger unscaled = value.unscaledValue();
+      if (unscaled.bitLength() < 63) {
+        long units = unscaled.longValue();
+        long factor = POWERS_OF_TEN[shift];
+        if (Math.abs(units) <= Long.MAX_VALUE / factor) {
+          return units * factor;
+        }
+      }
+    }
+    BigInteger units = value.setScale(scale, rounding).unscaledValue();
+    if (units.bitLength() > 63) {
+      throw new IllegalArgumentException("Value out of range at scale " + scale + ": " + value);
+    }
+    return units.longValue();
+  }
+
+  /**
+   * @param side The side of the book
+   * @param bucketSizeIndex The index of the tick size, in constructor order
+   * @param price Any price within the bucket
+   * @return The total amount in the bucket holding the price
+   */
+  public synchronized double getAmount(OrderType side, int bucketSizeIndex, double price) {
+
+    Side s = side == OrderType.ASK ? asks : bids;
+    long ticks = s.priceTicks(BigDecimal.valueOf(price));
+    return s.buckets[bucketSizeIndex].get(s.bucket(ticks, bucketSizeIndex)) / amountFactor;
+  }
+
+  /**
+   * @param side The side of the book
+   * @param price The exact price
+   * @return The total amount at the price level
+   */
+  public synchronized double getLevelAmount(OrderType side, double price) {
+
+    Side s = side == OrderType.ASK ? asks : bids;
+    return s.levels.get(s.priceTicks(BigDecimal.valueOf(price))) / amountFactor;
+  }
+
+  /**
+   * @param side The side of the book
+   * @param bucketSizeIndex The index of the tick size, in constructor order
+   * @return The number of non-empty buckets
+   */
+  public synchronized int getBucketCount(OrderType side, int bucketSizeIndex) {
+
+    return (side == OrderType.ASK ? asks : bids).buckets[bucketSizeIndex].size();
+  }
+
+  /**
+   * @param side The side of the book
+   * @return The number of exact price levels
+   */
+  public synchronized int getLevelCount(OrderType side) {
+
+    return (side == OrderType.ASK ? asks : bids).levels.size();
+  }
+
+  public BigDecimal getBucketSize(int bucketSizeIndex) {
+
+    return bucketSizes[bucketSizeIndex];
+  }
+
+  public int getBucketSizeCount() {
+
+    return bucketSizes.length;
+  }
+
+  /**
+   * Builds an order book with one order per bucket, priced at the bucket boundary
+   * 
+   * @param bucketSizeIndex The index of the tick size, in constructor order
+   * @param maxBuckets The number of buckets per side, 0 for all
+   * @return A new order book, sorted best price first
+   */
+  public synchronized OrderBook getOrderBook(int bucketSizeIndex, int maxBuckets) {
+
+    return new OrderBook(timestamp, asks.toOrders(bucketSizeIndex, maxBuckets), bids.toOrders(bucketSizeIndex, maxBuckets));
+  }
+
+  @Override
+  public synchronized String toString() {
+
+    return "AggregatedOrderBook [bucketSizes=" + Arrays.toString(bucketSizes) + ", askLevels=" + asks.levels.size() + ", bidLevels=" + bids.levels.size() + "]";
+  }
+
+  /**
+   * One side of the book: the exact levels and their totals per bucket, all keyed by price ticks
+   */
+  private final class Side {
+
+    private final boolean ask;
+    private final RoundingMode priceRounding;
+    private final LongLongMap levels = new LongLongMap();
+    private final LongLongMap[] buckets;
+
+    Side(boolean ask) {
+
+      this.ask = ask;
+      this.priceRounding = ask ? RoundingMode.CEILING : RoundingMode.FLOOR;
+      this.buckets = new LongLongMap[bucketTicks.length];
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongLongMap();
+      }
+    }
+
+    void clear() {
+
+      levels.clear();
+      for (LongLongMap bucket : buckets) {
+        bucket.clear();
+      }
+    }
+
+    long priceTicks(BigDecimal price) {
+
+      return toUnits(price, priceScale, priceRounding);
+    }
+
+    /**
+     * @return The bucket index; asks round up and bids down
+     */
+    long bucket(long price, int bucketSizeIndex) {
+
+      long size = bucketTicks[bucketSizeIndex];
+      long floor = price >= 0 ? price / size : -((-price + size - 1) / size);
+      return ask && floor * size != price ? floor + 1 : floor;
+    }
+
+    void set(long price, long amount) {
+
+      long delta = amount - levels.get(price);
+      if (delta == 0) {
+        return;
+      }
+      levels.add(price, delta);
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i].add(bucket(price, i), delta);
+      }
+    }
+
+    List<LimitOrder> toOrders(int bucketSizeIndex, int maxBuckets) {
+
+      LongLongMap bucket = buckets[bucketSizeIndex];
+      long[] keys = bucket.keys();
+      Arrays.sort(keys);
+      int count = maxBuckets > 0 ? Math.min(maxBuckets, keys.length) : keys.length;
+      List<LimitOrder> orders = new ArrayList<LimitOrder>(count);
+      OrderType type = ask ? OrderType.ASK : OrderType.BID;
+      long size = bucketTicks[bucketSizeIndex];
+      for (int i = 0; i < count; i++) {
+        long key = ask ? keys[i] : keys[keys.length - 1 - i];
+        BigMoney price = BigMoney.of(currencyUnit, BigDecimal.valueOf(key * size, priceScale));
+        orders.add(new LimitOrder(type, BigDecimal.valueOf(bucket.get(key), amountScale), tradableIdentifier, currency, "", timestamp, price));
+      }
+      return orders;
+    }
+  }
+
+  /**
+   * Open addressing hash map from long to long without boxing; a value of 0 is the same as no entry
+   */
+  private static final class LongLongMap {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys = newKeys(16);
+    private long[] values = new long[16];
+    private int size = 0;
+
+    private static long[] newKeys(int capacity) {
+
+      long[] keys = new long[capacity];
+      Arrays.fill(keys, FREE);
+      return keys;
+    }
+
+    private int slot(long key) {
+
+      long hash = key * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+    }
+
+    long get(long key) {
+
+      int mask = keys.length - 1;
+      for (int i = slot(key);; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          return values[i];
+        }
+        if (keys[i] == FREE) {
+          return 0;
+        }
+      }
+    }
+
+    /**
+     * Adds to the value of a key, removing the entry when it reaches 0
+     */
+    void add(long key, long delta) {
+
+      int mask = keys.length - 1;
+      int i = slot(key);
+      while (keys[i] != FREE && keys[i] != key) {
+        i = (i + 1) & mask;
+      }
+      if (keys[i] == key) {
+        values[i] += delta;
+        if (values[i] == 0) {
+          remove(i);
+        }
+        return;
+      }
+      keys[i] = key;
+      values[i] = delta;
+      if (++size * 2 > keys.length) {
+        resize(keys.length * 2);
+      }
+    }
+
+    /**
+     * Backward shift deletion, so lookups never need tombstones
+     */
+    private void remove(int index) {
+
+      int mask = keys.length - 1;
+      int gap = index;
+      for (int i = (index + 1) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+        int home = slot(keys[i]);
+        // move the entry into the gap unless its home lies cyclically in (gap, i]
+        if (gap <= i ? (home <= gap || home > i) : (home <= gap && home > i)) {
+          keys[gap] = keys[i];
+          values[gap] = values[i];
+          gap = i;
+        }
+      }
+      keys[gap] = FREE;
+      values[gap] = 0;
+      size--;
+    }
+
+    private void resize(int capacity) {
+
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      keys = newKeys(capacity);
+      values = new long[capacity];
+      int mask = capacity - 1;
+      for (int j = 0; j < oldKeys.length; j++) {
+        if (oldKeys[j] != FREE) {
+          int i = slot(oldKeys[j]);
+          while (keys[i] != FREE) {
+            i = (i + 1) & mask;
+          }
+          keys[i] = oldKeys[j];
+          values[i] = oldValues[j];
+        }
+      }
+    }
+
+    long[] keys() {
+
+      long[] result = new long[size];
+      int n = 0;
+      for (long key : keys) {
+        if (key != FREE) {
+          result[n++] = key;
+        }
+      }
+      return result;
+    }
+
+    int size() {
+
+      return size;
+    }
+
+    void clear() {
+
+      Arrays.fill(keys, FREE);
+      Arrays.fill(values, 0);
+      size = 0;
+    }
+  }
+
+}
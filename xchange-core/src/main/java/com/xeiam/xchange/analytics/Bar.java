@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import java.util.Date;
+
+/**
+ * <p>
+ * Mutable holder representing a single OHLCV bar
+ * </p>
+ * <p>
+ * Instances are designed to be re-used by readers of a {@link BarSeries} so that polling the latest bars does not allocate. Prices and volumes are held as primitives.
+ * </p>
+ */
+public final class Bar {
+
+  private long openTime;
+  private long resolution;
+  private double open;
+  private double high;
+  private double low;
+  private double close;
+  private double volume;
+  private double notional;
+  private double ema;
+  private int tradeCount;
+
+  /* package */void set(long openTime, long resolution, double open, double high, double low, double close, double volume, double notional, double ema, int tradeCount) {
+
+    this.openTime = openTime;
+    this.resolution = resolution;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.volume = volume;
+    this.notional = notional;
+    this.ema = ema;
+    this.tradeCount = tradeCount;
+  }
+
+  /**
+   * @return The start of the bar in milliseconds from epoch (inclusive)
+   */
+  public long getOpenTime() {
+
+    return openTime;
+  }
+
+  /**
+   * @return The end of the bar in milliseconds from epoch (exclusive)
+   */
+  public long getCloseTime() {
+
+    return openTime + resolution;
+  }
+
+  /**
+   * @return The bar width in milliseconds
+   */
+  public long getResolution() {
+
+    return resolution;
+  }
+
+  /**
+   * @return A Date view of the bar open time (allocates)
+   */
+  public Date getOpenDate() {
+
+    return new Date(openTime);
+  }
+
+  public double getOpen() {
+
+    return open;
+  }
+
+  public double getHigh() {
+
+    return high;
+  }
+
+  public double getLow() {
+
+    return low;
+  }
+
+  public double getClose() {
+
+    return close;
+  }
+
+  public double getVolume() {
+
+    return volume;
+  }
+
+  /**
+   * @return The traded value (sum of price * amount) within the bar
+   */
+  public double getNotional() {
+
+    return notional;
+  }
+
+  /**
+   * @return The volume weighted average price, or the close if nothing traded in this bar
+   */
+  public double getVwap() {
+
+    return volume > 0 ? notional / volume : close;
+  }
+
+  /**
+   * @return The exponential moving average of the close price as of this bar
+   */
+  public double getEma() {
+
+    return ema;
+  }
+
+  public int getTradeCount() {
+
+    return tradeCount;
+  }
+
+  @Override
+  public String toString() {
+
+    return "Bar [openTime=" + openTime + ", resolution=" + resolution + ", open=" + open + ", high=" + high + ", low=" + low + ", close=" + close + ", volume=" + volume + ", vwap=" + getVwap()
+        + ", ema=" + ema + ", tradeCount=" + tradeCount + "]";
+  }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.utils.Assert;
+import com.xeiam.xchange.utils.Timestamps;
+import com.xeiam.xchange.utils.TradeIdWindow;
+
+/**
+ * <p>
+ * Incremental bar builder to provide the following to applications:
+ * </p>
+ * <ul>
+ * <li>OHLCV, VWAP and EMA bars at several resolutions at once, maintained trade by trade</li>
+ * <li>Consumption of polled {@link Trades} and streaming {@link ExchangeEventType#TRADE} events; overlapping polls are de-duplicated per currency pair
+ * against the last {@value #TRADE_ID_WINDOW} trade ids, so trades arriving out of order are still applied</li>
+ * </ul>
+ * <p>
+ * Each resolution is held in its own {@link BarSeries}, so reading bars never blocks on other resolutions.
+ * </p>
+ */
+public class BarAggregator {
+
+  public static final long ONE_MINUTE = 60 * 1000L;
+  public static final long FIVE_MINUTES = 5 * ONE_MINUTE;
+  public static final long FIFTEEN_MINUTES = 15 * ONE_MINUTE;
+  public static final long ONE_HOUR = 60 * ONE_MINUTE;
+  public static final long ONE_DAY = 24 * ONE_HOUR;
+
+  /** The number of most recent trade ids remembered per currency pair */
+  public static final int TRADE_ID_WINDOW = 4096;
+
+  private final CurrencyPair currencyPair;
+  private final BarSeries[] series;
+
+  /** Recently applied trade ids per pair, used to skip trades that were already seen in a previous poll; guarded by this */
+  private final Map<CurrencyPair, TradeIdWindow> tradeIds = new HashMap<CurrencyPair, TradeIdWindow>();
+
+  /** Guarded by this */
+  private long duplicateTrades = 0;
+
+  /**
+   * Constructor
+   * 
+   * @param currencyPair Only trades in this pair are applied, null to apply every trade
+   * @param capacity The number of bars to retain per resolution
+   * @param emaPeriod The number of bars over which the EMA of the close is calculated
+   * @param resolutions The bar widths in milliseconds (e.g. {@link #ONE_MINUTE})
+   */
+  public BarAggregator(CurrencyPair currencyPair, int capacity, int emaPeriod, long... resolutions) {
+
+    Assert.isTrue(resolutions.length > 0, "at least one resolution is required");
+
+    this.currencyPair = currencyPair;
+    this.series = new BarSeries[resolutions.length];
+    for (int i = 0; i < resolutions.length; i++) {
+      series[i] = new BarSeries(resolutions[i], capacity, emaPeriod);
+    }
+  }
+
+  /**
+   * Applies a trade to all resolutions
+   * 
+   * @param trade The trade
+   * @return false if the trade was filtered out or already applied
+   */
+  public boolean add(Trade trade) {
+
+    if (currencyPair != null && !(currencyPair.baseCurrency.equals(trade.getTradableIdentifier()) && currencyPair.counterCurrency.equals(trade.getTransactionCurrency()))) {
+      return false;
+    }
+
+    long id = trade.getId();
+    if (id > 0) {
+      CurrencyPair pair = currencyPair != null ? currencyPair : new CurrencyPair(trade.getTradableIdentifier(), trade.getTransactionCurrency());
+      synchronized (this) {
+        TradeIdWindow window = tradeIds.get(pair);
+        if (window == null) {
+          window = new TradeIdWindow(TRADE_ID_WINDOW);
+          tradeIds.put(pair, window);
+        }
+        if (!window.add(id)) {
+          duplicateTrades++;
+          return false;
+        }
+      }
+    }
+
+    long timestamp = trade.getTimestampMicros() == Timestamps.NONE ? System.currentTimeMillis() : Timestamps.toMillis(trade.getTimestampMicros());
+    add(timestamp, trade.getPrice().getAmount().doubleValue(), trade.getTradableAmount().doubleValue());
+    return true;
+  }
+
+  /**
+   * Applies a trade to all resolutions without any filtering
+   * 
+   * @param timestamp The trade time in milliseconds from epoch
+   * @param price The trade price
+   * @param amount The traded amount
+   */
+  public void add(long timestamp, double price, double amount) {
+
+    for (BarSeries barSeries : series) {
+      barSeries.add(timestamp, price, amount);
+    }
+  }
+
+  /**
+   * Applies the result of a trades poll. Trades already applied by an earlier poll are skipped.
+   * 
+   * @param trades The trades, as returned by {@link com.xeiam.xchange.service.polling.PollingMarketDataService#getTrades}
+   * @return The number of trades applied
+   */
+  public int add(Trades trades) {
+
+    int applied = 0;
+    for (Trade trade : trades.getTrades()) {
+      if (add(trade)) {
+        applied++;
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * Applies a streaming event; only {@link ExchangeEventType#TRADE} events with a {@link Trade} payload are considered
+   * 
+   * @param event The exchange event
+   * @return true if a trade was applied
+   */
+  public boolean handleEvent(ExchangeEvent event) {
+
+    if (event.getEventType() == ExchangeEventType.TRADE && event.getPayload() instanceof Trade) {
+      return add((Trade) event.getPayload());
+    }
+    return false;
+  }
+
+  /**
+   * @param resolution The bar width in milliseconds
+   * @return The series for the given resolution, or null if it is not maintained
+   */
+  public BarSeries getSeries(long resolution) {
+
+    for (BarSeries barSeries : series) {
+      if (barSeries.getResolution() == resolution) {
+        return barSeries;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return All maintained series in the order the resolutions were given
+   */
+  public List<BarSeries> getSeries() {
+
+    List<BarSeries> list = new ArrayList<BarSeries>(series.length);
+    Collections.addAll(list, series);
+    return list;
+  }
+
+  public CurrencyPair getCurrencyPair() {
+
+    return currencyPair;
+  }
+
+  /**
+   * @return The number of trades skipped because their id had already been applied
+   */
+  public synchronized long getDuplicateTrades() {
+
+    return duplicateTrades;
+  }
+
+}
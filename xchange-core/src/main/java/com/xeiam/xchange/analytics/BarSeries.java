@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Fixed resolution series of OHLCV bars backed by primitive ring buffers
+ * </p>
+ * <ul>
+ * <li>Bars are updated incrementally, one trade at a time, without allocation</li>
+ * <li>Bars with no trades are filled flat from the previous close so that bar N is always N resolutions ago</li>
+ * <li>Trades older than the retained window are dropped</li>
+ * <li>All methods are thread safe; readers copy into a caller supplied {@link Bar}</li>
+ * </ul>
+ */
+public final class BarSeries {
+
+  private final long resolution;
+  private final int capacity;
+  private final double emaAlpha;
+
+  private final long[] openTime;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private final double[] volume;
+  private final double[] notional;
+  private final double[] ema;
+  private final int[] tradeCount;
+
+  /** Index of the current (most recent) bar */
+  private int head = -1;
+  private int size = 0;
+
+  /** The EMA as of the close of the bar preceding the current one */
+  private double previousEma;
+
+  private long droppedTrades = 0;
+
+  /**
+   * Constructor
+   * 
+   * @param resolution The bar width in milliseconds
+   * @param capacity The number of bars to retain
+   * @param emaPeriod The number of bars over which the EMA of the close is calculated
+   */
+  public BarSeries(long resolution, int capacity, int emaPeriod) {
+
+    Assert.isTrue(resolution > 0, "resolution must be positive");
+    Assert.isTrue(capacity > 0, "capacity must be positive");
+    Assert.isTrue(emaPeriod > 0, "emaPeriod must be positive");
+
+    this.resolution = resolution;
+    this.capacity = capacity;
+    this.emaAlpha = 2.0 / (emaPeriod + 1);
+
+    this.openTime = new long[capacity];
+    this.open = new double[capacity];
+    this.high = new double[capacity];
+    this.low = new double[capacity];
+    this.close = new double[capacity];
+    this.volume = new double[capacity];
+    this.notional = new double[capacity];
+    this.ema = new double[capacity];
+    this.tradeCount = new int[capacity];
+  }
+
+  /**
+   * Applies a single trade to the series
+   * 
+   * @param timestamp The trade time in milliseconds from epoch
+   * @param price The trade price
+   * @param amount The traded amount
+   * @return false if the trade was too old to be applied
+   */
+  public synchronized boolean add(long timestamp, double price, double amount) {
+
+    long bucket = timestamp - ((timestamp % resolution) + resolution) % resolution;
+
+    if (size == 0) {
+      previousEma = price;
+      openBar(bucket, price);
+    }
+    else {
+      long currentOpenTime = openTime[head];
+      if (bucket > currentOpenTime) {
+        long gaps = (bucket - currentOpenTime) / resolution - 1;
+        // only the most recent flat bars can survive in the ring
+        long firstGap = Math.max(1, gaps - capacity + 2);
+        double lastClose = close[head];
+        // decay the EMA over flat bars that fall outside the ring as well
+        previousEma = lastClose + (ema[head] - lastClose) * Math.pow(1 - emaAlpha, firstGap - 1);
+        for (long i = firstGap; i <= gaps; i++) {
+          openBar(currentOpenTime + i * resolution, lastClose);
+          ema[head] = previousEma + emaAlpha * (lastClose - previousEma);
+          previousEma = ema[head];
+        }
+        openBar(bucket, price);
+      }
+      else if (bucket < currentOpenTime) {
+        long barsAgo = (currentOpenTime - bucket) / resolution;
+        if (barsAgo >= size) {
+          droppedTrades++;
+          return false;
+        }
+        // a late trade cannot move the close (and therefore the EMA) of a bar
+        int index = indexOf((int) barsAgo);
+        high[index] = Math.max(high[index], price);
+        low[index] = Math.min(low[index], price);
+        volume[index] += amount;
+        notional[index] += price * amount;
+        tradeCount[index]++;
+        return true;
+      }
+    }
+
+    high[head] = Math.max(high[head], price);
+    low[head] = Math.min(low[head], price);
+    close[head] = price;
+    volume[head] += amount;
+    notional[head] += price * amount;
+    tradeCount[head]++;
+    ema[head] = previousEma + emaAlpha * (price - previousEma);
+    return true;
+  }
+
+  private void openBar(long time, double price) {
+
+    head = head + 1 == capacity ? 0 : head + 1;
+    if (size < capacity) {
+      size++;
+    }
+    openTime[head] = time;
+    open[head] = price;
+    high[head] = price;
+    low[head] = price;
+    close[head] = price;
+    volume[head] = 0;
+    notional[head] = 0;
+    ema[head] = previousEma;
+    tradeCount[head] = 0;
+  }
+
+  private int indexOf(int barsAgo) {
+
+    int index = head - barsAgo;
+    return index < 0 ? index + capacity : index;
+  }
+
+  /**
+   * Copies a bar into the given holder
+   * 
+   * @param barsAgo 0 for the current bar, 1 for the previous one and so on
+   * @param target The holder to populate
+   * @return false if there is no such bar (the target is left untouched)
+   */
+  public synchronized boolean copyBar(int barsAgo, Bar target) {
+
+    if (barsAgo < 0 || barsAgo >= size) {
+      return false;
+    }
+    int i = indexOf(barsAgo);
+    target.set(openTime[i], resolution, open[i], high[i], low[i], close[i], volume[i], notional[i], ema[i], tradeCount[i]);
+    return true;
+  }
+
+  /**
+   * @param barsAgo 0 for the current bar, 1 for the previous one and so on
+   * @return A new Bar, or null if there is no such bar
+   */
+  public Bar getBar(int barsAgo) {
+
+    Bar bar = new Bar();
+    return copyBar(barsAgo, bar) ? bar : null;
+  }
+
+  /**
+   * @return A consistent copy of all retained bars, oldest first
+   */
+  public synchronized List<Bar> getBars() {
+
+    List<Bar> bars = new ArrayList<Bar>(size);
+    for (int barsAgo = size - 1; barsAgo >= 0; barsAgo--) {
+      Bar bar = new Bar();
+      copyBar(barsAgo, bar);
+      bars.add(bar);
+    }
+    return bars;
+  }
+
+  /**
+   * @return The number of bars currently retained
+   */
+  public synchronized int size() {
+
+    return size;
+  }
+
+  /**
+   * @return The number of trades that were too old to be applied
+   */
+  public synchronized long getDroppedTrades() {
+
+    return droppedTrades;
+  }
+
+  public long getResolution() {
+
+    return resolution;
+  }
+
+  public int getCapacity() {
+
+    return capacity;
+  }
+
+  @Override
+  public String toString() {
+
+    return "BarSeries [resolution=" + resolution + ", capacity=" + capacity + ", size=" + size() + "]";
+  }
+
+}
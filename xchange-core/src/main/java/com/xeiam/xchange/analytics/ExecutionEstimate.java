@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+
+/**
+ * <p>
+ * Mutable holder representing the estimated result of sweeping one side of an order book with a market order
+ * </p>
+ * <p>
+ * Instances are designed to be re-used by callers of {@link OrderBookDepth} so that repeated estimates do not allocate.
+ * </p>
+ */
+public final class ExecutionEstimate {
+
+  private OrderType side;
+  private double requestedAmount;
+  private double filledAmount;
+  private double notional;
+  private double bestPrice;
+  private double worstPrice;
+  private int levels;
+
+  /* package */void set(OrderType side, double requestedAmount, double filledAmount, double notional, double bestPrice, double worstPrice, int levels) {
+
+    this.side = side;
+    this.requestedAmount = requestedAmount;
+    this.filledAmount = filledAmount;
+    this.notional = notional;
+    this.bestPrice = bestPrice;
+    this.worstPrice = worstPrice;
+    this.levels = levels;
+  }
+
+  /**
+   * @return The side of the book that was walked - ASK for a buy, BID for a sell
+   */
+  public OrderType getSide() {
+
+    return side;
+  }
+
+  public double getRequestedAmount() {
+
+    return requestedAmount;
+  }
+
+  /**
+   * @return The amount that the book can absorb, less than the requested amount if the book is too shallow
+   */
+  public double getFilledAmount() {
+
+    return filledAmount;
+  }
+
+  /**
+   * @return true if the whole requested amount can be filled
+   */
+  public boolean isComplete() {
+
+    return filledAmount >= requestedAmount;
+  }
+
+  /**
+   * @return The total cost (or proceeds) of the filled amount in the counter currency
+   */
+  public double getNotional() {
+
+    return notional;
+  }
+
+  /**
+   * @return The volume weighted average fill price, or NaN if nothing can be filled
+   */
+  public double getAveragePrice() {
+
+    return filledAmount == 0 ? Double.NaN : notional / filledAmount;
+  }
+
+  /**
+   * @return The best price on the side at the time of the estimate
+   */
+  public double getBestPrice() {
+
+    return bestPrice;
+  }
+
+  /**
+   * @return The price of the last level touched by the sweep
+   */
+  public double getWorstPrice() {
+
+    return worstPrice;
+  }
+
+  /**
+   * @return The number of price levels touched by the sweep
+   */
+  public int getLevels() {
+
+    return levels;
+  }
+
+  /**
+   * @return The adverse move of the average price from the best price as a fraction of the best price, always positive
+   */
+  public double getSlippage() {
+
+    return filledAmount == 0 ? Double.NaN : Math.abs(getAveragePrice() - bestPrice) / bestPrice;
+  }
+
+  /**
+   * @return The adverse move of the worst price touched from the best price as a fraction of the best price, always positive
+   */
+  public double getMarketImpact() {
+
+    return filledAmount == 0 ? Double.NaN : Math.abs(worstPrice - bestPrice) / bestPrice;
+  }
+
+  @Override
+  public String toString() {
+
+    return "ExecutionEstimate [side=" + side + ", requestedAmount=" + requestedAmount + ", filledAmount=" + filledAmount + ", averagePrice=" + getAveragePrice() + ", bestPrice=" + bestPrice
+        + ", worstPrice=" + worstPrice + ", levels=" + levels + "]";
+  }
+
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Execution cost and slippage calculator for a single order book
+ * </p>
+ * <ul>
+ * <li>Each side is held as price levels in primitive arrays with cumulative amount and notional prefix sums</li>
+ * <li>Levels are stored worst price first so that the frequent updates near the top of the book only re-accumulate the levels above them</li>
+ * <li>Amount-at-price, price-for-amount, VWAP and sweep estimates are answered by binary search in O(log n)</li>
+ * <li>{@link OrderBookUpdate}s are applied incrementally; a full {@link OrderBook} re-seeds the side arrays</li>
+ * <li>All methods are thread safe</li>
+ * </ul>
+ * <p>
+ * Methods take the side of the book that is consumed: {@link OrderType#ASK} to estimate a market buy, {@link OrderType#BID} to estimate a market sell.
+ * </p>
+ */
+public final class OrderBookDepth {
+
+  private final Side asks = new Side(-1);
+  private final Side bids = new Side(1);
+
+  /**
+   * Constructor - starts with an empty book
+   */
+  public OrderBookDepth() {
+
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param orderBook The order book snapshot to seed from
+   */
+  public OrderBookDepth(OrderBook orderBook) {
+
+    reset(orderBook);
+  }
+
+  /**
+   * Replaces the held levels with those of a snapshot
+   * 
+   * @param orderBook The order book snapshot
+   */
+  public synchronized void reset(OrderBook orderBook) {
+
+    asks.reset(orderBook.getAsks());
+    bids.reset(orderBook.getBids());
+  }
+
+  /**
+   * Sets the total amount at a price level, removing the level if the total volume is zero
+   * 
+   * @param orderBookUpdate The update
+   */
+  public synchronized void update(OrderBookUpdate orderBookUpdate) {
+
+    LimitOrder limitOrder = orderBookUpdate.getLimitOrder();
+    side(limitOrder.getType()).set(limitOrder.getLimitPrice().getAmount().doubleValue(), orderBookUpdate.getTotalVolume().doubleValue());
+  }
+
+  /**
+   * Applies a streaming event; only {@link ExchangeEventType#DEPTH} events with an {@link OrderBookUpdate} or {@link OrderBook} payload are considered
+   * 
+   * @param event The exchange event
+   * @return true if the book was changed
+   */
+  public boolean handleEvent(ExchangeEvent event) {
+
+    if (event.getEventType() == ExchangeEventType.DEPTH) {
+      Object payload = event.getPayload();
+      if (payload instanceof OrderBookUpdate) {
+        update((OrderBookUpdate) payload);
+        return true;
+      }
+      if (payload instanceof OrderBook) {
+        reset((OrderBook) payload);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param side The side of the book
+   * @return The best price, or NaN if the side is empty
+   */
+  public synchronized double getBestPrice(OrderType side) {
+
+    Side s = side(side);
+    return s.size == 0 ? Double.NaN : s.price(s.size - 1);
+  }
+
+  /**
+   * @param side The side of the book
+   * @return The number of price levels
+   */
+  public synchronized int getLevels(OrderType side) {
+
+    return side(side).size;
+  }
+
+  /**
+   * @param side The side of the book
+   * @return The total amount on the side
+   */
+  public synchronized double getTotalAmount(OrderType side) {
+
+    Side s = side(side);
+    return s.cumulativeAmount(s.size - 1);
+  }
+
+  /**
+   * @param side The side of the book
+   * @param price The limit price
+   * @return The amount available at prices equal to or better than the given price
+   */
+  public synchronized double getAmountToPrice(OrderType side, double price) {
+
+    Side s = side(side);
+    return s.cumulativeAmount(s.size - 1) - s.cumulativeAmount(s.lowerBound(price) - 1);
+  }
+
+  /**
+   * @param side The side of the book
+   * @param price The limit price
+   * @return The notional value of the levels at prices equal to or better than the given price
+   */
+  public synchronized double getNotionalToPrice(OrderType side, double price) {
+
+    Side s = side(side);
+    return s.cumulativeNotional(s.size - 1) - s.cumulativeNotional(s.lowerBound(price) - 1);
+  }
+
+  /**
+   * @param side The side of the book
+   * @param price The limit price
+   * @return The volume weighted average price of the levels at prices equal to or better than the given price, or NaN if there are none
+   */
+  public synchronized double getVwapToPrice(OrderType side, double price) {
+
+    double amount = getAmountToPrice(side, price);
+    return amount == 0 ? Double.NaN : getNotionalToPrice(side, price) / amount;
+  }
+
+  /**
+   * @param side The side of the book
+   * @param amount The amount to fill
+   * @return The price of the last level needed to fill the amount, or NaN if the side is too shallow
+   */
+  public synchronized double getPriceForAmount(OrderType side, double amount) {
+
+    Side s = side(side);
+    int index = s.indexFor(amount);
+    return index < 0 ? Double.NaN : s.price(index);
+  }
+
+  /**
+   * Estimates sweeping the book with a market order
+   * 
+   * @param side The side of the book consumed
+   * @param amount The amount to fill
+   * @param target The holder to populate
+   * @return true if the whole amount can be filled
+   */
+  public synchronized boolean estimate(OrderType side, double amount, ExecutionEstimate target) {
+
+    Assert.isTrue(amount >= 0, "amount cannot be negative");
+
+    Side s = side(side);
+    if (s.size == 0 || amount == 0) {
+      target.set(side, amount, 0, 0, s.size == 0 ? Double.NaN : s.price(s.size - 1), Double.NaN, 0);
+      return amount == 0;
+    }
+
+    int last = s.size - 1;
+    double bestPrice = s.price(last);
+    int index = s.indexFor(amount);
+    if (index < 0) {
+      target.set(side, amount, s.cumulativeAmount(last), s.cumulativeNotional(last), bestPrice, s.price(0), s.size);
+      return false;
+    }
+
+    // levels above the index are consumed fully, the level at the index partially
+    double fullAmount = s.cumulativeAmount(last) - s.cumulativeAmount(index);
+    double fullNotional = s.cumulativeNotional(last) - s.cumulativeNotional(index);
+    double price = s.price(index);
+    target.set(side, amount, amount, fullNotional + (amount - fullAmount) * price, bestPrice, price, s.size - index);
+    return true;
+  }
+
+  /**
+   * @param side The side of the book consumed
+   * @param amount The amount to fill
+   * @return A new estimate of sweeping the book with a market order
+   */
+  public ExecutionEstimate estimate(OrderType side, double amount) {
+
+    ExecutionEstimate executionEstimate = new ExecutionEstimate();
+    estimate(side, amount, executionEstimate);
+    return executionEstimate;
+  }
+
+  private Side side(OrderType side) {
+
+    return side == OrderType.ASK ? asks : bids;
+  }
+
+  @Override
+  public synchronized String toString() {
+
+    return "OrderBookDepth [askLevels=" + asks.size + ", bidLevels=" + bids.size + ", bestAsk=" + getBestPrice(OrderType.ASK) + ", bestBid=" + getBestPrice(OrderType.BID) + "]";
+  }
+
+  /**
+   * One side of the book. Keys are the prices multiplied by the direction so that they ascend from the worst to the best level on both sides.
+   */
+  private static final class Side {
+
+    private final int direction;
+
+    private double[] keys = new double[64];
+    private double[] amounts = new double[64];
+    private double[] cumulativeAmounts = new double[64];
+    private double[] cumulativeNotionals = new double[64];
+    private int size = 0;
+
+    Side(int direction) {
+
+      this.direction = direction;
+    }
+
+    /**
+     * @param bestFirst Orders sorted best price first, as returned by {@link OrderBook#getAsks()} and {@link OrderBook#getBids()}
+     */
+    void reset(List<LimitOrder> bestFirst) {
+
+      size = 0;
+      ensureCapacity(bestFirst.size());
+      for (int i = bestFirst.size() - 1; i >= 0; i--) {
+        LimitOrder limitOrder = bestFirst.get(i);
+        double key = direction * limitOrder.getLimitPrice().getAmount().doubleValue();
+        double amount = limitOrder.getTradableAmount().doubleValue();
+        if (amount <= 0) {
+          continue;
+        }
+        if (size > 0 && keys[size - 1] == key) {
+          amounts[size - 1] += amount;
+        }
+        else {
+          keys[size] = key;
+          amounts[size] = amount;
+          size++;
+        }
+      }
+      accumulate(0);
+    }
+
+    void set(double price, double amount) {
+
+      double key = direction * price;
+      int index = Arrays.binarySearch(keys, 0, size, key);
+      if (index >= 0) {
+        if (amount > 0) {
+          amounts[index] = amount;
+        }
+        else {
+          size--;
+          System.arraycopy(keys, index + 1, keys, index, size - index);
+          System.arraycopy(amounts, index + 1, amounts, index, size - index);
+        }
+      }
+      else {
+        if (amount <= 0) {
+          return;
+        }
+        index = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(amounts, index, amounts, index + 1, size - index);
+        keys[index] = key;
+        amounts[index] = amount;
+        size++;
+      }
+      accumulate(index);
+    }
+
+    private void accumulate(int from) {
+
+      double amount = cumulativeAmount(from - 1);
+      double notional = cumulativeNotional(from - 1);
+      for (int i = from; i < size; i++) {
+        amount += amounts[i];
+        notional += amounts[i] * price(i);
+        cumulativeAmounts[i] = amount;
+        cumulativeNotionals[i] = notional;
+      }
+    }
+
+    private void ensureCapacity(int capacity) {
+
+      if (capacity > keys.length) {
+        int length = Math.max(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, length);
+        amounts = Arrays.copyOf(amounts, length);
+        cumulativeAmounts = Arrays.copyOf(cumulativeAmounts, length);
+        cumulativeNotionals = Arrays.copyOf(cumulativeNotionals, length);
+      }
+    }
+
+    double price(int index) {
+
+      return direction * keys[index];
+    }
+
+    double cumulativeAmount(int index) {
+
+      return index < 0 ? 0 : cumulativeAmounts[index];
+    }
+
+    double cumulativeNotional(int index) {
+
+      return index < 0 ? 0 : cumulativeNotionals[index];
+    }
+
+    /**
+     * @return The index of the worst level with a price equal to or better than the given price, or size if there is none
+     */
+    int lowerBound(double price) {
+
+      int index = Arrays.binarySearch(keys, 0, size, direction * price);
+      return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @return The index of the worst level needed to fill the amount, or -1 if the side is too shallow
+     */
+    int indexFor(double amount) {
+
+      double threshold = cumulativeAmount(size - 1) - amount;
+      if (size == 0 || threshold < 0) {
+        return -1;
+      }
+      // the worst level i such that the levels from i up to the best hold at least the amount
+      int index = Arrays.binarySearch(cumulativeAmounts, 0, size - 1, threshold);
+      return index >= 0 ? index + 1 : -index - 1;
+    }
+  }
+
+}
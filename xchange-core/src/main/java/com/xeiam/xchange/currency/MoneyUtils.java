@@ -82,6 +82,16 @@ public class MoneyUtils {
     return BigMoney.of(CurrencyUnit.of(currency), amount);
   }
 
+  /**
+   * @param currencyUnit The currency, looked up once by the caller
+   * @param amount The amount
+   * @return The same BigMoney as parsing "CUR amount" without building the String: the scale of the amount is kept, and a negative scale (e.g. 1E+2) is normalized to 0
+   */
+  public static BigMoney of(CurrencyUnit currencyUnit, BigDecimal amount) {
+
+    return BigMoney.of(currencyUnit, amount.scale() < 0 ? amount.setScale(0) : amount);
+  }
+
   /**
    * @param value A general-purpose currency and value representation (e.g. "BTC 3210.1234567800")
    * @return A standard Bitcoin currency BigMoney that can handle complex calculations using a scale of 12 regardless of the minor part
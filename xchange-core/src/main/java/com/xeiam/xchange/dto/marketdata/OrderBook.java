@@ -1,203 +1,254 @@
-/**
- * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy of
- * this software and associated documentation files (the "Software"), to deal in
- * the Software without restriction, including without limitation the rights to
- * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
- * of the Software, and to permit persons to whom the Software is furnished to do
- * so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in all
- * copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-package com.xeiam.xchange.dto.marketdata;
-
-import java.math.BigDecimal;
-import java.util.Collections;
-import java.util.Date;
-import java.util.Iterator;
-import java.util.List;
-
-import org.joda.money.BigMoney;
-
-import com.xeiam.xchange.dto.Order.OrderType;
-import com.xeiam.xchange.dto.trade.LimitOrder;
-
-/**
- * DTO representing the exchange order book
- */
-public final class OrderBook {
-
-	private final List<LimitOrder> asks;
-	private final List<LimitOrder> bids;
-	private Date timeStamp;
-
-	/**
-	 * Constructor
-	 * 
-	 * @param timeStamp
-	 *            The timeStamp of the OrderBook or of the latest Update
-	 * @param asks
-	 *            The ASK orders
-	 * @param bids
-	 *            The BID orders
-	 */
-	public OrderBook(Date timeStamp, List<LimitOrder> asks,
-			List<LimitOrder> bids) {
-		this.timeStamp = timeStamp;
-		this.asks = asks;
-		this.bids = bids;
-	}
-
-	public Date getTimeStamp() {
-
-		return timeStamp;
-	}
-
-	public List<LimitOrder> getAsks() {
-
-		Collections.sort(asks);
-		return asks;
-	}
-
-	public List<LimitOrder> getBids() {
-
-		Collections.sort(bids);
-		return bids;
-	}
-
-	/**
-	 * Given a new LimitOrder, it will replace and old matching limit order in
-	 * the orderbook or simply get added. Finally, it is sorted. The timeStamp
-	 * may be updated as well.
-	 * 
-	 * @param limitOrder
-	 *            the new LimitOrder
-	 */
-	public void update(LimitOrder limitOrder) {
-
-		Iterator<LimitOrder> it = asks.iterator();
-		while (it.hasNext()) {
-			LimitOrder order = it.next();
-			if (order.getLimitPrice().compareTo(limitOrder.getLimitPrice()) == 0) { // they
-																					// are
-																					// equal.
-																					// found
-																					// it!
-				it.remove();
-				break;
-			}
-		}
-		bids.add(limitOrder); // just add it
-		Collections.sort(bids); // finally sort
-		updateDate(limitOrder.getTimestamp());
-	}
-
-	/**
-	 * Given an OrderBookUpdate, it will replace and old matching limit order in
-	 * the orderbook or simply get added. Finally, it is sorted.The timeStamp
-	 * may be updated as well.
-	 * 
-	 * @param orderBookUpdate
-	 *            the new OrderBookUpdate
-	 */
-	public void update(OrderBookUpdate orderBookUpdate) {
-
-		// First, we need to remove orders with the same limit price
-		Iterator<LimitOrder> it;
-		if (orderBookUpdate.getLimitOrder().getType() == OrderType.ASK) {
-			it = this.asks.iterator();
-		} else {
-			it = this.bids.iterator();
-		}
-		while (it.hasNext()) {
-			LimitOrder order = it.next();
-			if (order.getLimitPrice().compareTo(
-					orderBookUpdate.getLimitOrder().getLimitPrice()) == 0) { // they
-																				// are
-																				// equal.
-																				// found
-																				// it!
-				it.remove();
-				break;
-			}
-		}
-
-		// If volume is not zero we need to add a new limit order with the
-		// updated amount
-		if (orderBookUpdate.getTotalVolume().compareTo(BigDecimal.ZERO) != 0) {
-
-			OrderType type = orderBookUpdate.getLimitOrder().getType();
-			BigDecimal tradeableAmount = orderBookUpdate.getTotalVolume();
-			String tradeableIdentifier = orderBookUpdate.getLimitOrder()
-					.getTradableIdentifier();
-			String transitionCurrency = orderBookUpdate.getLimitOrder()
-					.getTransactionCurrency();
-			String id = orderBookUpdate.getLimitOrder().getId();
-			Date date = orderBookUpdate.getLimitOrder().getTimestamp();
-			BigMoney limit = orderBookUpdate.getLimitOrder().getLimitPrice();
-			LimitOrder updatedOrder = new LimitOrder(type, tradeableAmount,
-					tradeableIdentifier, transitionCurrency, id, date, limit);
-
-			if (orderBookUpdate.getLimitOrder().getType() == OrderType.ASK) {
-				asks.add(updatedOrder);
-				Collections.sort(asks);
-			} else {
-				bids.add(updatedOrder);
-				Collections.sort(bids);
-			}
-		}
-		updateDate(orderBookUpdate.getLimitOrder().getTimestamp());
-	}
-
-	private void updateDate(Date updateDate) {
-
-		if (updateDate != null
-				&& (timeStamp == null || updateDate.after(timeStamp))) {
-			this.timeStamp = updateDate;
-		}
-	}
-
-	public LimitOrder getLowestAsk() {
-		LimitOrder lowest = null;
-		for (LimitOrder order : getAsks()) {
-			if (order.getTradableAmount().floatValue() > 1
-					&& (lowest == null || lowest.getLimitPrice().getAmount()
-							.floatValue() > order.getLimitPrice().getAmount()
-							.floatValue())) {
-				lowest = order;
-			}
-		}
-		return lowest;
-	}
-
-	public LimitOrder getHighestBid() {
-		LimitOrder highest = null;
-		for (LimitOrder order : getBids()) {
-			if (order.getTradableAmount().floatValue() >= 1
-					&& (highest == null || highest.getLimitPrice().getAmount()
-							.floatValue() < order.getLimitPrice().getAmount()
-							.floatValue())) {
-				highest = order;
-			}
-		}
-		return highest;
-	}
-
-	@Override
-	public String toString() {
-
-		return "Depth [timestamp: " + timeStamp + ", asks=" + asks.toString()
-				+ ", bids=" + bids.toString() + "]";
-	}
-
-}
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.dto.marketdata;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * DTO representing the exchange order book
+ */
+public final class OrderBook {
+
+	private final List<LimitOrder> asks;
+	private final List<LimitOrder> bids;
+	private Date timeStamp;
+
+	/** Sum of the order hashes, maintained by the updates once computed */
+	private long checksum;
+	private boolean checksumComputed = false;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param timeStamp
+	 *            The timeStamp of the OrderBook or of the latest Update
+	 * @param asks
+	 *            The ASK orders
+	 * @param bids
+	 *            The BID orders
+	 */
+	public OrderBook(Date timeStamp, List<LimitOrder> asks,
+			List<LimitOrder> bids) {
+		this.timeStamp = timeStamp;
+		this.asks = asks;
+		this.bids = bids;
+	}
+
+	public Date getTimeStamp() {
+
+		return timeStamp;
+	}
+
+	public List<LimitOrder> getAsks() {
+
+		Collections.sort(asks);
+		return asks;
+	}
+
+	public List<LimitOrder> getBids() {
+
+		Collections.sort(bids);
+		return bids;
+	}
+
+	/**
+	 * Given a new LimitOrder, it will replace and old matching limit order in
+	 * the orderbook or simply get added. Finally, it is sorted. The timeStamp
+	 * may be updated as well.
+	 * 
+	 * @param limitOrder
+	 *            the new LimitOrder
+	 */
+	public void update(LimitOrder limitOrder) {
+
+		List<LimitOrder> side = limitOrder.getType() == OrderType.ASK ? asks : bids;
+		remove(side, limitOrder.getLimitPrice());
+		side.add(limitOrder); // just add it
+		if (checksumComputed) {
+			checksum += hash(limitOrder);
+		}
+		Collections.sort(side); // finally sort
+		updateDate(limitOrder.getTimestamp());
+	}
+
+	/**
+	 * Given an OrderBookUpdate, it will replace and old matching limit order in
+	 * the orderbook or simply get added. Finally, it is sorted.The timeStamp
+	 * may be updated as well.
+	 * 
+	 * @param orderBookUpdate
+	 *            the new OrderBookUpdate
+	 */
+	public void update(OrderBookUpdate orderBookUpdate) {
+
+		// First, we need to remove orders with the same limit price
+		remove(orderBookUpdate.getLimitOrder().getType() == OrderType.ASK ? asks : bids, orderBookUpdate.getLimitOrder().getLimitPrice());
+
+		// If volume is not zero we need to add a new limit order with the
+		// updated amount
+		if (orderBookUpdate.getTotalVolume().compareTo(BigDecimal.ZERO) != 0) {
+
+			OrderType type = orderBookUpdate.getLimitOrder().getType();
+			BigDecimal tradeableAmount = orderBookUpdate.getTotalVolume();
+			String tradeableIdentifier = orderBookUpdate.getLimitOrder()
+					.getTradableIdentifier();
+			String transitionCurrency = orderBookUpdate.getLimitOrder()
+					.getTransactionCurrency();
+			String id = orderBookUpdate.getLimitOrder().getId();
+			Date date = orderBookUpdate.getLimitOrder().getTimestamp();
+			BigMoney limit = orderBookUpdate.getLimitOrder().getLimitPrice();
+			LimitOrder updatedOrder = new LimitOrder(type, tradeableAmount,
+					tradeableIdentifier, transitionCurrency, id, date, limit);
+
+			if (checksumComputed) {
+				checksum += hash(updatedOrder);
+			}
+			if (orderBookUpdate.getLimitOrder().getType() == OrderType.ASK) {
+				asks.add(updatedOrder);
+				Collections.sort(asks);
+			} else {
+				bids.add(updatedOrder);
+				Collections.sort(bids);
+			}
+		}
+		updateDate(orderBookUpdate.getLimitOrder().getTimestamp());
+	}
+
+	private void remove(List<LimitOrder> side, BigMoney limitPrice) {
+
+		Iterator<LimitOrder> it = side.iterator();
+		while (it.hasNext()) {
+			LimitOrder order = it.next();
+			if (order.getLimitPrice().compareTo(limitPrice) == 0) { // they are equal. found it!
+				it.remove();
+				if (checksumComputed) {
+					checksum -= hash(order);
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Order independent hash of the side, price and amount of all orders, e.g. to check a locally maintained book against a fetched snapshot
+	 * without comparing every order
+	 * </p>
+	 * <p>
+	 * It is computed once and then adjusted in O(1) per order changed by {@link #update(LimitOrder)} and {@link #update(OrderBookUpdate)};
+	 * changes made directly to the lists returned by {@link #getAsks()} and {@link #getBids()} are not tracked. Prices and amounts that differ
+	 * only in scale (e.g. 1.50 and 1.5) hash the same.
+	 * </p>
+	 * 
+	 * @return The checksum
+	 */
+	public long getChecksum() {
+
+		if (!checksumComputed) {
+			long sum = 0;
+			for (LimitOrder order : asks) {
+				sum += hash(order);
+			}
+			for (LimitOrder order : bids) {
+				sum += hash(order);
+			}
+			checksum = sum;
+			checksumComputed = true;
+		}
+		return checksum;
+	}
+
+	private static long hash(LimitOrder order) {
+
+		long hash = hash(order.getLimitPrice().getAmount());
+		hash = hash * 0x9E3779B97F4A7C15L + hash(order.getTradableAmount());
+		hash = hash * 0x9E3779B97F4A7C15L + (order.getType() == OrderType.ASK ? 1 : 2);
+		// finalizer of SplitMix64, so that the sum does not cancel out structure of the inputs
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
+	}
+
+	/**
+	 * Hash of the exact value, the same for every scale of it (e.g. 1.50 and 1.5)
+	 */
+	private static long hash(BigDecimal value) {
+
+		if (value.signum() == 0) {
+			// stripTrailingZeros() does not strip zero before Java 8
+			return 0;
+		}
+		BigDecimal stripped = value.stripTrailingZeros();
+		return ((long) stripped.unscaledValue().hashCode() << 32) ^ stripped.scale();
+	}
+
+	private void updateDate(Date updateDate) {
+
+		if (updateDate != null
+				&& (timeStamp == null || updateDate.after(timeStamp))) {
+			this.timeStamp = updateDate;
+		}
+	}
+
+	public LimitOrder getLowestAsk() {
+		LimitOrder lowest = null;
+		for (LimitOrder order : getAsks()) {
+			if (order.getTradableAmount().floatValue() > 1
+					&& (lowest == null || lowest.getLimitPrice().getAmount()
+							.floatValue() > order.getLimitPrice().getAmount()
+							.floatValue())) {
+				lowest = order;
+			}
+		}
+		return lowest;
+	}
+
+	public LimitOrder getHighestBid() {
+		LimitOrder highest = null;
+		for (LimitOrder order : getBids()) {
+			if (order.getTradableAmount().floatValue() >= 1
+					&& (highest == null || highest.getLimitPrice().getAmount()
+							.floatValue() < order.getLimitPrice().getAmount()
+							.floatValue())) {
+				highest = order;
+			}
+		}
+		return highest;
+	}
+
+	@Override
+	public String toString() {
+
+		return "Depth [timestamp: " + timeStamp + ", asks=" + asks.toString()
+				+ ", bids=" + bids.toString() + "]";
+	}
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.dto.marketdata;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.money.CurrencyUnit;
+
+import com.xeiam.xchange.currency.MoneyUtils;
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * <p>
+ * Builder for adapting exchange depth data to an {@link OrderBook} in linear time to provide the following to adapters:
+ * </p>
+ * <ul>
+ * <li>Presized sides, so full books are not copied while they grow</li>
+ * <li>Filling in either order: levels delivered worst price first are reversed once in {@link #build()} instead of being inserted at the head</li>
+ * <li>One {@link CurrencyUnit} lookup per book and direct {@link MoneyUtils#of} prices instead of formatting and parsing a String per level</li>
+ * </ul>
+ */
+public final class OrderBookBuilder {
+
+  private final Side asks;
+  private final Side bids;
+  private Date timestamp;
+
+  /**
+   * Constructor
+   * 
+   * @param tradableIdentifier The tradable identifier (e.g. BTC in BTC/USD)
+   * @param currency The transaction currency (e.g. USD in BTC/USD)
+   * @param expectedAsks The expected number of asks, used to presize the side
+   * @param expectedBids The expected number of bids, used to presize the side
+   */
+  public OrderBookBuilder(String tradableIdentifier, String currency, int expectedAsks, int expectedBids) {
+
+    CurrencyUnit currencyUnit = CurrencyUnit.of(currency);
+    this.asks = new Side(OrderType.ASK, tradableIdentifier, currency, currencyUnit, expectedAsks);
+    this.bids = new Side(OrderType.BID, tradableIdentifier, currency, currencyUnit, expectedBids);
+  }
+
+  public Side asks() {
+
+    return asks;
+  }
+
+  public Side bids() {
+
+    return bids;
+  }
+
+  public OrderBookBuilder withTimestamp(Date timestamp) {
+
+    this.timestamp = timestamp;
+    return this;
+  }
+
+  public OrderBook build() {
+
+    return new OrderBook(timestamp, asks.build(), bids.build());
+  }
+
+  /**
+   * <p>
+   * Builder for one side of a book, usable on its own for adapters that return a list of orders
+   * </p>
+   */
+  public static final class Side {
+
+    private final OrderType type;
+    private final String tradableIdentifier;
+    private final String currency;
+    private final CurrencyUnit currencyUnit;
+    private final ArrayList<LimitOrder> orders;
+    private boolean reverse = false;
+
+    /**
+     * Constructor
+     * 
+     * @param type The side
+     * @param tradableIdentifier The tradable identifier (e.g. BTC in BTC/USD)
+     * @param currency The transaction currency (e.g. USD in BTC/USD)
+     * @param expectedSize The expected number of orders, used to presize the list
+     */
+    public Side(OrderType type, String tradableIdentifier, String currency, int expectedSize) {
+
+      this(type, tradableIdentifier, currency, CurrencyUnit.of(currency), expectedSize);
+    }
+
+    private Side(OrderType type, String tradableIdentifier, String currency, CurrencyUnit currencyUnit, int expectedSize) {
+
+      this.type = type;
+      this.tradableIdentifier = tradableIdentifier;
+      this.currency = currency;
+      this.currencyUnit = currencyUnit;
+      this.orders = new ArrayList<LimitOrder>(Math.max(expectedSize, 0));
+    }
+
+    /**
+     * The orders will be added in the opposite order to the one the built list should have
+     */
+    public Side reversed() {
+
+      this.reverse = true;
+      return this;
+    }
+
+    public Side add(BigDecimal price, BigDecimal amount) {
+
+      return add(price, amount, "", null);
+    }
+
+    public Side add(BigDecimal price, BigDecimal amount, String id, Date timestamp) {
+
+      orders.add(new LimitOrder(type, amount, tradableIdentifier, currency, id, timestamp, MoneyUtils.of(currencyUnit, price)));
+      return this;
+    }
+
+    public int size() {
+
+      return orders.size();
+    }
+
+    /**
+     * @return The orders; the builder must not be used afterwards
+     */
+    public List<LimitOrder> build() {
+
+      if (reverse) {
+        Collections.reverse(orders);
+        reverse = false;
+      }
+      return orders;
+    }
+  }
+
+}
@@ -27,6 +27,7 @@ import java.util.Date;
 import org.joda.money.BigMoney;
 
 import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.utils.Timestamps;
 
 /**
  * Data object representing a Trade
@@ -59,9 +60,9 @@ public final class Trade implements Comparable<Trade> {
   private final BigMoney price;
 
   /**
-   * The timestamp of the trade
+   * The timestamp of the trade in microseconds from epoch, {@link Timestamps#NONE} if unknown
    */
-  private final Date timestamp;
+  private final long timestampMicros;
 
   /**
    * The trade id
@@ -87,12 +88,33 @@ public final class Trade implements Comparable<Trade> {
    */
   public Trade(OrderType type, BigDecimal tradableAmount, String tradableIdentifier, String transactionCurrency, BigMoney price, Date timestamp, long id) {
 
+    this(type, tradableAmount, tradableIdentifier, transactionCurrency, price, Timestamps.fromDate(timestamp), id);
+  }
+
+  /**
+   * @param type
+   *          The trade type (BID side or ASK side)
+   * @param tradableAmount
+   *          The depth of this trade
+   * @param tradableIdentifier
+   *          The exchange identifier (e.g. "BTC/USD")
+   * @param transactionCurrency
+   *          The transaction currency (e.g. USD in BTC/USD)
+   * @param price
+   *          The price (either the bid or the ask)
+   * @param timestampMicros
+   *          The timestamp in microseconds from epoch, {@link Timestamps#NONE} if unknown
+   * @param id
+   *          The id of the trade
+   */
+  public Trade(OrderType type, BigDecimal tradableAmount, String tradableIdentifier, String transactionCurrency, BigMoney price, long timestampMicros, long id) {
+
     this.type = type;
     this.tradableAmount = tradableAmount;
     this.tradableIdentifier = tradableIdentifier;
     this.transactionCurrency = transactionCurrency;
     this.price = price;
-    this.timestamp = timestamp;
+    this.timestampMicros = timestampMicros;
     this.id = id;
   }
 
@@ -121,9 +143,20 @@ public final class Trade implements Comparable<Trade> {
     return price;
   }
 
+  /**
+   * @return A new Date for the timestamp, null if unknown
+   */
   public Date getTimestamp() {
 
-    return timestamp;
+    return Timestamps.toDate(timestampMicros);
+  }
+
+  /**
+   * @return The timestamp in microseconds from epoch, {@link Timestamps#NONE} if unknown
+   */
+  public long getTimestampMicros() {
+
+    return timestampMicros;
   }
 
   public long getId() {
@@ -135,7 +168,7 @@ public final class Trade implements Comparable<Trade> {
   public String toString() {
 
     return "Trade [type=" + type + ", tradableAmount=" + tradableAmount + ", tradableIdentifier=" + tradableIdentifier + ", transactionCurrency=" + transactionCurrency + ", price=" + price
-        + ", timestamp=" + timestamp + ", id=" + id + "]";
+        + ", timestamp=" + getTimestamp() + ", id=" + id + "]";
   }
 
   @Override
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.dto.marketdata;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+
+import org.joda.money.CurrencyUnit;
+
+import com.xeiam.xchange.currency.MoneyUtils;
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.utils.Timestamps;
+
+/**
+ * <p>
+ * Builder for adapting exchange trade data to {@link Trades} in linear time, see {@link OrderBookBuilder}
+ * </p>
+ */
+public final class TradesBuilder {
+
+  private final String tradableIdentifier;
+  private final String currency;
+  private final CurrencyUnit currencyUnit;
+  private final ArrayList<Trade> trades;
+  private boolean reverse = false;
+
+  /**
+   * Constructor
+   * 
+   * @param tradableIdentifier The tradable identifier (e.g. BTC in BTC/USD)
+   * @param currency The transaction currency (e.g. USD in BTC/USD)
+   * @param expectedSize The expected number of trades, used to presize the list
+   */
+  public TradesBuilder(String tradableIdentifier, String currency, int expectedSize) {
+
+    this.tradableIdentifier = tradableIdentifier;
+    this.currency = currency;
+    this.currencyUnit = CurrencyUnit.of(currency);
+    this.trades = new ArrayList<Trade>(Math.max(expectedSize, 0));
+  }
+
+  /**
+   * The trades will be added newest first
+   */
+  public TradesBuilder reversed() {
+
+    this.reverse = true;
+    return this;
+  }
+
+  public TradesBuilder add(OrderType type, BigDecimal amount, BigDecimal price, Date timestamp, long id) {
+
+    return add(type, amount, price, Timestamps.fromDate(timestamp), id);
+  }
+
+  /**
+   * @param timestampMicros The trade time in microseconds from epoch, see {@link Timestamps}
+   */
+  public TradesBuilder add(OrderType type, BigDecimal amount, BigDecimal price, long timestampMicros, long id) {
+
+    trades.add(new Trade(type, amount, tradableIdentifier, currency, MoneyUtils.of(currencyUnit, price), timestampMicros, id));
+    return this;
+  }
+
+  public int size() {
+
+    return trades.size();
+  }
+
+  /**
+   * @return The trades oldest first; the builder must not be used afterwards
+   */
+  public Trades build() {
+
+    if (reverse) {
+      Collections.reverse(trades);
+      reverse = false;
+    }
+    return new Trades(trades);
+  }
+
+}
@@ -0,0 +1,459 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.account;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.dto.trade.OpenOrders;
+import com.xeiam.xchange.dto.trade.Wallet;
+import com.xeiam.xchange.service.polling.PollingAccountService;
+import com.xeiam.xchange.service.polling.PollingTradeService;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Live copy of the account balances to provide the following to applications:
+ * </p>
+ * <ul>
+ * <li>Seeding from a single {@link PollingAccountService#getAccountInfo()} call</li>
+ * <li>Incremental updates from wallet and order events, so no poll is needed before placing an order</li>
+ * <li>O(1) balance, reserved and available funds lookups per currency</li>
+ * <li>Optional periodic reconciliation polls of the balances, and of the open order reservations if a {@link PollingTradeService} is given, to correct any drift</li>
+ * </ul>
+ * <p>
+ * Events are expected with core payloads: a {@link Wallet} holding the new balance for USER_WALLET_UPDATE, a {@link LimitOrder} holding the remaining amount for
+ * USER_ORDER (or just the order id once it is gone) and the order id for USER_ORDER_CANCELED. Exchanges with native payloads adapt them first (see {@link #handleEvent(ExchangeEvent)}).
+ * </p>
+ * <p>
+ * Lookups are lock free; updates are serialized. Reconciliation polls run without holding the lock: balances and orders updated by events while a poll is in flight
+ * keep the event's value, as the poll may predate it.
+ * </p>
+ */
+public class AccountStateCache {
+
+  private final Logger log = LoggerFactory.getLogger(AccountStateCache.class);
+
+  private final PollingAccountService accountService;
+
+  private final PollingTradeService tradeService;
+
+  private final Map<CurrencyUnit, BigMoney> balances = new ConcurrentHashMap<CurrencyUnit, BigMoney>();
+
+  private final Map<CurrencyUnit, BigMoney> reserved = new ConcurrentHashMap<CurrencyUnit, BigMoney>();
+
+  /** The reservation held by each open order, guarded by this */
+  private final Map<String, BigMoney> orderReservations = new HashMap<String, BigMoney>();
+
+  /** The update sequence number of each balance and order changed since the last reconciliation, guarded by this */
+  private final Map<CurrencyUnit, Long> balanceSequences = new HashMap<CurrencyUnit, Long>();
+  private final Map<String, Long> orderSequences = new HashMap<String, Long>();
+
+  /** Incremented on every event update, guarded by this */
+  private long updateSequence;
+
+  private volatile String username;
+  private volatile long lastReconciliationTime = 0;
+
+  private ScheduledExecutorService reconciliationExecutor;
+
+  /**
+   * Constructor
+   * 
+   * @param accountService The service polled to seed and reconcile the balances
+   */
+  public AccountStateCache(PollingAccountService accountService) {
+
+    this(accountService, null);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param accountService The service polled to seed and reconcile the balances
+   * @param tradeService The service polled to seed and reconcile the open order reservations, null to track them from events only
+   */
+  public AccountStateCache(PollingAccountService accountService, PollingTradeService tradeService) {
+
+    Assert.notNull(accountService, "accountService cannot be null");
+    this.accountService = accountService;
+    this.tradeService = tradeService;
+  }
+
+  /**
+   * Replaces all balances, and the open order reservations if a trade service was given, with a fresh poll of the account
+   * 
+   * @return The polled account info
+   * @throws IOException
+   */
+  public AccountInfo reconcile() throws IOException {
+
+    long pollSequence;
+    synchronized (this) {
+      pollSequence = updateSequence;
+    }
+    AccountInfo accountInfo = accountService.getAccountInfo();
+    OpenOrders openOrders = tradeService == null ? null : tradeService.getOpenOrders();
+    synchronized (this) {
+      applyAccountInfo(accountInfo, pollSequence);
+      if (openOrders != null) {
+        applyOpenOrders(openOrders, pollSequence);
+      }
+    }
+    return accountInfo;
+  }
+
+  /**
+   * Replaces all balances with the given account info
+   * 
+   * @param accountInfo
+   */
+  public synchronized void applyAccountInfo(AccountInfo accountInfo) {
+
+    applyAccountInfo(accountInfo, updateSequence);
+  }
+
+  /**
+   * @param accountInfo
+   * @param snapshotSequence The update sequence when the account info was requested; balances updated after it are kept
+   */
+  private void applyAccountInfo(AccountInfo accountInfo, long snapshotSequence) {
+
+    Map<CurrencyUnit, BigMoney> updated = new HashMap<CurrencyUnit, BigMoney>();
+    for (Wallet wallet : accountInfo.getWallets()) {
+      CurrencyUnit currencyUnit = wallet.getBalance().getCurrencyUnit();
+      if (!isUpdatedAfter(balanceSequences, currencyUnit, snapshotSequence)) {
+        updated.put(currencyUnit, wallet.getBalance());
+      }
+    }
+    for (Map.Entry<CurrencyUnit, BigMoney> entry : balances.entrySet()) {
+      if (isUpdatedAfter(balanceSequences, entry.getKey(), snapshotSequence)) {
+        updated.put(entry.getKey(), entry.getValue());
+      }
+    }
+    replaceEntries(balances, updated);
+    removeSequencesUpTo(balanceSequences, snapshotSequence);
+
+    username = accountInfo.getUsername();
+    lastReconciliationTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Seeds the cache and then reconciles it periodically on a daemon thread; failed polls are logged and retried on the next run
+   * 
+   * @param reconciliationIntervalInMs The time between reconciliation polls, 0 to only seed
+   * @throws IOException if the seeding poll fails
+   */
+  public synchronized void start(long reconciliationIntervalInMs) throws IOException {
+
+    Assert.isTrue(reconciliationExecutor == null, "Already started");
+    reconcile();
+    if (reconciliationIntervalInMs <= 0) {
+      return;
+    }
+
+    reconciliationExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+
+        Thread thread = new Thread(runnable, "account-state-reconciliation");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    reconciliationExecutor.scheduleWithFixedDelay(new Runnable() {
+
+      @Override
+      public void run() {
+
+        try {
+          reconcile();
+        } catch (Exception e) {
+          log.warn("Account reconciliation failed", e);
+        }
+      }
+    }, reconciliationIntervalInMs, reconciliationIntervalInMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the reconciliation polls
+   */
+  public synchronized void stop() {
+
+    if (reconciliationExecutor != null) {
+      reconciliationExecutor.shutdownNow();
+      reconciliationExecutor = null;
+    }
+  }
+
+  /**
+   * Applies a wallet, order or cancel event
+   * 
+   * @param event
+   * @return false if the event does not affect the account state
+   */
+  public boolean handleEvent(ExchangeEvent event) {
+
+    Object payload = event.getPayload();
+
+    switch (event.getEventType()) {
+    case USER_WALLET_UPDATE:
+      if (payload instanceof Wallet) {
+        applyBalance((Wallet) payload);
+        return true;
+      }
+      break;
+    case USER_ORDER:
+      if (payload instanceof LimitOrder) {
+        applyOrder((LimitOrder) payload);
+        return true;
+      }
+      // an order id alone means the order is gone
+      if (payload instanceof String) {
+        applyOrderClosed((String) payload);
+        return true;
+      }
+      break;
+    case USER_ORDER_CANCELED:
+      if (payload instanceof String) {
+        applyOrderClosed((String) payload);
+        return true;
+      }
+      break;
+    default:
+      break;
+    }
+    return false;
+  }
+
+  /**
+   * @param wallet The new balance of a currency
+   */
+  public synchronized void applyBalance(Wallet wallet) {
+
+    balances.put(wallet.getBalance().getCurrencyUnit(), wallet.getBalance());
+    balanceSequences.put(wallet.getBalance().getCurrencyUnit(), ++updateSequence);
+  }
+
+  /**
+   * Records the funds reserved by a new or partially filled order
+   * 
+   * @param order The order with its remaining amount; a zero amount closes it
+   */
+  public synchronized void applyOrder(LimitOrder order) {
+
+    Assert.notNull(order.getId(), "order id cannot be null");
+
+    if (order.getTradableAmount() == null || order.getTradableAmount().signum() == 0) {
+      applyOrderClosed(order.getId());
+      return;
+    }
+
+    orderSequences.put(order.getId(), ++updateSequence);
+    BigMoney reservation = getReservation(order);
+    BigMoney previous = orderReservations.put(order.getId(), reservation);
+    if (previous != null) {
+      addReserved(previous.negated());
+    }
+    addReserved(reservation);
+  }
+
+  /**
+   * Releases the funds reserved by a filled or canceled order
+   * 
+   * @param orderId
+   */
+  public synchronized void applyOrderClosed(String orderId) {
+
+    orderSequences.put(orderId, ++updateSequence);
+    BigMoney previous = orderReservations.remove(orderId);
+    if (previous != null) {
+      addReserved(previous.negated());
+    }
+  }
+
+  /**
+   * Replaces all reservations with those of an open orders snapshot
+   * 
+   * @param openOrders
+   */
+  public synchronized void applyOpenOrders(OpenOrders openOrders) {
+
+    applyOpenOrders(openOrders, updateSequence);
+  }
+
+  /**
+   * @param openOrders
+   * @param snapshotSequence The update sequence when the open orders were requested; reservations of orders updated after it are kept
+   */
+  private void applyOpenOrders(OpenOrders openOrders, long snapshotSequence) {
+
+    Map<String, BigMoney> updated = new HashMap<String, BigMoney>();
+    for (LimitOrder order : openOrders.getOpenOrders()) {
+      if (!isUpdatedAfter(orderSequences, order.getId(), snapshotSequence) && order.getTradableAmount() != null && order.getTradableAmount().signum() != 0) {
+        updated.put(order.getId(), getReservation(order));
+      }
+    }
+    for (Map.Entry<String, BigMoney> entry : orderReservations.entrySet()) {
+      if (isUpdatedAfter(orderSequences, entry.getKey(), snapshotSequence)) {
+        updated.put(entry.getKey(), entry.getValue());
+      }
+    }
+    orderReservations.clear();
+    orderReservations.putAll(updated);
+    removeSequencesUpTo(orderSequences, snapshotSequence);
+
+    Map<CurrencyUnit, BigMoney> totals = new HashMap<CurrencyUnit, BigMoney>();
+    for (BigMoney reservation : updated.values()) {
+      BigMoney total = totals.get(reservation.getCurrencyUnit());
+      totals.put(reservation.getCurrencyUnit(), total == null ? reservation : total.plus(reservation));
+    }
+    for (Iterator<BigMoney> iterator = totals.values().iterator(); iterator.hasNext();) {
+      if (iterator.next().isZero()) {
+        iterator.remove();
+      }
+    }
+    replaceEntries(reserved, totals);
+  }
+
+  /**
+   * Puts the new entries before removing the stale ones, so that lock free readers never see a missing entry that is present in both
+   */
+  private static <K> void replaceEntries(Map<K, BigMoney> target, Map<K, BigMoney> entries) {
+
+    target.putAll(entries);
+    target.keySet().retainAll(entries.keySet());
+  }
+
+  private static <K> boolean isUpdatedAfter(Map<K, Long> sequences, K key, long sequence) {
+
+    Long keySequence = sequences.get(key);
+    return keySequence != null && keySequence.longValue() > sequence;
+  }
+
+  private static <K> void removeSequencesUpTo(Map<K, Long> sequences, long sequence) {
+
+    for (Iterator<Long> iterator = sequences.values().iterator(); iterator.hasNext();) {
+      if (iterator.next().longValue() <= sequence) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private void addReserved(BigMoney amount) {
+
+    BigMoney current = reserved.get(amount.getCurrencyUnit());
+    BigMoney updated = current == null ? amount : current.plus(amount);
+    if (updated.isZero()) {
+      reserved.remove(amount.getCurrencyUnit());
+    }
+    else {
+      reserved.put(amount.getCurrencyUnit(), updated);
+    }
+  }
+
+  /**
+   * @param order
+   * @return The funds an open order holds: the counter amount for bids, the base amount for asks
+   */
+  static BigMoney getReservation(LimitOrder order) {
+
+    if (order.getType() == OrderType.BID) {
+      return order.getLimitPrice().multipliedBy(order.getTradableAmount());
+    }
+    return BigMoney.of(CurrencyUnit.of(order.getTradableIdentifier()), order.getTradableAmount());
+  }
+
+  /**
+   * @param currencyUnit
+   * @return The balance, or zero if not found
+   */
+  public BigMoney getBalance(CurrencyUnit currencyUnit) {
+
+    BigMoney balance = balances.get(currencyUnit);
+    return balance == null ? BigMoney.zero(currencyUnit) : balance;
+  }
+
+  /**
+   * @param currencyUnit
+   * @return The funds held by known open orders, or zero
+   */
+  public BigMoney getReserved(CurrencyUnit currencyUnit) {
+
+    BigMoney amount = reserved.get(currencyUnit);
+    return amount == null ? BigMoney.zero(currencyUnit) : amount;
+  }
+
+  /**
+   * @param currencyUnit
+   * @return The balance less the reserved funds
+   */
+  public BigMoney getAvailable(CurrencyUnit currencyUnit) {
+
+    return getBalance(currencyUnit).minus(getReserved(currencyUnit));
+  }
+
+  /**
+   * @return A snapshot of the balances as an AccountInfo
+   */
+  public AccountInfo getAccountInfo() {
+
+    List<Wallet> wallets = new ArrayList<Wallet>(balances.size());
+    for (BigMoney balance : balances.values()) {
+      wallets.add(new Wallet(balance.getCurrencyUnit().getCode(), balance));
+    }
+    return new AccountInfo(username, wallets);
+  }
+
+  /**
+   * @return The time of the last seeding or reconciliation poll in milliseconds from epoch, 0 if none
+   */
+  public long getLastReconciliationTime() {
+
+    return lastReconciliationTime;
+  }
+
+  @Override
+  public String toString() {
+
+    return "AccountStateCache [balances=" + balances + ", reserved=" + reserved + "]";
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.marketdata;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+
+/**
+ * <p>
+ * Mutable holder representing a single trade of a {@link TradeTape}
+ * </p>
+ * <p>
+ * Instances are designed to be re-used by readers of the tape so that following it does not allocate. Prices and amounts are held as primitives.
+ * </p>
+ */
+public final class TapeTrade {
+
+  private long sequence;
+  private String exchange;
+  private long id;
+  private OrderType type;
+  private long timestampMicros;
+  private double price;
+  private double amount;
+
+  /* package */void set(long sequence, String exchange, long id, OrderType type, long timestampMicros, double price, double amount) {
+
+    this.sequence = sequence;
+    this.exchange = exchange;
+    this.id = id;
+    this.type = type;
+    this.timestampMicros = timestampMicros;
+    this.price = price;
+    this.amount = amount;
+  }
+
+  /**
+   * @return The position of the trade on the tape
+   */
+  public long getSequence() {
+
+    return sequence;
+  }
+
+  public String getExchange() {
+
+    return exchange;
+  }
+
+  /**
+   * @return The id of the trade on its exchange
+   */
+  public long getId() {
+
+    return id;
+  }
+
+  /**
+   * @return The side of the taker, null if the exchange does not say
+   */
+  public OrderType getType() {
+
+    return type;
+  }
+
+  /**
+   * @return The timestamp in microseconds from epoch
+   */
+  public long getTimestampMicros() {
+
+    return timestampMicros;
+  }
+
+  public double getPrice() {
+
+    return price;
+  }
+
+  public double getAmount() {
+
+    return amount;
+  }
+
+  @Override
+  public String toString() {
+
+    return "TapeTrade [sequence=" + sequence + ", exchange=" + exchange + ", id=" + id + ", type=" + type + ", timestampMicros=" + timestampMicros + ", price=" + price + ", amount=" + amount
+        + "]";
+  }
+
+}
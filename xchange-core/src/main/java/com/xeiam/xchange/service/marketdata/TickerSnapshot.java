@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.marketdata;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+
+/**
+ * <p>
+ * Immutable entry of a {@link TickerStore}: the latest ticker for one exchange and pair, stamped with the store version at which it was written
+ * </p>
+ */
+public final class TickerSnapshot {
+
+  private final String exchange;
+  private final CurrencyPair currencyPair;
+  private final Ticker ticker;
+  private final long version;
+  private final long receivedTime;
+
+  /**
+   * Constructor
+   * 
+   * @param exchange
+   * @param currencyPair
+   * @param ticker
+   * @param version
+   * @param receivedTime in milliseconds from epoch
+   */
+  TickerSnapshot(String exchange, CurrencyPair currencyPair, Ticker ticker, long version, long receivedTime) {
+
+    this.exchange = exchange;
+    this.currencyPair = currencyPair;
+    this.ticker = ticker;
+    this.version = version;
+    this.receivedTime = receivedTime;
+  }
+
+  public String getExchange() {
+
+    return exchange;
+  }
+
+  public CurrencyPair getCurrencyPair() {
+
+    return currencyPair;
+  }
+
+  public Ticker getTicker() {
+
+    return ticker;
+  }
+
+  /**
+   * @return The store version at which this ticker was written; versions increase across all exchanges and pairs of the store
+   */
+  public long getVersion() {
+
+    return version;
+  }
+
+  /**
+   * @return The time the ticker was written to the store, in milliseconds from epoch
+   */
+  public long getReceivedTime() {
+
+    return receivedTime;
+  }
+
+  @Override
+  public String toString() {
+
+    return "TickerSnapshot [exchange=" + exchange + ", currencyPair=" + currencyPair + ", version=" + version + ", receivedTime=" + receivedTime + ", ticker=" + ticker + "]";
+  }
+
+}
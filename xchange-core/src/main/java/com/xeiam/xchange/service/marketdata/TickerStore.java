@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.marketdata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.money.BigMoney;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.service.polling.PollingMarketDataService;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Conflating latest-value store of tickers to provide the following to applications:
+ * </p>
+ * <ul>
+ * <li>The latest ticker per exchange and {@link CurrencyPair}, written by polling services ({@link #refresh}) and streaming TICKER events ({@link #handleEvent})</li>
+ * <li>Lock free writes and reads; readers get immutable, versioned {@link TickerSnapshot}s and never block writers</li>
+ * <li>Waiting for a write newer than a known version, for one key or for the whole store</li>
+ * </ul>
+ * <p>
+ * Versions come from one store-wide sequence and increase per key. A ticker whose timestamp is older than the stored one (e.g. a slow poll overtaken by a
+ * stream update) is ignored.
+ * </p>
+ */
+public class TickerStore {
+
+  private final ConcurrentMap<Key, TickerSnapshot> snapshots = new ConcurrentHashMap<Key, TickerSnapshot>();
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  /** The highest version visible in the store */
+  private final AtomicLong latest = new AtomicLong();
+
+  /**
+   * Bumped after every write; versions are taken before the write, so a concurrent lower version can become visible after a higher one and waiters cannot
+   * rely on them
+   */
+  private final AtomicLong writes = new AtomicLong();
+
+  /** Writers only take the monitor when someone is waiting */
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final Object monitor = new Object();
+
+  /**
+   * Writes a ticker
+   * 
+   * @param exchange The exchange name
+   * @param currencyPair The pair
+   * @param ticker The ticker
+   * @return The new snapshot, or null if the ticker was older than the stored one
+   */
+  public TickerSnapshot put(String exchange, CurrencyPair currencyPair, Ticker ticker) {
+
+    Assert.notNull(exchange, "exchange cannot be null");
+    Assert.notNull(currencyPair, "currencyPair cannot be null");
+    Assert.notNull(ticker, "ticker cannot be null");
+
+    Key key = new Key(exchange, currencyPair);
+    long now = System.currentTimeMillis();
+    TickerSnapshot snapshot;
+    while (true) {
+      TickerSnapshot current = snapshots.get(key);
+      if (current != null && isOlder(ticker, current.getTicker())) {
+        return null;
+      }
+      // taking the version after reading the current snapshot keeps versions increasing per key: a concurrent writer that wins in between makes the
+      // replace fail, and the retry takes a higher version
+      snapshot = new TickerSnapshot(exchange, currencyPair, ticker, sequence.incrementAndGet(), now);
+      if (current == null ? snapshots.putIfAbsent(key, snapshot) == null : snapshots.replace(key, current, snapshot)) {
+        break;
+      }
+    }
+
+    long version = snapshot.getVersion();
+    long current;
+    while ((current = latest.get()) < version && !latest.compareAndSet(current, version)) {
+      // retry
+    }
+    writes.incrementAndGet();
+    if (waiters.get() > 0) {
+      synchronized (monitor) {
+        monitor.notifyAll();
+      }
+    }
+    return snapshot;
+  }
+
+  private static boolean isOlder(Ticker ticker, Ticker stored) {
+
+    return ticker.getTimestamp() != null && stored.getTimestamp() != null && ticker.getTimestamp().before(stored.getTimestamp());
+  }
+
+  /**
+   * Writes the ticker of a streaming TICKER event, other events are ignored
+   * 
+   * @param exchange The exchange name
+   * @param event The event, with a {@link Ticker} payload
+   * @return The new snapshot, or null if the event was ignored
+   */
+  public TickerSnapshot handleEvent(String exchange, ExchangeEvent event) {
+
+    if (event.getEventType() != ExchangeEventType.TICKER || !(event.getPayload() instanceof Ticker)) {
+      return null;
+    }
+    Ticker ticker = (Ticker) event.getPayload();
+    CurrencyPair currencyPair = getCurrencyPair(ticker);
+    return currencyPair == null ? null : put(exchange, currencyPair, ticker);
+  }
+
+  /**
+   * Polls a ticker and writes it
+   * 
+   * @param exchange The exchange name
+   * @param marketDataService The exchange's market data service
+   * @param currencyPair The pair
+   * @return The new snapshot, or null if the polled ticker was older than the stored one
+   * @throws IOException
+   */
+  public TickerSnapshot refresh(String exchange, PollingMarketDataService marketDataService, CurrencyPair currencyPair) throws IOException {
+
+    Ticker ticker = marketDataService.getTicker(currencyPair.baseCurrency, currencyPair.counterCurrency);
+    return put(exchange, currencyPair, ticker);
+  }
+
+  /**
+   * The Ticker DTO has no currency field; the transaction currency is that of its prices
+   */
+  static CurrencyPair getCurrencyPair(Ticker ticker) {
+
+    BigMoney price = ticker.getLast() != null ? ticker.getLast() : ticker.getBid() != null ? ticker.getBid() : ticker.getAsk();
+    if (ticker.getTradableIdentifier() == null || price == null) {
+      return null;
+    }
+    return new CurrencyPair(ticker.getTradableIdentifier(), price.getCurrencyUnit().getCode());
+  }
+
+  /**
+   * @param exchange The exchange name
+   * @param currencyPair The pair
+   * @return The latest snapshot, or null if there is none
+   */
+  public TickerSnapshot get(String exchange, CurrencyPair currencyPair) {
+
+    return snapshots.get(new Key(exchange, currencyPair));
+  }
+
+  /**
+   * @param exchange The exchange name
+   * @param currencyPair The pair
+   * @return The latest ticker, or null if there is none
+   */
+  public Ticker getTicker(String exchange, CurrencyPair currencyPair) {
+
+    TickerSnapshot snapshot = get(exchange, currencyPair);
+    return snapshot == null ? null : snapshot.getTicker();
+  }
+
+  /**
+   * @return The latest snapshot of every exchange and pair
+   */
+  public List<TickerSnapshot> getSnapshots() {
+
+    return new ArrayList<TickerSnapshot>(snapshots.values());
+  }
+
+  /**
+   * @return The version of the latest write to the store
+   */
+  public long getVersion() {
+
+    return latest.get();
+  }
+
+  /**
+   * Waits for a write to the store after the given version
+   * 
+   * @param version A version previously returned by the store
+   * @param timeout The maximum time to wait
+   * @param unit The unit of the timeout
+   * @return The latest version, which is not newer than the given one if the wait timed out
+   * @throws InterruptedException
+   */
+  public long awaitVersion(long version, long timeout, TimeUnit unit) throws InterruptedException {
+
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (true) {
+      long seen = writes.get();
+      long current = latest.get();
+      if (current > version || !awaitWrite(seen, deadline)) {
+        return current > version ? current : latest.get();
+      }
+    }
+  }
+
+  /**
+   * Waits for a ticker of one exchange and pair newer than the given version
+   * 
+   * @param exchange The exchange name
+   * @param currencyPair The pair
+   * @param version The version of the last snapshot seen, 0 for any
+   * @param timeout The maximum time to wait
+   * @param unit The unit of the timeout
+   * @return The newer snapshot, or null if the wait timed out
+   * @throws InterruptedException
+   */
+  public TickerSnapshot awaitUpdate(String exchange, CurrencyPair currencyPair, long version, long timeout, TimeUnit unit) throws InterruptedException {
+
+    Key key = new Key(exchange, currencyPair);
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (true) {
+      long seen = writes.get();
+      TickerSnapshot snapshot = snapshots.get(key);
+      if (snapshot != null && snapshot.getVersion() > version) {
+        return snapshot;
+      }
+      if (!awaitWrite(seen, deadline)) {
+        snapshot = snapshots.get(key);
+        return snapshot != null && snapshot.getVersion() > version ? snapshot : null;
+      }
+    }
+  }
+
+  /**
+   * @return false if the deadline passed without a write after the given count
+   */
+  private boolean awaitWrite(long seen, long deadline) throws InterruptedException {
+
+    waiters.incrementAndGet();
+    try {
+      synchronized (monitor) {
+        while (writes.get() == seen) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return false;
+          }
+          TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+        }
+        return true;
+      }
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * Removes all snapshots, versions keep increasing
+   */
+  public void clear() {
+
+    snapshots.clear();
+  }
+
+  private static final class Key {
+
+    private final String exchange;
+    private final CurrencyPair currencyPair;
+    private final int hashCode;
+
+    Key(String exchange, CurrencyPair currencyPair) {
+
+      this.exchange = exchange;
+      this.currencyPair = currencyPair;
+      this.hashCode = 31 * exchange.hashCode() + currencyPair.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return exchange.equals(other.exchange) && currencyPair.equals(other.currencyPair);
+    }
+  }
+
+}
@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.marketdata;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.utils.Assert;
+import com.xeiam.xchange.utils.Timestamps;
+import com.xeiam.xchange.utils.TradeIdWindow;
+
+/**
+ * <p>
+ * Consolidated, time ordered tape of the trades of one currency pair across exchanges
+ * </p>
+ * <ul>
+ * <li>Each exchange feeds a pending queue ordered by trade time; the queues are merged incrementally (k-way) instead of re-sorting a window</li>
+ * <li>A trade is released to the tape once the newest trade time seen from any exchange is at least the lateness window past it, so feeds may
+ * lag each other by up to that window; trades older than the last released one are dropped as late</li>
+ * <li>Trades are deduplicated by exchange and id against the last {@value #TRADE_ID_WINDOW} ids of each exchange, before the lateness check, so
+ * overlapping polls and a stream of the same exchange can be fed as they are; trades without an id (id 0) are never considered duplicates</li>
+ * <li>Released trades are kept in a bounded ring of primitive arrays addressed by sequence number, see {@link #copy(long, TapeTrade)}</li>
+ * <li>All methods are thread safe</li>
+ * </ul>
+ */
+public final class TradeTape {
+
+  /** The number of most recent trade ids remembered per exchange */
+  public static final int TRADE_ID_WINDOW = 4096;
+
+  private static final Comparator<Trade> TIME_ORDER = new Comparator<Trade>() {
+
+    @Override
+    public int compare(Trade trade1, Trade trade2) {
+
+      if (trade1.getTimestampMicros() != trade2.getTimestampMicros()) {
+        return trade1.getTimestampMicros() < trade2.getTimestampMicros() ? -1 : 1;
+      }
+      return trade1.getId() < trade2.getId() ? -1 : (trade1.getId() == trade2.getId() ? 0 : 1);
+    }
+  };
+
+  private static final Comparator<Source> HEAD_ORDER = new Comparator<Source>() {
+
+    @Override
+    public int compare(Source source1, Source source2) {
+
+      int comparison = TIME_ORDER.compare(source1.pending.peek(), source2.pending.peek());
+      return comparison != 0 ? comparison : source1.index - source2.index;
+    }
+  };
+
+  private final String tradableIdentifier;
+  private final String currency;
+  private final long latenessMicros;
+  private final int capacity;
+
+  private final Map<String, Source> sources = new HashMap<String, Source>();
+  private final List<String> exchanges = new ArrayList<String>();
+  /** The sources with pending trades, by their oldest pending trade */
+  private final PriorityQueue<Source> heads = new PriorityQueue<Source>(8, HEAD_ORDER);
+
+  private final long[] timestamps;
+  private final long[] ids;
+  private final double[] prices;
+  private final double[] amounts;
+  private final byte[] types;
+  private final int[] exchangeIndexes;
+  private long nextSequence = 0;
+
+  private long newestMicros = Long.MIN_VALUE;
+  private long lastReleasedMicros = Long.MIN_VALUE;
+  private int pendingCount = 0;
+  private long lateTrades = 0;
+  private long duplicateTrades = 0;
+
+  /**
+   * Constructor
+   * 
+   * @param tradableIdentifier The tradable identifier (e.g. BTC in BTC/USD)
+   * @param currency The transaction currency (e.g. USD in BTC/USD)
+   * @param latenessInMs How long trades are held back for slower feeds
+   * @param capacity The number of released trades to retain
+   */
+  public TradeTape(String tradableIdentifier, String currency, long latenessInMs, int capacity) {
+
+    Assert.notNull(tradableIdentifier, "tradableIdentifier cannot be null");
+    Assert.notNull(currency, "currency cannot be null");
+    Assert.isTrue(latenessInMs >= 0, "latenessInMs cannot be negative");
+    Assert.isTrue(capacity > 0, "capacity must be positive");
+
+    this.tradableIdentifier = tradableIdentifier;
+    this.currency = currency;
+    this.latenessMicros = latenessInMs * 1000L;
+    this.capacity = capacity;
+    this.timestamps = new long[capacity];
+    this.ids = new long[capacity];
+    this.prices = new double[capacity];
+    this.amounts = new double[capacity];
+    this.types = new byte[capacity];
+    this.exchangeIndexes = new int[capacity];
+  }
+
+  /**
+   * Adds a trade and releases the trades that are past the lateness window
+   * 
+   * @param exchange The name of the exchange the trade was made on
+   * @param trade The trade
+   * @return false if the trade is of another pair, has no timestamp, is a duplicate or is late
+   */
+  public synchronized boolean add(String exchange, Trade trade) {
+
+    boolean added = offer(exchange, trade);
+    release(newestMicros - latenessMicros);
+    return added;
+  }
+
+  /**
+   * Adds polled trades and releases the trades that are past the lateness window
+   * 
+   * @param exchange The name of the exchange the trades were made on
+   * @param trades The trades, in any order
+   * @return The number of trades added
+   */
+  public synchronized int addAll(String exchange, Trades trades) {
+
+    int added = 0;
+    for (Trade trade : trades.getTrades()) {
+      if (offer(exchange, trade)) {
+        added++;
+      }
+    }
+    release(newestMicros - latenessMicros);
+    return added;
+  }
+
+  /**
+   * Applies a streaming event; only {@link ExchangeEventType#TRADE} events with a {@link Trade} payload are considered
+   * 
+   * @param exchange The name of the exchange the event came from
+   * @param event The exchange event
+   * @return true if a trade was added
+   */
+  public boolean handleEvent(String exchange, ExchangeEvent event) {
+
+    if (event.getEventType() == ExchangeEventType.TRADE && event.getPayload() instanceof Trade) {
+      return add(exchange, (Trade) event.getPayload());
+    }
+    return false;
+  }
+
+  /**
+   * Moves the tape clock forward without a trade, e.g. from a timer, so that trades are released while all feeds are quiet
+   * 
+   * @param timestampMicros The current time in microseconds from epoch
+   * @return The number of trades released
+   */
+  public synchronized int advanceTo(long timestampMicros) {
+
+    if (timestampMicros > newestMicros) {
+      newestMicros = timestampMicros;
+    }
+    return release(newestMicros - latenessMicros);
+  }
+
+  /**
+   * Releases all pending trades regardless of the lateness window
+   * 
+   * @return The number of trades released
+   */
+  public synchronized int flush() {
+
+    return release(Long.MAX_VALUE);
+  }
+
+  private boolean offer(String exchange, Trade trade) {
+
+    long timestamp = trade.getTimestampMicros();
+    if (timestamp == Timestamps.NONE || !tradableIdentifier.equals(trade.getTradableIdentifier()) || !currency.equals(trade.getTransactionCurrency())) {
+      return false;
+    }
+
+    Source source = sources.get(exchange);
+    if (source == null) {
+      source = new Source(exchange, exchanges.size());
+      sources.put(exchange, source);
+      exchanges.add(exchange);
+    }
+    long id = trade.getId();
+    if (id != 0 && !source.ids.add(id)) {
+      duplicateTrades++;
+      return false;
+    }
+    if (timestamp < lastReleasedMicros) {
+      lateTrades++;
+      return false;
+    }
+
+    boolean wasEmpty = source.pending.isEmpty();
+    boolean newHead = wasEmpty || TIME_ORDER.compare(trade, source.pending.peek()) < 0;
+    if (newHead && !wasEmpty) {
+      heads.remove(source);
+    }
+    source.pending.add(trade);
+    if (newHead) {
+      heads.add(source);
+    }
+    pendingCount++;
+    if (timestamp > newestMicros) {
+      newestMicros = timestamp;
+    }
+    return true;
+  }
+
+  private int release(long upToMicros) {
+
+    int released = 0;
+    while (!heads.isEmpty() && heads.peek().pending.peek().getTimestampMicros() <= upToMicros) {
+      Source source = heads.poll();
+      Trade trade = source.pending.poll();
+      pendingCount--;
+      append(source, trade);
+      released++;
+      if (!source.pending.isEmpty()) {
+        heads.add(source);
+      }
+    }
+    return released;
+  }
+
+  private void append(Source source, Trade trade) {
+
+    int index = (int) (nextSequence % capacity);
+    timestamps[index] = trade.getTimestampMicros();
+    ids[index] = trade.getId();
+    prices[index] = trade.getPrice().getAmount().doubleValue();
+    amounts[index] = trade.getTradableAmount().doubleValue();
+    types[index] = trade.getType() == null ? 0 : (byte) (trade.getType().ordinal() + 1);
+    exchangeIndexes[index] = source.index;
+    nextSequence++;
+    lastReleasedMicros = trade.getTimestampMicros();
+  }
+
+  /**
+   * Copies a released trade into the given holder
+   * 
+   * @param sequence The sequence number, from {@link #getFirstSequence()} up to but excluding {@link #getNextSequence()}
+   * @param target The holder to populate
+   * @return false if there is no such trade (the target is left untouched)
+   */
+  public synchronized boolean copy(long sequence, TapeTrade target) {
+
+    if (sequence < getFirstSequence() || sequence >= nextSequence) {
+      return false;
+    }
+    int index = (int) (sequence % capacity);
+    target.set(sequence, exchanges.get(exchangeIndexes[index]), ids[index], types[index] == 0 ? null : OrderType.values()[types[index] - 1], timestamps[index], prices[index],
+        amounts[index]);
+    return true;
+  }
+
+  /**
+   * @return The sequence number of the oldest retained trade
+   */
+  public synchronized long getFirstSequence() {
+
+    return Math.max(0, nextSequence - capacity);
+  }
+
+  /**
+   * @return The sequence number the next released trade will get
+   */
+  public synchronized long getNextSequence() {
+
+    return nextSequence;
+  }
+
+  /**
+   * @param sinceMicros The start of the period in microseconds from epoch (inclusive)
+   * @return The amount traded since the given time, as far as retained
+   */
+  public synchronized double getVolume(long sinceMicros) {
+
+    double volume = 0;
+    for (long sequence = nextSequence - 1; sequence >= getFirstSequence(); sequence--) {
+      int index = (int) (sequence % capacity);
+      if (timestamps[index] < sinceMicros) {
+        break;
+      }
+      volume += amounts[index];
+    }
+    return volume;
+  }
+
+  /**
+   * @param sinceMicros The start of the period in microseconds from epoch (inclusive)
+   * @return The volume weighted average price since the given time, as far as retained, or NaN if there were no trades
+   */
+  public synchronized double getVwap(long sinceMicros) {
+
+    double volume = 0;
+    double notional = 0;
+    for (long sequence = nextSequence - 1; sequence >= getFirstSequence(); sequence--) {
+      int index = (int) (sequence % capacity);
+      if (timestamps[index] < sinceMicros) {
+        break;
+      }
+      volume += amounts[index];
+      notional += amounts[index] * prices[index];
+    }
+    return volume == 0 ? Double.NaN : notional / volume;
+  }
+
+  /**
+   * @return The number of trades held back by the lateness window
+   */
+  public synchronized int getPendingCount() {
+
+    return pendingCount;
+  }
+
+  /**
+   * @return The number of trades dropped because a newer trade had already been released
+   */
+  public synchronized long getLateTrades() {
+
+    return lateTrades;
+  }
+
+  /**
+   * @return The number of trades dropped as duplicates
+   */
+  public synchronized long getDuplicateTrades() {
+
+    return duplicateTrades;
+  }
+
+  public int getCapacity() {
+
+    return capacity;
+  }
+
+  @Override
+  public synchronized String toString() {
+
+    return "TradeTape [" + tradableIdentifier + "/" + currency + ", exchanges=" + exchanges + ", nextSequence=" + nextSequence + ", pending=" + pendingCount + "]";
+  }
+
+  /**
+   * The pending trades of one exchange and the ids it has fed most recently
+   */
+  private static final class Source {
+
+    private final String exchange;
+    private final int index;
+    private final PriorityQueue<Trade> pending = new PriorityQueue<Trade>(16, TIME_ORDER);
+    private final TradeIdWindow ids = new TradeIdWindow(TRADE_ID_WINDOW);
+
+    Source(String exchange, int index) {
+
+      this.exchange = exchange;
+      this.index = index;
+    }
+
+    @Override
+    public String toString() {
+
+      return exchange;
+    }
+  }
+
+}
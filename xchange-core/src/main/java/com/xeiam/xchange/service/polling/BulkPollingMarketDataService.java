@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.polling;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import com.xeiam.xchange.ExchangeException;
+import com.xeiam.xchange.NotAvailableFromExchangeException;
+import com.xeiam.xchange.NotYetImplementedForExchangeException;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trades;
+
+/**
+ * <p>
+ * Interface to provide the following to market data services whose exchange serves several pairs in one request:
+ * </p>
+ * <ul>
+ * <li>Fetching the tickers, order books or trades of many pairs for the cost of one call, which a {@link RequestScheduler} charges as one</li>
+ * </ul>
+ */
+public interface BulkPollingMarketDataService extends PollingMarketDataService {
+
+  /**
+   * Gets the tickers of several pairs in a single request
+   * 
+   * @param currencyPairs The pairs, each supported by the exchange
+   * @return The tickers, in the order of the given pairs; pairs the exchange did not return are left out
+   * @throws ExchangeException - Indication that the exchange reported some kind of error with the request or response
+   * @throws NotAvailableFromExchangeException - Indication that the exchange does not support the requested function or data
+   * @throws NotYetImplementedForExchangeException - Indication that the exchange supports the requested function or data, but it has not yet
+   *           been implemented
+   * @throws IOException - Indication that a networking error occurred while fetching JSON data
+   */
+  @ExchangeCall
+  Map<CurrencyPair, Ticker> getTickers(Collection<CurrencyPair> currencyPairs) throws ExchangeException, NotAvailableFromExchangeException,
+      NotYetImplementedForExchangeException, IOException;
+
+  /**
+   * Gets the order books of several pairs in a single request
+   * 
+   * @param currencyPairs The pairs, each supported by the exchange
+   * @param limit The number of orders per side and pair
+   * @return The order books, in the order of the given pairs; pairs the exchange did not return are left out
+   * @throws ExchangeException - Indication that the exchange reported some kind of error with the request or response
+   * @throws NotAvailableFromExchangeException - Indication that the exchange does not support the requested function or data
+   * @throws NotYetImplementedForExchangeException - Indication that the exchange supports the requested function or data, but it has not yet
+   *           been implemented
+   * @throws IOException - Indication that a networking error occurred while fetching JSON data
+   */
+  @ExchangeCall
+  Map<CurrencyPair, OrderBook> getOrderBooks(Collection<CurrencyPair> currencyPairs, int limit) throws ExchangeException, NotAvailableFromExchangeException,
+      NotYetImplementedForExchangeException, IOException;
+
+  /**
+   * Gets the recent trades of several pairs in a single request
+   * 
+   * @param currencyPairs The pairs, each supported by the exchange
+   * @param limit The number of trades per pair
+   * @return The trades, in the order of the given pairs; pairs the exchange did not return are left out
+   * @throws ExchangeException - Indication that the exchange reported some kind of error with the request or response
+   * @throws NotAvailableFromExchangeException - Indication that the exchange does not support the requested function or data
+   * @throws NotYetImplementedForExchangeException - Indication that the exchange supports the requested function or data, but it has not yet
+   *           been implemented
+   * @throws IOException - Indication that a networking error occurred while fetching JSON data
+   */
+  @ExchangeCall
+  Map<CurrencyPair, Trades> getTrades(Collection<CurrencyPair> currencyPairs, int limit) throws ExchangeException, NotAvailableFromExchangeException,
+      NotYetImplementedForExchangeException, IOException;
+
+}
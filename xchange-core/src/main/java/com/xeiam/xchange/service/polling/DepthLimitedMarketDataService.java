@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.polling;
+
+import java.io.IOException;
+
+import com.xeiam.xchange.ExchangeException;
+import com.xeiam.xchange.NotAvailableFromExchangeException;
+import com.xeiam.xchange.NotYetImplementedForExchangeException;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+
+/**
+ * <p>
+ * Interface to provide the following to market data services whose exchange can limit the depth it returns:
+ * </p>
+ * <ul>
+ * <li>Fetching part of an order book with the cheapest native depth parameters, see {@link OrderBookRequest#getOrderBook}</li>
+ * </ul>
+ */
+public interface DepthLimitedMarketDataService extends PollingMarketDataService {
+
+  /**
+   * <p>
+   * Get the part of an order book described by the request
+   * </p>
+   * 
+   * @param tradableIdentifier The identifier to use (e.g. BTC or GOOG)
+   * @param currency The currency of interest
+   * @param request The levels and/or price window of interest; the result never exceeds it
+   * @return The OrderBook
+   * @throws ExchangeException - Indication that the exchange reported some kind of error with the request or response
+   * @throws NotAvailableFromExchangeException - Indication that the exchange does not support the requested function or data
+   * @throws NotYetImplementedForExchangeException - Indication that the exchange supports the requested function or data, but it has not yet
+   *           been implemented
+   * @throws IOException - Indication that a networking error occurred while fetching JSON data
+   */
+  @ExchangeCall
+  OrderBook getOrderBook(String tradableIdentifier, String currency, OrderBookRequest request) throws ExchangeException, NotAvailableFromExchangeException,
+      NotYetImplementedForExchangeException, IOException;
+
+}
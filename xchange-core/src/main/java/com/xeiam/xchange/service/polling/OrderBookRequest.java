@@ -0,0 +1,197 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.polling;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Immutable description of the part of an order book a consumer needs
+ * </p>
+ * <ul>
+ * <li>The top N orders per side, and/or the orders priced within a fraction of the mid price</li>
+ * <li>Services implementing {@link DepthLimitedMarketDataService} map it to the cheapest native depth parameters of their exchange</li>
+ * <li>{@link #truncate(OrderBook)} applies it on the client side, for exchanges without such parameters or to trim what they return</li>
+ * </ul>
+ */
+public final class OrderBookRequest {
+
+  /** The whole order book */
+  public static final OrderBookRequest FULL = new OrderBookRequest(0, null);
+
+  private static final BigDecimal TWO = new BigDecimal(2);
+
+  private final int maxLevels;
+  private final BigDecimal priceWindow;
+
+  /**
+   * Constructor
+   * 
+   * @param maxLevels The number of orders per side, 0 for all
+   * @param priceWindow The maximum distance from the mid price as a fraction of it (e.g. 0.02 for 2%), null for any distance
+   */
+  public OrderBookRequest(int maxLevels, BigDecimal priceWindow) {
+
+    Assert.isTrue(maxLevels >= 0, "maxLevels cannot be negative");
+    Assert.isTrue(priceWindow == null || priceWindow.signum() >= 0, "priceWindow cannot be negative");
+    this.maxLevels = maxLevels;
+    this.priceWindow = priceWindow;
+  }
+
+  /**
+   * @param maxLevels The number of orders per side
+   */
+  public static OrderBookRequest levels(int maxLevels) {
+
+    Assert.isTrue(maxLevels > 0, "maxLevels must be positive");
+    return new OrderBookRequest(maxLevels, null);
+  }
+
+  /**
+   * @param priceWindow The maximum distance from the mid price as a fraction of it (e.g. 0.02 for 2%)
+   */
+  public static OrderBookRequest priceWindow(BigDecimal priceWindow) {
+
+    Assert.notNull(priceWindow, "priceWindow cannot be null");
+    return new OrderBookRequest(0, priceWindow);
+  }
+
+  /**
+   * @return The number of orders per side, 0 for all
+   */
+  public int getMaxLevels() {
+
+    return maxLevels;
+  }
+
+  /**
+   * @return The maximum distance from the mid price as a fraction of it, null for any distance
+   */
+  public BigDecimal getPriceWindow() {
+
+    return priceWindow;
+  }
+
+  public boolean hasMaxLevels() {
+
+    return maxLevels > 0;
+  }
+
+  public boolean hasPriceWindow() {
+
+    return priceWindow != null;
+  }
+
+  /**
+   * Fetches the requested part of an order book, natively if the service supports it and by truncating the full order book otherwise
+   * 
+   * @param marketDataService The service to query
+   * @param tradableIdentifier The tradable identifier (e.g. BTC in BTC/USD)
+   * @param currency The transaction currency (e.g. USD in BTC/USD)
+   */
+  public OrderBook getOrderBook(PollingMarketDataService marketDataService, String tradableIdentifier, String currency) throws IOException {
+
+    if (marketDataService instanceof DepthLimitedMarketDataService) {
+      return ((DepthLimitedMarketDataService) marketDataService).getOrderBook(tradableIdentifier, currency, this);
+    }
+    return truncate(marketDataService.getFullOrderBook(tradableIdentifier, currency));
+  }
+
+  /**
+   * Applies this request on the client side; the mid price is taken from the best ask and bid, or from the best order of the only non-empty
+   * side. The sides are read through {@link OrderBook#getAsks()} and {@link OrderBook#getBids()}, which sort them best price first (asks
+   * ascending, bids descending), so books filled in any order are cut correctly.
+   * 
+   * @param orderBook The order book to truncate; its orders are not changed
+   * @return A new order book, or the given one if it is already within this request
+   */
+  public OrderBook truncate(OrderBook orderBook) {
+
+    if (orderBook == null || (!hasMaxLevels() && !hasPriceWindow())) {
+      return orderBook;
+    }
+
+    List<LimitOrder> asks = orderBook.getAsks();
+    List<LimitOrder> bids = orderBook.getBids();
+
+    BigDecimal maxAsk = null;
+    BigDecimal minBid = null;
+    if (hasPriceWindow() && (!asks.isEmpty() || !bids.isEmpty())) {
+      BigDecimal mid;
+      if (asks.isEmpty()) {
+        mid = bids.get(0).getLimitPrice().getAmount();
+      }
+      else if (bids.isEmpty()) {
+        mid = asks.get(0).getLimitPrice().getAmount();
+      }
+      else {
+        mid = asks.get(0).getLimitPrice().getAmount().add(bids.get(0).getLimitPrice().getAmount()).divide(TWO);
+      }
+      BigDecimal distance = mid.multiply(priceWindow);
+      maxAsk = mid.add(distance);
+      minBid = mid.subtract(distance);
+    }
+
+    List<LimitOrder> truncatedAsks = truncate(asks, maxAsk, false);
+    List<LimitOrder> truncatedBids = truncate(bids, minBid, true);
+    if (truncatedAsks == asks && truncatedBids == bids) {
+      return orderBook;
+    }
+    return new OrderBook(orderBook.getTimeStamp(), truncatedAsks, truncatedBids);
+  }
+
+  /**
+   * @param side Sorted best price first, as returned by the OrderBook getters
+   * @param limit The worst price to keep, null for any
+   */
+  private List<LimitOrder> truncate(List<LimitOrder> side, BigDecimal limit, boolean bid) {
+
+    int end = hasMaxLevels() ? Math.min(maxLevels, side.size()) : side.size();
+    if (limit != null) {
+      for (int i = 0; i < end; i++) {
+        int comparison = side.get(i).getLimitPrice().getAmount().compareTo(limit);
+        if (bid ? comparison < 0 : comparison > 0) {
+          end = i;
+          break;
+        }
+      }
+    }
+    if (end == side.size()) {
+      return side;
+    }
+    return new ArrayList<LimitOrder>(side.subList(0, end));
+  }
+
+  @Override
+  public String toString() {
+
+    return "OrderBookRequest [maxLevels=" + maxLevels + ", priceWindow=" + priceWindow + "]";
+  }
+
+}
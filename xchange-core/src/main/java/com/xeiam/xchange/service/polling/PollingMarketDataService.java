@@ -86,6 +86,7 @@ public interface PollingMarketDataService {
 	 *             - Indication that a networking error occurred while fetching
 	 *             JSON data
 	 */
+	@ExchangeCall
 	Ticker getTicker(String tradableIdentifier, String currency)
 			throws ExchangeException, NotAvailableFromExchangeException,
 			NotYetImplementedForExchangeException, IOException;
@@ -114,6 +115,7 @@ public interface PollingMarketDataService {
 	 *             - Indication that a networking error occurred while fetching
 	 *             JSON data
 	 */
+	@ExchangeCall
 	OrderBook getPartialOrderBook(String tradableIdentifier, String currency)
 			throws ExchangeException, NotAvailableFromExchangeException,
 			NotYetImplementedForExchangeException, IOException;
@@ -142,6 +144,7 @@ public interface PollingMarketDataService {
 	 *             - Indication that a networking error occurred while fetching
 	 *             JSON data
 	 */
+	@ExchangeCall
 	OrderBook getFullOrderBook(String tradableIdentifier, String currency)
 			throws ExchangeException, NotAvailableFromExchangeException,
 			NotYetImplementedForExchangeException, IOException;
@@ -174,6 +177,7 @@ public interface PollingMarketDataService {
 	 *             - Indication that a networking error occurred while fetching
 	 *             JSON data
 	 */
+	@ExchangeCall
 	Trades getTrades(String tradableIdentifier, String currency, Object... args)
 			throws ExchangeException, NotAvailableFromExchangeException,
 			NotYetImplementedForExchangeException, IOException;
@@ -186,6 +190,7 @@ public interface PollingMarketDataService {
 	 * @return ExchangeInfo object
 	 * @throws IOException
 	 */
+	@ExchangeCall
 	public ExchangeInfo getExchangeInfo() throws IOException,
 			NotAvailableFromExchangeException,
 			NotYetImplementedForExchangeException;
@@ -0,0 +1,624 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.polling;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xeiam.xchange.ExchangeException;
+import com.xeiam.xchange.RequestExpiredException;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Client side scheduler for the calls to one exchange to provide the following to polling services:
+ * </p>
+ * <ul>
+ * <li>A token bucket for the exchange as a whole and optionally one per endpoint class ({@link RequestPriority})</li>
+ * <li>Priority lanes: order entry and cancels are sent before account calls, which are sent before market data</li>
+ * <li>Deadlines: a request whose answer would arrive after its deadline (given the recent latency of its lane) is dropped with a
+ * {@link RequestExpiredException} instead of being sent</li>
+ * <li>Wrappers routing the {@link ExchangeCall} methods of the polling service interfaces through the scheduler</li>
+ * </ul>
+ * <p>
+ * When the exchange budget runs out, the next token is kept for the highest priority waiting request, so market data cannot crowd out orders.
+ * </p>
+ */
+public class RequestScheduler {
+
+  private final Logger log = LoggerFactory.getLogger(RequestScheduler.class);
+
+  private static final int LANES = RequestPriority.values().length;
+
+  /** Weight of the latest sample in the latency average */
+  private static final double LATENCY_ALPHA = 0.2;
+
+  private final String name;
+
+  private final TokenBucket exchangeBucket;
+
+  private final TokenBucket[] laneBuckets = new TokenBucket[LANES];
+
+  private final List<ArrayDeque<ScheduledRequest<?>>> lanes = new ArrayList<ArrayDeque<ScheduledRequest<?>>>(LANES);
+
+  /** Average call latency per lane in nanoseconds */
+  private final long[] latencies = new long[LANES];
+
+  private final long[] droppedCounts = new long[LANES];
+
+  /** The time to wait for a token, written by next(), guarded by lock */
+  private long waitNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final Condition changed = lock.newCondition();
+
+  private final Semaphore permits;
+
+  private final ExecutorService workers;
+
+  private final Thread dispatcher;
+
+  private volatile boolean running = true;
+
+  /**
+   * Constructor
+   * 
+   * @param name The exchange name, used for the thread names
+   * @param exchangeBucket The rate limit of the exchange as a whole, null for none
+   * @param concurrency The maximum number of calls in flight
+   */
+  public RequestScheduler(String name, TokenBucket exchangeBucket, int concurrency) {
+
+    Assert.notNull(name, "name cannot be null");
+    Assert.isTrue(concurrency > 0, "concurrency must be positive");
+
+    this.name = name;
+    this.exchangeBucket = exchangeBucket;
+    this.permits = new Semaphore(concurrency);
+    for (int i = 0; i < LANES; i++) {
+      lanes.add(new ArrayDeque<ScheduledRequest<?>>());
+    }
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+
+        Thread thread = new Thread(runnable, RequestScheduler.this.name + "-request-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.dispatcher = new Thread(new Runnable() {
+
+      @Override
+      public void run() {
+
+        dispatch();
+      }
+    }, name + "-request-dispatcher");
+    dispatcher.setDaemon(true);
+    dispatcher.start();
+  }
+
+  /**
+   * Sets the rate limit of an endpoint class, on top of the exchange's
+   * 
+   * @param priority
+   * @param bucket null for none
+   */
+  public void setRateLimit(RequestPriority priority, TokenBucket bucket) {
+
+    lock.lock();
+    try {
+      laneBuckets[priority.ordinal()] = bucket;
+      changed.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Queues a request
+   * 
+   * @param priority
+   * @param timeoutInMs The time from now after which the answer is useless, 0 for none
+   * @param callable The call to the exchange
+   * @return The future result; it fails with a {@link RequestExpiredException} if the request is dropped
+   */
+  public <T> Future<T> submit(RequestPriority priority, long timeoutInMs, Callable<T> callable) {
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+    ScheduledRequest<T> request = new ScheduledRequest<T>(callable, priority, timeoutInMs > 0, deadline);
+
+    lock.lock();
+    try {
+      if (!running) {
+        throw new ExchangeException("The " + name + " request scheduler is shut down");
+      }
+      lanes.get(priority.ordinal()).add(request);
+      changed.signal();
+    } finally {
+      lock.unlock();
+    }
+    return request;
+  }
+
+  /**
+   * Queues a request and waits for its result
+   * 
+   * @param priority
+   * @param timeoutInMs The time from now after which the answer is useless, 0 for none
+   * @param callable The call to the exchange
+   * @return The result
+   * @throws IOException as thrown by the call
+   * @throws RequestExpiredException if the request was dropped
+   */
+  public <T> T execute(RequestPriority priority, long timeoutInMs, Callable<T> callable) throws IOException {
+
+    Future<T> future = submit(priority, timeoutInMs, callable);
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new ExchangeException("Interrupted while waiting for a " + priority + " request", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ExchangeException("Request failed", cause);
+    }
+  }
+
+  private void dispatch() {
+
+    while (running) {
+      try {
+        permits.acquire();
+        ScheduledRequest<?> request = null;
+        lock.lock();
+        try {
+          while (running && (request = next()) == null) {
+            // next() left the wait time in waitNanos
+            if (waitNanos == Long.MAX_VALUE) {
+              changed.await();
+            }
+            else {
+              changed.awaitNanos(waitNanos);
+            }
+          }
+        } finally {
+          lock.unlock();
+        }
+        if (request == null) {
+          permits.release();
+          break;
+        }
+        workers.execute(new Execution(request));
+      } catch (InterruptedException e) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * @return The request to send now, or null with waitNanos set to the time to wait
+   */
+  private ScheduledRequest<?> next() {
+
+    long now = System.nanoTime();
+    waitNanos = Long.MAX_VALUE;
+
+    for (int lane = 0; lane < LANES; lane++) {
+      ArrayDeque<ScheduledRequest<?>> queue = lanes.get(lane);
+      // wake up in time to drop the next request going stale
+      waitNanos = Math.min(waitNanos, dropStale(lane, now));
+      if (queue.isEmpty()) {
+        continue;
+      }
+
+      TokenBucket laneBucket = laneBuckets[lane];
+      long laneWait = laneBucket == null ? 0 : laneBucket.getWaitTime(now);
+      if (laneWait > 0) {
+        // limited by its own endpoint class, lower lanes may still go
+        waitNanos = Math.min(waitNanos, laneWait);
+        continue;
+      }
+      long exchangeWait = exchangeBucket == null ? 0 : exchangeBucket.getWaitTime(now);
+      if (exchangeWait > 0) {
+        // keep the next exchange token for this lane
+        waitNanos = Math.min(waitNanos, exchangeWait);
+        return null;
+      }
+
+      if (laneBucket != null) {
+        laneBucket.take();
+      }
+      if (exchangeBucket != null) {
+        exchangeBucket.take();
+      }
+      return queue.poll();
+    }
+    return null;
+  }
+
+  /**
+   * @return The nanoseconds until the next request of the lane goes stale
+   */
+  private long dropStale(int lane, long now) {
+
+    long slack = Long.MAX_VALUE;
+    long expectedArrival = now + latencies[lane];
+    Iterator<ScheduledRequest<?>> iterator = lanes.get(lane).iterator();
+    while (iterator.hasNext()) {
+      ScheduledRequest<?> request = iterator.next();
+      if (request.isCancelled()) {
+        iterator.remove();
+      }
+      else if (request.hasDeadline) {
+        long remaining = request.deadline - expectedArrival;
+        if (remaining < 0) {
+          iterator.remove();
+          droppedCounts[lane]++;
+          request.expire("Dropped a stale " + request.priority + " request to " + name);
+        }
+        else {
+          slack = Math.min(slack, remaining + 1);
+        }
+      }
+    }
+    return slack;
+  }
+
+  private void recordLatency(RequestPriority priority, long nanos) {
+
+    lock.lock();
+    try {
+      int lane = priority.ordinal();
+      latencies[lane] = latencies[lane] == 0 ? nanos : (long) (latencies[lane] + LATENCY_ALPHA * (nanos - latencies[lane]));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param priority
+   * @return The number of requests of the lane dropped because of their deadline
+   */
+  public long getDroppedCount(RequestPriority priority) {
+
+    lock.lock();
+    try {
+      return droppedCounts[priority.ordinal()];
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param priority
+   * @return The number of requests waiting in the lane
+   */
+  public int getQueueSize(RequestPriority priority) {
+
+    lock.lock();
+    try {
+      return lanes.get(priority.ordinal()).size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param priority
+   * @return The average call latency of the lane in milliseconds
+   */
+  public long getLatencyInMs(RequestPriority priority) {
+
+    lock.lock();
+    try {
+      return TimeUnit.NANOSECONDS.toMillis(latencies[priority.ordinal()]);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the scheduler; queued requests fail with a {@link RequestExpiredException}
+   */
+  public void shutdown() {
+
+    lock.lock();
+    try {
+      running = false;
+      for (ArrayDeque<ScheduledRequest<?>> queue : lanes) {
+        for (ScheduledRequest<?> request : queue) {
+          request.expire("The " + name + " request scheduler is shut down");
+        }
+        queue.clear();
+      }
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    dispatcher.interrupt();
+    workers.shutdown();
+  }
+
+  /**
+   * @param tradeService
+   * @param orderTimeoutInMs The deadline of order entry and cancels, 0 for none
+   * @param accountTimeoutInMs The deadline of the other calls, 0 for none
+   * @return A trade service sending order entry and cancels in the ORDER lane and the other calls in the ACCOUNT lane, or the service itself if it
+   *         has public methods that are on none of its interfaces
+   */
+  public PollingTradeService wrapTradeService(PollingTradeService tradeService, final long orderTimeoutInMs, final long accountTimeoutInMs) {
+
+    return wrap(PollingTradeService.class, tradeService, new LaneSelector() {
+
+      @Override
+      public RequestPriority getPriority(Method method) {
+
+        String methodName = method.getName();
+        return methodName.startsWith("place") || methodName.equals("cancelOrder") ? RequestPriority.ORDER : RequestPriority.ACCOUNT;
+      }
+
+      @Override
+      public long getTimeoutInMs(RequestPriority priority) {
+
+        return priority == RequestPriority.ORDER ? orderTimeoutInMs : accountTimeoutInMs;
+      }
+    });
+  }
+
+  /**
+   * @param accountService
+   * @param timeoutInMs The deadline of the calls, 0 for none
+   * @return An account service sending its calls in the ACCOUNT lane, or the service itself if it has public methods that are on none of its interfaces
+   */
+  public PollingAccountService wrapAccountService(PollingAccountService accountService, long timeoutInMs) {
+
+    return wrap(PollingAccountService.class, accountService, new FixedLane(RequestPriority.ACCOUNT, timeoutInMs));
+  }
+
+  /**
+   * @param marketDataService
+   * @param timeoutInMs The age after which market data is useless, 0 for none
+   * @return A market data service sending its calls in the MARKET_DATA lane, or the service itself if it has public methods that are on none of its interfaces
+   */
+  public PollingMarketDataService wrapMarketDataService(PollingMarketDataService marketDataService, long timeoutInMs) {
+
+    return wrap(PollingMarketDataService.class, marketDataService, new FixedLane(RequestPriority.MARKET_DATA, timeoutInMs));
+  }
+
+  /**
+   * @return A proxy implementing the service interface and every other interface of the service (e.g. {@link DepthLimitedMarketDataService} or {@link BulkPollingMarketDataService})
+   */
+  private <S> S wrap(Class<S> serviceInterface, final S service, final LaneSelector laneSelector) {
+
+    Assert.notNull(service, "service cannot be null");
+
+    Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+    interfaces.add(serviceInterface);
+    for (Class<?> type = service.getClass(); type != null; type = type.getSuperclass()) {
+      for (Class<?> implemented : type.getInterfaces()) {
+        interfaces.add(implemented);
+      }
+    }
+
+    if (!canWrap(interfaces, service)) {
+      return service;
+    }
+
+    return serviceInterface.cast(Proxy.newProxyInstance(service.getClass().getClassLoader(), interfaces.toArray(new Class<?>[interfaces.size()]), new InvocationHandler() {
+
+      @Override
+      public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+
+        if (!method.isAnnotationPresent(ExchangeCall.class)) {
+          // local, e.g. Object methods or lookups of constants
+          return invokeDirectly(service, method, args);
+        }
+
+        RequestPriority priority = laneSelector.getPriority(method);
+        return execute(priority, laneSelector.getTimeoutInMs(priority), new Callable<Object>() {
+
+          @Override
+          public Object call() throws Exception {
+
+            try {
+              return invokeDirectly(service, method, args);
+            } catch (Exception e) {
+              throw e;
+            } catch (Throwable t) {
+              throw (Error) t;
+            }
+          }
+        });
+      }
+    }));
+  }
+
+  /**
+   * A proxy only implements interfaces, so a service with public methods of its own class would lose them; such a service is left unwrapped, and
+   * so unscheduled, until the methods are declared on an interface
+   * 
+   * @return false if the service has public methods that none of the interfaces declares
+   */
+  private <S> boolean canWrap(Set<Class<?>> interfaces, S service) {
+
+    List<String> hidden = new ArrayList<String>();
+    for (Method method : service.getClass().getMethods()) {
+      if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()) {
+        continue;
+      }
+      // Object methods, overridden or not, are implemented by every proxy
+      boolean declared = declares(Object.class, method);
+      for (Iterator<Class<?>> iterator = interfaces.iterator(); !declared && iterator.hasNext();) {
+        declared = declares(iterator.next(), method);
+      }
+      if (!declared) {
+        hidden.add(method.getName());
+      }
+    }
+    if (hidden.isEmpty()) {
+      return true;
+    }
+    log.warn("Not scheduling the calls of {}: its methods {} are on no interface and would be hidden by a proxy", service.getClass().getName(), hidden);
+    return false;
+  }
+
+  private static boolean declares(Class<?> type, Method method) {
+
+    try {
+      type.getMethod(method.getName(), method.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static Object invokeDirectly(Object service, Method method, Object[] args) throws Throwable {
+
+    try {
+      return method.invoke(service, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private interface LaneSelector {
+
+    RequestPriority getPriority(Method method);
+
+    long getTimeoutInMs(RequestPriority priority);
+  }
+
+  private static final class FixedLane implements LaneSelector {
+
+    private final RequestPriority priority;
+    private final long timeoutInMs;
+
+    FixedLane(RequestPriority priority, long timeoutInMs) {
+
+      this.priority = priority;
+      this.timeoutInMs = timeoutInMs;
+    }
+
+    @Override
+    public RequestPriority getPriority(Method method) {
+
+      return priority;
+    }
+
+    @Override
+    public long getTimeoutInMs(RequestPriority priority) {
+
+      return timeoutInMs;
+    }
+  }
+
+  private final class Execution implements Runnable {
+
+    private final ScheduledRequest<?> request;
+
+    Execution(ScheduledRequest<?> request) {
+
+      this.request = request;
+    }
+
+    @Override
+    public void run() {
+
+      long start = System.nanoTime();
+      try {
+        request.run();
+        recordLatency(request.priority, System.nanoTime() - start);
+      } catch (RuntimeException e) {
+        log.error("Unexpected failure running a request", e);
+      } finally {
+        permits.release();
+      }
+    }
+  }
+
+  private static final class ScheduledRequest<T> extends FutureTask<T> {
+
+    private final RequestPriority priority;
+    private final boolean hasDeadline;
+    private final long deadline;
+
+    ScheduledRequest(Callable<T> callable, RequestPriority priority, boolean hasDeadline, long deadline) {
+
+      super(callable);
+      this.priority = priority;
+      this.hasDeadline = hasDeadline;
+      this.deadline = deadline;
+    }
+
+    void expire(String message) {
+
+      setException(new RequestExpiredException(message));
+    }
+  }
+
+  @Override
+  public String toString() {
+
+    return "RequestScheduler [name=" + name + ", exchangeBucket=" + exchangeBucket + "]";
+  }
+}
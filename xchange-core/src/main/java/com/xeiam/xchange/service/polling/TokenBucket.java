@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.polling;
+
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Token bucket rate limit: bursts of up to capacity calls, refilled at a steady rate
+ * </p>
+ * <p>
+ * Not thread safe, {@link RequestScheduler} guards its buckets.
+ * </p>
+ */
+public final class TokenBucket {
+
+  private final double capacity;
+  private final double tokensPerNano;
+
+  private double tokens;
+  private long lastRefill;
+
+  /**
+   * Constructor
+   * 
+   * @param capacity The burst size
+   * @param calls The number of calls allowed per period once the burst is spent
+   * @param periodInMs
+   */
+  public TokenBucket(int capacity, int calls, long periodInMs) {
+
+    Assert.isTrue(capacity > 0, "capacity must be positive");
+    Assert.isTrue(calls > 0, "calls must be positive");
+    Assert.isTrue(periodInMs > 0, "periodInMs must be positive");
+
+    this.capacity = capacity;
+    this.tokensPerNano = calls / (periodInMs * 1000000.0);
+    this.tokens = capacity;
+    this.lastRefill = System.nanoTime();
+  }
+
+  private void refill(long now) {
+
+    if (now > lastRefill) {
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+      lastRefill = now;
+    }
+  }
+
+  /**
+   * @param now {@link System#nanoTime()}
+   * @return 0 if a token is available now, otherwise the nanoseconds until one will be
+   */
+  long getWaitTime(long now) {
+
+    refill(now);
+    return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  /**
+   * Takes a token, which must be available
+   */
+  void take() {
+
+    tokens -= 1;
+  }
+
+  @Override
+  public String toString() {
+
+    return "TokenBucket [capacity=" + capacity + ", tokens=" + tokens + "]";
+  }
+}
@@ -21,8 +21,8 @@
  */
 package com.xeiam.xchange.service.streaming;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.xeiam.xchange.ExchangeSpecification;
 import com.xeiam.xchange.currency.CurrencyPair;
@@ -57,7 +57,7 @@ public abstract class BasePollingExchangeService extends BaseExchangeService {
 		return askAverage;
 	}
 
-	private final Map<CurrencyPair, MovingAverage> askAverage = new HashMap<CurrencyPair, MovingAverage>();
-	private final Map<CurrencyPair, MovingAverage> bidAverage = new HashMap<CurrencyPair, MovingAverage>();
+	private final Map<CurrencyPair, MovingAverage> askAverage = new ConcurrentHashMap<CurrencyPair, MovingAverage>();
+	private final Map<CurrencyPair, MovingAverage> bidAverage = new ConcurrentHashMap<CurrencyPair, MovingAverage>();
 
 }
@@ -25,7 +25,6 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,14 +48,14 @@ public abstract class BaseWebSocketExchangeService extends BaseExchangeService i
   /**
    * The event queue for the consumer
    */
-  protected final BlockingQueue<ExchangeEvent> consumerEventQueue = new LinkedBlockingQueue<ExchangeEvent>(1024);
+  protected final BlockingQueue<ExchangeEvent> consumerEventQueue = new SignallingEventQueue(1024);
 
   protected ReconnectService reconnectService;
 
   /**
    * The exchange event producer
    */
-  private WebSocketEventProducer exchangeEventProducer;
+  private volatile WebSocketEventProducer exchangeEventProducer;
 
   /**
    * Constructor
@@ -98,7 +97,19 @@ public abstract class BaseWebSocketExchangeService extends BaseExchangeService i
   @Override
   public ExchangeEvent getNextEvent() throws InterruptedException {
 
-    ExchangeEvent event = consumerEventQueue.take();
+    return intercept(consumerEventQueue.take());
+  }
+
+  /**
+   * @return The next event, or null if there is none, for a {@link StreamingServiceSupervisor} draining the queue
+   */
+  ExchangeEvent pollNextEvent() {
+
+    ExchangeEvent event = consumerEventQueue.poll();
+    return event == null ? null : intercept(event);
+  }
+
+  private ExchangeEvent intercept(ExchangeEvent event) {
 
     if (reconnectService != null) { // logic here to intercept errors and reconnect..
       reconnectService.intercept(event);
@@ -106,6 +117,31 @@ public abstract class BaseWebSocketExchangeService extends BaseExchangeService i
     return event;
   }
 
+  /**
+   * @param signal Run after each event added to the consumer queue, or null
+   */
+  void setEventSignal(Runnable signal) {
+
+    ((SignallingEventQueue) consumerEventQueue).setSignal(signal);
+  }
+
+  /**
+   * @return The number of events waiting in the consumer queue
+   */
+  public int getPendingEventCount() {
+
+    return consumerEventQueue.size();
+  }
+
+  /**
+   * @return The time in ms the last message was received, including messages whose events do not go to the consumer queue, or 0 if none was
+   */
+  public long getLastMessageTime() {
+
+    WebSocketEventProducer producer = exchangeEventProducer;
+    return producer == null ? 0 : producer.getLastMessageTime();
+  }
+
   @Override
   public void send(String msg) {
 
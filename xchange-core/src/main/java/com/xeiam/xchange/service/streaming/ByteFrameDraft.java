@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_17;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.FrameBuilder;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.Framedata.Opcode;
+
+/**
+ * <p>
+ * RFC 6455 draft that hands complete text frames to the client as bytes
+ * </p>
+ * <p>
+ * Java-WebSocket decodes every text frame into a String before calling onMessage(String). Relabelling complete text frames as binary once they are
+ * read makes them reach onMessage(ByteBuffer) with their UTF-8 payload instead, so listeners can parse the frame bytes directly. Fragmented frames
+ * and control frames are left alone.
+ * </p>
+ * <p>
+ * The payload of a relabelled frame is still validated as UTF-8, without building a String, and malformed text closes the connection (1007) as
+ * the library would. A draft instance is used by one connection only.
+ * </p>
+ */
+class ByteFrameDraft extends Draft_17 {
+
+  private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(
+      CodingErrorAction.REPORT);
+
+  /** Scratch space for the decoder, reused across frames */
+  private final CharBuffer chars = CharBuffer.allocate(1024);
+
+  @Override
+  public List<Framedata> translateFrame(ByteBuffer buffer) throws InvalidDataException {
+
+    List<Framedata> frames = super.translateFrame(buffer);
+    for (Framedata frame : frames) {
+      if (frame.getOpcode() == Opcode.TEXT && frame.isFin() && frame instanceof FrameBuilder) {
+        if (!isValidUtf8(frame.getPayloadData())) {
+          throw new InvalidDataException(CloseFrame.NO_UTF8);
+        }
+        ((FrameBuilder) frame).setOptcode(Opcode.BINARY);
+      }
+    }
+    return frames;
+  }
+
+  private boolean isValidUtf8(ByteBuffer payload) {
+
+    ByteBuffer bytes = payload.duplicate();
+    decoder.reset();
+    while (true) {
+      chars.clear();
+      CoderResult result = decoder.decode(bytes, chars, true);
+      if (result.isError()) {
+        return false;
+      }
+      if (result.isUnderflow()) {
+        chars.clear();
+        return !decoder.flush(chars).isError();
+      }
+    }
+  }
+
+  @Override
+  public Draft copyInstance() {
+
+    return new ByteFrameDraft();
+  }
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+/**
+ * <p>
+ * Enum to provide the following to exchange events:
+ * </p>
+ * <ul>
+ * <li>Control over how much of the raw upstream message is kept alongside the parsed payload</li>
+ * </ul>
+ */
+public enum EventDataMode {
+
+  /**
+   * Keep the raw message String, as {@link DefaultExchangeEvent} does
+   */
+  RETAIN,
+
+  /**
+   * Keep the raw message as UTF-8 bytes (half the size of a String for JSON) and rebuild the String each time {@link ExchangeEvent#getData()} is called
+   */
+  COMPACT,
+
+  /**
+   * Keep only the parsed payload; {@link ExchangeEvent#getData()} returns null
+   */
+  DROP
+
+}
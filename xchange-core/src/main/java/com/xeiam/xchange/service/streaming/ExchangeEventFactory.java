@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.xeiam.xchange.ExchangeException;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Factory to provide the following to streaming services:
+ * </p>
+ * <ul>
+ * <li>Typed events ({@link TickerEvent}, {@link TradeEvent}, {@link DepthEvent}) so that consumers do not need to downcast the payload</li>
+ * <li>Raw message retention according to an {@link EventDataMode}</li>
+ * <li>Optional recycling of event instances: with a pool capacity greater than zero, events handed to {@link #release(ExchangeEvent)} are reused by later create calls</li>
+ * </ul>
+ * <p>
+ * Pooling is only safe if every consumer of an event is done with it when it is released, and each event is released at most once.
+ * </p>
+ */
+public class ExchangeEventFactory {
+
+  private final EventDataMode eventDataMode;
+  private final int poolCapacity;
+
+  private final BlockingQueue<TickerEvent> tickerPool;
+  private final BlockingQueue<TradeEvent> tradePool;
+  private final BlockingQueue<DepthEvent> depthPool;
+  private final BlockingQueue<PayloadExchangeEvent<Object>> eventPool;
+
+  /**
+   * Constructor
+   * 
+   * @param eventDataMode How much of the raw message to keep
+   * @param poolCapacity The number of released events kept for reuse per event class, 0 to disable pooling
+   */
+  public ExchangeEventFactory(EventDataMode eventDataMode, int poolCapacity) {
+
+    Assert.notNull(eventDataMode, "eventDataMode cannot be null");
+    Assert.isTrue(poolCapacity >= 0, "poolCapacity cannot be negative");
+
+    this.eventDataMode = eventDataMode;
+    this.poolCapacity = poolCapacity;
+    this.tickerPool = poolCapacity == 0 ? null : new ArrayBlockingQueue<TickerEvent>(poolCapacity);
+    this.tradePool = poolCapacity == 0 ? null : new ArrayBlockingQueue<TradeEvent>(poolCapacity);
+    this.depthPool = poolCapacity == 0 ? null : new ArrayBlockingQueue<DepthEvent>(poolCapacity);
+    this.eventPool = poolCapacity == 0 ? null : new ArrayBlockingQueue<PayloadExchangeEvent<Object>>(poolCapacity);
+  }
+
+  public TickerEvent createTickerEvent(String data, Ticker ticker) {
+
+    TickerEvent event = take(tickerPool);
+    if (event == null) {
+      event = new TickerEvent();
+    }
+    event.set(ExchangeEventType.TICKER, data, ticker, eventDataMode);
+    return event;
+  }
+
+  public TradeEvent createTradeEvent(String data, Trade trade) {
+
+    TradeEvent event = take(tradePool);
+    if (event == null) {
+      event = new TradeEvent();
+    }
+    event.set(ExchangeEventType.TRADE, data, trade, eventDataMode);
+    return event;
+  }
+
+  public DepthEvent createDepthEvent(String data, OrderBookUpdate orderBookUpdate) {
+
+    DepthEvent event = take(depthPool);
+    if (event == null) {
+      event = new DepthEvent();
+    }
+    event.set(ExchangeEventType.DEPTH, data, orderBookUpdate, eventDataMode);
+    return event;
+  }
+
+  /**
+   * @param exchangeEventType The exchange event type
+   * @param data The raw message content
+   * @param payload The processed message content, can be null
+   * @return An event with an untyped payload
+   */
+  public PayloadExchangeEvent<Object> createEvent(ExchangeEventType exchangeEventType, String data, Object payload) {
+
+    PayloadExchangeEvent<Object> event = take(eventPool);
+    if (event == null) {
+      event = new PayloadExchangeEvent<Object>();
+    }
+    event.set(exchangeEventType, data, payload, eventDataMode);
+    return event;
+  }
+
+  /**
+   * Sets the raw message of an event from the frame bytes, so that no String is built unless the mode is {@link EventDataMode#RETAIN}.
+   * 
+   * @param event An event created with null data
+   * @param message The UTF-8 bytes of the message, left unread
+   * @return The event
+   * @throws ExchangeException if the mode is {@link EventDataMode#RETAIN} and the bytes are not valid UTF-8
+   */
+  public <E extends PayloadExchangeEvent<?>> E setData(E event, ByteBuffer message) throws ExchangeException {
+
+    event.setData(message, eventDataMode);
+    return event;
+  }
+
+  /**
+   * Returns an event to the pool. Events not created by a factory, and all events when pooling is disabled, are ignored.
+   * 
+   * @param event The event the caller is done with
+   */
+  @SuppressWarnings("unchecked")
+  public void release(ExchangeEvent event) {
+
+    if (poolCapacity == 0 || !(event instanceof PayloadExchangeEvent)) {
+      return;
+    }
+    if (event instanceof TickerEvent) {
+      offer(tickerPool, (TickerEvent) event);
+    }
+    else if (event instanceof TradeEvent) {
+      offer(tradePool, (TradeEvent) event);
+    }
+    else if (event instanceof DepthEvent) {
+      offer(depthPool, (DepthEvent) event);
+    }
+    else if (event.getClass() == PayloadExchangeEvent.class) {
+      offer(eventPool, (PayloadExchangeEvent<Object>) event);
+    }
+  }
+
+  private static <E extends PayloadExchangeEvent<?>> E take(BlockingQueue<E> pool) {
+
+    if (pool == null) {
+      return null;
+    }
+    E event = pool.poll();
+    if (event != null) {
+      event.pooled = false;
+    }
+    return event;
+  }
+
+  private static <E extends PayloadExchangeEvent<?>> void offer(BlockingQueue<E> pool, E event) {
+
+    if (event.pooled) {
+      return;
+    }
+    event.clear();
+    event.pooled = true;
+    if (!pool.offer(event)) {
+      event.pooled = false;
+    }
+  }
+
+  public EventDataMode getEventDataMode() {
+
+    return eventDataMode;
+  }
+
+  public int getPoolCapacity() {
+
+    return poolCapacity;
+  }
+
+}
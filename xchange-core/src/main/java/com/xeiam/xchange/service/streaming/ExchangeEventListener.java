@@ -21,6 +21,11 @@
  */
 package com.xeiam.xchange.service.streaming;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+
 import com.xeiam.xchange.ExchangeException;
 
 /**
@@ -34,6 +39,8 @@ import com.xeiam.xchange.ExchangeException;
  */
 public abstract class ExchangeEventListener {
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
 	/**
 	 * Constructor
 	 */
@@ -51,4 +58,38 @@ public abstract class ExchangeEventListener {
 	 *          The exchange event containing the information
 	 */
 	public abstract void handleEvent(ExchangeEvent event) throws ExchangeException;
+
+	/**
+	 * <p>
+	 * Handles a text or binary message frame as UTF-8 bytes, see
+	 * {@link WebSocketEventProducer}. This implementation decodes it
+	 * into a {@link ExchangeEventType#MESSAGE} event for
+	 * {@link #handleEvent(ExchangeEvent)}; override it to parse the bytes
+	 * directly instead.
+	 * </p>
+	 * 
+	 * @param message
+	 *          The message, only valid for the duration of the call
+	 */
+	public void handleMessage(ByteBuffer message) throws ExchangeException {
+
+		handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, decode(message)));
+	}
+
+	/**
+	 * @param message
+	 *          The UTF-8 bytes of a message, left unread
+	 * @return The message as a String
+	 * @throws ExchangeException
+	 *           if the bytes are not valid UTF-8; they are never replaced
+	 */
+	protected static String decode(ByteBuffer message) throws ExchangeException {
+
+		try {
+			return UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT).decode(message.duplicate())
+					.toString();
+		} catch (CharacterCodingException e) {
+			throw new ExchangeException("Message is not valid UTF-8", e);
+		}
+	}
 }
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * Exchange event with a typed payload, created by an {@link ExchangeEventFactory}
+ * </p>
+ * <ul>
+ * <li>The raw message is kept according to the factory's {@link EventDataMode}</li>
+ * <li>Instances may be recycled by the factory once released, so they must not be held on to after {@link ExchangeEventFactory#release(ExchangeEvent)}</li>
+ * </ul>
+ * 
+ * @param <T> The payload type
+ */
+public class PayloadExchangeEvent<T> implements ExchangeEvent {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private ExchangeEventType exchangeEventType;
+  private T payload;
+
+  /** The raw message as a String, as UTF-8 bytes, or null */
+  private Object data;
+
+  /** Set while the instance sits in a pool; written by the thread releasing it and read by the one taking it */
+  /* package */volatile boolean pooled;
+
+  /* package */PayloadExchangeEvent() {
+
+  }
+
+  /* package */void set(ExchangeEventType exchangeEventType, String data, T payload, EventDataMode eventDataMode) {
+
+    this.exchangeEventType = exchangeEventType;
+    this.payload = payload;
+    if (data == null || eventDataMode == EventDataMode.DROP) {
+      this.data = null;
+    }
+    else if (eventDataMode == EventDataMode.COMPACT) {
+      this.data = data.getBytes(UTF_8);
+    }
+    else {
+      this.data = data;
+    }
+  }
+
+  /* package */void setData(ByteBuffer message, EventDataMode eventDataMode) {
+
+    if (eventDataMode == EventDataMode.DROP) {
+      this.data = null;
+    }
+    else if (eventDataMode == EventDataMode.COMPACT) {
+      byte[] bytes = new byte[message.remaining()];
+      message.duplicate().get(bytes);
+      this.data = bytes;
+    }
+    else {
+      this.data = ExchangeEventListener.decode(message);
+    }
+  }
+
+  /* package */void clear() {
+
+    this.exchangeEventType = null;
+    this.payload = null;
+    this.data = null;
+  }
+
+  @Override
+  public T getPayload() {
+
+    return payload;
+  }
+
+  /**
+   * @return The raw message, rebuilt from bytes in {@link EventDataMode#COMPACT} mode, or null in {@link EventDataMode#DROP} mode
+   */
+  @Override
+  public String getData() {
+
+    if (data instanceof byte[]) {
+      return new String((byte[]) data, UTF_8);
+    }
+    return (String) data;
+  }
+
+  /**
+   * @return true if the raw message was kept
+   */
+  public boolean hasData() {
+
+    return data != null;
+  }
+
+  @Override
+  public ExchangeEventType getEventType() {
+
+    return exchangeEventType;
+  }
+
+  @Override
+  public String toString() {
+
+    return getClass().getSimpleName() + " [type=" + exchangeEventType + ", payload=" + payload + "]";
+  }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Value object to provide the following
+ * </p>
+ * <ul>
+ * <li>Access to streaming data configuration for exchanges that are streamed by polling their REST API, see {@link PollingStreamingExchangeService}</li>
+ * </ul>
+ */
+public class PollingStreamingConfiguration implements ExchangeStreamingConfiguration {
+
+  private final int maxReconnectAttempts;
+  private final int reconnectWaitTimeInMs;
+  private final int minPollIntervalInMs;
+  private final int maxPollIntervalInMs;
+  private final boolean pollTicker;
+  private final boolean pollDepth;
+  private final boolean pollTrades;
+  private final List<CurrencyPair> currencyPairs;
+
+  /**
+   * Constructor
+   * 
+   * @param maxReconnectAttempts - the number of consecutive failed polls after which the service gives up and emits a DISCONNECT event
+   * @param reconnectWaitTimeInMs - the delay before the next poll after a failed one
+   * @param minPollIntervalInMs - the poll interval while the market is changing
+   * @param maxPollIntervalInMs - the poll interval is relaxed up to this value while nothing changes
+   * @param pollTicker - emit TICKER events
+   * @param pollDepth - emit DEPTH events, diffed from the partial order book
+   * @param pollTrades - emit TRADE events
+   * @param currencyPairs - the currency pairs to poll
+   */
+  public PollingStreamingConfiguration(int maxReconnectAttempts, int reconnectWaitTimeInMs, int minPollIntervalInMs, int maxPollIntervalInMs, boolean pollTicker, boolean pollDepth,
+      boolean pollTrades, CurrencyPair... currencyPairs) {
+
+    Assert.isTrue(minPollIntervalInMs > 0, "minPollIntervalInMs must be positive");
+    Assert.isTrue(maxPollIntervalInMs >= minPollIntervalInMs, "maxPollIntervalInMs cannot be less than minPollIntervalInMs");
+    Assert.isTrue(currencyPairs.length > 0, "at least one currency pair is required");
+
+    this.maxReconnectAttempts = maxReconnectAttempts;
+    this.reconnectWaitTimeInMs = reconnectWaitTimeInMs;
+    this.minPollIntervalInMs = minPollIntervalInMs;
+    this.maxPollIntervalInMs = maxPollIntervalInMs;
+    this.pollTicker = pollTicker;
+    this.pollDepth = pollDepth;
+    this.pollTrades = pollTrades;
+    this.currencyPairs = Collections.unmodifiableList(Arrays.asList(currencyPairs.clone()));
+  }
+
+  @Override
+  public int getMaxReconnectAttempts() {
+
+    return maxReconnectAttempts;
+  }
+
+  @Override
+  public int getReconnectWaitTimeInMs() {
+
+    return reconnectWaitTimeInMs;
+  }
+
+  /**
+   * A poll is always made at least this often
+   */
+  @Override
+  public int getTimeoutInMs() {
+
+    return maxPollIntervalInMs;
+  }
+
+  @Override
+  public boolean isEncryptedChannel() {
+
+    return false;
+  }
+
+  public int getMinPollIntervalInMs() {
+
+    return minPollIntervalInMs;
+  }
+
+  public int getMaxPollIntervalInMs() {
+
+    return maxPollIntervalInMs;
+  }
+
+  public boolean isPollTicker() {
+
+    return pollTicker;
+  }
+
+  public boolean isPollDepth() {
+
+    return pollDepth;
+  }
+
+  public boolean isPollTrades() {
+
+    return pollTrades;
+  }
+
+  public List<CurrencyPair> getCurrencyPairs() {
+
+    return currencyPairs;
+  }
+
+}
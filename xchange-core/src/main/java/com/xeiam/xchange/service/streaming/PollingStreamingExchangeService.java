@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xeiam.xchange.ExchangeException;
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.NotAvailableFromExchangeException;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.service.polling.PollingMarketDataService;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Streaming market data service built on a {@link PollingMarketDataService}, for exchanges without a streaming API
+ * </p>
+ * <ul>
+ * <li>Polls the configured currency pairs on an adaptive schedule: faster while the market changes, slower while it does not</li>
+ * <li>Emits only the changes between consecutive snapshots - DEPTH events with an {@link OrderBookUpdate} per changed level, TRADE events per new {@link Trade} and TICKER events when
+ * the ticker changed</li>
+ * <li>The first order book is emitted in full as updates against an empty book; trades already on the first snapshot are not emitted</li>
+ * </ul>
+ */
+public class PollingStreamingExchangeService extends BaseExchangeService implements StreamingExchangeService {
+
+  private final Logger log = LoggerFactory.getLogger(PollingStreamingExchangeService.class);
+
+  /**
+   * The event queue for the consumer
+   */
+  protected final BlockingQueue<ExchangeEvent> consumerEventQueue = new LinkedBlockingQueue<ExchangeEvent>(1024);
+
+  private final PollingMarketDataService pollingMarketDataService;
+  private final PollingStreamingConfiguration configuration;
+
+  private final Map<CurrencyPair, OrderBook> orderBooks = new HashMap<CurrencyPair, OrderBook>();
+  private final Map<CurrencyPair, Ticker> tickers = new HashMap<CurrencyPair, Ticker>();
+  private final Map<CurrencyPair, Trade> lastTrades = new HashMap<CurrencyPair, Trade>();
+
+  private ScheduledExecutorService executorService;
+  private long pollIntervalInMs;
+  private int failedPolls;
+
+  /**
+   * Constructor
+   * 
+   * @param exchangeSpecification The {@link ExchangeSpecification}
+   * @param pollingMarketDataService The polling service to stream from
+   * @param configuration The polling configuration
+   */
+  public PollingStreamingExchangeService(ExchangeSpecification exchangeSpecification, PollingMarketDataService pollingMarketDataService, PollingStreamingConfiguration configuration) {
+
+    super(exchangeSpecification);
+
+    Assert.notNull(pollingMarketDataService, "pollingMarketDataService cannot be null");
+    Assert.notNull(configuration, "configuration cannot be null");
+
+    this.pollingMarketDataService = pollingMarketDataService;
+    this.configuration = configuration;
+  }
+
+  @Override
+  public void connect() {
+
+    ScheduledExecutorService scheduler;
+    synchronized (this) {
+      if (executorService != null) {
+        return;
+      }
+      orderBooks.clear();
+      tickers.clear();
+      lastTrades.clear();
+      pollIntervalInMs = configuration.getMinPollIntervalInMs();
+      failedPolls = 0;
+
+      executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+          Thread thread = new Thread(runnable, "polling-stream-" + exchangeSpecification.getExchangeName());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      scheduler = executorService;
+    }
+    // outside the lock, as the first poll is scheduled only after the CONNECT event
+    consumerEventQueue.offer(new DefaultExchangeEvent(ExchangeEventType.CONNECT, null));
+    synchronized (this) {
+      if (scheduler == executorService) {
+        schedule(scheduler, 0);
+      }
+    }
+  }
+
+  /**
+   * Stops polling, waiting for a poll in progress, so the DISCONNECT event is the last one
+   */
+  @Override
+  public void disconnect() {
+
+    stop(true);
+    log.debug("disconnect() called");
+  }
+
+  /**
+   * @param awaitPoll false when called by the poll itself
+   */
+  private void stop(boolean awaitPoll) {
+
+    ScheduledExecutorService scheduler;
+    synchronized (this) {
+      if (executorService == null) {
+        return;
+      }
+      scheduler = executorService;
+      executorService = null;
+      scheduler.shutdownNow();
+    }
+    if (awaitPoll) {
+      try {
+        if (!scheduler.awaitTermination(configuration.getTimeoutInMs(), TimeUnit.MILLISECONDS)) {
+          log.warn("Polling {} did not stop within {} ms", exchangeSpecification.getExchangeName(), configuration.getTimeoutInMs());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    consumerEventQueue.offer(new DefaultExchangeEvent(ExchangeEventType.DISCONNECT, null));
+  }
+
+  @Override
+  public ExchangeEvent getNextEvent() throws InterruptedException {
+
+    return consumerEventQueue.take();
+  }
+
+  /**
+   * There is no connection to send messages on
+   */
+  @Override
+  public void send(String msg) {
+
+    throw new NotAvailableFromExchangeException();
+  }
+
+  private void schedule(final ScheduledExecutorService scheduler, long delayInMs) {
+
+    scheduler.schedule(new Runnable() {
+
+      @Override
+      public void run() {
+
+        long delay = poll();
+        synchronized (PollingStreamingExchangeService.this) {
+          if (scheduler == executorService && delay >= 0) {
+            schedule(scheduler, delay);
+          }
+        }
+      }
+    }, delayInMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Polls every configured pair once
+   * 
+   * @return The delay until the next poll, or -1 to stop polling
+   */
+  private long poll() {
+
+    int changes = 0;
+    try {
+      for (CurrencyPair currencyPair : configuration.getCurrencyPairs()) {
+        changes += poll(currencyPair);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    } catch (Exception e) {
+      log.warn("Polling {} failed: {}", exchangeSpecification.getExchangeName(), e.getMessage());
+      failedPolls++;
+      if (!putEvent(new DefaultExchangeEvent(ExchangeEventType.ERROR, e.getMessage(), e))) {
+        return -1;
+      }
+      if (failedPolls > configuration.getMaxReconnectAttempts()) {
+        log.error("Giving up polling {} after {} failures", exchangeSpecification.getExchangeName(), failedPolls);
+        stop(false);
+        return -1;
+      }
+      return configuration.getReconnectWaitTimeInMs();
+    }
+
+    failedPolls = 0;
+    if (changes > 0) {
+      pollIntervalInMs = Math.max(configuration.getMinPollIntervalInMs(), pollIntervalInMs / 2);
+    }
+    else {
+      pollIntervalInMs = Math.min(configuration.getMaxPollIntervalInMs(), pollIntervalInMs * 3 / 2 + 1);
+    }
+    return pollIntervalInMs;
+  }
+
+  /**
+   * @return The number of events emitted
+   */
+  private int poll(CurrencyPair currencyPair) throws Exception {
+
+    String tradableIdentifier = currencyPair.baseCurrency;
+    String currency = currencyPair.counterCurrency;
+    int events = 0;
+
+    if (configuration.isPollTicker()) {
+      Ticker ticker = pollingMarketDataService.getTicker(tradableIdentifier, currency);
+      if (ticker != null && SnapshotDiffs.isChanged(tickers.get(currencyPair), ticker)) {
+        tickers.put(currencyPair, ticker);
+        put(new DefaultExchangeEvent(ExchangeEventType.TICKER, null, ticker));
+        events++;
+      }
+    }
+
+    if (configuration.isPollDepth()) {
+      OrderBook orderBook = pollingMarketDataService.getPartialOrderBook(tradableIdentifier, currency);
+      if (orderBook != null) {
+        List<OrderBookUpdate> updates = SnapshotDiffs.diff(orderBooks.get(currencyPair), orderBook, tradableIdentifier, currency);
+        orderBooks.put(currencyPair, orderBook);
+        for (OrderBookUpdate update : updates) {
+          put(new DefaultExchangeEvent(ExchangeEventType.DEPTH, null, update));
+        }
+        events += updates.size();
+      }
+    }
+
+    if (configuration.isPollTrades()) {
+      Trades trades = pollingMarketDataService.getTrades(tradableIdentifier, currency);
+      if (trades != null && !trades.getTrades().isEmpty()) {
+        Trade lastSeen = lastTrades.get(currencyPair);
+        Trade latest = lastSeen;
+        for (Trade trade : lastSeen == null ? trades.getTrades() : SnapshotDiffs.newTrades(lastSeen, trades)) {
+          if (lastSeen != null) {
+            put(new DefaultExchangeEvent(ExchangeEventType.TRADE, null, trade));
+            events++;
+          }
+          if (latest == null || SnapshotDiffs.isAfter(trade, latest)) {
+            latest = trade;
+          }
+        }
+        lastTrades.put(currencyPair, latest);
+      }
+    }
+
+    return events;
+  }
+
+  private void put(ExchangeEvent event) throws InterruptedException {
+
+    consumerEventQueue.put(event);
+  }
+
+  private boolean putEvent(ExchangeEvent event) {
+
+    try {
+      put(event);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+}
@@ -21,13 +21,24 @@
  */
 package com.xeiam.xchange.service.streaming;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * <p>
+ * Watches the events of a streaming service and reconnects it on errors, disconnects and timeouts
+ * </p>
+ * <ul>
+ * <li>By default the service waits and reconnects on the consumer thread, and times out on a thread of its own, started with the first event</li>
+ * <li>With a shared scheduler (see {@link StreamingServiceSupervisor}) both happen on the scheduler and no thread is started</li>
+ * </ul>
+ * 
  * @author alexnugent
  */
 public class ReconnectService {
@@ -40,8 +51,13 @@ public class ReconnectService {
 
   private int numConnectionAttempts = 0;
 
-  Timer timer = new Timer();
-  TimerTask reconnectTask = new ReconnectTask();
+  private ScheduledExecutorService scheduler;
+  private boolean sharedScheduler = false;
+  private ScheduledFuture<?> timeoutTask;
+  private ScheduledFuture<?> reconnectTask;
+
+  private volatile boolean enabled = true;
+  private volatile boolean terminated = false;
 
   /**
    * Constructor
@@ -54,51 +70,187 @@ public class ReconnectService {
     this.exchangeStreamingConfiguration = exchangeStreamingConfiguration;
   }
 
+  /**
+   * Runs the timeouts and reconnects on the given scheduler instead of a thread of this service
+   * 
+   * @param scheduler A scheduler shared with other services, or null to go back to a thread of this service
+   */
+  public synchronized void setScheduler(ScheduledExecutorService scheduler) {
+
+    cancelTasks();
+    if (this.scheduler != null && !sharedScheduler) {
+      this.scheduler.shutdownNow();
+    }
+    this.scheduler = scheduler;
+    this.sharedScheduler = scheduler != null;
+  }
+
+  /**
+   * @param enabled false to cancel any pending timeout or reconnect and ignore events until enabled again, e.g. around a requested disconnect
+   */
+  public synchronized void setEnabled(boolean enabled) {
+
+    this.enabled = enabled;
+    if (enabled) {
+      terminated = false;
+      numConnectionAttempts = 0;
+    }
+    else {
+      cancelTasks();
+    }
+  }
+
   public void intercept(ExchangeEvent exchangeEvent) {
 
-    reconnectTask.cancel();
-    reconnectTask = new ReconnectTask();
-    timer.schedule(reconnectTask, exchangeStreamingConfiguration.getTimeoutInMs());
+    if (!enabled || terminated) {
+      return;
+    }
+    scheduleTimeout();
 
     if (exchangeEvent.getEventType() == ExchangeEventType.ERROR || exchangeEvent.getEventType() == ExchangeEventType.DISCONNECT) {
+      if (isSharedScheduler()) {
+        scheduleReconnect();
+        return;
+      }
       try {
         Thread.sleep(exchangeStreamingConfiguration.getReconnectWaitTimeInMs());
       } catch (InterruptedException e) {
         e.printStackTrace();
       }
-      reconnect();
+      if (reconnect()) {
+        // ends the consumer loop
+        Thread.currentThread().interrupt();
+      }
     }
     else if (exchangeEvent.getEventType() == ExchangeEventType.CONNECT) {
-      numConnectionAttempts = 0;
+      synchronized (this) {
+        numConnectionAttempts = 0;
+      }
     }
 
   }
 
-  private void reconnect() {
+  /**
+   * @return true if the reconnection attempts were exhausted and the service was disconnected for good
+   */
+  private boolean reconnect() {
 
-    log.debug("ExchangeType Error. Attempting reconnect " + numConnectionAttempts + " of " + exchangeStreamingConfiguration.getMaxReconnectAttempts());
+    boolean giveUp;
+    synchronized (this) {
+      if (!enabled) {
+        return false;
+      }
+      log.debug("ExchangeType Error. Attempting reconnect " + numConnectionAttempts + " of " + exchangeStreamingConfiguration.getMaxReconnectAttempts());
 
-    if (numConnectionAttempts >= exchangeStreamingConfiguration.getMaxReconnectAttempts()) {
-      log.debug("Terminating reconnection attempts.");
-      streamingExchangeService.disconnect();
-      Thread.currentThread().interrupt();
-      return;
+      if (numConnectionAttempts >= exchangeStreamingConfiguration.getMaxReconnectAttempts()) {
+        log.debug("Terminating reconnection attempts.");
+        terminated = true;
+        cancelTasks();
+      }
+      else {
+        numConnectionAttempts++;
+      }
+      giveUp = terminated;
     }
     streamingExchangeService.disconnect();
+    if (giveUp) {
+      return true;
+    }
     streamingExchangeService.connect();
-    numConnectionAttempts++;
+    return false;
+  }
+
+  private synchronized void scheduleTimeout() {
+
+    if (timeoutTask != null) {
+      timeoutTask.cancel(false);
+    }
+    timeoutTask = getScheduler().schedule(new Runnable() {
+
+      @Override
+      public void run() {
 
+        log.debug("Time out!");
+        reconnect();
+      }
+    }, exchangeStreamingConfiguration.getTimeoutInMs(), TimeUnit.MILLISECONDS);
   }
 
-  class ReconnectTask extends TimerTask {
+  private synchronized void scheduleReconnect() {
 
-    @Override
-    public void run() {
+    if (reconnectTask != null && !reconnectTask.isDone()) {
+      return;
+    }
+    reconnectTask = scheduler.schedule(new Runnable() {
 
-      log.debug("Time out!");
-      timer.purge();
-      reconnect();
+      @Override
+      public void run() {
+
+        synchronized (ReconnectService.this) {
+          // the events of this attempt may schedule the next one
+          reconnectTask = null;
+        }
+        reconnect();
+      }
+    }, exchangeStreamingConfiguration.getReconnectWaitTimeInMs(), TimeUnit.MILLISECONDS);
+  }
+
+  private void cancelTasks() {
+
+    if (timeoutTask != null) {
+      timeoutTask.cancel(false);
+      timeoutTask = null;
+    }
+    if (reconnectTask != null) {
+      reconnectTask.cancel(false);
+      reconnectTask = null;
     }
   }
 
+  private synchronized boolean isSharedScheduler() {
+
+    return sharedScheduler;
+  }
+
+  private synchronized ScheduledExecutorService getScheduler() {
+
+    if (scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+
+          Thread thread = new Thread(runnable, "reconnect-service");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return scheduler;
+  }
+
+  /**
+   * @return The number of reconnection attempts since the last CONNECT event
+   */
+  public synchronized int getConnectionAttempts() {
+
+    return numConnectionAttempts;
+  }
+
+  /**
+   * @return true once the reconnection attempts are exhausted
+   */
+  public boolean isTerminated() {
+
+    return terminated;
+  }
+
+  /**
+   * @return true while a reconnect is scheduled on a shared scheduler
+   */
+  public synchronized boolean isReconnectPending() {
+
+    return reconnectTask != null && !reconnectTask.isDone();
+  }
+
 }
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Consumer event queue that runs a signal after each added event, so that a shared dispatcher can drain it instead of a dedicated consumer thread
+ * </p>
+ */
+final class SignallingEventQueue extends LinkedBlockingQueue<ExchangeEvent> {
+
+  private static final long serialVersionUID = 1L;
+
+  private transient volatile Runnable signal;
+
+  SignallingEventQueue(int capacity) {
+
+    super(capacity);
+  }
+
+  /**
+   * @param signal Run on the producing thread after each added event, or null
+   */
+  void setSignal(Runnable signal) {
+
+    this.signal = signal;
+  }
+
+  private void signal() {
+
+    Runnable current = signal;
+    if (current != null) {
+      current.run();
+    }
+  }
+
+  @Override
+  public void put(ExchangeEvent event) throws InterruptedException {
+
+    super.put(event);
+    signal();
+  }
+
+  @Override
+  public boolean offer(ExchangeEvent event) {
+
+    boolean added = super.offer(event);
+    if (added) {
+      signal();
+    }
+    return added;
+  }
+
+  @Override
+  public boolean offer(ExchangeEvent event, long timeout, TimeUnit unit) throws InterruptedException {
+
+    boolean added = super.offer(event, timeout, unit);
+    if (added) {
+      signal();
+    }
+    return added;
+  }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.utils.Timestamps;
+
+/**
+ * <p>
+ * Utilities to turn consecutive polled snapshots into the changes between them
+ * </p>
+ * <ul>
+ * <li>Order book sides are compared with a single merge-walk over the price sorted levels</li>
+ * <li>Trades are compared against the last trade seen, by id where the exchange provides one and by timestamp otherwise</li>
+ * </ul>
+ */
+public final class SnapshotDiffs {
+
+  /**
+   * private Constructor
+   */
+  private SnapshotDiffs() {
+
+  }
+
+  /**
+   * @param previous The previous snapshot, null if there is none
+   * @param current The current snapshot
+   * @param tradableIdentifier The tradable identifier (e.g. BTC in BTC/USD)
+   * @param currency The transaction currency (e.g. USD in BTC/USD)
+   * @return One update per changed price level, with a total volume of zero for levels that disappeared
+   */
+  public static List<OrderBookUpdate> diff(OrderBook previous, OrderBook current, String tradableIdentifier, String currency) {
+
+    Date timestamp = current.getTimeStamp() == null ? new Date() : current.getTimeStamp();
+    List<OrderBookUpdate> updates = new ArrayList<OrderBookUpdate>();
+    diff(OrderType.ASK, previous == null ? null : previous.getAsks(), current.getAsks(), tradableIdentifier, currency, timestamp, updates);
+    diff(OrderType.BID, previous == null ? null : previous.getBids(), current.getBids(), tradableIdentifier, currency, timestamp, updates);
+    return updates;
+  }
+
+  /**
+   * Both sides are sorted best price first, which is ascending for asks and descending for bids
+   */
+  private static void diff(OrderType type, List<LimitOrder> previous, List<LimitOrder> current, String tradableIdentifier, String currency, Date timestamp, List<OrderBookUpdate> updates) {
+
+    Levels before = new Levels(previous);
+    Levels after = new Levels(current);
+    int direction = type == OrderType.ASK ? 1 : -1;
+
+    int i = 0;
+    int j = 0;
+    while (i < before.size || j < after.size) {
+      int compare;
+      if (i == before.size) {
+        compare = 1;
+      }
+      else if (j == after.size) {
+        compare = -1;
+      }
+      else {
+        compare = direction * before.prices[i].getAmount().compareTo(after.prices[j].getAmount());
+      }
+
+      if (compare < 0) {
+        // level removed
+        updates.add(new OrderBookUpdate(type, before.amounts[i].negate(), tradableIdentifier, currency, before.prices[i], timestamp, BigDecimal.ZERO));
+        i++;
+      }
+      else if (compare > 0) {
+        // level added
+        updates.add(new OrderBookUpdate(type, after.amounts[j], tradableIdentifier, currency, after.prices[j], timestamp, after.amounts[j]));
+        j++;
+      }
+      else {
+        if (before.amounts[i].compareTo(after.amounts[j]) != 0) {
+          updates.add(new OrderBookUpdate(type, after.amounts[j].subtract(before.amounts[i]), tradableIdentifier, currency, after.prices[j], timestamp, after.amounts[j]));
+        }
+        i++;
+        j++;
+      }
+    }
+  }
+
+  /**
+   * @param lastSeen The most recent trade already seen, null if there is none
+   * @param current The current snapshot
+   * @return The trades in the snapshot that are more recent than the last seen trade, oldest first
+   */
+  public static List<Trade> newTrades(Trade lastSeen, Trades current) {
+
+    List<Trade> trades = current.getTrades();
+    if (lastSeen == null) {
+      return new ArrayList<Trade>(trades);
+    }
+
+    List<Trade> newTrades = new ArrayList<Trade>();
+    for (Trade trade : trades) {
+      if (isAfter(trade, lastSeen)) {
+        newTrades.add(trade);
+      }
+    }
+    return newTrades;
+  }
+
+  /**
+   * @return true if the first trade is more recent than the second, by id where both have one and by timestamp otherwise
+   */
+  public static boolean isAfter(Trade trade, Trade other) {
+
+    if (trade.getId() > 0 && other.getId() > 0) {
+      return trade.getId() > other.getId();
+    }
+    return trade.getTimestampMicros() != Timestamps.NONE && other.getTimestampMicros() != Timestamps.NONE && trade.getTimestampMicros() > other.getTimestampMicros();
+  }
+
+  /**
+   * @param previous The previous snapshot, null if there is none
+   * @param current The current snapshot
+   * @return true if any price or the volume differ
+   */
+  public static boolean isChanged(Ticker previous, Ticker current) {
+
+    if (previous == null) {
+      return true;
+    }
+    return !isEqual(previous.getLast(), current.getLast()) || !isEqual(previous.getBid(), current.getBid()) || !isEqual(previous.getAsk(), current.getAsk())
+        || !isEqual(previous.getHigh(), current.getHigh()) || !isEqual(previous.getLow(), current.getLow())
+        || (previous.getVolume() == null ? current.getVolume() != null : current.getVolume() == null || previous.getVolume().compareTo(current.getVolume()) != 0);
+  }
+
+  private static boolean isEqual(BigMoney a, BigMoney b) {
+
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return a.getCurrencyUnit().equals(b.getCurrencyUnit()) && a.getAmount().compareTo(b.getAmount()) == 0;
+  }
+
+  /**
+   * One side of a book as parallel arrays, with the amounts of consecutive orders at the same price summed
+   */
+  private static final class Levels {
+
+    private final BigMoney[] prices;
+    private final BigDecimal[] amounts;
+    private int size = 0;
+
+    Levels(List<LimitOrder> orders) {
+
+      int capacity = orders == null ? 0 : orders.size();
+      prices = new BigMoney[capacity];
+      amounts = new BigDecimal[capacity];
+      if (orders == null) {
+        return;
+      }
+      for (LimitOrder order : orders) {
+        if (size > 0 && prices[size - 1].getAmount().compareTo(order.getLimitPrice().getAmount()) == 0) {
+          amounts[size - 1] = amounts[size - 1].add(order.getTradableAmount());
+        }
+        else {
+          prices[size] = order.getLimitPrice();
+          amounts[size] = order.getTradableAmount();
+          size++;
+        }
+      }
+    }
+  }
+
+}
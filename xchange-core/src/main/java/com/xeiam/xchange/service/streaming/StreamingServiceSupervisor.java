@@ -0,0 +1,547 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Runs many websocket streaming services on a bounded number of shared threads
+ * </p>
+ * <ul>
+ * <li>Events are handed to each feed's {@link ExchangeEventListener} by a shared dispatcher pool instead of a consumer thread per service; the events of one feed are handled
+ * one at a time and in order</li>
+ * <li>Timeouts and reconnects of all {@link ReconnectService}s run on one shared scheduler instead of a timer thread per service</li>
+ * <li>Services are connected together (optionally staggered) and disconnected together</li>
+ * <li>The health of every feed is tracked from its events, see {@link State}</li>
+ * </ul>
+ * <p>
+ * Each websocket still has its own socket thread, which the websocket client starts per connection. Do not call {@link StreamingExchangeService#getNextEvent()} on a
+ * supervised service.
+ * </p>
+ */
+public final class StreamingServiceSupervisor {
+
+  /**
+   * The health of a feed
+   */
+  public enum State {
+
+    /** Not started, or stopped */
+    STOPPED,
+
+    /** Connecting for the first time */
+    CONNECTING,
+
+    /** Connected and receiving events */
+    CONNECTED,
+
+    /** Connected, but without events for longer than the lag threshold, or with a backlog of events */
+    LAGGING,
+
+    /** Disconnected or failed; the service is reconnecting */
+    RECONNECTING,
+
+    /** The connection failed for good */
+    FAILED
+  }
+
+  private final Logger log = LoggerFactory.getLogger(StreamingServiceSupervisor.class);
+
+  /** Events handled per dispatch before the feed yields its thread to other feeds */
+  private static final int BATCH_SIZE = 64;
+
+  /** A consumer queue holding this many events counts as lagging */
+  private static final int BACKLOG_THRESHOLD = 512;
+
+  private final ExecutorService dispatcher;
+  private final ScheduledExecutorService scheduler;
+  private final long lagThresholdInMs;
+
+  /** Guarded by this, as is the connection state of every feed */
+  private final Map<String, Feed> feeds = new LinkedHashMap<String, Feed>();
+  private boolean started = false;
+  private boolean shutdown = false;
+
+  /**
+   * Constructor
+   * 
+   * @param dispatcherThreads The number of threads handing events to the listeners of all feeds
+   * @param schedulerThreads The number of threads for connects, timeouts and reconnects of all feeds
+   * @param lagThresholdInMs The time without events after which a connected feed is lagging
+   */
+  public StreamingServiceSupervisor(int dispatcherThreads, int schedulerThreads, long lagThresholdInMs) {
+
+    Assert.isTrue(dispatcherThreads > 0, "dispatcherThreads must be positive");
+    Assert.isTrue(schedulerThreads > 0, "schedulerThreads must be positive");
+    Assert.isTrue(lagThresholdInMs > 0, "lagThresholdInMs must be positive");
+
+    this.dispatcher = Executors.newFixedThreadPool(dispatcherThreads, new SupervisorThreadFactory("streaming-supervisor-dispatcher-"));
+    this.scheduler = Executors.newScheduledThreadPool(schedulerThreads, new SupervisorThreadFactory("streaming-supervisor-scheduler-"));
+    this.lagThresholdInMs = lagThresholdInMs;
+  }
+
+  /**
+   * Adds a feed, connecting it right away if the supervisor is started
+   * 
+   * @param name A unique name of the feed
+   * @param service The service, not yet connected
+   * @param listener Receives the events of the service, on a dispatcher thread
+   */
+  public synchronized void register(String name, BaseWebSocketExchangeService service, ExchangeEventListener listener) {
+
+    Assert.notNull(name, "name cannot be null");
+    Assert.notNull(service, "service cannot be null");
+    Assert.notNull(listener, "listener cannot be null");
+    Assert.isTrue(!shutdown, "The supervisor is shut down");
+    Assert.isTrue(!feeds.containsKey(name), "Duplicate feed name " + name);
+
+    Feed feed = new Feed(name, service, listener);
+    feeds.put(name, feed);
+    if (service.reconnectService != null) {
+      service.reconnectService.setScheduler(scheduler);
+    }
+    service.setEventSignal(feed);
+    if (started) {
+      scheduleConnect(feed, 0);
+    }
+  }
+
+  /**
+   * Disconnects and removes a feed; the service is left to its own threads again
+   * 
+   * @param name The name of the feed
+   * @return false if there is no such feed
+   */
+  public boolean unregister(String name) {
+
+    Feed feed;
+    synchronized (this) {
+      feed = feeds.remove(name);
+      if (feed == null) {
+        return false;
+      }
+      feed.remove();
+      feed.stop();
+      feed.service.setEventSignal(null);
+      notifyAll();
+    }
+    feed.disconnect();
+    if (feed.service.reconnectService != null) {
+      // back to the service's own timer, reconnecting as an unsupervised service does
+      feed.service.reconnectService.setScheduler(null);
+      feed.service.reconnectService.setEnabled(true);
+    }
+    return true;
+  }
+
+  /**
+   * Connects all feeds
+   * 
+   * @param connectIntervalInMs The delay between the connects of consecutive feeds, 0 to connect all at once
+   */
+  public synchronized void start(long connectIntervalInMs) {
+
+    Assert.isTrue(!shutdown, "The supervisor is shut down");
+    Assert.isTrue(connectIntervalInMs >= 0, "connectIntervalInMs cannot be negative");
+
+    if (started) {
+      return;
+    }
+    started = true;
+    int i = 0;
+    for (Feed feed : feeds.values()) {
+      scheduleConnect(feed, i++ * connectIntervalInMs);
+    }
+  }
+
+  /**
+   * Waits for all feeds to connect
+   * 
+   * @param timeout
+   * @param unit
+   * @return false if not all feeds were connected within the timeout
+   * @throws InterruptedException
+   */
+  public synchronized boolean awaitConnected(long timeout, TimeUnit unit) throws InterruptedException {
+
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!isConnected()) {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+  /**
+   * Disconnects all feeds; the supervisor can be started again
+   */
+  public void stop() {
+
+    List<Feed> stopped;
+    synchronized (this) {
+      if (!started) {
+        return;
+      }
+      started = false;
+      stopped = new ArrayList<Feed>(feeds.values());
+      for (Feed feed : stopped) {
+        feed.stop();
+      }
+      notifyAll();
+    }
+    // without the lock, which the dispatcher needs for the events the disconnects produce
+    for (Feed feed : stopped) {
+      feed.disconnect();
+    }
+  }
+
+  /**
+   * Disconnects all feeds and stops the shared threads; the supervisor cannot be used afterwards
+   * 
+   * @param timeout The time to wait for events being handled
+   * @param unit
+   * @return false if the threads did not terminate within the timeout
+   * @throws InterruptedException
+   */
+  public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+
+    stop();
+    synchronized (this) {
+      shutdown = true;
+    }
+    scheduler.shutdownNow();
+    dispatcher.shutdown();
+    return dispatcher.awaitTermination(timeout, unit) && scheduler.awaitTermination(timeout, unit);
+  }
+
+  private void scheduleConnect(final Feed feed, long delayInMs) {
+
+    feed.setState(State.CONNECTING);
+    feed.connectTask = scheduler.schedule(new Runnable() {
+
+      @Override
+      public void run() {
+
+        feed.connect();
+      }
+    }, delayInMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param name The name of the feed
+   * @return The health of the feed, or null if there is no such feed
+   */
+  public synchronized State getState(String name) {
+
+    Feed feed = feeds.get(name);
+    return feed == null ? null : feed.getState();
+  }
+
+  /**
+   * @return The health of every feed, in registration order
+   */
+  public synchronized Map<String, State> getStates() {
+
+    Map<String, State> states = new LinkedHashMap<String, State>();
+    for (Feed feed : feeds.values()) {
+      states.put(feed.name, feed.getState());
+    }
+    return states;
+  }
+
+  /**
+   * @return The number of feeds in each state, including the states without any feed
+   */
+  public synchronized Map<State, Integer> getStateCounts() {
+
+    Map<State, Integer> counts = new EnumMap<State, Integer>(State.class);
+    for (State state : State.values()) {
+      counts.put(state, 0);
+    }
+    for (Feed feed : feeds.values()) {
+      State state = feed.getState();
+      counts.put(state, counts.get(state) + 1);
+    }
+    return counts;
+  }
+
+  /**
+   * @return The names of the feeds not connected, or lagging
+   */
+  public synchronized List<String> getUnhealthyFeeds() {
+
+    List<String> names = new ArrayList<String>();
+    for (Feed feed : feeds.values()) {
+      if (feed.getState() != State.CONNECTED) {
+        names.add(feed.name);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * @return true if every feed is connected, lagging or not
+   */
+  public synchronized boolean isConnected() {
+
+    for (Feed feed : feeds.values()) {
+      if (feed.state != State.CONNECTED) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+
+    return "StreamingServiceSupervisor [states=" + getStateCounts() + "]";
+  }
+
+  /**
+   * A supervised service; runs as the signal of its consumer queue
+   */
+  private final class Feed implements Runnable {
+
+    private final String name;
+    private final BaseWebSocketExchangeService service;
+    private final ExchangeEventListener listener;
+
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+    private final Runnable dispatchTask = new Runnable() {
+
+      @Override
+      public void run() {
+
+        dispatch();
+      }
+    };
+
+    /** The connection state, without lag */
+    private volatile State state = State.STOPPED;
+    /** The time of the last event dispatched; events some services route to queues of their own are covered by the last message time of the service */
+    private volatile long lastEventTime;
+
+    /** The pending connect, guarded by the supervisor */
+    private ScheduledFuture<?> connectTask;
+
+    /** Set once unregistered; polls hold the feed's lock, so none is in progress afterwards */
+    private volatile boolean removed = false;
+
+    Feed(String name, BaseWebSocketExchangeService service, ExchangeEventListener listener) {
+
+      this.name = name;
+      this.service = service;
+      this.listener = listener;
+    }
+
+    /**
+     * Called on the producing thread for each new event
+     */
+    @Override
+    public void run() {
+
+      if (dispatching.compareAndSet(false, true)) {
+        try {
+          dispatcher.execute(dispatchTask);
+        } catch (RejectedExecutionException e) {
+          // shut down
+          dispatching.set(false);
+        }
+      }
+    }
+
+    private void dispatch() {
+
+      try {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+          ExchangeEvent event = poll();
+          if (event == null) {
+            break;
+          }
+          onEvent(event);
+          try {
+            listener.handleEvent(event);
+          } catch (RuntimeException e) {
+            log.warn("Listener of feed {} failed", name, e);
+          }
+        }
+      } finally {
+        dispatching.set(false);
+      }
+      if (!removed && service.getPendingEventCount() > 0) {
+        run();
+      }
+    }
+
+    /**
+     * @return The next event, or null if there is none or the feed is unregistered; the events left are for the service's own consumer then
+     */
+    private synchronized ExchangeEvent poll() {
+
+      return removed ? null : service.pollNextEvent();
+    }
+
+    /**
+     * Stops the dispatch of events before the service is handed back to its own threads
+     */
+    synchronized void remove() {
+
+      removed = true;
+    }
+
+    private void onEvent(ExchangeEvent event) {
+
+      lastEventTime = System.currentTimeMillis();
+      if (state == State.STOPPED) {
+        return;
+      }
+      switch (event.getEventType()) {
+      case CONNECT:
+        setState(State.CONNECTED);
+        break;
+      case DISCONNECT:
+      case ERROR:
+        boolean terminated = service.reconnectService != null && service.reconnectService.isTerminated();
+        setState(terminated ? State.FAILED : State.RECONNECTING);
+        break;
+      default:
+        break;
+      }
+    }
+
+    void connect() {
+
+      synchronized (StreamingServiceSupervisor.this) {
+        connectTask = null;
+        if (state == State.STOPPED) {
+          return;
+        }
+        if (service.reconnectService != null) {
+          service.reconnectService.setEnabled(true);
+        }
+      }
+      try {
+        service.connect();
+      } catch (RuntimeException e) {
+        log.warn("Failed to connect feed {}", name, e);
+        setState(State.FAILED);
+      }
+    }
+
+    /**
+     * Called with the supervisor lock held, before {@link #disconnect()}
+     */
+    void stop() {
+
+      if (connectTask != null) {
+        connectTask.cancel(false);
+        connectTask = null;
+      }
+      setState(State.STOPPED);
+      if (service.reconnectService != null) {
+        service.reconnectService.setEnabled(false);
+      }
+    }
+
+    /**
+     * Called without the supervisor lock, after {@link #stop()}
+     */
+    void disconnect() {
+
+      if (state != State.STOPPED) {
+        // started again meanwhile
+        return;
+      }
+      try {
+        service.disconnect();
+      } catch (RuntimeException e) {
+        log.warn("Failed to disconnect feed {}", name, e);
+      }
+    }
+
+    void setState(State newState) {
+
+      if (state != newState) {
+        state = newState;
+        synchronized (StreamingServiceSupervisor.this) {
+          StreamingServiceSupervisor.this.notifyAll();
+        }
+      }
+    }
+
+    State getState() {
+
+      State current = state;
+      if (current != State.STOPPED && service.reconnectService != null && service.reconnectService.isTerminated()) {
+        return State.FAILED;
+      }
+      if (current == State.CONNECTED
+          && (System.currentTimeMillis() - Math.max(lastEventTime, service.getLastMessageTime()) > lagThresholdInMs || service.getPendingEventCount() >= BACKLOG_THRESHOLD)) {
+        return State.LAGGING;
+      }
+      return current;
+    }
+  }
+
+  private static final class SupervisorThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    SupervisorThreadFactory(String prefix) {
+
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+
+      Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
@@ -23,10 +23,10 @@ package com.xeiam.xchange.service.streaming;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.drafts.Draft_17;
 import org.java_websocket.handshake.ServerHandshake;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +40,8 @@ public class WebSocketEventProducer extends WebSocketClient {
 
   private final ExchangeEventListener exchangeEventListener;
 
+  private volatile long lastMessageTime;
+
   /**
    * Constructor
    * 
@@ -50,7 +52,7 @@ public class WebSocketEventProducer extends WebSocketClient {
    */
   public WebSocketEventProducer(String url, ExchangeEventListener exchangeEventListener, Map<String, String> headers) throws URISyntaxException {
 
-    super(new URI(url), new Draft_17(), headers, 0);
+    super(new URI(url), new ByteFrameDraft(), headers, 0);
     this.exchangeEventListener = exchangeEventListener;
 
   }
@@ -69,13 +71,37 @@ public class WebSocketEventProducer extends WebSocketClient {
   @Override
   public void onMessage(String message) {
 
+    lastMessageTime = System.currentTimeMillis();
     // send("you said: " + message);
 
-    logger.debug(message);
+    if (logger.isTraceEnabled()) {
+      logger.trace(message);
+    }
     ExchangeEvent exchangeEvent = new DefaultExchangeEvent(ExchangeEventType.MESSAGE, message);
     exchangeEventListener.handleEvent(exchangeEvent);
   }
 
+  /**
+   * Hands frames to the listener as bytes, without decoding them into a String; with {@link ByteFrameDraft} this includes the text frames
+   */
+  @Override
+  public void onMessage(ByteBuffer bytes) {
+
+    lastMessageTime = System.currentTimeMillis();
+    if (logger.isTraceEnabled()) {
+      logger.trace("{} bytes", bytes.remaining());
+    }
+    exchangeEventListener.handleMessage(bytes);
+  }
+
+  /**
+   * @return The time in ms the last message was received, or 0 if none was
+   */
+  public long getLastMessageTime() {
+
+    return lastMessageTime;
+  }
+
   @Override
   public void onClose(int code, String reason, boolean remote) {
 
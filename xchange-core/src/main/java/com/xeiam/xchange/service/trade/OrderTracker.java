@@ -0,0 +1,440 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.trade;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.dto.trade.MarketOrder;
+import com.xeiam.xchange.dto.trade.OpenOrders;
+import com.xeiam.xchange.service.polling.PollingTradeService;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.trade.TrackedOrder.State;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Local order book of the account's own orders to provide the following to applications:
+ * </p>
+ * <ul>
+ * <li>Recording of orders placed through {@link #placeLimitOrder(LimitOrder)} and {@link #placeMarketOrder(MarketOrder)}</li>
+ * <li>Updates from USER_ORDER and USER_ORDER_CANCELED events and/or from diffed {@link PollingTradeService#getOpenOrders()} snapshots</li>
+ * <li>Open order, by id and by currency pair queries answered from memory through indexes instead of polling</li>
+ * </ul>
+ * <p>
+ * Events are expected with core payloads: a {@link LimitOrder} holding the remaining amount for USER_ORDER (or just the order id once it is gone) and the order
+ * id for USER_ORDER_CANCELED. Closed orders are retained up to a fixed number, oldest first out.
+ * </p>
+ * <p>
+ * The open orders poll of {@link #reconcile()} runs without holding the lock; orders placed or updated while it is in flight are left out of its diff, as the snapshot
+ * may predate them.
+ * </p>
+ */
+public class OrderTracker {
+
+  private final Logger log = LoggerFactory.getLogger(OrderTracker.class);
+
+  private final PollingTradeService tradeService;
+
+  private final int closedOrderCapacity;
+
+  /** All tracked orders by id, guarded by this */
+  private final Map<String, TrackedOrder> orders = new HashMap<String, TrackedOrder>();
+
+  /** Open order ids per currency pair in placement order, guarded by this */
+  private final Map<CurrencyPair, Set<String>> openOrderIds = new HashMap<CurrencyPair, Set<String>>();
+
+  /** Closed order ids, oldest first, guarded by this */
+  private final Set<String> closedOrderIds = new LinkedHashSet<String>();
+
+  /** The update sequence number of each tracked order, guarded by this */
+  private final Map<String, Long> updateSequences = new HashMap<String, Long>();
+
+  /** Incremented on every update, guarded by this */
+  private long updateSequence;
+
+  private ScheduledExecutorService reconciliationExecutor;
+
+  /**
+   * Constructor
+   * 
+   * @param tradeService The service placing and canceling orders and polled for reconciliation
+   * @param closedOrderCapacity The number of closed orders to remember
+   */
+  public OrderTracker(PollingTradeService tradeService, int closedOrderCapacity) {
+
+    Assert.notNull(tradeService, "tradeService cannot be null");
+    Assert.isTrue(closedOrderCapacity >= 0, "closedOrderCapacity cannot be negative");
+
+    this.tradeService = tradeService;
+    this.closedOrderCapacity = closedOrderCapacity;
+  }
+
+  /**
+   * Places and records a limit order
+   * 
+   * @param limitOrder
+   * @return The order id
+   * @throws IOException
+   */
+  public String placeLimitOrder(LimitOrder limitOrder) throws IOException {
+
+    String id = tradeService.placeLimitOrder(limitOrder);
+    LimitOrder placed = new LimitOrder(limitOrder.getType(), limitOrder.getTradableAmount(), limitOrder.getTradableIdentifier(), limitOrder.getTransactionCurrency(), id,
+        limitOrder.getTimestamp(), limitOrder.getLimitPrice());
+    synchronized (this) {
+      // an event for the order may already have been applied
+      if (!orders.containsKey(id)) {
+        put(new TrackedOrder(placed, placed.getTradableAmount(), State.OPEN, System.currentTimeMillis()));
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Places and records a market order
+   * 
+   * @param marketOrder
+   * @return The order id
+   * @throws IOException
+   */
+  public String placeMarketOrder(MarketOrder marketOrder) throws IOException {
+
+    String id = tradeService.placeMarketOrder(marketOrder);
+    MarketOrder placed = new MarketOrder(marketOrder.getType(), marketOrder.getTradableAmount(), marketOrder.getTradableIdentifier(), marketOrder.getTransactionCurrency(), id,
+        marketOrder.getTimestamp());
+    synchronized (this) {
+      put(new TrackedOrder(placed, placed.getTradableAmount(), State.SUBMITTED, System.currentTimeMillis()));
+    }
+    return id;
+  }
+
+  /**
+   * Cancels an order, recording it as canceled if the exchange confirms
+   * 
+   * @param orderId
+   * @return The exchange's answer
+   * @throws IOException
+   */
+  public boolean cancelOrder(String orderId) throws IOException {
+
+    boolean canceled = tradeService.cancelOrder(orderId);
+    if (canceled) {
+      applyOrderClosed(orderId, State.CANCELED);
+    }
+    return canceled;
+  }
+
+  /**
+   * Applies an order or cancel event
+   * 
+   * @param event
+   * @return false if the event does not concern orders
+   */
+  public boolean handleEvent(ExchangeEvent event) {
+
+    Object payload = event.getPayload();
+
+    switch (event.getEventType()) {
+    case USER_ORDER:
+      if (payload instanceof LimitOrder) {
+        applyOrder((LimitOrder) payload);
+        return true;
+      }
+      if (payload instanceof String) {
+        applyOrderClosed((String) payload, State.CLOSED);
+        return true;
+      }
+      break;
+    case USER_ORDER_CANCELED:
+      if (payload instanceof String) {
+        applyOrderClosed((String) payload, State.CANCELED);
+        return true;
+      }
+      break;
+    default:
+      break;
+    }
+    return false;
+  }
+
+  /**
+   * Records the current state of an open order
+   * 
+   * @param order The order with its remaining amount; a zero amount closes it
+   */
+  public synchronized void applyOrder(LimitOrder order) {
+
+    Assert.notNull(order.getId(), "order id cannot be null");
+
+    BigDecimal remaining = order.getTradableAmount();
+    if (remaining == null || remaining.signum() == 0) {
+      applyOrderClosed(order.getId(), State.CLOSED);
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    TrackedOrder tracked = orders.get(order.getId());
+    if (tracked == null) {
+      put(new TrackedOrder(order, remaining, State.OPEN, now));
+    }
+    else if (tracked.getState().isOpen() && tracked.getRemainingAmount().compareTo(remaining) != 0) {
+      State state = remaining.compareTo(tracked.getOrder().getTradableAmount()) < 0 ? State.PARTIALLY_FILLED : State.OPEN;
+      put(tracked.withState(remaining, state, now));
+    }
+  }
+
+  /**
+   * Records that an order left the book
+   * 
+   * @param orderId
+   * @param state CANCELED or CLOSED
+   */
+  public synchronized void applyOrderClosed(String orderId, State state) {
+
+    Assert.isTrue(!state.isOpen(), "state must be a closed state");
+
+    TrackedOrder tracked = orders.get(orderId);
+    if (tracked != null && tracked.getState().isOpen()) {
+      put(tracked.withState(tracked.getRemainingAmount(), state, System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Diffs an open orders snapshot against the tracked orders: new and changed orders are applied, tracked open orders missing from the snapshot are closed
+   * 
+   * @param openOrders
+   * @return The number of orders that changed
+   */
+  public synchronized int applyOpenOrders(OpenOrders openOrders) {
+
+    return applyOpenOrders(openOrders, updateSequence);
+  }
+
+  /**
+   * Polls the open orders and applies the snapshot
+   * 
+   * @return The number of orders that changed
+   * @throws IOException
+   */
+  public int reconcile() throws IOException {
+
+    long pollSequence;
+    synchronized (this) {
+      pollSequence = updateSequence;
+    }
+    OpenOrders openOrders = tradeService.getOpenOrders();
+    synchronized (this) {
+      return applyOpenOrders(openOrders, pollSequence);
+    }
+  }
+
+  /**
+   * @param openOrders
+   * @param snapshotSequence The update sequence when the snapshot was requested; orders updated after it are skipped
+   * @return The number of orders that changed
+   */
+  private int applyOpenOrders(OpenOrders openOrders, long snapshotSequence) {
+
+    Map<String, TrackedOrder> before = new HashMap<String, TrackedOrder>(orders);
+    Set<String> seen = new HashSet<String>(openOrders.getOpenOrders().size() * 2);
+
+    for (LimitOrder order : openOrders.getOpenOrders()) {
+      seen.add(order.getId());
+      if (!isUpdatedAfter(order.getId(), snapshotSequence)) {
+        applyOrder(order);
+      }
+    }
+
+    List<String> missing = new ArrayList<String>();
+    for (Set<String> ids : openOrderIds.values()) {
+      for (String id : ids) {
+        if (!seen.contains(id) && !isUpdatedAfter(id, snapshotSequence)) {
+          missing.add(id);
+        }
+      }
+    }
+    for (String id : missing) {
+      applyOrderClosed(id, State.CLOSED);
+    }
+
+    int changes = 0;
+    for (TrackedOrder tracked : orders.values()) {
+      if (before.get(tracked.getId()) != tracked) {
+        changes++;
+      }
+    }
+    return changes;
+  }
+
+  private boolean isUpdatedAfter(String orderId, long sequence) {
+
+    Long orderSequence = updateSequences.get(orderId);
+    return orderSequence != null && orderSequence.longValue() > sequence;
+  }
+
+  /**
+   * Reconciles periodically on a daemon thread; failed polls are logged and retried on the next run
+   * 
+   * @param reconciliationIntervalInMs
+   */
+  public synchronized void start(long reconciliationIntervalInMs) {
+
+    Assert.isTrue(reconciliationExecutor == null, "Already started");
+    Assert.isTrue(reconciliationIntervalInMs > 0, "reconciliationIntervalInMs must be positive");
+
+    reconciliationExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+
+        Thread thread = new Thread(runnable, "order-tracker-reconciliation");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    reconciliationExecutor.scheduleWithFixedDelay(new Runnable() {
+
+      @Override
+      public void run() {
+
+        try {
+          reconcile();
+        } catch (Exception e) {
+          log.warn("Open orders reconciliation failed", e);
+        }
+      }
+    }, 0, reconciliationIntervalInMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the reconciliation polls
+   */
+  public synchronized void stop() {
+
+    if (reconciliationExecutor != null) {
+      reconciliationExecutor.shutdownNow();
+      reconciliationExecutor = null;
+    }
+  }
+
+  private void put(TrackedOrder tracked) {
+
+    String id = tracked.getId();
+    orders.put(id, tracked);
+    updateSequences.put(id, ++updateSequence);
+
+    Set<String> ids = openOrderIds.get(tracked.getCurrencyPair());
+    if (tracked.getState().isOpen()) {
+      if (ids == null) {
+        ids = new LinkedHashSet<String>();
+        openOrderIds.put(tracked.getCurrencyPair(), ids);
+      }
+      ids.add(id);
+      return;
+    }
+
+    if (ids != null && ids.remove(id) && ids.isEmpty()) {
+      openOrderIds.remove(tracked.getCurrencyPair());
+    }
+    closedOrderIds.add(id);
+    Iterator<String> oldest = closedOrderIds.iterator();
+    while (closedOrderIds.size() > closedOrderCapacity) {
+      String evicted = oldest.next();
+      orders.remove(evicted);
+      updateSequences.remove(evicted);
+      oldest.remove();
+    }
+  }
+
+  /**
+   * @param orderId
+   * @return The tracked order, or null if unknown
+   */
+  public synchronized TrackedOrder getOrder(String orderId) {
+
+    return orders.get(orderId);
+  }
+
+  /**
+   * @return The open orders of all currency pairs
+   */
+  public synchronized List<TrackedOrder> getOpenOrders() {
+
+    List<TrackedOrder> open = new ArrayList<TrackedOrder>();
+    for (Set<String> ids : openOrderIds.values()) {
+      for (String id : ids) {
+        open.add(orders.get(id));
+      }
+    }
+    return open;
+  }
+
+  /**
+   * @param currencyPair
+   * @return The open orders of the currency pair in placement order
+   */
+  public synchronized List<TrackedOrder> getOpenOrders(CurrencyPair currencyPair) {
+
+    Set<String> ids = openOrderIds.get(currencyPair);
+    if (ids == null) {
+      return Collections.emptyList();
+    }
+    List<TrackedOrder> open = new ArrayList<TrackedOrder>(ids.size());
+    for (String id : ids) {
+      open.add(orders.get(id));
+    }
+    return open;
+  }
+
+  /**
+   * @return True if any order is open
+   */
+  public synchronized boolean hasOpenOrders() {
+
+    return !openOrderIds.isEmpty();
+  }
+
+  @Override
+  public synchronized String toString() {
+
+    return "OrderTracker [orders=" + orders.size() + ", openPairs=" + openOrderIds.keySet() + "]";
+  }
+}
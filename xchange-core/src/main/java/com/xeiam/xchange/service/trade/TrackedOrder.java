@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.trade;
+
+import java.math.BigDecimal;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.Order;
+
+/**
+ * <p>
+ * The locally known lifecycle of an order, maintained by an {@link OrderTracker}
+ * </p>
+ * <p>
+ * Instances returned by the tracker are copies and never change.
+ * </p>
+ */
+public final class TrackedOrder {
+
+  public enum State {
+
+    /** A market order accepted by the exchange, it never rests on the book */
+    SUBMITTED,
+
+    /** Resting on the book with its full amount */
+    OPEN,
+
+    /** Resting on the book with part of its amount filled */
+    PARTIALLY_FILLED,
+
+    /** Canceled through the tracker or reported canceled by the exchange */
+    CANCELED,
+
+    /** Gone from the book for another reason, most likely filled */
+    CLOSED;
+
+    public boolean isOpen() {
+
+      return this == OPEN || this == PARTIALLY_FILLED;
+    }
+  }
+
+  private final Order order;
+  private final CurrencyPair currencyPair;
+  private final BigDecimal remainingAmount;
+  private final State state;
+  private final long lastUpdateTime;
+
+  /**
+   * Constructor
+   * 
+   * @param order The order as originally placed or first seen
+   * @param remainingAmount
+   * @param state
+   * @param lastUpdateTime In milliseconds from epoch
+   */
+  TrackedOrder(Order order, BigDecimal remainingAmount, State state, long lastUpdateTime) {
+
+    this.order = order;
+    this.currencyPair = new CurrencyPair(order.getTradableIdentifier(), order.getTransactionCurrency());
+    this.remainingAmount = remainingAmount;
+    this.state = state;
+    this.lastUpdateTime = lastUpdateTime;
+  }
+
+  TrackedOrder withState(BigDecimal remainingAmount, State state, long lastUpdateTime) {
+
+    return new TrackedOrder(order, remainingAmount, state, lastUpdateTime);
+  }
+
+  public String getId() {
+
+    return order.getId();
+  }
+
+  /**
+   * @return The order as originally placed or first seen
+   */
+  public Order getOrder() {
+
+    return order;
+  }
+
+  public CurrencyPair getCurrencyPair() {
+
+    return currencyPair;
+  }
+
+  public BigDecimal getRemainingAmount() {
+
+    return remainingAmount;
+  }
+
+  /**
+   * @return The originally placed amount less the remaining amount
+   */
+  public BigDecimal getFilledAmount() {
+
+    return order.getTradableAmount().subtract(remainingAmount);
+  }
+
+  public State getState() {
+
+    return state;
+  }
+
+  /**
+   * @return The time of the last state change in milliseconds from epoch
+   */
+  public long getLastUpdateTime() {
+
+    return lastUpdateTime;
+  }
+
+  @Override
+  public String toString() {
+
+    return "TrackedOrder [id=" + getId() + ", state=" + state + ", remainingAmount=" + remainingAmount + ", order=" + order + "]";
+  }
+}
@@ -21,9 +21,7 @@
  */
 package com.xeiam.xchange.utils;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimeZone;
 
 /**
  * <p>
@@ -71,8 +69,8 @@ public class DateUtils {
    */
   public static String toUTCString(Date date) {
 
-    SimpleDateFormat sd = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z");
-    sd.setTimeZone(TimeZone.getTimeZone("GMT"));
-    return sd.format(date);
+    StringBuilder sb = new StringBuilder(23);
+    Timestamps.appendUTC(sb, Timestamps.fromDate(date));
+    return sb.append(" GMT").toString();
   }
 }
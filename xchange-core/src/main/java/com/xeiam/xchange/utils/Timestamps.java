@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * Utilities to provide the following to application:
+ * </p>
+ * <ul>
+ * <li>Lock free, allocation free parsing of exchange timestamps into epoch microseconds</li>
+ * <li>Conversion between epoch microseconds, milliseconds and {@link Date}</li>
+ * </ul>
+ * <p>
+ * Epoch microseconds are the common unit since it is the finest resolution any exchange reports (e.g. MtGox trade ids) and a long holds them for the next 290000 years.
+ * </p>
+ */
+public final class Timestamps {
+
+  /**
+   * Marks a missing timestamp
+   */
+  public static final long NONE = Long.MIN_VALUE;
+
+  private static final long MICROS_PER_SECOND = 1000000L;
+  private static final long MICROS_PER_DAY = 86400L * MICROS_PER_SECOND;
+
+  /**
+   * private Constructor
+   */
+  private Timestamps() {
+
+  }
+
+  public static long fromSeconds(long secondsFromEpoch) {
+
+    return secondsFromEpoch * MICROS_PER_SECOND;
+  }
+
+  public static long fromMillis(long millisecondsFromEpoch) {
+
+    return millisecondsFromEpoch * 1000L;
+  }
+
+  /**
+   * @param date
+   * @return The epoch microseconds of the date, {@link #NONE} if null
+   */
+  public static long fromDate(Date date) {
+
+    return date == null ? NONE : date.getTime() * 1000L;
+  }
+
+  /**
+   * @param microsecondsFromEpoch
+   * @return The epoch milliseconds, rounded down
+   */
+  public static long toMillis(long microsecondsFromEpoch) {
+
+    return microsecondsFromEpoch >= 0 ? microsecondsFromEpoch / 1000L : -((999L - microsecondsFromEpoch) / 1000L);
+  }
+
+  /**
+   * @param microsecondsFromEpoch
+   * @return A new Date, null for {@link #NONE}
+   */
+  public static Date toDate(long microsecondsFromEpoch) {
+
+    return microsecondsFromEpoch == NONE ? null : new Date(toMillis(microsecondsFromEpoch));
+  }
+
+  /**
+   * Parses any of the timestamp formats used by the exchanges, date-times are taken as UTC
+   * 
+   * @param text Epoch seconds, fractional seconds, milliseconds or microseconds (see {@link #parseEpoch(CharSequence)}) or "yyyy-MM-dd HH:mm:ss[.SSSSSS]"
+   * @return The epoch microseconds
+   * @throws IllegalArgumentException if the text is not a timestamp
+   */
+  public static long parse(CharSequence text) {
+
+    Assert.notNull(text, "text cannot be null");
+    if (text.length() > 4 && text.charAt(4) == '-') {
+      return parseDateTime(text, null);
+    }
+    return parseEpoch(text);
+  }
+
+  /**
+   * Parses a numeric epoch timestamp, telling the unit from the number of integer digits: up to 11 digits are seconds (optionally with a fraction), up to 14 are
+   * milliseconds and longer ones are microseconds
+   * 
+   * @param text
+   * @return The epoch microseconds
+   * @throws IllegalArgumentException if the text is not a number
+   */
+  public static long parseEpoch(CharSequence text) {
+
+    int length = text.length();
+    long integer = 0;
+    int digits = 0;
+    int i = 0;
+    for (; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '.') {
+        break;
+      }
+      integer = integer * 10 + digit(text, c);
+      digits++;
+    }
+    if (digits == 0 || digits > 18) {
+      throw invalid(text);
+    }
+
+    long fractionMicros = 0;
+    if (i < length) {
+      if (digits > 11) {
+        // fractional milli or microseconds are not used by any exchange
+        throw invalid(text);
+      }
+      long scale = 100000L;
+      for (i++; i < length; i++) {
+        int d = digit(text, text.charAt(i));
+        fractionMicros += d * scale;
+        scale /= 10;
+      }
+    }
+
+    if (digits <= 11) {
+      return integer * MICROS_PER_SECOND + fractionMicros;
+    }
+    if (digits <= 14) {
+      return integer * 1000L;
+    }
+    return integer;
+  }
+
+  /**
+   * Parses "yyyy-MM-dd HH:mm:ss" with an optional fraction of up to 6 digits; a 'T' separator and a trailing 'Z' are accepted
+   * 
+   * @param text
+   * @param timeZone The zone of the local date-time, null for UTC
+   * @return The epoch microseconds
+   * @throws IllegalArgumentException if the text does not match
+   */
+  public static long parseDateTime(CharSequence text, TimeZone timeZone) {
+
+    int length = text.length();
+    if (length > 0 && text.charAt(length - 1) == 'Z') {
+      length--;
+    }
+    if (length < 19 || text.charAt(4) != '-' || text.charAt(7) != '-' || (text.charAt(10) != ' ' && text.charAt(10) != 'T') || text.charAt(13) != ':' || text.charAt(16) != ':') {
+      throw invalid(text);
+    }
+
+    int year = number(text, 0, 4);
+    int month = number(text, 5, 7);
+    int day = number(text, 8, 10);
+    int hour = number(text, 11, 13);
+    int minute = number(text, 14, 16);
+    int second = number(text, 17, 19);
+    if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+      throw invalid(text);
+    }
+
+    long fractionMicros = 0;
+    if (length > 19) {
+      if (text.charAt(19) != '.' || length == 20) {
+        throw invalid(text);
+      }
+      long scale = 100000L;
+      for (int i = 20; i < length; i++) {
+        fractionMicros += digit(text, text.charAt(i)) * scale;
+        scale /= 10;
+      }
+    }
+
+    long micros = daysFromCivil(year, month, day) * MICROS_PER_DAY + ((hour * 60L + minute) * 60L + second) * MICROS_PER_SECOND + fractionMicros;
+    if (timeZone != null) {
+      long localMillis = toMillis(micros);
+      micros -= fromMillis(timeZone.getOffset(localMillis - timeZone.getRawOffset()));
+    }
+    return micros;
+  }
+
+  /**
+   * Formats as "yyyy-MM-dd HH:mm:ss" in UTC
+   * 
+   * @param microsecondsFromEpoch
+   * @return The formatted timestamp
+   */
+  public static String formatUTC(long microsecondsFromEpoch) {
+
+    StringBuilder sb = new StringBuilder(19);
+    appendUTC(sb, microsecondsFromEpoch);
+    return sb.toString();
+  }
+
+  /**
+   * Appends "yyyy-MM-dd HH:mm:ss" in UTC
+   * 
+   * @param sb
+   * @param microsecondsFromEpoch
+   */
+  public static void appendUTC(StringBuilder sb, long microsecondsFromEpoch) {
+
+    long millis = toMillis(microsecondsFromEpoch);
+    long seconds = millis >= 0 ? millis / 1000L : -((999L - millis) / 1000L);
+    long days = seconds >= 0 ? seconds / 86400L : -((86399L - seconds) / 86400L);
+    int secondOfDay = (int) (seconds - days * 86400L);
+
+    // civil from days, see http://howardhinnant.github.io/date_algorithms.html
+    long z = days + 719468;
+    long era = (z >= 0 ? z : z - 146096) / 146097;
+    long dayOfEra = z - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long mp = (5 * dayOfYear + 2) / 153;
+    int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+    int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+    sb.append(year).append('-');
+    pad(sb, month).append('-');
+    pad(sb, day).append(' ');
+    pad(sb, secondOfDay / 3600).append(':');
+    pad(sb, secondOfDay / 60 % 60).append(':');
+    pad(sb, secondOfDay % 60);
+  }
+
+  private static long daysFromCivil(int year, int month, int day) {
+
+    int y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  private static StringBuilder pad(StringBuilder sb, int value) {
+
+    if (value < 10) {
+      sb.append('0');
+    }
+    return sb.append(value);
+  }
+
+  private static int number(CharSequence text, int from, int to) {
+
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      value = value * 10 + digit(text, text.charAt(i));
+    }
+    return value;
+  }
+
+  private static int digit(CharSequence text, char c) {
+
+    if (c < '0' || c > '9') {
+      throw invalid(text);
+    }
+    return c - '0';
+  }
+
+  private static IllegalArgumentException invalid(CharSequence text) {
+
+    return new IllegalArgumentException("Not a timestamp: " + text);
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils;
+
+/**
+ * <p>
+ * Bounded set of recently seen trade ids to provide the following to trade consumers:
+ * </p>
+ * <ul>
+ * <li>De-duplication of overlapping polls and of trades seen both polled and streamed, independent of the order the ids arrive in</li>
+ * <li>Fixed memory: the ids are held in primitive arrays, and once full the oldest id is evicted</li>
+ * </ul>
+ * <p>
+ * Lookups use an open addressing table twice the size of the window. Instances are not thread safe.
+ * </p>
+ */
+public final class TradeIdWindow {
+
+  private static final long EMPTY = 0;
+
+  /** Ids in insertion order */
+  private final long[] ring;
+  private final long[] table;
+  private final int mask;
+
+  private int head = 0;
+  private int size = 0;
+
+  /**
+   * Constructor
+   * 
+   * @param capacity The number of most recent ids to remember
+   */
+  public TradeIdWindow(int capacity) {
+
+    Assert.isTrue(capacity > 0, "capacity must be positive");
+
+    this.ring = new long[capacity];
+    this.table = new long[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    this.mask = table.length - 1;
+  }
+
+  /**
+   * @param id A trade id other than 0
+   * @return true if the id was not in the window and has been added, evicting the oldest id if the window was full
+   */
+  public boolean add(long id) {
+
+    Assert.isTrue(id != EMPTY, "id cannot be 0");
+
+    int slot = slot(id);
+    while (table[slot] != EMPTY) {
+      if (table[slot] == id) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == ring.length) {
+      remove(ring[head]);
+      size--;
+      // the removal may have shifted the free slot found above
+      slot = slot(id);
+      while (table[slot] != EMPTY) {
+        slot = (slot + 1) & mask;
+      }
+    }
+    table[slot] = id;
+    ring[head] = id;
+    head = (head + 1) % ring.length;
+    size++;
+    return true;
+  }
+
+  /**
+   * @param id A trade id
+   * @return true if the id is in the window
+   */
+  public boolean contains(long id) {
+
+    if (id == EMPTY) {
+      return false;
+    }
+    int slot = slot(id);
+    while (table[slot] != EMPTY) {
+      if (table[slot] == id) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+
+    return size;
+  }
+
+  public int getCapacity() {
+
+    return ring.length;
+  }
+
+  /**
+   * Removes an id, shifting the entries of its probe sequence back so that lookups need no tombstones
+   */
+  private void remove(long id) {
+
+    int slot = slot(id);
+    while (table[slot] != id) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = EMPTY;
+
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      long candidate = table[next];
+      if (candidate == EMPTY) {
+        return;
+      }
+      int home = slot(candidate);
+      // keep the candidate where it is if its home lies cyclically in (slot, next]
+      boolean inPlace = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+      if (!inPlace) {
+        table[slot] = candidate;
+        table[next] = EMPTY;
+        slot = next;
+      }
+    }
+  }
+
+  private int slot(long id) {
+
+    long hash = id * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils.binary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Reusable reader of the compact binary format written by {@link BinaryEncoder}
+ * </p>
+ * <ul>
+ * <li>Reads from a caller supplied byte array without copying it</li>
+ * <li>Not thread safe; {@link #reset(byte[], int, int)} and re-use one instance per thread</li>
+ * </ul>
+ */
+public final class BinaryDecoder {
+
+  private byte[] buffer;
+  private int position;
+  private int limit;
+
+  private final List<String> codes = new ArrayList<String>();
+  private final long[] previousUnscaled = new long[BinaryEncoder.CHANNELS];
+  private final int[] previousScale = new int[BinaryEncoder.CHANNELS];
+  private final boolean[] hasPrevious = new boolean[BinaryEncoder.CHANNELS];
+
+  public BinaryDecoder() {
+
+    reset(new byte[0], 0, 0);
+  }
+
+  /**
+   * Starts reading a new message, clearing the currency dictionary and the delta state
+   * 
+   * @param buffer The bytes to read
+   * @param offset The start of the message
+   * @param length The length of the message
+   */
+  public BinaryDecoder reset(byte[] buffer, int offset, int length) {
+
+    if (offset < 0 || length < 0 || offset + length > buffer.length) {
+      throw new IllegalArgumentException("Invalid range " + offset + "+" + length + " of " + buffer.length + " bytes");
+    }
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+    codes.clear();
+    codes.addAll(Arrays.asList(MarketDataCodec.CURRENCY_SEED));
+    resetDeltas();
+    return this;
+  }
+
+  public BinaryDecoder reset(byte[] buffer) {
+
+    return reset(buffer, 0, buffer.length);
+  }
+
+  /**
+   * Starts all decimal channels afresh, mirroring {@link BinaryEncoder#resetDeltas()}
+   */
+  public void resetDeltas() {
+
+    Arrays.fill(hasPrevious, false);
+  }
+
+  private void require(int bytes) {
+
+    if (limit - position < bytes) {
+      throw new IllegalArgumentException("Truncated input at byte " + position);
+    }
+  }
+
+  public int readByte() {
+
+    require(1);
+    return buffer[position++] & 0xFF;
+  }
+
+  public long readVarLong() {
+
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      require(1);
+      byte b = buffer[position++];
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint at byte " + position);
+  }
+
+  public int readVarInt() {
+
+    long value = readVarLong();
+    if (value < 0 || value > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Malformed length " + value + " at byte " + position);
+    }
+    return (int) value;
+  }
+
+  public long readSignedVarLong() {
+
+    return unZigZag(readVarLong());
+  }
+
+  public byte[] readBytes() {
+
+    int length = readVarInt();
+    require(length);
+    byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+    position += length;
+    return bytes;
+  }
+
+  /**
+   * @return The string, or null
+   */
+  public String readString() {
+
+    int length = readVarInt();
+    if (length == 0) {
+      return null;
+    }
+    length--;
+    require(length);
+    String value = new String(buffer, position, length, BinaryEncoder.UTF_8);
+    position += length;
+    return value;
+  }
+
+  /**
+   * @return The currency code (or tradable identifier), or null
+   */
+  public String readCode() {
+
+    int index = readVarInt();
+    if (index == 0) {
+      return null;
+    }
+    index--;
+    if (index < codes.size()) {
+      return codes.get(index);
+    }
+    if (index > codes.size()) {
+      throw new IllegalArgumentException("Unknown code index " + index + " at byte " + position);
+    }
+    String code = readString();
+    codes.add(code);
+    return code;
+  }
+
+  /**
+   * @return The decimal, or null
+   */
+  public BigDecimal readDecimal() {
+
+    return readDecimal(-1);
+  }
+
+  /**
+   * @param channel The channel the decimal was written to, or -1
+   * @return The decimal, or null
+   */
+  public BigDecimal readDecimal(int channel) {
+
+    long header = readVarLong();
+    int kind = (int) (header & 3);
+    long payload = unZigZag(header >>> 2);
+    switch (kind) {
+    case BinaryEncoder.DECIMAL_NULL:
+      return null;
+    case BinaryEncoder.DECIMAL_BIG:
+      if (channel >= 0) {
+        hasPrevious[channel] = false;
+      }
+      return new BigDecimal(new BigInteger(readBytes()), (int) payload);
+    case BinaryEncoder.DECIMAL_DELTA:
+      if (channel < 0 || !hasPrevious[channel]) {
+        throw new IllegalArgumentException("Delta without a previous decimal at byte " + position);
+      }
+      previousUnscaled[channel] += payload;
+      return BigDecimal.valueOf(previousUnscaled[channel], previousScale[channel]);
+    default:
+      long unscaled = readSignedVarLong();
+      if (channel >= 0) {
+        previousUnscaled[channel] = unscaled;
+        previousScale[channel] = (int) payload;
+        hasPrevious[channel] = true;
+      }
+      return BigDecimal.valueOf(unscaled, (int) payload);
+    }
+  }
+
+  private static long unZigZag(long value) {
+
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * @return The number of unread bytes of the message
+   */
+  public int remaining() {
+
+    return limit - position;
+  }
+
+  @Override
+  public String toString() {
+
+    return "BinaryDecoder [position=" + position + ", limit=" + limit + "]";
+  }
+
+}
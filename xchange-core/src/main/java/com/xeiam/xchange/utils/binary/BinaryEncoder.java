@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Reusable, growable output buffer of the compact binary format of {@link MarketDataCodec}
+ * </p>
+ * <ul>
+ * <li>Integers are written as (zig-zag) varints</li>
+ * <li>Decimals are written as scale and unscaled value, optionally as the difference to the previous decimal of the same channel</li>
+ * <li>Currency codes are written once per message and then referenced by index</li>
+ * <li>Not thread safe; {@link #reset()} and re-use one instance per thread</li>
+ * </ul>
+ */
+public final class BinaryEncoder {
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Decimal kinds, in the two low bits of the decimal header */
+  static final int DECIMAL_DELTA = 0;
+  static final int DECIMAL_LONG = 1;
+  static final int DECIMAL_BIG = 2;
+  static final int DECIMAL_NULL = 3;
+
+  static final int CHANNELS = 4;
+
+  /** Deltas must stay clear of the two tag bits after zig-zag encoding */
+  private static final long MAX_DELTA = 1L << 60;
+
+  private byte[] buffer;
+  private int size = 0;
+
+  private final Map<String, Integer> codes = new HashMap<String, Integer>();
+  private final long[] previousUnscaled = new long[CHANNELS];
+  private final int[] previousScale = new int[CHANNELS];
+  private final boolean[] hasPrevious = new boolean[CHANNELS];
+
+  public BinaryEncoder() {
+
+    this(256);
+  }
+
+  /**
+   * @param initialCapacity The initial buffer size in bytes
+   */
+  public BinaryEncoder(int initialCapacity) {
+
+    buffer = new byte[Math.max(16, initialCapacity)];
+    resetCodes();
+  }
+
+  /**
+   * Empties the buffer, the currency dictionary and the delta state, keeping the allocated buffer
+   */
+  public BinaryEncoder reset() {
+
+    size = 0;
+    resetCodes();
+    resetDeltas();
+    return this;
+  }
+
+  private void resetCodes() {
+
+    codes.clear();
+    for (int i = 0; i < MarketDataCodec.CURRENCY_SEED.length; i++) {
+      codes.put(MarketDataCodec.CURRENCY_SEED[i], i);
+    }
+  }
+
+  /**
+   * Starts all decimal channels afresh, e.g. at the start of an order book side
+   */
+  public void resetDeltas() {
+
+    Arrays.fill(hasPrevious, false);
+  }
+
+  private void ensureCapacity(int extra) {
+
+    if (size + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(size + extra, buffer.length * 2));
+    }
+  }
+
+  public void writeByte(int value) {
+
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+  }
+
+  public void writeVarLong(long value) {
+
+    ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[size++] = (byte) value;
+  }
+
+  public void writeVarInt(int value) {
+
+    writeVarLong(value & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Writes a signed value so that small magnitudes take few bytes
+   */
+  public void writeSignedVarLong(long value) {
+
+    writeVarLong((value << 1) ^ (value >> 63));
+  }
+
+  public void writeBytes(byte[] bytes) {
+
+    writeVarInt(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+  }
+
+  /**
+   * @param value Any string, or null
+   */
+  public void writeString(String value) {
+
+    if (value == null) {
+      writeVarInt(0);
+      return;
+    }
+    int length = value.length();
+    boolean ascii = true;
+    for (int i = 0; i < length && ascii; i++) {
+      ascii = value.charAt(i) < 0x80;
+    }
+    if (!ascii) {
+      byte[] bytes = value.getBytes(UTF_8);
+      writeVarInt(bytes.length + 1);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, size, bytes.length);
+      size += bytes.length;
+      return;
+    }
+    writeVarInt(length + 1);
+    ensureCapacity(length);
+    for (int i = 0; i < length; i++) {
+      buffer[size++] = (byte) value.charAt(i);
+    }
+  }
+
+  /**
+   * Writes a currency code (or tradable identifier) by its index in the message dictionary, adding it on first use
+   * 
+   * @param code The code, or null
+   */
+  public void writeCode(String code) {
+
+    if (code == null) {
+      writeVarInt(0);
+      return;
+    }
+    Integer index = codes.get(code);
+    if (index != null) {
+      writeVarInt(index + 1);
+      return;
+    }
+    // the next free index tells the decoder that the code follows
+    int next = codes.size();
+    codes.put(code, next);
+    writeVarInt(next + 1);
+    writeString(code);
+  }
+
+  /**
+   * @param value Any decimal, or null
+   */
+  public void writeDecimal(BigDecimal value) {
+
+    writeDecimal(value, -1);
+  }
+
+  /**
+   * Writes a decimal as the difference to the previous decimal written to the channel if both have the same scale
+   * 
+   * @param value Any decimal, or null
+   * @param channel The channel, from 0 to 3, or -1 to write the value on its own
+   */
+  public void writeDecimal(BigDecimal value, int channel) {
+
+    if (value == null) {
+      writeVarLong(DECIMAL_NULL);
+      return;
+    }
+    int scale = value.scale();
+    BigInteger unscaledValue = value.unscaledValue();
+    if (unscaledValue.bitLength() > 62) {
+      writeVarLong((zigZag(scale) << 2) | DECIMAL_BIG);
+      writeBytes(unscaledValue.toByteArray());
+      if (channel >= 0) {
+        hasPrevious[channel] = false;
+      }
+      return;
+    }
+    long unscaled = unscaledValue.longValue();
+    if (channel >= 0) {
+      long delta = unscaled - previousUnscaled[channel];
+      boolean useDelta = hasPrevious[channel] && previousScale[channel] == scale && delta < MAX_DELTA && delta > -MAX_DELTA;
+      previousUnscaled[channel] = unscaled;
+      previousScale[channel] = scale;
+      hasPrevious[channel] = true;
+      if (useDelta) {
+        writeVarLong((zigZag(delta) << 2) | DECIMAL_DELTA);
+        return;
+      }
+    }
+    writeVarLong((zigZag(scale) << 2) | DECIMAL_LONG);
+    writeSignedVarLong(unscaled);
+  }
+
+  private static long zigZag(long value) {
+
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * @return The number of bytes written since the last reset
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * @return The internal buffer, valid from 0 up to {@link #size()} until the next write
+   */
+  public byte[] getBuffer() {
+
+    return buffer;
+  }
+
+  /**
+   * @return A copy of the written bytes
+   */
+  public byte[] toByteArray() {
+
+    return Arrays.copyOf(buffer, size);
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+
+    out.write(buffer, 0, size);
+  }
+
+  @Override
+  public String toString() {
+
+    return "BinaryEncoder [size=" + size + ", capacity=" + buffer.length + "]";
+  }
+
+}
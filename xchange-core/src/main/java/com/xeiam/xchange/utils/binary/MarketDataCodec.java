@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils.binary;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * <p>
+ * Compact binary encoding of the market data DTOs for transport between processes
+ * </p>
+ * <ul>
+ * <li>Each message starts with a version byte and a type byte</li>
+ * <li>Prices, amounts, timestamps and ids within a message are written as differences to the previous ones</li>
+ * <li>Currency codes are written once per message; the common ones are never written (see {@link #CURRENCY_SEED})</li>
+ * <li>Decimals keep their scale, so decoded DTOs compare equal to the encoded ones</li>
+ * </ul>
+ * <p>
+ * Encode with a re-used {@link BinaryEncoder}, send {@link BinaryEncoder#getBuffer()} up to {@link BinaryEncoder#size()}, and decode each received message after
+ * {@link BinaryDecoder#reset(byte[], int, int)}.
+ * </p>
+ */
+public final class MarketDataCodec {
+
+  public static final int VERSION = 1;
+
+  public static final int TYPE_TICKER = 1;
+  public static final int TYPE_TRADE = 2;
+  public static final int TYPE_TRADES = 3;
+  public static final int TYPE_ORDER_BOOK = 4;
+
+  /** The codes every message dictionary starts with; part of the format, so only ever append in a new version */
+  static final String[] CURRENCY_SEED = { "BTC", "USD", "EUR", "LTC", "GBP", "JPY", "CNY", "CAD", "AUD", "CHF", "PLN", "RUB", "NMC", "NVC", "PPC", "TRC", "FTC", "XPM",
+      "SEK", "DKK", "HKD", "NZD", "SGD", "THB" };
+
+  /** Delta channels */
+  private static final int PRICE = 0;
+  private static final int AMOUNT = 1;
+  private static final int OTHER = 2;
+
+  /** Order flags */
+  private static final int HAS_ID = 1;
+  private static final int HAS_TIMESTAMP = 2;
+  private static final int NEW_PAIR = 4;
+
+  /**
+   * private Constructor
+   */
+  private MarketDataCodec() {
+
+  }
+
+  public static BinaryEncoder encode(Ticker ticker, BinaryEncoder encoder) {
+
+    writeHeader(encoder, TYPE_TICKER);
+    encoder.writeCode(ticker.getTradableIdentifier());
+    writeMoney(encoder, ticker.getLast(), OTHER);
+    writeMoney(encoder, ticker.getBid(), OTHER);
+    writeMoney(encoder, ticker.getAsk(), OTHER);
+    writeMoney(encoder, ticker.getHigh(), OTHER);
+    writeMoney(encoder, ticker.getLow(), OTHER);
+    encoder.writeDecimal(ticker.getVolume());
+    writeDate(encoder, ticker.getTimestamp());
+    return encoder;
+  }
+
+  public static BinaryEncoder encode(Trade trade, BinaryEncoder encoder) {
+
+    writeHeader(encoder, TYPE_TRADE);
+    writeTrade(encoder, trade, 0, 0);
+    return encoder;
+  }
+
+  public static BinaryEncoder encode(Trades trades, BinaryEncoder encoder) {
+
+    writeHeader(encoder, TYPE_TRADES);
+    List<Trade> list = trades.getTrades();
+    encoder.writeVarInt(list.size());
+    long previousTimestamp = 0;
+    long previousId = 0;
+    for (Trade trade : list) {
+      writeTrade(encoder, trade, previousTimestamp, previousId);
+      previousTimestamp = trade.getTimestampMicros();
+      previousId = trade.getId();
+    }
+    return encoder;
+  }
+
+  public static BinaryEncoder encode(OrderBook orderBook, BinaryEncoder encoder) {
+
+    writeHeader(encoder, TYPE_ORDER_BOOK);
+    writeDate(encoder, orderBook.getTimeStamp());
+    writeOrders(encoder, orderBook.getAsks());
+    writeOrders(encoder, orderBook.getBids());
+    return encoder;
+  }
+
+  /**
+   * @return The decoded {@link Ticker}, {@link Trade}, {@link Trades} or {@link OrderBook}
+   */
+  public static Object decode(BinaryDecoder decoder) {
+
+    int type = readHeader(decoder);
+    switch (type) {
+    case TYPE_TICKER:
+      return readTicker(decoder);
+    case TYPE_TRADE:
+      return readTrade(decoder, 0, 0);
+    case TYPE_TRADES:
+      return readTrades(decoder);
+    case TYPE_ORDER_BOOK:
+      return readOrderBook(decoder);
+    default:
+      throw new IllegalArgumentException("Unknown message type " + type);
+    }
+  }
+
+  public static Ticker decodeTicker(BinaryDecoder decoder) {
+
+    expect(decoder, TYPE_TICKER);
+    return readTicker(decoder);
+  }
+
+  public static Trade decodeTrade(BinaryDecoder decoder) {
+
+    expect(decoder, TYPE_TRADE);
+    return readTrade(decoder, 0, 0);
+  }
+
+  public static Trades decodeTrades(BinaryDecoder decoder) {
+
+    expect(decoder, TYPE_TRADES);
+    return readTrades(decoder);
+  }
+
+  public static OrderBook decodeOrderBook(BinaryDecoder decoder) {
+
+    expect(decoder, TYPE_ORDER_BOOK);
+    return readOrderBook(decoder);
+  }
+
+  private static void writeHeader(BinaryEncoder encoder, int type) {
+
+    encoder.reset();
+    encoder.writeByte(VERSION);
+    encoder.writeByte(type);
+  }
+
+  private static int readHeader(BinaryDecoder decoder) {
+
+    int version = decoder.readByte();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported version " + version);
+    }
+    return decoder.readByte();
+  }
+
+  private static void expect(BinaryDecoder decoder, int expectedType) {
+
+    int type = readHeader(decoder);
+    if (type != expectedType) {
+      throw new IllegalArgumentException("Expected message type " + expectedType + " but was " + type);
+    }
+  }
+
+  private static Ticker readTicker(BinaryDecoder decoder) {
+
+    return TickerBuilder.newInstance().withTradableIdentifier(decoder.readCode()).withLast(readMoney(decoder, OTHER)).withBid(readMoney(decoder, OTHER))
+        .withAsk(readMoney(decoder, OTHER)).withHigh(readMoney(decoder, OTHER)).withLow(readMoney(decoder, OTHER)).withVolume(decoder.readDecimal()).withTimestamp(readDate(decoder))
+        .build();
+  }
+
+  private static void writeTrade(BinaryEncoder encoder, Trade trade, long previousTimestamp, long previousId) {
+
+    writeType(encoder, trade.getType());
+    encoder.writeDecimal(trade.getTradableAmount(), AMOUNT);
+    writeMoney(encoder, trade.getPrice(), PRICE);
+    encoder.writeCode(trade.getTradableIdentifier());
+    encoder.writeCode(trade.getTransactionCurrency());
+    // wraps around for Timestamps.NONE, which the decoder undoes
+    encoder.writeSignedVarLong(trade.getTimestampMicros() - previousTimestamp);
+    encoder.writeSignedVarLong(trade.getId() - previousId);
+  }
+
+  private static Trade readTrade(BinaryDecoder decoder, long previousTimestamp, long previousId) {
+
+    OrderType type = readType(decoder);
+    BigDecimal amount = decoder.readDecimal(AMOUNT);
+    BigMoney price = readMoney(decoder, PRICE);
+    String tradableIdentifier = decoder.readCode();
+    String transactionCurrency = decoder.readCode();
+    long timestamp = previousTimestamp + decoder.readSignedVarLong();
+    long id = previousId + decoder.readSignedVarLong();
+    return new Trade(type, amount, tradableIdentifier, transactionCurrency, price, timestamp, id);
+  }
+
+  private static Trades readTrades(BinaryDecoder decoder) {
+
+    int count = decoder.readVarInt();
+    List<Trade> trades = new ArrayList<Trade>(Math.min(count, decoder.remaining()));
+    long previousTimestamp = 0;
+    long previousId = 0;
+    for (int i = 0; i < count; i++) {
+      Trade trade = readTrade(decoder, previousTimestamp, previousId);
+      previousTimestamp = trade.getTimestampMicros();
+      previousId = trade.getId();
+      trades.add(trade);
+    }
+    return new Trades(trades);
+  }
+
+  private static void writeOrders(BinaryEncoder encoder, List<LimitOrder> orders) {
+
+    encoder.resetDeltas();
+    encoder.writeVarInt(orders.size());
+    String tradableIdentifier = null;
+    String transactionCurrency = null;
+    String priceCurrency = null;
+    long previousTimestamp = 0;
+    boolean first = true;
+    for (LimitOrder order : orders) {
+      String orderPriceCurrency = currencyOf(order.getLimitPrice());
+      boolean newPair = first || !equal(tradableIdentifier, order.getTradableIdentifier()) || !equal(transactionCurrency, order.getTransactionCurrency())
+          || !equal(priceCurrency, orderPriceCurrency);
+      first = false;
+      int flags = (order.getId() == null ? 0 : HAS_ID) | (order.getTimestamp() == null ? 0 : HAS_TIMESTAMP) | (newPair ? NEW_PAIR : 0);
+      encoder.writeByte(flags);
+      writeType(encoder, order.getType());
+      if (newPair) {
+        tradableIdentifier = order.getTradableIdentifier();
+        transactionCurrency = order.getTransactionCurrency();
+        priceCurrency = orderPriceCurrency;
+        encoder.writeCode(tradableIdentifier);
+        encoder.writeCode(transactionCurrency);
+        encoder.writeCode(priceCurrency);
+      }
+      encoder.writeDecimal(order.getTradableAmount(), AMOUNT);
+      encoder.writeDecimal(order.getLimitPrice() == null ? null : order.getLimitPrice().getAmount(), PRICE);
+      if (order.getId() != null) {
+        encoder.writeString(order.getId());
+      }
+      if (order.getTimestamp() != null) {
+        long timestamp = order.getTimestamp().getTime();
+        encoder.writeSignedVarLong(timestamp - previousTimestamp);
+        previousTimestamp = timestamp;
+      }
+    }
+  }
+
+  private static List<LimitOrder> readOrders(BinaryDecoder decoder) {
+
+    decoder.resetDeltas();
+    int count = decoder.readVarInt();
+    List<LimitOrder> orders = new ArrayList<LimitOrder>(Math.min(count, decoder.remaining()));
+    String tradableIdentifier = null;
+    String transactionCurrency = null;
+    CurrencyUnit priceCurrency = null;
+    long previousTimestamp = 0;
+    for (int i = 0; i < count; i++) {
+      int flags = decoder.readByte();
+      OrderType type = readType(decoder);
+      if ((flags & NEW_PAIR) != 0) {
+        tradableIdentifier = decoder.readCode();
+        transactionCurrency = decoder.readCode();
+        String code = decoder.readCode();
+        priceCurrency = code == null ? null : CurrencyUnit.of(code);
+      }
+      else if (i == 0) {
+        throw new IllegalArgumentException("First order without a currency pair");
+      }
+      BigDecimal amount = decoder.readDecimal(AMOUNT);
+      BigDecimal price = decoder.readDecimal(PRICE);
+      String id = (flags & HAS_ID) == 0 ? null : decoder.readString();
+      Date timestamp = null;
+      if ((flags & HAS_TIMESTAMP) != 0) {
+        previousTimestamp += decoder.readSignedVarLong();
+        timestamp = new Date(previousTimestamp);
+      }
+      BigMoney limitPrice = priceCurrency == null || price == null ? null : BigMoney.of(priceCurrency, price);
+      orders.add(new LimitOrder(type, amount, tradableIdentifier, transactionCurrency, id, timestamp, limitPrice));
+    }
+    return orders;
+  }
+
+  private static OrderBook readOrderBook(BinaryDecoder decoder) {
+
+    Date timestamp = readDate(decoder);
+    List<LimitOrder> asks = readOrders(decoder);
+    List<LimitOrder> bids = readOrders(decoder);
+    return new OrderBook(timestamp, asks, bids);
+  }
+
+  private static void writeType(BinaryEncoder encoder, OrderType type) {
+
+    encoder.writeByte(type == null ? 0 : type.ordinal() + 1);
+  }
+
+  private static OrderType readType(BinaryDecoder decoder) {
+
+    int value = decoder.readByte();
+    if (value > OrderType.values().length) {
+      throw new IllegalArgumentException("Unknown order type " + value);
+    }
+    return value == 0 ? null : OrderType.values()[value - 1];
+  }
+
+  private static void writeMoney(BinaryEncoder encoder, BigMoney money, int channel) {
+
+    encoder.writeCode(currencyOf(money));
+    encoder.writeDecimal(money == null ? null : money.getAmount(), channel);
+  }
+
+  private static BigMoney readMoney(BinaryDecoder decoder, int channel) {
+
+    String code = decoder.readCode();
+    BigDecimal amount = decoder.readDecimal(channel);
+    return code == null || amount == null ? null : BigMoney.of(CurrencyUnit.of(code), amount);
+  }
+
+  private static void writeDate(BinaryEncoder encoder, Date date) {
+
+    if (date == null) {
+      encoder.writeByte(0);
+    }
+    else {
+      encoder.writeByte(1);
+      encoder.writeSignedVarLong(date.getTime());
+    }
+  }
+
+  private static Date readDate(BinaryDecoder decoder) {
+
+    return decoder.readByte() == 0 ? null : new Date(decoder.readSignedVarLong());
+  }
+
+  private static String currencyOf(BigMoney money) {
+
+    return money == null ? null : money.getCurrencyUnit().getCurrencyCode();
+  }
+
+  private static boolean equal(String a, String b) {
+
+    return a == null ? b == null : a.equals(b);
+  }
+
+}
@@ -38,17 +38,16 @@ import com.fasterxml.jackson.databind.JsonDeserializer;
  */
 public abstract class EnumIntDeserializer<E extends Enum<E>> extends JsonDeserializer<E> {
 
-  private Class<E> enumClass;
+  private final E[] constants;
 
   protected EnumIntDeserializer(Class<E> enumClass) {
 
-    this.enumClass = enumClass;
+    this.constants = enumClass.getEnumConstants();
   }
 
   @Override
   public E deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
 
-    E[] constants = enumClass.getEnumConstants();
     return constants[jp.getValueAsInt() + getIndexBase()];
   }
 
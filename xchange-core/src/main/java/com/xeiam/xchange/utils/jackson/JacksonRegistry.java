@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils.jackson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * <p>
+ * Central, shared Jackson configuration for all modules
+ * </p>
+ * <ul>
+ * <li>One {@link ObjectMapper}, configured to ignore unknown properties, so its serializer and deserializer caches are built once</li>
+ * <li>{@link ObjectReader}s and {@link ObjectWriter}s are cached per DTO type; both are immutable and thread safe</li>
+ * <li>Deserializers bound with <code>@JsonDeserialize(using = ...)</code>, such as the ones in this package, are created once by the shared mapper and used from many threads, so they must
+ * be stateless or thread safe</li>
+ * </ul>
+ * <p>
+ * The shared mapper must not be reconfigured after startup; derive a reader or writer instead.
+ * </p>
+ */
+public final class JacksonRegistry {
+
+  private static final ObjectMapper objectMapper = createObjectMapper();
+
+  private static final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<Class<?>, ObjectReader>();
+  private static final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+
+  private static final ObjectReader mapReader = objectMapper.reader(new TypeReference<Map<String, Object>>() {
+  });
+  private static final ObjectWriter writer = objectMapper.writer();
+
+  /**
+   * private Constructor
+   */
+  private JacksonRegistry() {
+
+  }
+
+  private static ObjectMapper createObjectMapper() {
+
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    return mapper;
+  }
+
+  /**
+   * @return The shared mapper - do not reconfigure it
+   */
+  public static ObjectMapper getObjectMapper() {
+
+    return objectMapper;
+  }
+
+  /**
+   * @param type The DTO type
+   * @return A cached reader for the type
+   */
+  public static ObjectReader getReader(Class<?> type) {
+
+    ObjectReader reader = readers.get(type);
+    if (reader == null) {
+      reader = objectMapper.reader(type);
+      ObjectReader existing = readers.putIfAbsent(type, reader);
+      if (existing != null) {
+        reader = existing;
+      }
+    }
+    return reader;
+  }
+
+  /**
+   * @return A reader for generic JSON objects, as <code>Map&lt;String, Object&gt;</code>
+   */
+  public static ObjectReader getMapReader() {
+
+    return mapReader;
+  }
+
+  /**
+   * @param type The DTO type
+   * @return A cached writer for the type
+   */
+  public static ObjectWriter getWriter(Class<?> type) {
+
+    ObjectWriter typedWriter = writers.get(type);
+    if (typedWriter == null) {
+      typedWriter = objectMapper.writerWithType(type);
+      ObjectWriter existing = writers.putIfAbsent(type, typedWriter);
+      if (existing != null) {
+        typedWriter = existing;
+      }
+    }
+    return typedWriter;
+  }
+
+  /**
+   * @return A writer for values of any type, e.g. generic maps
+   */
+  public static ObjectWriter getWriter() {
+
+    return writer;
+  }
+
+  /**
+   * Reads a value straight from UTF-8 bytes, without decoding them into a String first
+   * 
+   * @param reader The reader, e.g. from {@link #getReader(Class)}
+   * @param buffer The bytes from its position up to its limit; the position is left unchanged
+   * @return The value
+   */
+  public static <T> T readValue(ObjectReader reader, ByteBuffer buffer) throws IOException {
+
+    if (buffer.hasArray()) {
+      return reader.readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return reader.readValue(bytes);
+  }
+
+  /**
+   * Creates a parser reading straight from UTF-8 bytes, for binding a document field by field with the readers of this registry
+   * 
+   * @param buffer The bytes from its position up to its limit; the position is left unchanged
+   * @return The parser, to be closed by the caller
+   */
+  public static JsonParser createParser(ByteBuffer buffer) throws IOException {
+
+    if (buffer.hasArray()) {
+      return objectMapper.getFactory().createParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return objectMapper.getFactory().createParser(bytes);
+  }
+
+  /**
+   * @param content A JSON document
+   * @return The parser, to be closed by the caller
+   */
+  public static JsonParser createParser(String content) throws IOException {
+
+    return objectMapper.getFactory().createParser(content);
+  }
+
+  /**
+   * Converts an already parsed value, e.g. a sub-map of a generic JSON object, into a DTO without serializing it to a String first
+   * 
+   * @param fromValue The parsed value
+   * @param type The DTO type
+   * @return The DTO
+   */
+  public static <T> T convert(Object fromValue, Class<T> type) {
+
+    return objectMapper.convertValue(fromValue, type);
+  }
+
+  /**
+   * Builds and caches the readers (and with them the deserializers) for the given types ahead of the first message. Only mapping done through this registry
+   * benefits, not mappers created elsewhere (e.g. by REST proxies).
+   * 
+   * @param types The DTO types
+   */
+  public static void warmUp(Class<?>... types) {
+
+    for (Class<?> type : types) {
+      getReader(type);
+    }
+  }
+
+}
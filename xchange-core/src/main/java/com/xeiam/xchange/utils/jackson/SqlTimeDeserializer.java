@@ -22,30 +22,31 @@
 package com.xeiam.xchange.utils.jackson;
 
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.TimeZone;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.xeiam.xchange.utils.Timestamps;
 
 /**
  * @author Matija Mazi
  */
 public class SqlTimeDeserializer extends JsonDeserializer<Date> {
 
-  private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+  /** Local date-times are read in the default zone; the parser is lock free so the shared instance is safe */
+  private static final TimeZone timeZone = TimeZone.getDefault();
 
   @Override
   public Date deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException, JsonProcessingException {
 
     String str = jp.getValueAsString();
     try {
-      return dateFormat.parse(str);
-    } catch (ParseException e) {
+      return new Date(Timestamps.toMillis(Timestamps.parseDateTime(str, timeZone)));
+    } catch (IllegalArgumentException e) {
       throw new InvalidFormatException("Error parsing as date", str, Date.class);
     }
   }
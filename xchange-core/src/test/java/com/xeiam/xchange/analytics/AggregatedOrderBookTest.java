@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import static com.xeiam.xchange.utils.DummyOrders.order;
+import static com.xeiam.xchange.utils.DummyOrders.orders;
+import static com.xeiam.xchange.utils.DummyOrders.update;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * Test class for testing AggregatedOrderBook
+ */
+public class AggregatedOrderBookTest {
+
+  @Test
+  public void testBuckets() {
+
+    AggregatedOrderBook book = new AggregatedOrderBook(5, 8, new BigDecimal("0.1"), BigDecimal.ONE);
+    book.reset(new OrderBook(new Date(), orders(order(OrderType.ASK, "100.01", "1"), order(OrderType.ASK, "100.05", "2"), order(OrderType.ASK, "100.25",
+        "4")), orders(order(OrderType.BID, "99.99", "1"), order(OrderType.BID, "99.95", "3"))));
+
+    // asks are grouped up, bids down
+    assertThat(book.getAmount(OrderType.ASK, 0, 100.1)).isEqualTo(3);
+    assertThat(book.getAmount(OrderType.ASK, 0, 100.3)).isEqualTo(4);
+    assertThat(book.getAmount(OrderType.ASK, 1, 101)).isEqualTo(7);
+    assertThat(book.getAmount(OrderType.BID, 0, 99.9)).isEqualTo(4);
+    assertThat(book.getBucketCount(OrderType.ASK, 0)).isEqualTo(2);
+
+    OrderBook tenCents = book.getOrderBook(0, 0);
+    assertThat(tenCents.getAsks()).hasSize(2);
+    assertThat(tenCents.getAsks().get(0).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("100.10000"));
+    assertThat(tenCents.getAsks().get(0).getTradableAmount()).isEqualTo(new BigDecimal("3.00000000"));
+    assertThat(tenCents.getBids().get(0).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("99.90000"));
+
+    // replace, then remove, a level
+    book.update(update(OrderType.ASK, "100.05", "0.5"));
+    assertThat(book.getAmount(OrderType.ASK, 0, 100.1)).isEqualTo(1.5);
+    assertThat(book.getAmount(OrderType.ASK, 1, 101)).isEqualTo(5.5);
+    book.update(update(OrderType.ASK, "100.01", "0"));
+    book.update(update(OrderType.ASK, "100.05", "0"));
+    assertThat(book.getBucketCount(OrderType.ASK, 0)).isEqualTo(1);
+    assertThat(book.getLevelCount(OrderType.ASK)).isEqualTo(1);
+    assertThat(book.getOrderBook(1, 1).getAsks().get(0).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("101.00000"));
+  }
+
+  @Test
+  public void testPricesAndAmountsAreScaledExactly() {
+
+    // 17 significant digits, more than a double holds
+    AggregatedOrderBook book = new AggregatedOrderBook(8, 8, new BigDecimal("0.00000001"));
+    book.update(update(OrderType.ASK, "123456789.12345679", "1.00000001"));
+    book.update(update(OrderType.ASK, "123456789.123456791", "2"));
+    book.update(update(OrderType.BID, "123456789.123456779", "3.000000005"));
+
+    List<LimitOrder> asks = book.getOrderBook(0, 0).getAsks();
+    assertThat(asks).hasSize(2);
+    assertThat(asks.get(0).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("123456789.12345679"));
+    assertThat(asks.get(0).getTradableAmount()).isEqualTo(new BigDecimal("1.00000001"));
+    assertThat(asks.get(1).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("123456789.12345680"));
+
+    List<LimitOrder> bids = book.getOrderBook(0, 0).getBids();
+    assertThat(bids.get(0).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("123456789.12345677"));
+    assertThat(bids.get(0).getTradableAmount()).isEqualTo(new BigDecimal("3.00000001"));
+  }
+
+  @Test
+  public void testMatchesFullReaggregation() {
+
+    BigDecimal[] sizes = { new BigDecimal("0.00000100"), new BigDecimal("0.00010000") };
+    AggregatedOrderBook book = new AggregatedOrderBook(8, 8, sizes);
+    Random random = new Random(7);
+    BigDecimal[] levels = new BigDecimal[200];
+    for (int i = 0; i < 5000; i++) {
+      int level = random.nextInt(levels.length);
+      BigDecimal amount = random.nextInt(4) == 0 ? BigDecimal.ZERO : new BigDecimal(random.nextInt(100000)).movePointLeft(4);
+      levels[level] = amount;
+      book.update(update(OrderType.BID, new BigDecimal(2000 + level).movePointLeft(8).toPlainString(), amount.toPlainString()));
+    }
+
+    for (int s = 0; s < sizes.length; s++) {
+      long size = sizes[s].movePointRight(8).longValue();
+      List<LimitOrder> bids = book.getOrderBook(s, 0).getBids();
+      for (LimitOrder bid : bids) {
+        long bucket = bid.getLimitPrice().getAmount().movePointRight(8).longValue();
+        BigDecimal expected = BigDecimal.ZERO;
+        for (int level = 0; level < levels.length; level++) {
+          long price = 2000 + level;
+          if (levels[level] != null && price - price % size == bucket) {
+            expected = expected.add(levels[level]);
+          }
+        }
+        assertThat(bid.getTradableAmount().compareTo(expected)).isEqualTo(0);
+      }
+    }
+  }
+
+  @Test
+  public void testUnitsMatchSetScale() {
+
+    Random random = new Random(11);
+    for (int i = 0; i < 10000; i++) {
+      BigDecimal value = BigDecimal.valueOf(random.nextLong() >> random.nextInt(64), random.nextInt(20) - 4);
+      for (RoundingMode rounding : new RoundingMode[] { RoundingMode.CEILING, RoundingMode.FLOOR, RoundingMode.HALF_UP }) {
+        BigInteger expected = value.setScale(8, rounding).unscaledValue();
+        if (expected.bitLength() < 64) {
+          assertThat(AggregatedOrderBook.toUnits(value, 8, rounding)).isEqualTo(expected.longValue());
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOverflowIsRejected() {
+
+    new AggregatedOrderBook(8, 8, BigDecimal.ONE).update(update(OrderType.ASK, "100000000000", "1"));
+  }
+}
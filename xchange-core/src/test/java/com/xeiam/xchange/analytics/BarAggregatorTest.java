@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Test;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+
+/**
+ * Test class for testing BarAggregator and BarSeries
+ */
+public class BarAggregatorTest {
+
+  private static final long T0 = 1380000000000L;
+
+  @Test
+  public void testOhlcvAndVwap() {
+
+    BarSeries series = new BarSeries(BarAggregator.ONE_MINUTE, 10, 3);
+    series.add(T0 + 1000, 100, 1);
+    series.add(T0 + 2000, 105, 2);
+    series.add(T0 + 3000, 95, 1);
+    series.add(T0 + 4000, 101, 1);
+
+    Bar bar = new Bar();
+    assertThat(series.copyBar(0, bar)).isTrue();
+    assertThat(bar.getOpenTime()).isEqualTo(T0);
+    assertThat(bar.getOpen()).isEqualTo(100);
+    assertThat(bar.getHigh()).isEqualTo(105);
+    assertThat(bar.getLow()).isEqualTo(95);
+    assertThat(bar.getClose()).isEqualTo(101);
+    assertThat(bar.getVolume()).isEqualTo(5);
+    assertThat(bar.getVwap()).isEqualTo((100 + 210 + 95 + 101) / 5.0, offset(1e-9));
+    assertThat(bar.getTradeCount()).isEqualTo(4);
+    assertThat(series.copyBar(1, bar)).isFalse();
+  }
+
+  @Test
+  public void testRolloverGapsAndEma() {
+
+    BarSeries series = new BarSeries(BarAggregator.ONE_MINUTE, 4, 3);
+    series.add(T0, 10, 1);
+    series.add(T0 + 2 * BarAggregator.ONE_MINUTE, 20, 1);
+
+    assertThat(series.size()).isEqualTo(3);
+    Bar flat = series.getBar(1);
+    assertThat(flat.getOpenTime()).isEqualTo(T0 + BarAggregator.ONE_MINUTE);
+    assertThat(flat.getClose()).isEqualTo(10);
+    assertThat(flat.getVolume()).isEqualTo(0);
+
+    // alpha = 0.5: 10 -> 10 (flat) -> 15
+    assertThat(series.getBar(0).getEma()).isEqualTo(15, offset(1e-9));
+
+    // a gap larger than the ring keeps only the newest bars
+    series.add(T0 + 100 * BarAggregator.ONE_MINUTE, 30, 1);
+    assertThat(series.size()).isEqualTo(4);
+    assertThat(series.getBar(0).getOpenTime()).isEqualTo(T0 + 100 * BarAggregator.ONE_MINUTE);
+    assertThat(series.getBar(3).getOpenTime()).isEqualTo(T0 + 97 * BarAggregator.ONE_MINUTE);
+    assertThat(series.getBar(3).getClose()).isEqualTo(20);
+  }
+
+  @Test
+  public void testLateTrades() {
+
+    BarSeries series = new BarSeries(BarAggregator.ONE_MINUTE, 2, 3);
+    series.add(T0, 10, 1);
+    series.add(T0 + BarAggregator.ONE_MINUTE, 11, 1);
+
+    assertThat(series.add(T0 + 500, 12, 1)).isTrue();
+    assertThat(series.getBar(1).getHigh()).isEqualTo(12);
+    assertThat(series.getBar(1).getClose()).isEqualTo(10);
+    assertThat(series.getBar(1).getVolume()).isEqualTo(2);
+
+    assertThat(series.add(T0 - BarAggregator.ONE_MINUTE, 9, 1)).isFalse();
+    assertThat(series.getDroppedTrades()).isEqualTo(1);
+  }
+
+  @Test
+  public void testAggregatorDeduplicatesPolls() {
+
+    BarAggregator aggregator = new BarAggregator(CurrencyPair.BTC_USD, 10, 5, BarAggregator.ONE_MINUTE, BarAggregator.ONE_HOUR);
+
+    Trades first = new Trades(Arrays.asList(trade(1, T0, "100"), trade(2, T0 + 1000, "101")));
+    Trades second = new Trades(Arrays.asList(trade(2, T0 + 1000, "101"), trade(3, T0 + BarAggregator.ONE_MINUTE, "102")));
+
+    assertThat(aggregator.add(first)).isEqualTo(2);
+    assertThat(aggregator.add(second)).isEqualTo(1);
+
+    assertThat(aggregator.getSeries(BarAggregator.ONE_MINUTE).size()).isEqualTo(2);
+    assertThat(aggregator.getSeries(BarAggregator.ONE_HOUR).size()).isEqualTo(1);
+    assertThat(aggregator.getSeries(BarAggregator.ONE_HOUR).getBar(0).getTradeCount()).isEqualTo(3);
+
+    assertThat(aggregator.handleEvent(new DefaultExchangeEvent(ExchangeEventType.TRADE, null, trade(4, T0 + BarAggregator.ONE_MINUTE, "103")))).isTrue();
+    assertThat(aggregator.getSeries(BarAggregator.ONE_MINUTE).getBar(0).getClose()).isEqualTo(103);
+
+    Trade otherPair = new Trade(OrderType.BID, BigDecimal.ONE, "LTC", "USD", BigMoney.of(CurrencyUnit.USD, new BigDecimal("2")), new Date(T0), 5);
+    assertThat(aggregator.add(otherPair)).isFalse();
+  }
+
+  @Test
+  public void testOutOfOrderTradesAndPairsAreDeduplicatedSeparately() {
+
+    BarAggregator aggregator = new BarAggregator(null, 10, 5, BarAggregator.ONE_MINUTE);
+
+    assertThat(aggregator.add(trade(5, T0, "100"))).isTrue();
+    // an older id that was not seen yet, e.g. from a lagging poll
+    assertThat(aggregator.add(trade(3, T0 + 1000, "101"))).isTrue();
+    assertThat(aggregator.add(trade(5, T0, "100"))).isFalse();
+
+    // the same id in another pair is a different trade
+    Trade otherPair = new Trade(OrderType.BID, BigDecimal.ONE, "BTC", "EUR", BigMoney.of(CurrencyUnit.EUR, new BigDecimal("90")), new Date(T0), 5);
+    assertThat(aggregator.add(otherPair)).isTrue();
+    assertThat(aggregator.add(otherPair)).isFalse();
+
+    assertThat(aggregator.getDuplicateTrades()).isEqualTo(2);
+    assertThat(aggregator.getSeries(BarAggregator.ONE_MINUTE).getBar(0).getTradeCount()).isEqualTo(3);
+  }
+
+  private Trade trade(long id, long time, String price) {
+
+    return new Trade(OrderType.BID, BigDecimal.ONE, "BTC", "USD", BigMoney.of(CurrencyUnit.USD, new BigDecimal(price)), new Date(time), id);
+  }
+
+}
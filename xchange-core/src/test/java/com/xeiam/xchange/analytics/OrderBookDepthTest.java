@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.analytics;
+
+import static com.xeiam.xchange.utils.DummyOrders.order;
+import static com.xeiam.xchange.utils.DummyOrders.orders;
+import static com.xeiam.xchange.utils.DummyOrders.update;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+
+/**
+ * Test class for testing OrderBookDepth and ExecutionEstimate
+ */
+public class OrderBookDepthTest {
+
+  @Test
+  public void testSweep() {
+
+    OrderBookDepth depth = new OrderBookDepth(new OrderBook(new Date(), orders(order(OrderType.ASK, 102, 3), order(OrderType.ASK, 100, 1), order(OrderType.ASK, 101, 2)),
+        orders(order(OrderType.BID, 99, 1), order(OrderType.BID, 98, 4))));
+
+    assertThat(depth.getBestPrice(OrderType.ASK)).isEqualTo(100);
+    assertThat(depth.getBestPrice(OrderType.BID)).isEqualTo(99);
+    assertThat(depth.getTotalAmount(OrderType.ASK)).isEqualTo(6);
+
+    ExecutionEstimate estimate = depth.estimate(OrderType.ASK, 4);
+    assertThat(estimate.isComplete()).isTrue();
+    assertThat(estimate.getNotional()).isEqualTo(100 + 2 * 101 + 102, offset(1e-9));
+    assertThat(estimate.getAveragePrice()).isEqualTo(101, offset(1e-9));
+    assertThat(estimate.getWorstPrice()).isEqualTo(102);
+    assertThat(estimate.getLevels()).isEqualTo(3);
+    assertThat(estimate.getSlippage()).isEqualTo(0.01, offset(1e-9));
+    assertThat(estimate.getMarketImpact()).isEqualTo(0.02, offset(1e-9));
+
+    assertThat(depth.getPriceForAmount(OrderType.ASK, 3)).isEqualTo(101);
+    assertThat(depth.getPriceForAmount(OrderType.BID, 2)).isEqualTo(98);
+    assertThat(depth.getPriceForAmount(OrderType.BID, 6)).isNaN();
+    assertThat(depth.getAmountToPrice(OrderType.ASK, 101.5)).isEqualTo(3);
+    assertThat(depth.getAmountToPrice(OrderType.BID, 98)).isEqualTo(5);
+    assertThat(depth.getAmountToPrice(OrderType.BID, 99.5)).isEqualTo(0);
+    assertThat(depth.getVwapToPrice(OrderType.ASK, 101)).isEqualTo(302.0 / 3, offset(1e-9));
+
+    ExecutionEstimate partial = depth.estimate(OrderType.BID, 10);
+    assertThat(partial.isComplete()).isFalse();
+    assertThat(partial.getFilledAmount()).isEqualTo(5);
+    assertThat(partial.getWorstPrice()).isEqualTo(98);
+  }
+
+  @Test
+  public void testUpdates() {
+
+    OrderBookDepth depth = new OrderBookDepth();
+    assertThat(depth.getBestPrice(OrderType.ASK)).isNaN();
+    assertThat(depth.estimate(OrderType.ASK, 1).getFilledAmount()).isEqualTo(0);
+
+    assertThat(depth.handleEvent(new DefaultExchangeEvent(ExchangeEventType.DEPTH, null, update(OrderType.ASK, 100, 1)))).isTrue();
+    depth.update(update(OrderType.ASK, 101, 2));
+    depth.update(update(OrderType.ASK, 99, 1));
+    assertThat(depth.getBestPrice(OrderType.ASK)).isEqualTo(99);
+    assertThat(depth.getTotalAmount(OrderType.ASK)).isEqualTo(4);
+
+    depth.update(update(OrderType.ASK, 99, 0));
+    depth.update(update(OrderType.ASK, 100, 3));
+    assertThat(depth.getLevels(OrderType.ASK)).isEqualTo(2);
+    assertThat(depth.getBestPrice(OrderType.ASK)).isEqualTo(100);
+    assertThat(depth.estimate(OrderType.ASK, 4).getNotional()).isEqualTo(401, offset(1e-9));
+
+    assertThat(depth.handleEvent(new DefaultExchangeEvent(ExchangeEventType.TRADE, null, update(OrderType.ASK, 50, 1)))).isFalse();
+  }
+
+  @Test
+  public void testAgainstOrderBook() {
+
+    Random random = new Random(42);
+    OrderBook orderBook = new OrderBook(new Date(), new ArrayList<LimitOrder>(), new ArrayList<LimitOrder>());
+    OrderBookDepth depth = new OrderBookDepth();
+
+    for (int i = 0; i < 2000; i++) {
+      OrderType type = random.nextBoolean() ? OrderType.ASK : OrderType.BID;
+      int price = type == OrderType.ASK ? 100 + random.nextInt(50) : 51 + random.nextInt(50);
+      int volume = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(10);
+      OrderBookUpdate orderBookUpdate = update(type, price, volume);
+      orderBook.update(orderBookUpdate);
+      depth.update(orderBookUpdate);
+
+      if (i % 50 == 0) {
+        double amount = random.nextInt(100);
+        assertEstimate(depth, orderBook.getAsks(), OrderType.ASK, amount);
+        assertEstimate(depth, orderBook.getBids(), OrderType.BID, amount);
+      }
+    }
+
+    OrderBookDepth seeded = new OrderBookDepth(orderBook);
+    for (int amount = 0; amount < 200; amount += 7) {
+      assertEstimate(seeded, orderBook.getAsks(), OrderType.ASK, amount);
+      assertEstimate(seeded, orderBook.getBids(), OrderType.BID, amount);
+    }
+  }
+
+  private void assertEstimate(OrderBookDepth depth, List<LimitOrder> bestFirst, OrderType side, double amount) {
+
+    double remaining = amount;
+    double notional = 0;
+    double worst = Double.NaN;
+    for (LimitOrder limitOrder : bestFirst) {
+      if (remaining <= 0) {
+        break;
+      }
+      double fill = Math.min(remaining, limitOrder.getTradableAmount().doubleValue());
+      notional += fill * limitOrder.getLimitPrice().getAmount().doubleValue();
+      worst = limitOrder.getLimitPrice().getAmount().doubleValue();
+      remaining -= fill;
+    }
+
+    ExecutionEstimate estimate = depth.estimate(side, amount);
+    assertThat(estimate.getFilledAmount()).isEqualTo(amount - remaining, offset(1e-9));
+    assertThat(estimate.getNotional()).isEqualTo(notional, offset(1e-6));
+    if (amount > 0) {
+      assertThat(estimate.getWorstPrice()).isEqualTo(worst);
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.dto.marketdata;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.xeiam.xchange.currency.MoneyUtils;
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * Test class for testing OrderBookBuilder
+ */
+public class OrderBookBuilderTest {
+
+  @Test
+  public void testBuildInEitherOrder() {
+
+    OrderBookBuilder builder = new OrderBookBuilder("BTC", "USD", 3, 3);
+    builder.asks().add(new BigDecimal("101"), BigDecimal.ONE).add(new BigDecimal("102"), BigDecimal.ONE).add(new BigDecimal("103"), BigDecimal.ONE);
+    // bids delivered worst price first
+    builder.bids().reversed().add(new BigDecimal("97"), BigDecimal.ONE).add(new BigDecimal("98"), BigDecimal.ONE).add(new BigDecimal("99"), BigDecimal.TEN);
+    Date timestamp = new Date(1000);
+    OrderBook orderBook = builder.withTimestamp(timestamp).build();
+
+    assertThat(orderBook.getTimeStamp()).isEqualTo(timestamp);
+    assertThat(prices(orderBook.getAsks())).isEqualTo(new String[] { "101", "102", "103" });
+    assertThat(prices(orderBook.getBids())).isEqualTo(new String[] { "99", "98", "97" });
+
+    LimitOrder best = orderBook.getBids().get(0);
+    assertThat(best.getType()).isEqualTo(OrderType.BID);
+    assertThat(best.getTradableAmount()).isEqualTo(BigDecimal.TEN);
+    assertThat(best.getTradableIdentifier()).isEqualTo("BTC");
+    assertThat(best.getTransactionCurrency()).isEqualTo("USD");
+  }
+
+  @Test
+  public void testPricesMatchParsing() {
+
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(OrderType.ASK, "BTC", "USD", 2);
+    side.add(new BigDecimal("760.990"), BigDecimal.ONE).add(new BigDecimal("1E+2"), BigDecimal.ONE);
+    List<LimitOrder> orders = side.build();
+
+    assertThat(orders.get(0).getLimitPrice()).isEqualTo(MoneyUtils.parse("USD 760.990"));
+    assertThat(orders.get(1).getLimitPrice()).isEqualTo(MoneyUtils.parse("USD 1E+2"));
+  }
+
+  @Test
+  public void testTradesBuilder() {
+
+    // trades delivered newest first
+    TradesBuilder builder = new TradesBuilder("BTC", "USD", 2).reversed();
+    builder.add(OrderType.BID, BigDecimal.ONE, new BigDecimal("101"), new Date(2000), 2);
+    builder.add(OrderType.ASK, BigDecimal.ONE, new BigDecimal("100"), new Date(1000), 1);
+    List<Trade> trades = builder.build().getTrades();
+
+    assertThat(trades).hasSize(2);
+    assertThat(trades.get(0).getId()).isEqualTo(1);
+    assertThat(trades.get(0).getPrice()).isEqualTo(MoneyUtils.parse("USD 100"));
+    assertThat(trades.get(1).getTimestamp()).isEqualTo(new Date(2000));
+  }
+
+  private static String[] prices(List<LimitOrder> orders) {
+
+    String[] prices = new String[orders.size()];
+    for (int i = 0; i < prices.length; i++) {
+      prices[i] = orders.get(i).getLimitPrice().getAmount().toPlainString();
+    }
+    return prices;
+  }
+
+}
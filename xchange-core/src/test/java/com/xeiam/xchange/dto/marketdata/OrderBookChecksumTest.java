@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.dto.marketdata;
+
+import static com.xeiam.xchange.utils.DummyOrders.order;
+import static com.xeiam.xchange.utils.DummyOrders.update;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * Test class for testing the incrementally maintained OrderBook checksum
+ */
+public class OrderBookChecksumTest {
+
+  @Test
+  public void testUpdatesMatchSnapshot() {
+
+    OrderBook local = new OrderBook(new Date(), new ArrayList<LimitOrder>(), new ArrayList<LimitOrder>());
+    long empty = local.getChecksum();
+    Random random = new Random(3);
+    BigDecimal[] askLevels = new BigDecimal[50];
+    BigDecimal[] bidLevels = new BigDecimal[50];
+    for (int i = 0; i < 2000; i++) {
+      boolean ask = random.nextBoolean();
+      int level = random.nextInt(50);
+      BigDecimal volume = random.nextInt(3) == 0 ? BigDecimal.ZERO : new BigDecimal(random.nextInt(1000)).movePointLeft(2);
+      (ask ? askLevels : bidLevels)[level] = volume;
+      local.update(update(ask ? OrderType.ASK : OrderType.BID, price(ask, level), volume));
+    }
+
+    // a fresh snapshot of the same levels, with prices at another scale
+    List<LimitOrder> asks = new ArrayList<LimitOrder>();
+    List<LimitOrder> bids = new ArrayList<LimitOrder>();
+    for (int level = 0; level < 50; level++) {
+      if (askLevels[level] != null && askLevels[level].signum() != 0) {
+        asks.add(order(OrderType.ASK, price(true, level).setScale(4), askLevels[level]));
+      }
+      if (bidLevels[level] != null && bidLevels[level].signum() != 0) {
+        bids.add(order(OrderType.BID, price(false, level).setScale(4), bidLevels[level]));
+      }
+    }
+    OrderBook snapshot = new OrderBook(new Date(), asks, bids);
+    assertThat(local.getChecksum()).isEqualTo(snapshot.getChecksum());
+    assertThat(local.getChecksum()).isNotEqualTo(empty);
+
+    // drift on one level is detected
+    local.update(order(OrderType.ASK, price(true, 0), new BigDecimal("123.45")));
+    assertThat(local.getChecksum()).isNotEqualTo(snapshot.getChecksum());
+    assertThat(local.getAsks()).contains(order(OrderType.ASK, price(true, 0), new BigDecimal("123.45")));
+  }
+
+  @Test
+  public void testSideMatters() {
+
+    List<LimitOrder> asks = new ArrayList<LimitOrder>();
+    asks.add(order(OrderType.ASK, new BigDecimal("100"), BigDecimal.ONE));
+    List<LimitOrder> bids = new ArrayList<LimitOrder>();
+    bids.add(order(OrderType.BID, new BigDecimal("100"), BigDecimal.ONE));
+
+    assertThat(new OrderBook(null, asks, new ArrayList<LimitOrder>()).getChecksum()).isNotEqualTo(new OrderBook(null, new ArrayList<LimitOrder>(), bids).getChecksum());
+  }
+
+  @Test
+  public void testExactValuesAreHashed() {
+
+    assertThat(checksum(new BigDecimal("0.12345678901234567891"))).isNotEqualTo(checksum(new BigDecimal("0.12345678901234567892")));
+    assertThat(checksum(new BigDecimal("0.10"))).isEqualTo(checksum(new BigDecimal("0.1")));
+    assertThat(checksum(new BigDecimal("0.00"))).isEqualTo(checksum(BigDecimal.ZERO));
+  }
+
+  private static long checksum(BigDecimal amount) {
+
+    List<LimitOrder> asks = new ArrayList<LimitOrder>();
+    asks.add(order(OrderType.ASK, new BigDecimal("100"), amount));
+    return new OrderBook(null, asks, new ArrayList<LimitOrder>()).getChecksum();
+  }
+
+  private static BigDecimal price(boolean ask, int level) {
+
+    return new BigDecimal(ask ? 10100 + level : 9999 - level).movePointLeft(2);
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.account;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.dto.trade.MarketOrder;
+import com.xeiam.xchange.dto.trade.OpenOrders;
+import com.xeiam.xchange.dto.trade.Wallet;
+import com.xeiam.xchange.service.polling.PollingAccountService;
+import com.xeiam.xchange.service.polling.PollingTradeService;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+
+/**
+ * Test class for testing AccountStateCache
+ */
+public class AccountStateCacheTest {
+
+  private static final CurrencyUnit BTC = CurrencyUnit.of("BTC");
+
+  private int polls;
+  private Runnable duringPoll;
+  private final List<LimitOrder> exchangeOpenOrders = new ArrayList<LimitOrder>();
+
+  private PollingAccountService accountService;
+  private AccountStateCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+
+    polls = 0;
+    accountService = new PollingAccountService() {
+
+      @Override
+      public AccountInfo getAccountInfo() {
+
+        polls++;
+        AccountInfo accountInfo = new AccountInfo("user", Arrays.asList(Wallet.createInstance("USD", new BigDecimal("1000")), Wallet.createInstance("BTC", new BigDecimal(
+            "10"))));
+        if (duringPoll != null) {
+          duringPoll.run();
+        }
+        return accountInfo;
+      }
+
+      @Override
+      public String withdrawFunds(BigDecimal amount, String address) {
+
+        return null;
+      }
+
+      @Override
+      public String requestBitcoinDepositAddress(String... arguments) {
+
+        return null;
+      }
+    };
+    cache = new AccountStateCache(accountService);
+    cache.start(0);
+  }
+
+  @Test
+  public void testSeed() {
+
+    assertThat(polls).isEqualTo(1);
+    assertThat(cache.getBalance(CurrencyUnit.USD)).isEqualTo(BigMoney.of(CurrencyUnit.USD, new BigDecimal("1000")));
+    assertThat(cache.getBalance(CurrencyUnit.EUR).isZero()).isTrue();
+    assertThat(cache.getAccountInfo().getUsername()).isEqualTo("user");
+    assertThat(cache.getAccountInfo().getWallets()).hasSize(2);
+  }
+
+  @Test
+  public void testWalletEvent() {
+
+    assertThat(cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_WALLET_UPDATE, null, Wallet.createInstance("BTC", new BigDecimal("9.5"))))).isTrue();
+
+    assertThat(cache.getBalance(BTC)).isEqualTo(BigMoney.of(BTC, new BigDecimal("9.5")));
+    assertThat(polls).isEqualTo(1);
+  }
+
+  @Test
+  public void testOrderReservations() throws IOException {
+
+    LimitOrder bid = new LimitOrder(OrderType.BID, new BigDecimal("2"), "BTC", "USD", "1", BigMoney.of(CurrencyUnit.USD, new BigDecimal("100")));
+    LimitOrder ask = new LimitOrder(OrderType.ASK, new BigDecimal("3"), "BTC", "USD", "2", BigMoney.of(CurrencyUnit.USD, new BigDecimal("120")));
+    cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, bid));
+    cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, ask));
+
+    assertThat(cache.getReserved(CurrencyUnit.USD).getAmount()).isEqualByComparingTo(new BigDecimal("200"));
+    assertThat(cache.getAvailable(CurrencyUnit.USD).getAmount()).isEqualByComparingTo(new BigDecimal("800"));
+    assertThat(cache.getAvailable(BTC).getAmount()).isEqualByComparingTo(new BigDecimal("7"));
+
+    // partial fill, then the order disappears
+    cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, new LimitOrder(OrderType.BID, new BigDecimal("0.5"), "BTC", "USD", "1", BigMoney.of(
+        CurrencyUnit.USD, new BigDecimal("100")))));
+    assertThat(cache.getReserved(CurrencyUnit.USD).getAmount()).isEqualByComparingTo(new BigDecimal("50"));
+    cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, "1"));
+    assertThat(cache.getReserved(CurrencyUnit.USD).isZero()).isTrue();
+
+    cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER_CANCELED, null, "2"));
+    assertThat(cache.getReserved(BTC).isZero()).isTrue();
+
+    cache.applyOpenOrders(new OpenOrders(Collections.singletonList(ask)));
+    assertThat(cache.getReserved(BTC).getAmount()).isEqualByComparingTo(new BigDecimal("3"));
+
+    // reconciliation replaces the balances but keeps the reservations
+    cache.reconcile();
+    assertThat(polls).isEqualTo(2);
+    assertThat(cache.getAvailable(BTC).getAmount()).isEqualByComparingTo(new BigDecimal("7"));
+  }
+
+  @Test
+  public void testReconcileReservations() throws IOException {
+
+    cache = new AccountStateCache(accountService, new PollingTradeService() {
+
+      @Override
+      public OpenOrders getOpenOrders() {
+
+        return new OpenOrders(new ArrayList<LimitOrder>(exchangeOpenOrders));
+      }
+
+      @Override
+      public String placeMarketOrder(MarketOrder marketOrder) {
+
+        return null;
+      }
+
+      @Override
+      public String placeLimitOrder(LimitOrder limitOrder) {
+
+        return null;
+      }
+
+      @Override
+      public boolean cancelOrder(String orderId) {
+
+        return false;
+      }
+
+      @Override
+      public Trades getTradeHistory(Object... arguments) {
+
+        return null;
+      }
+    });
+    exchangeOpenOrders.add(new LimitOrder(OrderType.ASK, new BigDecimal("3"), "BTC", "USD", "1", BigMoney.of(CurrencyUnit.USD, new BigDecimal("120"))));
+    cache.start(0);
+    assertThat(cache.getAvailable(BTC).getAmount()).isEqualByComparingTo(new BigDecimal("7"));
+
+    // a missed cancel is corrected by the next reconciliation
+    exchangeOpenOrders.clear();
+    cache.reconcile();
+    assertThat(cache.getReserved(BTC).isZero()).isTrue();
+  }
+
+  @Test
+  public void testEventsDuringPollAreKept() throws IOException {
+
+    final LimitOrder bid = new LimitOrder(OrderType.BID, new BigDecimal("2"), "BTC", "USD", "1", BigMoney.of(CurrencyUnit.USD, new BigDecimal("100")));
+    duringPoll = new Runnable() {
+
+      @Override
+      public void run() {
+
+        cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_WALLET_UPDATE, null, Wallet.createInstance("BTC", new BigDecimal("9.5"))));
+        cache.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, bid));
+      }
+    };
+
+    // the polled balances predate the wallet event
+    cache.reconcile();
+    assertThat(cache.getBalance(BTC).getAmount()).isEqualByComparingTo(new BigDecimal("9.5"));
+    assertThat(cache.getBalance(CurrencyUnit.USD).getAmount()).isEqualByComparingTo(new BigDecimal("1000"));
+    assertThat(cache.getReserved(CurrencyUnit.USD).getAmount()).isEqualByComparingTo(new BigDecimal("200"));
+
+    // a poll requested afterwards is applied in full
+    duringPoll = null;
+    cache.reconcile();
+    assertThat(cache.getBalance(BTC).getAmount()).isEqualByComparingTo(new BigDecimal("10"));
+  }
+}
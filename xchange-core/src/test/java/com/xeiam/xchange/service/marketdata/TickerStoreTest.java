@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.marketdata;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Test;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+
+/**
+ * Test class for testing TickerStore
+ */
+public class TickerStoreTest {
+
+  private static Ticker ticker(String last, long timestamp) {
+
+    return TickerBuilder.newInstance().withTradableIdentifier("BTC").withLast(BigMoney.of(CurrencyUnit.USD, Double.valueOf(last)))
+        .withTimestamp(new Date(timestamp)).build();
+  }
+
+  @Test
+  public void testConflatesAndVersions() {
+
+    TickerStore store = new TickerStore();
+
+    TickerSnapshot first = store.put("MtGox", CurrencyPair.BTC_USD, ticker("100", 1000));
+    TickerSnapshot second = store.put("MtGox", CurrencyPair.BTC_USD, ticker("101", 2000));
+    store.put("Bitstamp", CurrencyPair.BTC_USD, ticker("99", 2000));
+
+    assertThat(second.getVersion()).isGreaterThan(first.getVersion());
+    assertThat(store.getTicker("MtGox", CurrencyPair.BTC_USD).getLast().getAmount()).isEqualByComparingTo("101");
+    assertThat(store.getSnapshots()).hasSize(2);
+    assertThat(store.getVersion()).isEqualTo(3);
+
+    // an older ticker, e.g. from a slow poll, does not replace a newer one
+    assertThat(store.put("MtGox", CurrencyPair.BTC_USD, ticker("90", 1500))).isNull();
+    assertThat(store.get("MtGox", CurrencyPair.BTC_USD)).isSameAs(second);
+  }
+
+  @Test
+  public void testHandleEvent() {
+
+    TickerStore store = new TickerStore();
+
+    store.handleEvent("MtGox", new DefaultExchangeEvent(ExchangeEventType.TICKER, null, ticker("100", 1000)));
+    store.handleEvent("MtGox", new DefaultExchangeEvent(ExchangeEventType.TRADE, null, ticker("200", 2000)));
+
+    assertThat(store.getTicker("MtGox", CurrencyPair.BTC_USD).getLast().getAmount()).isEqualByComparingTo("100");
+    assertThat(store.getVersion()).isEqualTo(1);
+  }
+
+  @Test
+  public void testAwaitUpdate() throws Exception {
+
+    final TickerStore store = new TickerStore();
+    final long version = store.put("MtGox", CurrencyPair.BTC_USD, ticker("100", 1000)).getVersion();
+
+    assertThat(store.awaitUpdate("MtGox", CurrencyPair.BTC_USD, version, 10, TimeUnit.MILLISECONDS)).isNull();
+    assertThat(store.awaitVersion(version, 10, TimeUnit.MILLISECONDS)).isEqualTo(version);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<TickerSnapshot> update = executor.submit(new Callable<TickerSnapshot>() {
+
+        @Override
+        public TickerSnapshot call() throws Exception {
+
+          return store.awaitUpdate("MtGox", CurrencyPair.BTC_USD, version, 5, TimeUnit.SECONDS);
+        }
+      });
+
+      // a write to another key does not satisfy the waiter
+      store.put("Bitstamp", CurrencyPair.BTC_USD, ticker("99", 2000));
+      Thread.sleep(20);
+      assertThat(update.isDone()).isFalse();
+
+      store.put("MtGox", CurrencyPair.BTC_USD, ticker("101", 2000));
+      TickerSnapshot snapshot = update.get(5, TimeUnit.SECONDS);
+      assertThat(snapshot.getTicker().getLast().getAmount()).isEqualByComparingTo("101");
+      assertThat(snapshot.getVersion()).isGreaterThan(version);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.marketdata;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+
+/**
+ * Test class for testing TradeTape
+ */
+public class TradeTapeTest {
+
+  @Test
+  public void testMergeWithinLateness() {
+
+    // one second of lateness
+    TradeTape tape = new TradeTape("BTC", "USD", 1000, 16);
+
+    assertThat(tape.add("MtGox", trade(1, 1000, "100"))).isTrue();
+    assertThat(tape.add("MtGox", trade(2, 1800, "101"))).isTrue();
+    assertThat(tape.getNextSequence()).isEqualTo(0);
+    // a slower poll with a trade in between, its own id space and an overlapping trade
+    assertThat(tape.addAll("Bitstamp", new Trades(Arrays.asList(trade(1, 1500, "99"), trade(2, 2600, "102"))))).isEqualTo(2);
+    assertThat(tape.addAll("Bitstamp", new Trades(Arrays.asList(trade(2, 2600, "102"))))).isEqualTo(0);
+    assertThat(tape.getDuplicateTrades()).isEqualTo(1);
+
+    // 2600 - 1000 releases the trades up to 1600
+    assertThat(tape.getNextSequence()).isEqualTo(2);
+    assertThat(tape.getPendingCount()).isEqualTo(2);
+
+    // older than the last released trade
+    assertThat(tape.add("Kraken", trade(0, 1200, "98"))).isFalse();
+    assertThat(tape.getLateTrades()).isEqualTo(1);
+
+    assertThat(tape.flush()).isEqualTo(2);
+    TapeTrade tapeTrade = new TapeTrade();
+    String[] expected = { "MtGox", "Bitstamp", "MtGox", "Bitstamp" };
+    long previous = Long.MIN_VALUE;
+    for (long sequence = tape.getFirstSequence(); sequence < tape.getNextSequence(); sequence++) {
+      assertThat(tape.copy(sequence, tapeTrade)).isTrue();
+      assertThat(tapeTrade.getExchange()).isEqualTo(expected[(int) sequence]);
+      assertThat(tapeTrade.getTimestampMicros()).isGreaterThanOrEqualTo(previous);
+      previous = tapeTrade.getTimestampMicros();
+    }
+    assertThat(tapeTrade.getPrice()).isEqualTo(102);
+    assertThat(tapeTrade.getType()).isEqualTo(OrderType.BID);
+
+    assertThat(tape.getVolume(1500 * 1000L)).isEqualTo(3);
+    assertThat(tape.getVwap(1500 * 1000L)).isEqualTo(302.0 / 3, offset(1e-9));
+  }
+
+  @Test
+  public void testRepolledTradesAreDuplicatesNotLate() {
+
+    TradeTape tape = new TradeTape("BTC", "USD", 0, 16);
+    Trades poll = new Trades(Arrays.asList(trade(1, 1000, "100"), trade(2, 1100, "101")));
+    assertThat(tape.addAll("Bitstamp", poll)).isEqualTo(2);
+    assertThat(tape.getNextSequence()).isEqualTo(2);
+
+    // the next poll overlaps the released trades
+    assertThat(tape.addAll("Bitstamp", new Trades(Arrays.asList(trade(1, 1000, "100"), trade(2, 1100, "101"), trade(3, 1200, "102"))))).isEqualTo(1);
+    assertThat(tape.getDuplicateTrades()).isEqualTo(2);
+    assertThat(tape.getLateTrades()).isEqualTo(0);
+
+    // a new trade older than the released ones is still late
+    assertThat(tape.add("Bitstamp", trade(4, 900, "99"))).isFalse();
+    assertThat(tape.getLateTrades()).isEqualTo(1);
+    assertThat(tape.getDuplicateTrades()).isEqualTo(2);
+  }
+
+  @Test
+  public void testRingAndClock() {
+
+    TradeTape tape = new TradeTape("BTC", "USD", 1000, 2);
+    tape.add("MtGox", trade(1, 1000, "100"));
+    tape.add("MtGox", trade(2, 1100, "100"));
+    tape.add("MtGox", trade(3, 1200, "100"));
+    assertThat(tape.add("MtGox", new Trade(OrderType.BID, BigDecimal.ONE, "BTC", "EUR", BigMoney.of(CurrencyUnit.EUR, BigDecimal.TEN), 1300 * 1000L, 4))).isFalse();
+    assertThat(tape.getNextSequence()).isEqualTo(0);
+
+    // a quiet feed is released by the clock
+    assertThat(tape.advanceTo(2150 * 1000L)).isEqualTo(2);
+    assertThat(tape.getFirstSequence()).isEqualTo(0);
+    assertThat(tape.advanceTo(2200 * 1000L)).isEqualTo(1);
+    assertThat(tape.getFirstSequence()).isEqualTo(1);
+    assertThat(tape.copy(0, new TapeTrade())).isFalse();
+  }
+
+  private static Trade trade(long id, long millis, String price) {
+
+    return new Trade(OrderType.BID, BigDecimal.ONE, "BTC", "USD", BigMoney.of(CurrencyUnit.USD, new BigDecimal(price)), millis * 1000L, id);
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.polling;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * Test class for testing client side truncation of OrderBookRequest
+ */
+public class OrderBookRequestTest {
+
+  @Test
+  public void testTruncate() {
+
+    OrderBook orderBook = orderBook();
+
+    OrderBook top = OrderBookRequest.levels(2).truncate(orderBook);
+    assertThat(prices(top.getAsks())).isEqualTo(new String[] { "101", "102" });
+    assertThat(prices(top.getBids())).isEqualTo(new String[] { "99", "98" });
+    assertThat(top.getTimeStamp()).isEqualTo(orderBook.getTimeStamp());
+
+    // mid is 100, so the window is 96..104
+    OrderBook window = OrderBookRequest.priceWindow(new BigDecimal("0.04")).truncate(orderBook);
+    assertThat(prices(window.getAsks())).isEqualTo(new String[] { "101", "102", "104" });
+    assertThat(prices(window.getBids())).isEqualTo(new String[] { "99", "98", "96" });
+
+    OrderBook both = new OrderBookRequest(2, new BigDecimal("0.015")).truncate(orderBook);
+    assertThat(prices(both.getAsks())).isEqualTo(new String[] { "101" });
+    assertThat(prices(both.getBids())).isEqualTo(new String[] { "99" });
+
+    // untouched books are not copied
+    assertThat(OrderBookRequest.FULL.truncate(orderBook)).isSameAs(orderBook);
+    assertThat(OrderBookRequest.levels(10).truncate(orderBook)).isSameAs(orderBook);
+    assertThat(orderBook.getAsks()).hasSize(4);
+  }
+
+  @Test
+  public void testTruncateOneSidedBook() {
+
+    OrderBookBuilder builder = new OrderBookBuilder("BTC", "USD", 2, 0);
+    builder.asks().add(new BigDecimal("100"), BigDecimal.ONE).add(new BigDecimal("120"), BigDecimal.ONE);
+
+    OrderBook window = OrderBookRequest.priceWindow(new BigDecimal("0.1")).truncate(builder.build());
+    assertThat(prices(window.getAsks())).isEqualTo(new String[] { "100" });
+    assertThat(window.getBids()).isEmpty();
+  }
+
+  @Test
+  public void testUnsortedSidesAreSortedFirst() {
+
+    OrderBookBuilder builder = new OrderBookBuilder("BTC", "USD", 3, 3);
+    builder.asks().add(new BigDecimal("104"), BigDecimal.ONE).add(new BigDecimal("101"), BigDecimal.ONE).add(new BigDecimal("102"), BigDecimal.ONE);
+    builder.bids().add(new BigDecimal("96"), BigDecimal.ONE).add(new BigDecimal("99"), BigDecimal.ONE).add(new BigDecimal("98"), BigDecimal.ONE);
+    OrderBook orderBook = builder.build();
+
+    OrderBook top = OrderBookRequest.levels(2).truncate(orderBook);
+    assertThat(prices(top.getAsks())).isEqualTo(new String[] { "101", "102" });
+    assertThat(prices(top.getBids())).isEqualTo(new String[] { "99", "98" });
+
+    // mid is 100, so the window is 98..102
+    OrderBook window = OrderBookRequest.priceWindow(new BigDecimal("0.02")).truncate(orderBook);
+    assertThat(prices(window.getAsks())).isEqualTo(new String[] { "101", "102" });
+    assertThat(prices(window.getBids())).isEqualTo(new String[] { "99", "98" });
+  }
+
+  private static OrderBook orderBook() {
+
+    OrderBookBuilder builder = new OrderBookBuilder("BTC", "USD", 4, 4);
+    builder.asks().add(new BigDecimal("101"), BigDecimal.ONE).add(new BigDecimal("102"), BigDecimal.ONE).add(new BigDecimal("104"), BigDecimal.ONE)
+        .add(new BigDecimal("110"), BigDecimal.ONE);
+    builder.bids().add(new BigDecimal("99"), BigDecimal.ONE).add(new BigDecimal("98"), BigDecimal.ONE).add(new BigDecimal("96"), BigDecimal.ONE)
+        .add(new BigDecimal("90"), BigDecimal.ONE);
+    return builder.build();
+  }
+
+  private static String[] prices(List<LimitOrder> orders) {
+
+    String[] prices = new String[orders.size()];
+    for (int i = 0; i < prices.length; i++) {
+      prices[i] = orders.get(i).getLimitPrice().getAmount().toPlainString();
+    }
+    return prices;
+  }
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.polling;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xeiam.xchange.RequestExpiredException;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.ExchangeInfo;
+import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.dto.trade.MarketOrder;
+import com.xeiam.xchange.dto.trade.OpenOrders;
+import com.xeiam.xchange.utils.MovingAverage;
+
+/**
+ * Test class for testing RequestScheduler
+ */
+public class RequestSchedulerTest {
+
+  private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+  private RequestScheduler scheduler;
+
+  @After
+  public void tearDown() {
+
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testOrdersGoFirst() throws Exception {
+
+    scheduler = new RequestScheduler("test", new TokenBucket(1, 1, 300), 1);
+
+    // spends the only token
+    scheduler.execute(RequestPriority.MARKET_DATA, 0, call("ticker1"));
+    Future<String> second = scheduler.submit(RequestPriority.MARKET_DATA, 0, call("ticker2"));
+    Future<String> order = scheduler.submit(RequestPriority.ORDER, 0, call("order"));
+
+    order.get();
+    second.get();
+    assertThat(calls).containsExactly("ticker1", "order", "ticker2");
+  }
+
+  @Test
+  public void testEndpointLimitDoesNotBlockOtherLanes() throws Exception {
+
+    scheduler = new RequestScheduler("test", null, 1);
+    scheduler.setRateLimit(RequestPriority.MARKET_DATA, new TokenBucket(1, 1, 60000));
+
+    scheduler.execute(RequestPriority.MARKET_DATA, 0, call("ticker1"));
+    scheduler.submit(RequestPriority.MARKET_DATA, 0, call("ticker2"));
+    scheduler.execute(RequestPriority.ACCOUNT, 0, call("account"));
+
+    assertThat(calls).containsExactly("ticker1", "account");
+    assertThat(scheduler.getQueueSize(RequestPriority.MARKET_DATA)).isEqualTo(1);
+  }
+
+  @Test
+  public void testStaleRequestsAreDropped() throws Exception {
+
+    scheduler = new RequestScheduler("test", new TokenBucket(1, 1, 60000), 1);
+
+    scheduler.execute(RequestPriority.MARKET_DATA, 0, call("ticker1"));
+    Future<String> stale = scheduler.submit(RequestPriority.MARKET_DATA, 50, call("ticker2"));
+    try {
+      stale.get();
+      throw new AssertionError("expected the request to be dropped");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(RequestExpiredException.class);
+    }
+    assertThat(calls).containsExactly("ticker1");
+    assertThat(scheduler.getDroppedCount(RequestPriority.MARKET_DATA)).isEqualTo(1);
+  }
+
+  @Test
+  public void testWrappedService() throws Exception {
+
+    scheduler = new RequestScheduler("test", new TokenBucket(10, 10, 1000), 2);
+
+    PollingTradeService tradeService = scheduler.wrapTradeService(new PollingTradeService() {
+
+      @Override
+      public OpenOrders getOpenOrders() throws IOException {
+
+        throw new IOException("down");
+      }
+
+      @Override
+      public String placeMarketOrder(MarketOrder marketOrder) {
+
+        return null;
+      }
+
+      @Override
+      public String placeLimitOrder(LimitOrder limitOrder) {
+
+        calls.add(Thread.currentThread().getName());
+        return "42";
+      }
+
+      @Override
+      public boolean cancelOrder(String orderId) {
+
+        return false;
+      }
+
+      @Override
+      public Trades getTradeHistory(Object... arguments) {
+
+        return null;
+      }
+    }, 1000, 0);
+
+    assertThat(tradeService.placeLimitOrder(null)).isEqualTo("42");
+    assertThat(calls.get(0)).startsWith("test-request-");
+    try {
+      tradeService.getOpenOrders();
+      throw new AssertionError("expected an IOException");
+    } catch (IOException e) {
+      assertThat(e.getMessage()).isEqualTo("down");
+    }
+    assertThat(scheduler.getDroppedCount(RequestPriority.ORDER)).isEqualTo(0);
+  }
+
+  @Test
+  public void testOnlyExchangeCallsAreScheduled() throws Exception {
+
+    // an exhausted budget
+    scheduler = new RequestScheduler("test", new TokenBucket(1, 1, 60000), 1);
+    PollingAccountService accountService = new LocalAccountService();
+    PollingAccountService wrapped = scheduler.wrapAccountService(accountService, 0);
+    assertThat(wrapped).isNotSameAs(accountService);
+
+    wrapped.getAccountInfo();
+    assertThat(calls).containsExactly("account");
+    assertThat(wrapped.toString()).isEqualTo("local");
+    assertThat(wrapped.hashCode()).isEqualTo(accountService.hashCode());
+    assertThat(scheduler.getQueueSize(RequestPriority.ACCOUNT)).isEqualTo(0);
+  }
+
+  @Test
+  public void testServiceWithOwnMethodsIsNotWrapped() throws Exception {
+
+    scheduler = new RequestScheduler("test", new TokenBucket(10, 10, 1000), 1);
+    PollingAccountService accountService = new LocalAccountService() {
+
+      @SuppressWarnings("unused")
+      public String getOwnMethod() {
+
+        return "own";
+      }
+    };
+    assertThat(scheduler.wrapAccountService(accountService, 0)).isSameAs(accountService);
+  }
+
+  @Test
+  public void testBulkCallsAreExposedAndScheduled() throws Exception {
+
+    scheduler = new RequestScheduler("test", new TokenBucket(10, 10, 1000), 1);
+    PollingMarketDataService wrapped = scheduler.wrapMarketDataService(new BulkService(), 0);
+
+    assertThat(wrapped).isInstanceOf(BulkPollingMarketDataService.class);
+    ((BulkPollingMarketDataService) wrapped).getTickers(Collections.singleton(CurrencyPair.BTC_USD));
+    assertThat(calls.get(0)).startsWith("test-request-");
+    wrapped.getExchangeSymbols();
+    assertThat(calls.get(1)).isEqualTo(Thread.currentThread().getName());
+  }
+
+  private class BulkService implements BulkPollingMarketDataService {
+
+    @Override
+    public Set<CurrencyPair> getExchangeSymbols() {
+
+      calls.add(Thread.currentThread().getName());
+      return null;
+    }
+
+    @Override
+    public Ticker getTicker(String tradableIdentifier, String currency) {
+
+      return null;
+    }
+
+    @Override
+    public OrderBook getPartialOrderBook(String tradableIdentifier, String currency) {
+
+      return null;
+    }
+
+    @Override
+    public OrderBook getFullOrderBook(String tradableIdentifier, String currency) {
+
+      return null;
+    }
+
+    @Override
+    public Map<CurrencyPair, MovingAverage> getAskAverages() {
+
+      return null;
+    }
+
+    @Override
+    public Map<CurrencyPair, MovingAverage> getBidAverages() {
+
+      return null;
+    }
+
+    @Override
+    public Trades getTrades(String tradableIdentifier, String currency, Object... args) {
+
+      return null;
+    }
+
+    @Override
+    public ExchangeInfo getExchangeInfo() {
+
+      return null;
+    }
+
+    @Override
+    public Map<CurrencyPair, Ticker> getTickers(Collection<CurrencyPair> currencyPairs) {
+
+      calls.add(Thread.currentThread().getName());
+      return null;
+    }
+
+    @Override
+    public Map<CurrencyPair, OrderBook> getOrderBooks(Collection<CurrencyPair> currencyPairs, int limit) {
+
+      return null;
+    }
+
+    @Override
+    public Map<CurrencyPair, Trades> getTrades(Collection<CurrencyPair> currencyPairs, int limit) {
+
+      return null;
+    }
+  }
+
+  private class LocalAccountService implements PollingAccountService {
+
+    @Override
+    public AccountInfo getAccountInfo() {
+
+      calls.add("account");
+      return null;
+    }
+
+    @Override
+    public String withdrawFunds(BigDecimal amount, String address) {
+
+      return null;
+    }
+
+    @Override
+    public String requestBitcoinDepositAddress(String... arguments) {
+
+      return null;
+    }
+
+    @Override
+    public String toString() {
+
+      return "local";
+    }
+  }
+
+  private Callable<String> call(final String name) {
+
+    return new Callable<String>() {
+
+      @Override
+      public String call() {
+
+        calls.add(name);
+        return name;
+      }
+    };
+  }
+}
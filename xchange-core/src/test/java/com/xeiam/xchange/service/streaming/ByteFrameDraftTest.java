@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.java_websocket.drafts.Draft_17;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.Framedata.Opcode;
+import org.junit.Test;
+
+import com.xeiam.xchange.ExchangeException;
+
+/**
+ * Test class for testing ByteFrameDraft
+ */
+public class ByteFrameDraftTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Test
+  public void testTextFramesAreReadAsBinary() throws Exception {
+
+    String message = "{\"op\":\"private\",\"private\":\"ticker\"}";
+    Draft_17 server = new Draft_17();
+    ByteBuffer wire = server.createBinaryFrame(server.createFrames(message, false).get(0));
+
+    List<Framedata> frames = new ByteFrameDraft().translateFrame(wire);
+
+    assertThat(frames).hasSize(1);
+    assertThat(frames.get(0).getOpcode()).isEqualTo(Opcode.BINARY);
+    assertThat(UTF_8.decode(frames.get(0).getPayloadData()).toString()).isEqualTo(message);
+  }
+
+  @Test
+  public void testFragmentsAreLeftAlone() throws Exception {
+
+    Draft_17 server = new Draft_17();
+    ByteBuffer wire = server.createBinaryFrame(server.createFrames("{\"op\":", false).get(0));
+    // clear the FIN bit: the first fragment of a longer text message
+    wire.put(0, (byte) (wire.get(0) & 0x7F));
+
+    List<Framedata> frames = new ByteFrameDraft().translateFrame(wire);
+
+    assertThat(frames).hasSize(1);
+    assertThat(frames.get(0).getOpcode()).isEqualTo(Opcode.TEXT);
+  }
+
+  @Test
+  public void testMalformedTextIsRejected() throws Exception {
+
+    Draft_17 server = new Draft_17();
+    ByteBuffer wire = server.createBinaryFrame(server.createFrames("{\"op\":\"x\"}", false).get(0));
+    // an unmasked server frame: the payload starts after the two header bytes
+    wire.put(9, (byte) 0xC3);
+
+    try {
+      new ByteFrameDraft().translateFrame(wire);
+      fail("expected InvalidDataException");
+    } catch (InvalidDataException e) {
+      assertThat(e.getCloseCode()).isEqualTo(CloseFrame.NO_UTF8);
+    }
+  }
+
+  @Test(expected = ExchangeException.class)
+  public void testMalformedBytesAreNotReplaced() {
+
+    ExchangeEventListener.decode(ByteBuffer.wrap(new byte[] { '{', (byte) 0xC3, '}' }));
+  }
+
+}
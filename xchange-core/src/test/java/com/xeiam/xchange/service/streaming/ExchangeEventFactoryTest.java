@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.Trade;
+
+/**
+ * Test class for testing ExchangeEventFactory and the typed events
+ */
+public class ExchangeEventFactoryTest {
+
+  private static final String DATA = "{\"op\":\"private\",\"trade\":{}}";
+
+  private final Trade trade = new Trade(OrderType.BID, BigDecimal.ONE, "BTC", "USD", BigMoney.of(CurrencyUnit.USD, BigDecimal.TEN), new Date(), 1);
+
+  @Test
+  public void testDataModes() {
+
+    TradeEvent retained = new ExchangeEventFactory(EventDataMode.RETAIN, 0).createTradeEvent(DATA, trade);
+    assertThat(retained.getData()).isSameAs(DATA);
+    assertThat(retained.getTrade()).isSameAs(trade);
+    assertThat(retained.getEventType()).isEqualTo(ExchangeEventType.TRADE);
+
+    TradeEvent compact = new ExchangeEventFactory(EventDataMode.COMPACT, 0).createTradeEvent(DATA, trade);
+    assertThat(compact.getData()).isEqualTo(DATA);
+    assertThat(compact.hasData()).isTrue();
+
+    TradeEvent dropped = new ExchangeEventFactory(EventDataMode.DROP, 0).createTradeEvent(DATA, trade);
+    assertThat(dropped.getData()).isNull();
+    assertThat(dropped.hasData()).isFalse();
+    assertThat(dropped.getPayload()).isSameAs(trade);
+  }
+
+  @Test
+  public void testDataFromBytes() throws Exception {
+
+    ByteBuffer bytes = ByteBuffer.wrap(DATA.getBytes("UTF-8"));
+
+    ExchangeEventFactory retain = new ExchangeEventFactory(EventDataMode.RETAIN, 0);
+    assertThat(retain.setData(retain.createTradeEvent(null, trade), bytes).getData()).isEqualTo(DATA);
+
+    ExchangeEventFactory compact = new ExchangeEventFactory(EventDataMode.COMPACT, 0);
+    TradeEvent event = compact.setData(compact.createTradeEvent(null, trade), bytes);
+    assertThat(event.getData()).isEqualTo(DATA);
+    assertThat(bytes.position()).isEqualTo(0);
+
+    ExchangeEventFactory drop = new ExchangeEventFactory(EventDataMode.DROP, 0);
+    assertThat(drop.setData(drop.createTradeEvent(null, trade), bytes).hasData()).isFalse();
+  }
+
+  @Test
+  public void testPooling() {
+
+    ExchangeEventFactory factory = new ExchangeEventFactory(EventDataMode.DROP, 2);
+
+    TradeEvent first = factory.createTradeEvent(DATA, trade);
+    factory.release(first);
+    factory.release(first);
+    assertThat(first.getPayload()).isNull();
+
+    assertThat(factory.createTradeEvent(DATA, trade)).isSameAs(first);
+    assertThat(factory.createTradeEvent(DATA, trade)).isNotSameAs(first);
+
+    PayloadExchangeEvent<Object> event = factory.createEvent(ExchangeEventType.USER_ORDER, DATA, "payload");
+    factory.release(event);
+    assertThat(factory.createEvent(ExchangeEventType.TRADE_LAG, null, null)).isSameAs(event);
+
+    // events from elsewhere are ignored
+    factory.release(new DefaultExchangeEvent(ExchangeEventType.CONNECT, null));
+  }
+
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import static com.xeiam.xchange.utils.DummyOrders.order;
+import static com.xeiam.xchange.utils.DummyOrders.orders;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Test;
+
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.ExchangeInfo;
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.service.polling.PollingMarketDataService;
+import com.xeiam.xchange.utils.MovingAverage;
+
+/**
+ * Test class for testing SnapshotDiffs and PollingStreamingExchangeService
+ */
+public class PollingStreamingExchangeServiceTest {
+
+  @Test
+  public void testOrderBookDiff() {
+
+    OrderBook previous = book(orders(order(OrderType.ASK, 101, 1), order(OrderType.ASK, 102, 2), order(OrderType.ASK, 103, 3)), orders(order(OrderType.BID, 99, 1), order(OrderType.BID, 98, 1)));
+    OrderBook current = book(orders(order(OrderType.ASK, 100, 5), order(OrderType.ASK, 102, 2), order(OrderType.ASK, 103, 1), order(OrderType.ASK, 103, 1)), orders(order(OrderType.BID, 98, 1)));
+
+    List<OrderBookUpdate> updates = SnapshotDiffs.diff(previous, current, "BTC", "USD");
+
+    // ask 100 added, ask 101 removed, ask 103 reduced to 2 (two orders merged), bid 99 removed
+    assertThat(updates).hasSize(4);
+    assertUpdate(updates.get(0), OrderType.ASK, 100, 5);
+    assertUpdate(updates.get(1), OrderType.ASK, 101, 0);
+    assertUpdate(updates.get(2), OrderType.ASK, 103, 2);
+    assertThat(updates.get(2).getLimitOrder().getTradableAmount().compareTo(new BigDecimal("-1"))).isEqualTo(0);
+    assertUpdate(updates.get(3), OrderType.BID, 99, 0);
+
+    assertThat(SnapshotDiffs.diff(current, current, "BTC", "USD")).isEmpty();
+    assertThat(SnapshotDiffs.diff(null, current, "BTC", "USD")).hasSize(4);
+  }
+
+  @Test
+  public void testNewTradesAndTicker() {
+
+    Trades trades = new Trades(Arrays.asList(trade(3, 3000), trade(1, 1000), trade(2, 2000)));
+    assertThat(SnapshotDiffs.newTrades(trade(1, 1000), trades)).containsExactly(trade(2, 2000), trade(3, 3000));
+
+    // without ids, timestamps are compared
+    assertThat(SnapshotDiffs.isAfter(trade(0, 2000), trade(0, 1000))).isTrue();
+    assertThat(SnapshotDiffs.isAfter(trade(0, 1000), trade(0, 1000))).isFalse();
+
+    assertThat(SnapshotDiffs.isChanged(null, ticker(100))).isTrue();
+    assertThat(SnapshotDiffs.isChanged(ticker(100), ticker(100))).isFalse();
+    assertThat(SnapshotDiffs.isChanged(ticker(100), ticker(101))).isTrue();
+  }
+
+  @Test
+  public void testStreamsChanges() throws InterruptedException {
+
+    final AtomicInteger polls = new AtomicInteger();
+    PollingMarketDataService marketDataService = new StubMarketDataService() {
+
+      @Override
+      public OrderBook getPartialOrderBook(String tradableIdentifier, String currency) {
+
+        return polls.get() == 0 ? book(orders(order(OrderType.ASK, 101, 1)), orders(order(OrderType.BID, 99, 1))) : book(orders(order(OrderType.ASK, 101, 2)), orders(order(
+            OrderType.BID, 99, 1)));
+      }
+
+      @Override
+      public Trades getTrades(String tradableIdentifier, String currency, Object... args) {
+
+        int poll = polls.getAndIncrement();
+        return poll == 0 ? new Trades(Arrays.asList(trade(1, 1000))) : new Trades(Arrays.asList(trade(1, 1000), trade(2, 2000)));
+      }
+    };
+
+    ExchangeSpecification exchangeSpecification = new ExchangeSpecification(PollingStreamingExchangeServiceTest.class.getName());
+    PollingStreamingExchangeService service = new PollingStreamingExchangeService(exchangeSpecification, marketDataService, new PollingStreamingConfiguration(3, 10, 5, 50, false, true, true,
+        CurrencyPair.BTC_USD));
+    service.connect();
+
+    assertThat(service.getNextEvent().getEventType()).isEqualTo(ExchangeEventType.CONNECT);
+    // full first book, then only the changed ask and the new trade
+    assertThat(service.getNextEvent().getEventType()).isEqualTo(ExchangeEventType.DEPTH);
+    assertThat(service.getNextEvent().getEventType()).isEqualTo(ExchangeEventType.DEPTH);
+    ExchangeEvent depth = service.getNextEvent();
+    assertThat(depth.getEventType()).isEqualTo(ExchangeEventType.DEPTH);
+    assertUpdate((OrderBookUpdate) depth.getPayload(), OrderType.ASK, 101, 2);
+    ExchangeEvent trade = service.getNextEvent();
+    assertThat(trade.getEventType()).isEqualTo(ExchangeEventType.TRADE);
+    assertThat(((Trade) trade.getPayload()).getId()).isEqualTo(2);
+
+    service.disconnect();
+  }
+
+  @Test
+  public void testDisconnectWaitsForThePollInProgress() throws InterruptedException {
+
+    final CountDownLatch polling = new CountDownLatch(1);
+    PollingMarketDataService marketDataService = new StubMarketDataService() {
+
+      @Override
+      public Ticker getTicker(String tradableIdentifier, String currency) {
+
+        polling.countDown();
+        // a request not giving up when interrupted
+        long end = System.currentTimeMillis() + 100;
+        while (System.currentTimeMillis() < end) {
+          try {
+            Thread.sleep(10);
+          } catch (InterruptedException e) {
+            // ignored
+          }
+        }
+        return ticker(100);
+      }
+    };
+
+    ExchangeSpecification exchangeSpecification = new ExchangeSpecification(PollingStreamingExchangeServiceTest.class.getName());
+    PollingStreamingExchangeService service = new PollingStreamingExchangeService(exchangeSpecification, marketDataService, new PollingStreamingConfiguration(3, 10, 5, 1000, true, false, false,
+        CurrencyPair.BTC_USD));
+    service.connect();
+    assertThat(polling.await(5, TimeUnit.SECONDS)).isTrue();
+    service.disconnect();
+
+    List<ExchangeEventType> types = new ArrayList<ExchangeEventType>();
+    for (ExchangeEvent event = service.consumerEventQueue.poll(); event != null; event = service.consumerEventQueue.poll()) {
+      types.add(event.getEventType());
+    }
+    assertThat(types).containsExactly(ExchangeEventType.CONNECT, ExchangeEventType.TICKER, ExchangeEventType.DISCONNECT);
+  }
+
+  private static void assertUpdate(OrderBookUpdate update, OrderType type, double price, double totalVolume) {
+
+    assertThat(update.getLimitOrder().getType()).isEqualTo(type);
+    assertThat(update.getLimitOrder().getLimitPrice().getAmount().doubleValue()).isEqualTo(price);
+    assertThat(update.getTotalVolume().doubleValue()).isEqualTo(totalVolume);
+  }
+
+  private static OrderBook book(List<LimitOrder> asks, List<LimitOrder> bids) {
+
+    return new OrderBook(null, asks, bids);
+  }
+
+  private static Trade trade(long id, long time) {
+
+    return new Trade(OrderType.BID, BigDecimal.ONE, "BTC", "USD", BigMoney.of(CurrencyUnit.USD, BigDecimal.valueOf(100)), new Date(time), id);
+  }
+
+  private static Ticker ticker(double last) {
+
+    return TickerBuilder.newInstance().withTradableIdentifier("BTC").withLast(BigMoney.of(CurrencyUnit.USD, BigDecimal.valueOf(last))).withVolume(BigDecimal.TEN).build();
+  }
+
+  private static class StubMarketDataService implements PollingMarketDataService {
+
+    @Override
+    public Set<CurrencyPair> getExchangeSymbols() {
+
+      return null;
+    }
+
+    @Override
+    public Ticker getTicker(String tradableIdentifier, String currency) {
+
+      return null;
+    }
+
+    @Override
+    public OrderBook getPartialOrderBook(String tradableIdentifier, String currency) {
+
+      return null;
+    }
+
+    @Override
+    public OrderBook getFullOrderBook(String tradableIdentifier, String currency) {
+
+      return null;
+    }
+
+    @Override
+    public Map<CurrencyPair, MovingAverage> getAskAverages() {
+
+      return null;
+    }
+
+    @Override
+    public Map<CurrencyPair, MovingAverage> getBidAverages() {
+
+      return null;
+    }
+
+    @Override
+    public Trades getTrades(String tradableIdentifier, String currency, Object... args) {
+
+      return null;
+    }
+
+    @Override
+    public ExchangeInfo getExchangeInfo() {
+
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.streaming;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.service.streaming.StreamingServiceSupervisor.State;
+
+/**
+ * Test class for testing StreamingServiceSupervisor and its shared reconnects
+ */
+public class StreamingServiceSupervisorTest {
+
+  private StreamingServiceSupervisor supervisor;
+
+  @After
+  public void tearDown() throws InterruptedException {
+
+    if (supervisor != null) {
+      supervisor.shutdown(1, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testEventsAreDispatchedInOrderOnSharedThreads() throws InterruptedException {
+
+    supervisor = new StreamingServiceSupervisor(2, 1, 60000);
+    List<FakeService> services = new ArrayList<FakeService>();
+    List<RecordingListener> listeners = new ArrayList<RecordingListener>();
+    for (int i = 0; i < 20; i++) {
+      FakeService service = new FakeService(3, 10);
+      RecordingListener listener = new RecordingListener();
+      supervisor.register("feed" + i, service, listener);
+      services.add(service);
+      listeners.add(listener);
+    }
+    assertThat(supervisor.getStateCounts().get(State.STOPPED)).isEqualTo(20);
+
+    supervisor.start(1);
+    assertThat(supervisor.awaitConnected(5, TimeUnit.SECONDS)).isTrue();
+
+    for (int n = 0; n < 100; n++) {
+      for (FakeService service : services) {
+        service.emit(String.valueOf(n));
+      }
+    }
+    Set<String> threads = new HashSet<String>();
+    for (RecordingListener listener : listeners) {
+      List<String> messages = listener.await(101);
+      assertThat(messages.get(0)).isEqualTo("CONNECT");
+      for (int n = 0; n < 100; n++) {
+        assertThat(messages.get(n + 1)).isEqualTo(String.valueOf(n));
+      }
+      threads.addAll(listener.threads);
+    }
+    assertThat(threads.size()).isLessThanOrEqualTo(2);
+    for (String thread : threads) {
+      assertThat(thread).startsWith("streaming-supervisor-dispatcher-");
+    }
+    assertThat(supervisor.getStateCounts().get(State.CONNECTED)).isEqualTo(20);
+    assertThat(supervisor.getUnhealthyFeeds()).isEmpty();
+
+    supervisor.stop();
+    assertThat(supervisor.getStateCounts().get(State.STOPPED)).isEqualTo(20);
+    for (FakeService service : services) {
+      assertThat(service.connected).isFalse();
+    }
+  }
+
+  @Test
+  public void testReconnectsOnTheSharedSchedulerUntilFailed() throws InterruptedException {
+
+    supervisor = new StreamingServiceSupervisor(1, 1, 60000);
+    FakeService service = new FakeService(1, 10);
+    RecordingListener listener = new RecordingListener();
+    supervisor.register("feed", service, listener);
+    supervisor.start(0);
+    assertThat(supervisor.awaitConnected(5, TimeUnit.SECONDS)).isTrue();
+
+    // one dropped connection is restored
+    service.drop();
+    listener.await(3);
+    assertThat(supervisor.awaitConnected(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(service.connects).isEqualTo(2);
+
+    // then the connects fail until the attempts are exhausted
+    service.failConnects = true;
+    service.drop();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (supervisor.getState("feed") != State.FAILED && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(supervisor.getState("feed")).isEqualTo(State.FAILED);
+    assertThat(service.reconnectService.isTerminated()).isTrue();
+  }
+
+  @Test
+  public void testQuietFeedIsLagging() throws InterruptedException {
+
+    supervisor = new StreamingServiceSupervisor(1, 1, 20);
+    FakeService service = new FakeService(3, 10);
+    supervisor.register("feed", service, new RecordingListener());
+    supervisor.start(0);
+    assertThat(supervisor.awaitConnected(5, TimeUnit.SECONDS)).isTrue();
+
+    Thread.sleep(50);
+    assertThat(supervisor.getState("feed")).isEqualTo(State.LAGGING);
+    assertThat(supervisor.getUnhealthyFeeds()).containsOnly("feed");
+    assertThat(supervisor.isConnected()).isTrue();
+
+    assertThat(supervisor.unregister("feed")).isTrue();
+    assertThat(supervisor.getState("feed")).isNull();
+  }
+
+  @Test
+  public void testFeedReceivingMessagesOutsideTheConsumerQueueIsNotLagging() throws InterruptedException {
+
+    supervisor = new StreamingServiceSupervisor(1, 1, 100);
+    FakeService service = new FakeService(3, 10);
+    supervisor.register("feed", service, new RecordingListener());
+    supervisor.start(0);
+    assertThat(supervisor.awaitConnected(5, TimeUnit.SECONDS)).isTrue();
+
+    // as the MtGox pair events, which go to queues of their own
+    for (int i = 0; i < 10; i++) {
+      Thread.sleep(20);
+      service.receive();
+    }
+    assertThat(supervisor.getState("feed")).isEqualTo(State.CONNECTED);
+
+    Thread.sleep(150);
+    assertThat(supervisor.getState("feed")).isEqualTo(State.LAGGING);
+  }
+
+  @Test
+  public void testRestartCancelsPendingConnects() throws InterruptedException {
+
+    supervisor = new StreamingServiceSupervisor(1, 1, 60000);
+    List<FakeService> services = new ArrayList<FakeService>();
+    for (int i = 0; i < 3; i++) {
+      FakeService service = new FakeService(3, 10);
+      supervisor.register("feed" + i, service, new RecordingListener());
+      services.add(service);
+    }
+
+    // the staggered connects of the first start, but the first, have not fired yet
+    supervisor.start(100);
+    supervisor.stop();
+    supervisor.start(0);
+    assertThat(supervisor.awaitConnected(5, TimeUnit.SECONDS)).isTrue();
+    Thread.sleep(300);
+    assertThat(services.get(1).connects).isEqualTo(1);
+    assertThat(services.get(2).connects).isEqualTo(1);
+
+    // an unregistered service reconnects by itself again
+    assertThat(supervisor.unregister("feed0")).isTrue();
+    FakeService unregistered = services.get(0);
+    assertThat(unregistered.connected).isFalse();
+    int connects = unregistered.connects;
+    unregistered.reconnectService.intercept(new DefaultExchangeEvent(ExchangeEventType.DISCONNECT, "DISCONNECT"));
+    assertThat(unregistered.connects).isEqualTo(connects + 1);
+    assertThat(unregistered.connected).isTrue();
+  }
+
+  /**
+   * A websocket service without a socket
+   */
+  static class FakeService extends BaseWebSocketExchangeService {
+
+    volatile boolean connected = false;
+    volatile boolean failConnects = false;
+    volatile int connects = 0;
+    volatile long lastMessageTime = 0;
+
+    FakeService(final int maxReconnectAttempts, final int reconnectWaitTimeInMs) {
+
+      super(new ExchangeSpecification(FakeService.class.getName()), new ExchangeStreamingConfiguration() {
+
+        @Override
+        public int getMaxReconnectAttempts() {
+
+          return maxReconnectAttempts;
+        }
+
+        @Override
+        public int getReconnectWaitTimeInMs() {
+
+          return reconnectWaitTimeInMs;
+        }
+
+        @Override
+        public int getTimeoutInMs() {
+
+          return 60000;
+        }
+
+        @Override
+        public boolean isEncryptedChannel() {
+
+          return false;
+        }
+      });
+    }
+
+    @Override
+    public synchronized void connect() {
+
+      connects++;
+      if (failConnects) {
+        consumerEventQueue.offer(new DefaultExchangeEvent(ExchangeEventType.ERROR, "refused"));
+        return;
+      }
+      connected = true;
+      consumerEventQueue.offer(new DefaultExchangeEvent(ExchangeEventType.CONNECT, "CONNECT"));
+    }
+
+    @Override
+    public synchronized void disconnect() {
+
+      if (connected) {
+        connected = false;
+        consumerEventQueue.offer(new DefaultExchangeEvent(ExchangeEventType.DISCONNECT, "DISCONNECT"));
+      }
+    }
+
+    void receive() {
+
+      lastMessageTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getLastMessageTime() {
+
+      return lastMessageTime;
+    }
+
+    void drop() {
+
+      disconnect();
+    }
+
+    void emit(String message) {
+
+      consumerEventQueue.offer(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, message));
+    }
+  }
+
+  static class RecordingListener extends ExchangeEventListener {
+
+    final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+
+    @Override
+    public void handleEvent(ExchangeEvent event) {
+
+      threads.add(Thread.currentThread().getName());
+      messages.add(event.getData());
+    }
+
+    List<String> await(int count) throws InterruptedException {
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (messages.size() < count && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(messages.size()).isGreaterThanOrEqualTo(count);
+      return new ArrayList<String>(messages);
+    }
+  }
+
+}
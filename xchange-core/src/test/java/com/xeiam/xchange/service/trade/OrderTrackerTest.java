@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.service.trade;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.dto.trade.MarketOrder;
+import com.xeiam.xchange.dto.trade.OpenOrders;
+import com.xeiam.xchange.service.polling.PollingTradeService;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.service.trade.TrackedOrder.State;
+
+/**
+ * Test class for testing OrderTracker
+ */
+public class OrderTrackerTest {
+
+  private final List<LimitOrder> exchangeOpenOrders = new ArrayList<LimitOrder>();
+  private int nextId;
+  private int polls;
+  private Runnable duringPoll;
+
+  private OrderTracker tracker;
+
+  @Before
+  public void setUp() {
+
+    nextId = 1;
+    polls = 0;
+    duringPoll = null;
+    tracker = new OrderTracker(new PollingTradeService() {
+
+      @Override
+      public OpenOrders getOpenOrders() {
+
+        polls++;
+        OpenOrders openOrders = new OpenOrders(new ArrayList<LimitOrder>(exchangeOpenOrders));
+        if (duringPoll != null) {
+          duringPoll.run();
+        }
+        return openOrders;
+      }
+
+      @Override
+      public String placeMarketOrder(MarketOrder marketOrder) {
+
+        return String.valueOf(nextId++);
+      }
+
+      @Override
+      public String placeLimitOrder(LimitOrder limitOrder) {
+
+        return String.valueOf(nextId++);
+      }
+
+      @Override
+      public boolean cancelOrder(String orderId) {
+
+        return true;
+      }
+
+      @Override
+      public Trades getTradeHistory(Object... arguments) {
+
+        return null;
+      }
+    }, 2);
+  }
+
+  @Test
+  public void testPlaceAndQuery() throws IOException {
+
+    String usd = tracker.placeLimitOrder(bid("USD", "2", null));
+    String eur = tracker.placeLimitOrder(bid("EUR", "1", null));
+    String market = tracker.placeMarketOrder(new MarketOrder(OrderType.ASK, BigDecimal.ONE, "BTC", "USD"));
+
+    assertThat(tracker.getOrder(usd).getState()).isEqualTo(State.OPEN);
+    assertThat(tracker.getOrder(market).getState()).isEqualTo(State.SUBMITTED);
+    assertThat(tracker.getOpenOrders()).hasSize(2);
+    assertThat(tracker.getOpenOrders(CurrencyPair.BTC_USD)).hasSize(1);
+    assertThat(tracker.getOpenOrders(new CurrencyPair("BTC", "EUR")).get(0).getId()).isEqualTo(eur);
+
+    assertThat(tracker.cancelOrder(usd)).isTrue();
+    assertThat(tracker.getOrder(usd).getState()).isEqualTo(State.CANCELED);
+    assertThat(tracker.getOpenOrders(CurrencyPair.BTC_USD)).isEmpty();
+    assertThat(polls).isEqualTo(0);
+  }
+
+  @Test
+  public void testEvents() throws IOException {
+
+    String id = tracker.placeLimitOrder(bid("USD", "2", null));
+
+    tracker.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, bid("USD", "0.5", id)));
+    TrackedOrder tracked = tracker.getOrder(id);
+    assertThat(tracked.getState()).isEqualTo(State.PARTIALLY_FILLED);
+    assertThat(tracked.getFilledAmount()).isEqualByComparingTo(new BigDecimal("1.5"));
+
+    tracker.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, id));
+    assertThat(tracker.getOrder(id).getState()).isEqualTo(State.CLOSED);
+    assertThat(tracker.hasOpenOrders()).isFalse();
+
+    // an order placed elsewhere is picked up from its first event
+    tracker.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, bid("USD", "1", "x")));
+    tracker.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER_CANCELED, null, "x"));
+    assertThat(tracker.getOrder("x").getState()).isEqualTo(State.CANCELED);
+  }
+
+  @Test
+  public void testSnapshotDiff() throws IOException {
+
+    String filled = tracker.placeLimitOrder(bid("USD", "2", null));
+    String partial = tracker.placeLimitOrder(bid("USD", "3", null));
+    exchangeOpenOrders.add(bid("USD", "1", partial));
+    exchangeOpenOrders.add(bid("USD", "4", "external"));
+
+    assertThat(tracker.reconcile()).isEqualTo(3);
+    assertThat(tracker.getOrder(filled).getState()).isEqualTo(State.CLOSED);
+    assertThat(tracker.getOrder(partial).getState()).isEqualTo(State.PARTIALLY_FILLED);
+    assertThat(tracker.getOrder("external").getState()).isEqualTo(State.OPEN);
+
+    // unchanged snapshot
+    assertThat(tracker.reconcile()).isEqualTo(0);
+  }
+
+  @Test
+  public void testUpdatesDuringPollAreKept() throws IOException {
+
+    final String partial = tracker.placeLimitOrder(bid("USD", "3", null));
+    exchangeOpenOrders.add(bid("USD", "3", partial));
+    final List<String> placedDuringPoll = new ArrayList<String>();
+    duringPoll = new Runnable() {
+
+      @Override
+      public void run() {
+
+        try {
+          placedDuringPoll.add(tracker.placeLimitOrder(bid("USD", "1", null)));
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        tracker.handleEvent(new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, null, bid("USD", "2", partial)));
+      }
+    };
+
+    // the snapshot predates both the new order and the fill
+    assertThat(tracker.reconcile()).isEqualTo(0);
+    assertThat(tracker.getOrder(placedDuringPoll.get(0)).getState()).isEqualTo(State.OPEN);
+    assertThat(tracker.getOrder(partial).getState()).isEqualTo(State.PARTIALLY_FILLED);
+    assertThat(tracker.getOrder(partial).getRemainingAmount()).isEqualByComparingTo(new BigDecimal("2"));
+
+    // a snapshot requested afterwards is applied in full
+    duringPoll = null;
+    exchangeOpenOrders.clear();
+    exchangeOpenOrders.add(bid("USD", "2", partial));
+    assertThat(tracker.reconcile()).isEqualTo(1);
+    assertThat(tracker.getOrder(placedDuringPoll.get(0)).getState()).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  public void testClosedOrdersAreBounded() throws IOException {
+
+    for (int i = 0; i < 4; i++) {
+      tracker.cancelOrder(tracker.placeLimitOrder(bid("USD", "1", null)));
+    }
+
+    assertThat(tracker.getOrder("1")).isNull();
+    assertThat(tracker.getOrder("2")).isNull();
+    assertThat(tracker.getOrder("4").getState()).isEqualTo(State.CANCELED);
+  }
+
+  private LimitOrder bid(String currency, String amount, String id) {
+
+    return new LimitOrder(OrderType.BID, new BigDecimal(amount), "BTC", currency, id, BigMoney.of(CurrencyUnit.of(currency), new BigDecimal("100")));
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * BTC/USD orders and order book updates used for order book testing.
+ */
+public final class DummyOrders {
+
+  private DummyOrders() {
+
+  }
+
+  public static LimitOrder order(OrderType type, BigDecimal price, BigDecimal amount) {
+
+    return new LimitOrder(type, amount, "BTC", "USD", "", null, BigMoney.of(CurrencyUnit.USD, price));
+  }
+
+  public static LimitOrder order(OrderType type, String price, String amount) {
+
+    return order(type, new BigDecimal(price), new BigDecimal(amount));
+  }
+
+  public static LimitOrder order(OrderType type, double price, double amount) {
+
+    return order(type, BigDecimal.valueOf(price), BigDecimal.valueOf(amount));
+  }
+
+  /**
+   * @return A mutable list of the orders, as the OrderBook constructor expects
+   */
+  public static List<LimitOrder> orders(LimitOrder... orders) {
+
+    return new ArrayList<LimitOrder>(Arrays.asList(orders));
+  }
+
+  public static OrderBookUpdate update(OrderType type, BigDecimal price, BigDecimal totalVolume) {
+
+    return new OrderBookUpdate(type, totalVolume, "BTC", "USD", BigMoney.of(CurrencyUnit.USD, price), new Date(), totalVolume);
+  }
+
+  public static OrderBookUpdate update(OrderType type, String price, String totalVolume) {
+
+    return update(type, new BigDecimal(price), new BigDecimal(totalVolume));
+  }
+
+  public static OrderBookUpdate update(OrderType type, double price, double totalVolume) {
+
+    return update(type, BigDecimal.valueOf(price), BigDecimal.valueOf(totalVolume));
+  }
+
+}
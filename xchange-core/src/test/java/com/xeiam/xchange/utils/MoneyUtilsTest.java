@@ -28,6 +28,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
 import org.junit.Test;
 
 import com.xeiam.xchange.currency.Currencies;
@@ -345,4 +346,13 @@ public class MoneyUtilsTest {
     assertThat(eur344.getAmount()).isEqualTo(new BigDecimal("3.44"));
     assertThat(eur344.getCurrencyUnit().getCurrencyCode()).isEqualTo("EUR");
   }
+
+  @Test
+  public void testOfMatchesParse() throws Exception {
+
+    CurrencyUnit usd = CurrencyUnit.of(Currencies.USD);
+    for (String amount : new String[] { "760.990", "1E+2", "1.0E7", "0.00000001" }) {
+      assertThat(MoneyUtils.of(usd, new BigDecimal(amount))).isEqualTo(MoneyUtils.parse("USD " + amount));
+    }
+  }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Test class for testing Timestamps methods
+ */
+public class TimestampsTest {
+
+  private static final long MICROS = 1364652424875559L;
+
+  @Test
+  public void testParseEpoch() {
+
+    assertThat(Timestamps.parse("1364652424")).isEqualTo(1364652424000000L);
+    assertThat(Timestamps.parse("1364652424.875559")).isEqualTo(MICROS);
+    assertThat(Timestamps.parse("1364652424.5")).isEqualTo(1364652424500000L);
+    assertThat(Timestamps.parse("1364652424875")).isEqualTo(1364652424875000L);
+    assertThat(Timestamps.parse("1364652424875559")).isEqualTo(MICROS);
+  }
+
+  @Test
+  public void testParseDateTime() throws Exception {
+
+    assertThat(Timestamps.parse("2013-03-30 14:07:04")).isEqualTo(1364652424000000L);
+    assertThat(Timestamps.parse("2013-03-30T14:07:04.875559Z")).isEqualTo(MICROS);
+    assertThat(Timestamps.parse("1969-12-31 23:59:59")).isEqualTo(-1000000L);
+    assertThat(Timestamps.parse("2012-02-29 00:00:00")).isEqualTo(1330473600000000L);
+
+    TimeZone zone = TimeZone.getTimeZone("America/New_York");
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    format.setTimeZone(zone);
+    for (String text : new String[] { "2013-07-29 16:53:28", "2013-01-05 01:02:03" }) {
+      assertThat(Timestamps.toMillis(Timestamps.parseDateTime(text, zone))).isEqualTo(format.parse(text).getTime());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseInvalid() {
+
+    Timestamps.parse("2013-03-30 14:07");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseNotANumber() {
+
+    Timestamps.parse("13a4");
+  }
+
+  @Test
+  public void testConversions() {
+
+    assertThat(Timestamps.toMillis(MICROS)).isEqualTo(1364652424875L);
+    assertThat(Timestamps.toMillis(-1L)).isEqualTo(-1L);
+    assertThat(Timestamps.toDate(Timestamps.NONE)).isNull();
+    assertThat(Timestamps.fromDate(null)).isEqualTo(Timestamps.NONE);
+    assertThat(Timestamps.toDate(MICROS)).isEqualTo(new Date(1364652424875L));
+  }
+
+  @Test
+  public void testFormatUTC() {
+
+    assertThat(Timestamps.formatUTC(MICROS)).isEqualTo("2013-03-30 14:07:04");
+    assertThat(Timestamps.formatUTC(-1L)).isEqualTo("1969-12-31 23:59:59");
+    assertThat(DateUtils.toUTCString(new Date(1375116808000L))).isEqualTo("2013-07-29 16:53:28 GMT");
+  }
+}
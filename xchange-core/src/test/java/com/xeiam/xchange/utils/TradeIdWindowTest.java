@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Test class for testing TradeIdWindow
+ */
+public class TradeIdWindowTest {
+
+  @Test
+  public void testOutOfOrderIdsAndEviction() {
+
+    TradeIdWindow window = new TradeIdWindow(3);
+
+    assertThat(window.add(5)).isTrue();
+    assertThat(window.add(3)).isTrue();
+    assertThat(window.add(5)).isFalse();
+    assertThat(window.add(4)).isTrue();
+    assertThat(window.size()).isEqualTo(3);
+
+    // evicts 5, the oldest
+    assertThat(window.add(1)).isTrue();
+    assertThat(window.contains(5)).isFalse();
+    assertThat(window.contains(3)).isTrue();
+    assertThat(window.size()).isEqualTo(3);
+    assertThat(window.add(5)).isTrue();
+  }
+
+  @Test
+  public void testMatchesReferenceWindow() {
+
+    Random random = new Random(42);
+    TradeIdWindow window = new TradeIdWindow(64);
+    ArrayDeque<Long> order = new ArrayDeque<Long>();
+    Set<Long> reference = new HashSet<Long>();
+
+    for (int i = 0; i < 100000; i++) {
+      long id = 1 + random.nextInt(256);
+      boolean added = !reference.contains(id);
+      if (added) {
+        if (order.size() == 64) {
+          reference.remove(order.removeFirst());
+        }
+        order.addLast(id);
+        reference.add(id);
+      }
+      assertThat(window.add(id)).isEqualTo(added);
+    }
+    for (long id = 1; id <= 256; id++) {
+      assertThat(window.contains(id)).isEqualTo(reference.contains(id));
+    }
+  }
+
+}
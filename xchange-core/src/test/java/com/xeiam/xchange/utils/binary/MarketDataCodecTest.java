@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils.binary;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
+import org.junit.Test;
+
+import com.xeiam.xchange.dto.Order.OrderType;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.utils.Timestamps;
+
+/**
+ * Test class for testing the binary encoding of the market data DTOs
+ */
+public class MarketDataCodecTest {
+
+  private final BinaryEncoder encoder = new BinaryEncoder(16);
+  private final BinaryDecoder decoder = new BinaryDecoder();
+
+  @Test
+  public void testOrderBookRoundTrip() {
+
+    List<LimitOrder> asks = new ArrayList<LimitOrder>();
+    List<LimitOrder> bids = new ArrayList<LimitOrder>();
+    for (int i = 0; i < 100; i++) {
+      asks.add(new LimitOrder(OrderType.ASK, new BigDecimal(i + 1).movePointLeft(3), "BTC", "USD", null, null, usd(new BigDecimal(10001 + i).movePointLeft(2))));
+      bids.add(new LimitOrder(OrderType.BID, new BigDecimal(i + 1).movePointLeft(8), "BTC", "USD", "id" + i, new Date(1380000000000L + i * 7), usd(new BigDecimal(
+          9999 - i).movePointLeft(2))));
+    }
+    // a price that does not fit in a long, another scale and another currency
+    asks.add(new LimitOrder(OrderType.ASK, BigDecimal.ONE, "BTC", "USD", null, null, usd(new BigDecimal("123456789012345678901234.5"))));
+    asks.add(new LimitOrder(OrderType.ASK, BigDecimal.TEN, "BTC", "XYZ", "é", null, BigMoney.of(CurrencyUnit.of("USD"), new BigDecimal("200.000"))));
+    OrderBook orderBook = new OrderBook(new Date(1380000000123L), asks, bids);
+
+    MarketDataCodec.encode(orderBook, encoder);
+    OrderBook decoded = (OrderBook) MarketDataCodec.decode(decoder.reset(encoder.toByteArray()));
+
+    assertThat(decoded.getTimeStamp()).isEqualTo(orderBook.getTimeStamp());
+    assertThat(decoded.getAsks()).isEqualTo(orderBook.getAsks());
+    assertThat(decoded.getBids()).isEqualTo(orderBook.getBids());
+    assertThat(decoded.getChecksum()).isEqualTo(orderBook.getChecksum());
+    assertThat(decoder.remaining()).isEqualTo(0);
+    // deltas of neighbouring levels take a byte or two, the bid ids most of the rest
+    assertThat(encoder.size()).isLessThan(1500);
+  }
+
+  @Test
+  public void testTradesRoundTrip() {
+
+    List<Trade> list = new ArrayList<Trade>();
+    list.add(new Trade(OrderType.BID, new BigDecimal("0.01"), "BTC", "EUR", eur("95.5"), 1380000000000001L, 1000));
+    list.add(new Trade(OrderType.ASK, new BigDecimal("2.50000000"), "BTC", "EUR", eur("95.49999"), 1380000000500000L, 1001));
+    list.add(new Trade(null, new BigDecimal("-1"), "LTC", "BTC", null, Timestamps.NONE, 1003));
+    list.add(new Trade(OrderType.BID, new BigDecimal("1E+3"), "DOGE", "BTC", BigMoney.of(CurrencyUnit.of("BTC"), new BigDecimal("0.00000123")), 1380000000500000L, Long.MAX_VALUE));
+    Trades trades = new Trades(list);
+
+    MarketDataCodec.encode(trades, encoder);
+    Trades decoded = MarketDataCodec.decodeTrades(decoder.reset(encoder.getBuffer(), 0, encoder.size()));
+
+    assertThat(decoded.getTrades()).hasSize(4);
+    for (int i = 0; i < 4; i++) {
+      Trade expected = trades.getTrades().get(i);
+      Trade actual = decoded.getTrades().get(i);
+      assertThat(actual.getType()).isEqualTo(expected.getType());
+      assertThat(actual.getTradableAmount()).isEqualTo(expected.getTradableAmount());
+      assertThat(actual.getTradableIdentifier()).isEqualTo(expected.getTradableIdentifier());
+      assertThat(actual.getTransactionCurrency()).isEqualTo(expected.getTransactionCurrency());
+      assertThat(actual.getPrice()).isEqualTo(expected.getPrice());
+      assertThat(actual.getTimestampMicros()).isEqualTo(expected.getTimestampMicros());
+      assertThat(actual.getId()).isEqualTo(expected.getId());
+    }
+  }
+
+  @Test
+  public void testTickerAndTradeReuseBuffers() {
+
+    Ticker ticker = TickerBuilder.newInstance().withTradableIdentifier("BTC").withLast(usd("100.12")).withBid(usd("100.10")).withAsk(usd("100.15")).withHigh(
+        usd("105")).withVolume(new BigDecimal("1234.56789")).withTimestamp(new Date(1380000000000L)).build();
+
+    byte[] tickerBytes = MarketDataCodec.encode(ticker, encoder).toByteArray();
+    byte[] buffer = encoder.getBuffer();
+    Ticker decoded = MarketDataCodec.decodeTicker(decoder.reset(tickerBytes));
+    assertThat(decoded.toString()).isEqualTo(ticker.toString());
+    assertThat(decoded.getLow()).isNull();
+    assertThat(decoded.getHigh().getAmount().scale()).isEqualTo(0);
+
+    Trade trade = new Trade(OrderType.ASK, new BigDecimal("0.5"), "BTC", "USD", usd("100.12"), new Date(1380000000000L), 42);
+    MarketDataCodec.encode(trade, encoder);
+    assertThat(encoder.getBuffer()).isSameAs(buffer);
+    Trade decodedTrade = MarketDataCodec.decodeTrade(decoder.reset(encoder.toByteArray()));
+    assertThat(decodedTrade.getTimestamp()).isEqualTo(trade.getTimestamp());
+    assertThat(decodedTrade.getPrice()).isEqualTo(trade.getPrice());
+    assertThat(decodedTrade.getId()).isEqualTo(42);
+
+    // the decoder is not bound to the previous message
+    assertThat(MarketDataCodec.decodeTicker(decoder.reset(tickerBytes)).toString()).isEqualTo(ticker.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedInput() {
+
+    byte[] bytes = MarketDataCodec.encode(new Trades(Arrays.asList(new Trade(OrderType.BID, BigDecimal.ONE, "BTC", "USD", usd("1"), 1L, 1L))), encoder).toByteArray();
+    MarketDataCodec.decode(decoder.reset(bytes, 0, bytes.length - 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongType() {
+
+    MarketDataCodec.encode(new Trades(new ArrayList<Trade>()), encoder);
+    MarketDataCodec.decodeOrderBook(decoder.reset(encoder.toByteArray()));
+  }
+
+  private static BigMoney usd(String amount) {
+
+    return usd(new BigDecimal(amount));
+  }
+
+  private static BigMoney usd(BigDecimal amount) {
+
+    return BigMoney.of(CurrencyUnit.USD, amount);
+  }
+
+  private static BigMoney eur(String amount) {
+
+    return BigMoney.of(CurrencyUnit.EUR, new BigDecimal(amount));
+  }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.utils.jackson;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+/**
+ * Test class for testing JacksonRegistry
+ */
+public class JacksonRegistryTest {
+
+  @Test
+  public void testReadersAndWritersAreCached() {
+
+    assertThat(JacksonRegistry.getReader(Dto.class)).isSameAs(JacksonRegistry.getReader(Dto.class));
+    assertThat(JacksonRegistry.getWriter(Dto.class)).isSameAs(JacksonRegistry.getWriter(Dto.class));
+  }
+
+  @Test
+  public void testReadIgnoresUnknownProperties() throws IOException {
+
+    Dto dto = JacksonRegistry.getReader(Dto.class).readValue("{\"name\":\"BTC\",\"unknown\":1,\"time\":1.5}");
+
+    assertThat(dto.name).isEqualTo("BTC");
+    assertThat(dto.time.getTime()).isEqualTo(1500);
+  }
+
+  @Test
+  public void testConvertFromGenericMap() throws IOException {
+
+    Map<String, Object> rawJSON = JacksonRegistry.getMapReader().readValue("{\"op\":\"private\",\"dto\":{\"name\":\"LTC\",\"time\":2}}");
+    Dto dto = JacksonRegistry.convert(rawJSON.get("dto"), Dto.class);
+
+    assertThat(dto.name).isEqualTo("LTC");
+    assertThat(dto.time.getTime()).isEqualTo(2000);
+    assertThat(JacksonRegistry.getWriter().writeValueAsString(rawJSON.get("op"))).isEqualTo("\"private\"");
+  }
+
+  private static class Dto {
+
+    private final String name;
+    private final Date time;
+
+    public Dto(@JsonProperty("name") String name, @JsonProperty("time") @JsonDeserialize(using = FloatingTimestampDeserializer.class) Date time) {
+
+      this.name = name;
+      this.time = time;
+    }
+  }
+
+}
@@ -34,6 +34,7 @@ import com.xeiam.xchange.cryptotrade.dto.marketdata.CryptoTradeAccountInfoReturn
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.Wallet;
@@ -64,8 +65,7 @@ public final class CryptoTradeAdapters {
 
 		// place a limit order
 		OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
-		BigMoney limitPrice;
-		limitPrice = MoneyUtils.parse(currency + " " + price);
+		BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
 		return new LimitOrder(orderType, amount, tradableIdentifier, currency, limitPrice);
 
@@ -82,19 +82,17 @@ public final class CryptoTradeAdapters {
 	 */
 	public static List<LimitOrder> adaptOrders(List<BigDecimal[]> bTEROrders, String tradableIdentifier, String currency, String orderType, String id) {
 
-		List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
-
-		// Bid orderbook is reversed order. Insert at index 0 instead of
+		OrderType type = orderType.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+		OrderBookBuilder.Side side = new OrderBookBuilder.Side(type, tradableIdentifier, currency, bTEROrders.size());
+		// Bid orderbook is reversed order
+		if (type == OrderType.BID) {
+			side.reversed();
+		}
 		for (BigDecimal[] bterOrder : bTEROrders) {
-			// appending
-			if (orderType.equalsIgnoreCase("bid")) {
-				limitOrders.add(0, adaptOrder(bterOrder[0], bterOrder[1], tradableIdentifier, currency, orderType, id));
-			} else {
-				limitOrders.add(adaptOrder(bterOrder[0], bterOrder[1], tradableIdentifier, currency, orderType, id));
-			}
+			side.add(bterOrder[1], bterOrder[0], null, null);
 		}
 
-		return limitOrders;
+		return side.build();
 	}
 
 	/**
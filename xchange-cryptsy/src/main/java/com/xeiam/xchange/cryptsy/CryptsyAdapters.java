@@ -23,10 +23,10 @@ package com.xeiam.xchange.cryptsy;
 
 import java.math.BigDecimal;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
 import org.joda.money.BigMoney;
 import org.joda.money.CurrencyUnit;
@@ -38,10 +38,15 @@ import com.xeiam.xchange.cryptsy.service.polling.CryptsyAccountInfo;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.marketdata.TradesBuilder;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.Wallet;
+import com.xeiam.xchange.utils.Timestamps;
 
 /**
  * Various adapters for converting from BTCE DTOs to XChange DTOs
@@ -69,8 +74,7 @@ public final class CryptsyAdapters {
 
 		// place a limit order
 		OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
-		BigMoney limitPrice;
-		limitPrice = MoneyUtils.parse(currency + " " + price);
+		BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
 		return new LimitOrder(orderType, amount, tradableIdentifier, currency, limitPrice);
 
@@ -87,26 +91,27 @@ public final class CryptsyAdapters {
 	 */
 	public static List<LimitOrder> adaptOrders(CryptsyPair pair, String tradableIdentifier, String currency, String orderType) {
 
-		List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
 		if (pair == null) {
 			System.out.println("Couldn't get the marketdata for " + tradableIdentifier + " on Cryptsy.");
-			return limitOrders;
+			return new ArrayList<LimitOrder>();
 		}
-		if (orderType.equalsIgnoreCase("bid") && pair.getBuyOrders() != null) {
-			for (CryptsyOrder order : pair.getBuyOrders()) {
-				if (order != null && Float.parseFloat(order.getQuantity()) > 0.00001) {
-					limitOrders.add(0, adaptOrder(new BigDecimal(order.getQuantity()), new BigDecimal(order.getPrice()), tradableIdentifier, currency, orderType));
-				}
-			}
-		} else if(pair.getSellOrders() != null) {
-			for (CryptsyOrder order : pair.getSellOrders()) {
-				if (order != null && Float.parseFloat(order.getQuantity()) > 0.00001) {
-					limitOrders.add(adaptOrder(new BigDecimal(order.getQuantity()), new BigDecimal(order.getPrice()), tradableIdentifier, currency, orderType));
-				}
+		boolean bid = orderType.equalsIgnoreCase("bid");
+		List<CryptsyOrder> orders = bid ? pair.getBuyOrders() : pair.getSellOrders();
+		if (orders == null) {
+			return new ArrayList<LimitOrder>();
+		}
+		OrderBookBuilder.Side side = new OrderBookBuilder.Side(bid ? OrderType.BID : OrderType.ASK, tradableIdentifier, currency, orders.size());
+		// Buy orders are in reversed order
+		if (bid) {
+			side.reversed();
+		}
+		for (CryptsyOrder order : orders) {
+			if (order != null && Float.parseFloat(order.getQuantity()) > 0.00001) {
+				side.add(new BigDecimal(order.getPrice()), new BigDecimal(order.getQuantity()), null, null);
 			}
 		}
 
-		return limitOrders;
+		return side.build();
 	}
 
 	/**
@@ -116,18 +121,45 @@ public final class CryptsyAdapters {
 	 * @return
 	 */
 	public static Ticker adaptTicker(CryptsyTicker cryptsyTicker, String tradableIdentifier, String currency) {
-		CryptsyMarketCoin coin = cryptsyTicker.result.markets.get(tradableIdentifier.toUpperCase() + "/" + currency.toUpperCase());
-		if (coin == null) {
+		return adaptTicker(cryptsyTicker.result.markets.get(tradableIdentifier.toUpperCase() + "/" + currency.toUpperCase()), tradableIdentifier, currency);
+	}
+
+	/**
+	 * Adapts the market of one pair to a Ticker Object
+	 * 
+	 * @param coin
+	 * @return null if there is no market
+	 */
+	public static Ticker adaptTicker(CryptsyMarketCoin coin, String tradableIdentifier, String currency) {
+		if (coin == null || coin.getRecentTrades() == null || coin.getRecentTrades().isEmpty()) {
 			return null;
 		}
 		RecentTrade trade = coin.recentTrades.get(0);
 		try {
-			return TickerBuilder.newInstance().withTimestamp(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(trade.getTime())).withLast(MoneyUtils.parse(tradableIdentifier.toUpperCase() + " " + trade.price)).withVolume(trade.quantity).withTradableIdentifier(tradableIdentifier.toUpperCase()).build();
+			return TickerBuilder.newInstance().withTimestamp(trade.getDate()).withLast(MoneyUtils.parse(tradableIdentifier.toUpperCase() + " " + trade.price)).withVolume(trade.quantity).withTradableIdentifier(tradableIdentifier.toUpperCase()).build();
 		} catch (ParseException e) {
 			throw new RuntimeException(e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Adapts the recent trades of a market to a Trades Object; Cryptsy does not say which side initiated a trade, so the type is null
+	 * 
+	 * @param recentTrades newest first
+	 * @return
+	 */
+	public static Trades adaptTrades(List<RecentTrade> recentTrades, String tradableIdentifier, String currency) {
+		if (recentTrades == null) {
+			return new Trades(new ArrayList<Trade>());
+		}
+		TradesBuilder builder = new TradesBuilder(tradableIdentifier, currency, recentTrades.size()).reversed();
+		TimeZone timeZone = TimeZone.getDefault();
+		for (RecentTrade trade : recentTrades) {
+			builder.add(null, trade.getQuantity(), trade.getPrice(), Timestamps.parseDateTime(trade.getTime(), timeZone), Long.parseLong(trade.getId()));
+		}
+		return builder.build();
+	}
+
 	public static AccountInfo adaptAccountInfo(String username, CryptsyAccountInfo cryptsyAccountInfo) {
 		List<Wallet> wallets = new ArrayList<Wallet>();
 		List<Wallet> unavailableWallets = new ArrayList<Wallet>();
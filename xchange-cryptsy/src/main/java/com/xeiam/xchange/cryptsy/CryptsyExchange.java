@@ -61,12 +61,14 @@ public class CryptsyExchange extends BaseExchange implements Exchange {
 
 		super.applySpecification(exchangeSpecification);
 
-		this.pollingMarketDataService = new CryptsyPollingMarketDataService(exchangeSpecification);
+		CryptsyPollingMarketDataService marketDataService = new CryptsyPollingMarketDataService(exchangeSpecification);
+		this.pollingMarketDataService = marketDataService;
 		this.pollingAccountService = new CryptsyPollingAccountService(exchangeSpecification);
 		this.pollingTradeService = new CryptsyPollingTradeService(exchangeSpecification);
 		CryptsyUtils.CURRENCY_PAIRS.clear();
 
-		for (CryptsyMarketCoin coin : new CryptsyPollingMarketDataService(exchangeSpecification).getCurrencyMarkets()) {
+		// the snapshot fetched here also serves the first ticker and trades requests
+		for (CryptsyMarketCoin coin : marketDataService.getCurrencyMarkets()) {
 			CryptsyPollingTradeService.getMarketIds().put(coin.primaryCode + "_" + coin.secondaryCode, coin.marketId);
 			CryptsyUtils.CURRENCY_PAIRS.add(new CurrencyPair(coin.primaryCode, coin.secondaryCode));
 		}
@@ -1,12 +1,12 @@
 package com.xeiam.xchange.cryptsy;
 
 import java.math.BigDecimal;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.TimeZone;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.xeiam.xchange.utils.Timestamps;
 
 public class RecentTrade {
 	String id, time;
@@ -21,8 +21,11 @@ public class RecentTrade {
 	}
 
 	public Date getDate() throws ParseException {
-		DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-		return format.parse(time);
+		try {
+			return Timestamps.toDate(Timestamps.parseDateTime(time, TimeZone.getDefault()));
+		} catch (IllegalArgumentException e) {
+			throw new ParseException(time, 0);
+		}
 	}
 
 	public String getId() {
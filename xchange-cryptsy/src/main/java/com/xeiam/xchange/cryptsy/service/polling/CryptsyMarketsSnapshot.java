@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.cryptsy.service.polling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.xeiam.xchange.cryptsy.CryptsyAdapters;
+import com.xeiam.xchange.cryptsy.CryptsyMarketCoin;
+import com.xeiam.xchange.cryptsy.CryptsyTicker;
+import com.xeiam.xchange.cryptsy.RecentTrade;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trades;
+
+/**
+ * <p>
+ * Immutable view of one Cryptsy all-markets ("marketdatav2") payload
+ * </p>
+ * <ul>
+ * <li>The markets are indexed by {@link CurrencyPair} once, when the snapshot is built</li>
+ * <li>Tickers and trades are adapted on first request; tickers are shared by all callers, trades are copied for each as {@link Trades} sorts itself in place</li>
+ * <li>Thread safe</li>
+ * </ul>
+ */
+public final class CryptsyMarketsSnapshot {
+
+	private final long timestamp;
+	private final Map<CurrencyPair, CryptsyMarketCoin> markets;
+	private final List<CryptsyMarketCoin> coins;
+
+	private final ConcurrentMap<CurrencyPair, Ticker> tickers = new ConcurrentHashMap<CurrencyPair, Ticker>();
+	private final ConcurrentMap<CurrencyPair, Trades> trades = new ConcurrentHashMap<CurrencyPair, Trades>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param ticker
+	 *            The raw payload
+	 * @param timestamp
+	 *            The time of the fetch in milliseconds from epoch
+	 */
+	public CryptsyMarketsSnapshot(CryptsyTicker ticker, long timestamp) {
+
+		this.timestamp = timestamp;
+		Map<String, CryptsyMarketCoin> raw = ticker == null || ticker.result == null || ticker.result.getMarkets() == null ? Collections.<String, CryptsyMarketCoin> emptyMap() : ticker.result.getMarkets();
+		Map<CurrencyPair, CryptsyMarketCoin> markets = new HashMap<CurrencyPair, CryptsyMarketCoin>(raw.size() * 4 / 3 + 1);
+		List<CryptsyMarketCoin> coins = new ArrayList<CryptsyMarketCoin>(raw.size());
+		for (Map.Entry<String, CryptsyMarketCoin> entry : raw.entrySet()) {
+			CryptsyMarketCoin coin = entry.getValue();
+			if (coin == null) {
+				continue;
+			}
+			coins.add(coin);
+			CurrencyPair pair = toCurrencyPair(entry.getKey(), coin);
+			if (pair != null) {
+				markets.put(pair, coin);
+			}
+		}
+		this.markets = markets;
+		this.coins = Collections.unmodifiableList(coins);
+	}
+
+	private static CurrencyPair toCurrencyPair(String label, CryptsyMarketCoin coin) {
+
+		if (coin.getPrimaryCode() != null && coin.getSecondaryCode() != null) {
+			return new CurrencyPair(coin.getPrimaryCode().toUpperCase(), coin.getSecondaryCode().toUpperCase());
+		}
+		int slash = label.indexOf('/');
+		if (slash <= 0 || slash == label.length() - 1) {
+			return null;
+		}
+		return new CurrencyPair(label.substring(0, slash).toUpperCase(), label.substring(slash + 1).toUpperCase());
+	}
+
+	/**
+	 * @return The raw market, or null if the pair is not traded
+	 */
+	public CryptsyMarketCoin getMarket(CurrencyPair currencyPair) {
+
+		return markets.get(currencyPair);
+	}
+
+	/**
+	 * @return The ticker, or null if the pair is not traded or has no trades
+	 */
+	public Ticker getTicker(CurrencyPair currencyPair) {
+
+		Ticker ticker = tickers.get(currencyPair);
+		if (ticker == null) {
+			CryptsyMarketCoin coin = markets.get(currencyPair);
+			ticker = CryptsyAdapters.adaptTicker(coin, currencyPair.baseCurrency, currencyPair.counterCurrency);
+			if (ticker == null) {
+				return null;
+			}
+			Ticker previous = tickers.putIfAbsent(currencyPair, ticker);
+			if (previous != null) {
+				ticker = previous;
+			}
+		}
+		return ticker;
+	}
+
+	/**
+	 * @return The recent trades, newest first and unmodifiable, or null if the pair is not traded
+	 */
+	public List<RecentTrade> getRecentTrades(CurrencyPair currencyPair) {
+
+		CryptsyMarketCoin coin = markets.get(currencyPair);
+		return coin == null || coin.getRecentTrades() == null ? null : Collections.unmodifiableList(coin.getRecentTrades());
+	}
+
+	/**
+	 * @return A copy of the recent trades, oldest first, or null if the pair is not traded
+	 */
+	public Trades getTrades(CurrencyPair currencyPair) {
+
+		Trades adapted = trades.get(currencyPair);
+		if (adapted == null) {
+			CryptsyMarketCoin coin = markets.get(currencyPair);
+			if (coin == null) {
+				return null;
+			}
+			adapted = CryptsyAdapters.adaptTrades(coin.getRecentTrades(), currencyPair.baseCurrency, currencyPair.counterCurrency);
+			Trades previous = trades.putIfAbsent(currencyPair, adapted);
+			if (previous != null) {
+				adapted = previous;
+			}
+		}
+		synchronized (adapted) {
+			// getTrades() sorts in place
+			return new Trades(adapted.getTrades());
+		}
+	}
+
+	/**
+	 * @return All markets in the payload, including those whose label could not be parsed
+	 */
+	public List<CryptsyMarketCoin> getMarkets() {
+
+		return coins;
+	}
+
+	/**
+	 * @return The time of the fetch in milliseconds from epoch
+	 */
+	public long getTimestamp() {
+
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+
+		return "CryptsyMarketsSnapshot [timestamp=" + timestamp + ", markets=" + markets.size() + "]";
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.cryptsy.service.polling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.xeiam.xchange.cryptsy.CryptsyAdapters;
+import com.xeiam.xchange.cryptsy.dto.marketdata.CryptsyDepth;
+import com.xeiam.xchange.cryptsy.dto.marketdata.CryptsyPair;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+
+/**
+ * <p>
+ * Immutable view of one Cryptsy all-markets order book ("orderdata") payload
+ * </p>
+ * <ul>
+ * <li>The books are indexed by {@link CurrencyPair} once, when the snapshot is built</li>
+ * <li>Order books are adapted on first request; every caller gets its own copy, which it may modify (e.g. with {@link OrderBook#update})</li>
+ * <li>Thread safe</li>
+ * </ul>
+ */
+public final class CryptsyOrderBooksSnapshot {
+
+	/** Cryptsy lists its reward points as a market */
+	private static final String POINTS = "Points";
+
+	private final long timestamp;
+	private final Map<CurrencyPair, CryptsyPair> pairs;
+	private final Set<CurrencyPair> exchangeSymbols;
+
+	/** The adapted sides of each requested pair, sorted best price first and never handed out */
+	private final ConcurrentMap<CurrencyPair, Sides> orderBooks = new ConcurrentHashMap<CurrencyPair, Sides>();
+
+	/**
+	 * Constructor
+	 * 
+	 * @param depth
+	 *            The raw payload
+	 * @param timestamp
+	 *            The time of the fetch in milliseconds from epoch
+	 */
+	public CryptsyOrderBooksSnapshot(CryptsyDepth depth, long timestamp) {
+
+		this.timestamp = timestamp;
+		Map<String, CryptsyPair> raw = depth == null || depth.getPairs() == null ? Collections.<String, CryptsyPair> emptyMap() : depth.getPairs();
+		Map<CurrencyPair, CryptsyPair> pairs = new HashMap<CurrencyPair, CryptsyPair>(raw.size() * 4 / 3 + 1);
+		Set<CurrencyPair> exchangeSymbols = new HashSet<CurrencyPair>(raw.size() * 4 / 3 + 1);
+		for (CryptsyPair pair : raw.values()) {
+			if (pair == null || pair.getPrimaryCode() == null || pair.getSecondaryCode() == null) {
+				continue;
+			}
+			CurrencyPair currencyPair = new CurrencyPair(pair.getPrimaryCode().toUpperCase(), pair.getSecondaryCode().toUpperCase());
+			pairs.put(currencyPair, pair);
+			if (!pair.getPrimaryCode().equals(POINTS) && !pair.getSecondaryCode().equals(POINTS)) {
+				exchangeSymbols.add(currencyPair);
+			}
+		}
+		this.pairs = pairs;
+		this.exchangeSymbols = Collections.unmodifiableSet(exchangeSymbols);
+	}
+
+	/**
+	 * @return The raw book, or null if the pair is not traded
+	 */
+	public CryptsyPair getPair(CurrencyPair currencyPair) {
+
+		return pairs.get(currencyPair);
+	}
+
+	/**
+	 * @return A copy of the full order book stamped with the fetch time, or null if the pair is not traded
+	 */
+	public OrderBook getOrderBook(CurrencyPair currencyPair) {
+
+		Sides sides = orderBooks.get(currencyPair);
+		if (sides == null) {
+			CryptsyPair pair = pairs.get(currencyPair);
+			if (pair == null) {
+				return null;
+			}
+			sides = new Sides(CryptsyAdapters.adaptOrders(pair, currencyPair.baseCurrency, currencyPair.counterCurrency, "ask"), CryptsyAdapters.adaptOrders(pair,
+					currencyPair.baseCurrency, currencyPair.counterCurrency, "bid"));
+			Sides previous = orderBooks.putIfAbsent(currencyPair, sides);
+			if (previous != null) {
+				sides = previous;
+			}
+		}
+		// LimitOrders are immutable, copying the lists is enough; they are already sorted, as OrderBook sorts its sides when they are read
+		return new OrderBook(new Date(timestamp), new ArrayList<LimitOrder>(sides.asks), new ArrayList<LimitOrder>(sides.bids));
+	}
+
+	/**
+	 * @return The traded pairs, excluding points markets
+	 */
+	public Set<CurrencyPair> getExchangeSymbols() {
+
+		return exchangeSymbols;
+	}
+
+	/**
+	 * @return The time of the fetch in milliseconds from epoch
+	 */
+	public long getTimestamp() {
+
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+
+		return "CryptsyOrderBooksSnapshot [timestamp=" + timestamp + ", pairs=" + pairs.size() + "]";
+	}
+
+	/**
+	 * The adapted orders of one pair, sorted once best price first
+	 */
+	private static final class Sides {
+
+		private final List<LimitOrder> asks;
+		private final List<LimitOrder> bids;
+
+		Sides(List<LimitOrder> asks, List<LimitOrder> bids) {
+
+			Collections.sort(asks);
+			Collections.sort(bids);
+			this.asks = asks;
+			this.bids = bids;
+		}
+	}
+}
@@ -1,197 +1,327 @@
-/**
- * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy of
- * this software and associated documentation files (the "Software"), to deal in
- * the Software without restriction, including without limitation the rights to
- * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
- * of the Software, and to permit persons to whom the Software is furnished to do
- * so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in all
- * copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-package com.xeiam.xchange.cryptsy.service.polling;
-
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
-import si.mazi.rescu.RestProxyFactory;
-
-import com.xeiam.xchange.ExchangeSpecification;
-import com.xeiam.xchange.NotAvailableFromExchangeException;
-import com.xeiam.xchange.NotYetImplementedForExchangeException;
-import com.xeiam.xchange.cryptsy.Cryptsy;
-import com.xeiam.xchange.cryptsy.CryptsyAdapters;
-import com.xeiam.xchange.cryptsy.CryptsyMarketCoin;
-import com.xeiam.xchange.cryptsy.CryptsyTicker;
-import com.xeiam.xchange.cryptsy.CryptsyUtils;
-import com.xeiam.xchange.cryptsy.RecentTrade;
-import com.xeiam.xchange.cryptsy.dto.marketdata.CryptsyDepth;
-import com.xeiam.xchange.cryptsy.dto.marketdata.CryptsyPair;
-import com.xeiam.xchange.currency.CurrencyPair;
-import com.xeiam.xchange.dto.ExchangeInfo;
-import com.xeiam.xchange.dto.marketdata.OrderBook;
-import com.xeiam.xchange.dto.marketdata.Ticker;
-import com.xeiam.xchange.dto.marketdata.Trades;
-import com.xeiam.xchange.dto.trade.LimitOrder;
-import com.xeiam.xchange.service.polling.PollingMarketDataService;
-import com.xeiam.xchange.service.streaming.BasePollingExchangeService;
-import com.xeiam.xchange.utils.Assert;
-
-/**
- * <p>
- * Implementation of the market data service for BTCE
- * </p>
- * <ul>
- * <li>Provides access to various market data values</li>
- * </ul>
- */
-public class CryptsyPollingMarketDataService extends BasePollingExchangeService
-		implements PollingMarketDataService {
-
-	private final Cryptsy cryptsy;
-
-	private CryptsyTicker ticker = null;
-	private CryptsyDepth depth = null;
-	private long lastTickerCache = 0;
-	private long lastDepthCache = 0;
-
-	/**
-	 * @param exchangeSpecification
-	 *            The {@link ExchangeSpecification}
-	 */
-	public CryptsyPollingMarketDataService(
-			ExchangeSpecification exchangeSpecification) {
-		super(exchangeSpecification);
-		cryptsy = RestProxyFactory.createProxy(Cryptsy.class,
-				exchangeSpecification.getHost());
-	}
-
-	@Override
-	public Ticker getTicker(String tradableIdentifier, String currency) {
-		if (ticker == null
-				|| lastTickerCache + 10000 < System.currentTimeMillis()) {
-			ticker = cryptsy.getTicker("marketdatav2");
-			lastTickerCache = System.currentTimeMillis();
-		}
-		return CryptsyAdapters
-				.adaptTicker(ticker, tradableIdentifier, currency);
-	}
-
-	public List<RecentTrade> getRecentTrades(String aTradeableIdentifier,
-			String currency) {
-		if (ticker == null
-				|| lastTickerCache + 10000 < System.currentTimeMillis()) {
-			ticker = cryptsy.getTicker("marketdatav2");
-			lastTickerCache = System.currentTimeMillis();
-		}
-
-		return ticker.result.getMarkets()
-				.get(aTradeableIdentifier.toUpperCase() + "/" + currency)
-				.getRecentTrades();
-	}
-
-	@Override
-	public OrderBook getPartialOrderBook(String tradableIdentifier,
-			String currency) {
-
-		throw new NotAvailableFromExchangeException();
-	}
-
-	@Override
-	public OrderBook getFullOrderBook(String tradableIdentifier, String currency) {
-
-		verify(tradableIdentifier, currency);
-
-		if (depth == null || lastDepthCache + 4000 < System.currentTimeMillis()) {
-			depth = cryptsy.getFullDepth("orderdata");
-			lastDepthCache = System.currentTimeMillis();
-		}
-		// Adapt to XChange DTOs
-		List<LimitOrder> asks = CryptsyAdapters.adaptOrders(depth.getPairs()
-				.get(tradableIdentifier.toUpperCase()), tradableIdentifier,
-				currency, "ask");
-		List<LimitOrder> bids = CryptsyAdapters.adaptOrders(depth.getPairs()
-				.get(tradableIdentifier.toUpperCase()), tradableIdentifier,
-				currency, "bid");
-
-		return new OrderBook(new Date(), asks, bids);
-	}
-
-	@Override
-	public Trades getTrades(String tradableIdentifier, String currency,
-			Object... args) {
-
-		throw new NotAvailableFromExchangeException();
-	}
-
-	/**
-	 * Verify
-	 * 
-	 * @param tradableIdentifier
-	 *            The tradable identifier (e.g. BTC in BTC/USD)
-	 * @param currency
-	 */
-	private void verify(String tradableIdentifier, String currency) {
-
-		Assert.notNull(tradableIdentifier, "tradableIdentifier cannot be null");
-		Assert.notNull(currency, "currency cannot be null");
-		Assert.isTrue(CryptsyUtils.isValidCurrencyPair(new CurrencyPair(
-				tradableIdentifier, currency)), "currencyPair is not valid:"
-				+ tradableIdentifier + " " + currency);
-
-	}
-
-	public List<CryptsyMarketCoin> getCurrencyMarkets() {
-		if (ticker == null
-				|| lastDepthCache + 4000 < System.currentTimeMillis()) {
-			ticker = cryptsy.getTicker("marketdatav2");
-			lastDepthCache = System.currentTimeMillis();
-		}
-		List<CryptsyMarketCoin> currencies = new ArrayList<CryptsyMarketCoin>();
-		for (String currency : ticker.result.getMarkets().keySet()) {
-			currencies.add(ticker.result.getMarkets().get(currency));
-		}
-		return currencies;
-	}
-
-	@Override
-	public Set<CurrencyPair> getExchangeSymbols() {
-		if (depth == null || lastDepthCache + 4000 < System.currentTimeMillis()) {
-			depth = cryptsy.getFullDepth("orderdata");
-			lastDepthCache = System.currentTimeMillis();
-		}
-		Set<CurrencyPair> currencies = new HashSet<CurrencyPair>();
-		for (CryptsyPair currency : depth.getPairs().values()) {
-			if (!currency.getPrimaryCode().equals("Points")
-					&& !currency.getSecondaryCode().equals("Points")) {
-				currencies.add(new CurrencyPair(currency.getPrimaryCode()
-						.toUpperCase(), currency.getSecondaryCode()
-						.toUpperCase()));
-			}
-		}
-		return currencies;
-	}
-
-	@Override
-	public ExchangeInfo getExchangeInfo() throws IOException,
-			NotAvailableFromExchangeException,
-			NotYetImplementedForExchangeException {
-
-		return new ExchangeInfo(new ArrayList<CurrencyPair>(
-				getExchangeSymbols()));
-	}
-}
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.cryptsy.service.polling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import si.mazi.rescu.RestProxyFactory;
+
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.NotAvailableFromExchangeException;
+import com.xeiam.xchange.NotYetImplementedForExchangeException;
+import com.xeiam.xchange.cryptsy.Cryptsy;
+import com.xeiam.xchange.cryptsy.CryptsyMarketCoin;
+import com.xeiam.xchange.cryptsy.CryptsyUtils;
+import com.xeiam.xchange.cryptsy.RecentTrade;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.ExchangeInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
+import com.xeiam.xchange.service.polling.PollingMarketDataService;
+import com.xeiam.xchange.service.streaming.BasePollingExchangeService;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Implementation of the market data service for Cryptsy
+ * </p>
+ * <ul>
+ * <li>Provides access to various market data values</li>
+ * <li>Cryptsy only serves all markets at once, so each payload is fetched and indexed once into a shared snapshot, which is reused until it
+ * is older than the configured maximum age or replaced by the background refresh</li>
+ * </ul>
+ */
+public class CryptsyPollingMarketDataService extends BasePollingExchangeService
+		implements PollingMarketDataService {
+
+	public static final long DEFAULT_MARKETS_MAX_AGE = 10000;
+	public static final long DEFAULT_ORDER_BOOKS_MAX_AGE = 4000;
+
+	private final Logger log = LoggerFactory.getLogger(CryptsyPollingMarketDataService.class);
+
+	private final Cryptsy cryptsy;
+
+	private final Object marketsLock = new Object();
+	private final Object orderBooksLock = new Object();
+
+	private volatile CryptsyMarketsSnapshot markets;
+	private volatile CryptsyOrderBooksSnapshot orderBooks;
+
+	private volatile long marketsMaxAge = DEFAULT_MARKETS_MAX_AGE;
+	private volatile long orderBooksMaxAge = DEFAULT_ORDER_BOOKS_MAX_AGE;
+
+	private ScheduledExecutorService refreshExecutor;
+
+	/**
+	 * @param exchangeSpecification
+	 *            The {@link ExchangeSpecification}
+	 */
+	public CryptsyPollingMarketDataService(
+			ExchangeSpecification exchangeSpecification) {
+		super(exchangeSpecification);
+		cryptsy = RestProxyFactory.createProxy(Cryptsy.class,
+				exchangeSpecification.getHost());
+	}
+
+	/**
+	 * Sets how long a fetched payload is served before it is fetched again on demand
+	 * 
+	 * @param marketsMaxAge
+	 *            The maximum age of the ticker and trades payload in milliseconds
+	 * @param orderBooksMaxAge
+	 *            The maximum age of the order book payload in milliseconds
+	 */
+	public void setMaxAge(long marketsMaxAge, long orderBooksMaxAge) {
+
+		Assert.isTrue(marketsMaxAge >= 0, "marketsMaxAge cannot be negative");
+		Assert.isTrue(orderBooksMaxAge >= 0, "orderBooksMaxAge cannot be negative");
+		this.marketsMaxAge = marketsMaxAge;
+		this.orderBooksMaxAge = orderBooksMaxAge;
+	}
+
+	/**
+	 * @return The current ticker and trades snapshot, fetched first if missing or stale
+	 */
+	public CryptsyMarketsSnapshot getMarketsSnapshot() {
+
+		CryptsyMarketsSnapshot snapshot = markets;
+		if (snapshot == null || snapshot.getTimestamp() + marketsMaxAge < System.currentTimeMillis()) {
+			synchronized (marketsLock) {
+				snapshot = markets;
+				// another caller may have fetched while this one waited
+				if (snapshot == null || snapshot.getTimestamp() + marketsMaxAge < System.currentTimeMillis()) {
+					snapshot = refreshMarkets();
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return The current order book snapshot, fetched first if missing or stale
+	 */
+	public CryptsyOrderBooksSnapshot getOrderBooksSnapshot() {
+
+		CryptsyOrderBooksSnapshot snapshot = orderBooks;
+		if (snapshot == null || snapshot.getTimestamp() + orderBooksMaxAge < System.currentTimeMillis()) {
+			synchronized (orderBooksLock) {
+				snapshot = orderBooks;
+				if (snapshot == null || snapshot.getTimestamp() + orderBooksMaxAge < System.currentTimeMillis()) {
+					snapshot = refreshOrderBooks();
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Fetches and publishes a new ticker and trades snapshot
+	 */
+	public CryptsyMarketsSnapshot refreshMarkets() {
+
+		synchronized (marketsLock) {
+			CryptsyMarketsSnapshot snapshot = new CryptsyMarketsSnapshot(cryptsy.getTicker("marketdatav2"), System.currentTimeMillis());
+			markets = snapshot;
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Fetches and publishes a new order book snapshot
+	 */
+	public CryptsyOrderBooksSnapshot refreshOrderBooks() {
+
+		synchronized (orderBooksLock) {
+			CryptsyOrderBooksSnapshot snapshot = new CryptsyOrderBooksSnapshot(cryptsy.getFullDepth("orderdata"), System.currentTimeMillis());
+			orderBooks = snapshot;
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Refreshes the snapshots periodically on a daemon thread, so that readers do not wait for a fetch; failed fetches are logged and retried
+	 * on the next run
+	 * 
+	 * @param marketsIntervalInMs
+	 *            The time between ticker and trades fetches, 0 to not refresh them
+	 * @param orderBooksIntervalInMs
+	 *            The time between order book fetches, 0 to not refresh them
+	 */
+	public synchronized void startRefresh(long marketsIntervalInMs, long orderBooksIntervalInMs) {
+
+		Assert.isTrue(refreshExecutor == null, "Already started");
+		if (marketsIntervalInMs <= 0 && orderBooksIntervalInMs <= 0) {
+			return;
+		}
+
+		refreshExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread thread = new Thread(runnable, "cryptsy-market-data-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		if (marketsIntervalInMs > 0) {
+			refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+
+					try {
+						refreshMarkets();
+					} catch (Exception e) {
+						log.warn("Cryptsy market data refresh failed", e);
+					}
+				}
+			}, 0, marketsIntervalInMs, TimeUnit.MILLISECONDS);
+		}
+		if (orderBooksIntervalInMs > 0) {
+			refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+
+					try {
+						refreshOrderBooks();
+					} catch (Exception e) {
+						log.warn("Cryptsy order book refresh failed", e);
+					}
+				}
+			}, 0, orderBooksIntervalInMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops the background refresh
+	 */
+	public synchronized void stopRefresh() {
+
+		if (refreshExecutor != null) {
+			refreshExecutor.shutdownNow();
+			refreshExecutor = null;
+		}
+	}
+
+	@Override
+	public Ticker getTicker(String tradableIdentifier, String currency) {
+
+		return getMarketsSnapshot().getTicker(new CurrencyPair(tradableIdentifier.toUpperCase(), currency.toUpperCase()));
+	}
+
+	public List<RecentTrade> getRecentTrades(String aTradeableIdentifier,
+			String currency) {
+
+		return getMarketsSnapshot().getRecentTrades(new CurrencyPair(aTradeableIdentifier.toUpperCase(), currency.toUpperCase()));
+	}
+
+	@Override
+	public OrderBook getPartialOrderBook(String tradableIdentifier,
+			String currency) {
+
+		throw new NotAvailableFromExchangeException();
+	}
+
+	/**
+	 * @return A copy of the order book of the current snapshot, which the caller may modify, or an empty book if the pair is not traded
+	 */
+	@Override
+	public OrderBook getFullOrderBook(String tradableIdentifier, String currency) {
+
+		verify(tradableIdentifier, currency);
+
+		CryptsyOrderBooksSnapshot snapshot = getOrderBooksSnapshot();
+		OrderBook orderBook = snapshot.getOrderBook(new CurrencyPair(tradableIdentifier.toUpperCase(), currency.toUpperCase()));
+		if (orderBook == null) {
+			return new OrderBook(new Date(snapshot.getTimestamp()), new ArrayList<LimitOrder>(), new ArrayList<LimitOrder>());
+		}
+		return orderBook;
+	}
+
+	/**
+	 * @return The recent trades of the current snapshot, oldest first
+	 */
+	@Override
+	public Trades getTrades(String tradableIdentifier, String currency,
+			Object... args) {
+
+		verify(tradableIdentifier, currency);
+
+		Trades trades = getMarketsSnapshot().getTrades(new CurrencyPair(tradableIdentifier.toUpperCase(), currency.toUpperCase()));
+		if (trades == null) {
+			throw new NotAvailableFromExchangeException();
+		}
+		return trades;
+	}
+
+	/**
+	 * Verify
+	 * 
+	 * @param tradableIdentifier
+	 *            The tradable identifier (e.g. BTC in BTC/USD)
+	 * @param currency
+	 */
+	private void verify(String tradableIdentifier, String currency) {
+
+		Assert.notNull(tradableIdentifier, "tradableIdentifier cannot be null");
+		Assert.notNull(currency, "currency cannot be null");
+		Assert.isTrue(CryptsyUtils.isValidCurrencyPair(new CurrencyPair(
+				tradableIdentifier, currency)), "currencyPair is not valid:"
+				+ tradableIdentifier + " " + currency);
+
+	}
+
+	public List<CryptsyMarketCoin> getCurrencyMarkets() {
+
+		return getMarketsSnapshot().getMarkets();
+	}
+
+	@Override
+	public Set<CurrencyPair> getExchangeSymbols() {
+
+		return getOrderBooksSnapshot().getExchangeSymbols();
+	}
+
+	@Override
+	public ExchangeInfo getExchangeInfo() throws IOException,
+			NotAvailableFromExchangeException,
+			NotYetImplementedForExchangeException {
+
+		return new ExchangeInfo(new ArrayList<CurrencyPair>(
+				getExchangeSymbols()));
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.cryptsy.service.polling;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.xeiam.xchange.cryptsy.CryptsyMarketCoin;
+import com.xeiam.xchange.cryptsy.CryptsyTicker;
+import com.xeiam.xchange.cryptsy.CryptsyTickerReturn;
+import com.xeiam.xchange.cryptsy.RecentTrade;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trades;
+
+/**
+ * Test indexing and adapting of the Cryptsy all-markets payload
+ */
+public class CryptsyMarketsSnapshotTest {
+
+	@Test
+	public void testSnapshot() {
+
+		RecentTrade newer = new RecentTrade("2", "2013-07-02 23:31:37", new BigDecimal("0.0201"), new BigDecimal("3"), new BigDecimal("0.0603"));
+		RecentTrade older = new RecentTrade("1", "2013-07-02 23:30:00", new BigDecimal("0.0200"), new BigDecimal("1"), new BigDecimal("0.0200"));
+		Map<String, CryptsyMarketCoin> markets = new HashMap<String, CryptsyMarketCoin>();
+		markets.put("LTC/BTC", new CryptsyMarketCoin(Arrays.asList(newer, older), "3", "LTC", "BTC"));
+		markets.put("XPM/BTC", new CryptsyMarketCoin(null, "63", "XPM", "BTC"));
+		CryptsyTickerReturn result = new CryptsyTickerReturn();
+		result.setMarkets(markets);
+
+		CryptsyMarketsSnapshot snapshot = new CryptsyMarketsSnapshot(new CryptsyTicker("1", result), 1000L);
+		CurrencyPair ltc = new CurrencyPair("LTC", "BTC");
+
+		assertThat(snapshot.getMarkets()).hasSize(2);
+		assertThat(snapshot.getTimestamp()).isEqualTo(1000L);
+
+		Ticker ticker = snapshot.getTicker(ltc);
+		assertThat(ticker.getVolume()).isEqualTo(new BigDecimal("3"));
+		// adapted once and then shared
+		assertThat(snapshot.getTicker(ltc)).isSameAs(ticker);
+
+		Trades trades = snapshot.getTrades(ltc);
+		assertThat(trades.getTrades()).hasSize(2);
+		assertThat(trades.getTrades().get(0).getId()).isEqualTo(1L);
+		assertThat(trades.getTrades().get(1).getId()).isEqualTo(2L);
+		// each caller gets its own copy
+		trades.getTrades().clear();
+		assertThat(snapshot.getTrades(ltc)).isNotSameAs(trades);
+		assertThat(snapshot.getTrades(ltc).getTrades()).hasSize(2);
+
+		assertThat(snapshot.getTicker(new CurrencyPair("XPM", "BTC"))).isNull();
+		assertThat(snapshot.getTrades(new CurrencyPair("XPM", "BTC")).getTrades()).isEmpty();
+		assertThat(snapshot.getTicker(new CurrencyPair("FTC", "BTC"))).isNull();
+		assertThat(snapshot.getTrades(new CurrencyPair("FTC", "BTC"))).isNull();
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.cryptsy.service.polling;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.xeiam.xchange.cryptsy.dto.marketdata.CryptsyDepth;
+import com.xeiam.xchange.cryptsy.dto.marketdata.CryptsyOrder;
+import com.xeiam.xchange.cryptsy.dto.marketdata.CryptsyPair;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+
+/**
+ * Test indexing and adapting of the Cryptsy all-markets order book payload
+ */
+public class CryptsyOrderBooksSnapshotTest {
+
+	@Test
+	public void testEachCallerGetsASortedCopy() {
+
+		Map<String, CryptsyPair> pairs = new HashMap<String, CryptsyPair>();
+		pairs.put("LTC", new CryptsyPair("LTC/BTC", "LiteCoin", "LTC", "BitCoin", "BTC", Arrays.asList(new CryptsyOrder("0.0210", "2", "0.042"), new CryptsyOrder("0.0205", "1",
+				"0.0205")), Arrays.asList(new CryptsyOrder("0.0199", "1", "0.0199"), new CryptsyOrder("0.0200", "3", "0.06"))));
+		CryptsyOrderBooksSnapshot snapshot = new CryptsyOrderBooksSnapshot(new CryptsyDepth(1, pairs), 1000L);
+		CurrencyPair ltc = new CurrencyPair("LTC", "BTC");
+
+		OrderBook orderBook = snapshot.getOrderBook(ltc);
+		assertThat(orderBook.getAsks().get(0).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("0.0205"));
+		assertThat(orderBook.getBids().get(0).getLimitPrice().getAmount()).isEqualTo(new BigDecimal("0.0200"));
+		assertThat(orderBook.getTimeStamp().getTime()).isEqualTo(1000L);
+
+		orderBook.getAsks().clear();
+		OrderBook other = snapshot.getOrderBook(ltc);
+		assertThat(other).isNotSameAs(orderBook);
+		assertThat(other.getAsks()).hasSize(2);
+		assertThat(other.getBids()).hasSize(2);
+
+		assertThat(snapshot.getOrderBook(new CurrencyPair("FTC", "BTC"))).isNull();
+	}
+}
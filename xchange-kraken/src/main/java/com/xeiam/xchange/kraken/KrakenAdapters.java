@@ -36,14 +36,17 @@ import org.joda.money.CurrencyUnit;
 import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
-import com.xeiam.xchange.dto.marketdata.Trade;
 import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.marketdata.TradesBuilder;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.OpenOrders;
 import com.xeiam.xchange.dto.trade.Wallet;
 import com.xeiam.xchange.kraken.dto.account.KrakenBalanceResult;
+import com.xeiam.xchange.kraken.dto.marketdata.KrakenDepth;
 import com.xeiam.xchange.kraken.dto.marketdata.KrakenTicker;
 import com.xeiam.xchange.kraken.dto.trade.KrakenOpenOrder;
 
@@ -58,6 +61,35 @@ public class KrakenAdapters {
     return limitOrders;
   }
 
+  /**
+   * Adapts both sides of a Kraken depth in one pass over the levels, tracking the latest level timestamp as it goes
+   * 
+   * @param krakenDepth
+   * @param currency
+   * @param tradableIdentifier
+   * @return The order book, time stamped with its most recently updated level
+   */
+  public static OrderBook adaptOrderBook(KrakenDepth krakenDepth, String currency, String tradableIdentifier) {
+
+    List<BigDecimal[]> krakenAsks = krakenDepth.getAsks();
+    List<BigDecimal[]> krakenBids = krakenDepth.getBids();
+    OrderBookBuilder builder = new OrderBookBuilder(tradableIdentifier, currency, krakenAsks.size(), krakenBids.size());
+
+    long latest = 0;
+    for (BigDecimal[] level : krakenAsks) {
+      long timestamp = level[2].longValue() * 1000;
+      latest = Math.max(latest, timestamp);
+      builder.asks().add(level[0], level[1], "", new Date(timestamp));
+    }
+    for (BigDecimal[] level : krakenBids) {
+      long timestamp = level[2].longValue() * 1000;
+      latest = Math.max(latest, timestamp);
+      builder.bids().add(level[0], level[1], "", new Date(timestamp));
+    }
+
+    return builder.withTimestamp(latest == 0 ? null : new Date(latest)).build();
+  }
+
   private static LimitOrder adaptOrder(BigDecimal[] order, String orderType, String currency, String tradableIdentifier) {
 
     OrderType type = orderType.equalsIgnoreCase("asks") ? OrderType.ASK : OrderType.BID;
@@ -90,16 +122,15 @@ public class KrakenAdapters {
    */
   public static Trades adaptTrades(String[][] krakenTrades, String currency, String tradableIdentifier, long since) {
 
-    List<Trade> trades = new LinkedList<Trade>();
+    TradesBuilder builder = new TradesBuilder(tradableIdentifier, currency, krakenTrades.length);
     for (String[] krakenTradeInformation : krakenTrades) {
       OrderType type = krakenTradeInformation[3].equalsIgnoreCase("s") ? OrderType.ASK : OrderType.BID;
       BigDecimal tradableAmount = new BigDecimal(krakenTradeInformation[1]);
-      BigMoney price = BigMoney.of(CurrencyUnit.of(currency), new BigDecimal(krakenTradeInformation[0]));
+      BigDecimal price = new BigDecimal(krakenTradeInformation[0]);
       Date timestamp = new Date((long) (Double.valueOf(krakenTradeInformation[2]) * 1000L));
-      trades.add(new Trade(type, tradableAmount, tradableIdentifier, currency, price, timestamp, since));
-
+      builder.add(type, tradableAmount, price, timestamp, since);
     }
-    return new Trades(trades);
+    return builder.build();
 
   }
 
@@ -23,10 +23,9 @@ package com.xeiam.xchange.kraken.service.polling;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import si.mazi.rescu.RestProxyFactory;
 
@@ -36,9 +35,9 @@ import com.xeiam.xchange.NotAvailableFromExchangeException;
 import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.dto.ExchangeInfo;
 import com.xeiam.xchange.dto.marketdata.OrderBook;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Trades;
-import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.kraken.Kraken;
 import com.xeiam.xchange.kraken.KrakenAdapters;
 import com.xeiam.xchange.kraken.KrakenUtils;
@@ -49,13 +48,16 @@ import com.xeiam.xchange.kraken.dto.marketdata.KrakenTicker;
 import com.xeiam.xchange.kraken.dto.marketdata.KrakenTickerResult;
 import com.xeiam.xchange.kraken.dto.marketdata.KrakenTradesResult;
 import com.xeiam.xchange.service.polling.BasePollingExchangeService;
-import com.xeiam.xchange.service.polling.PollingMarketDataService;
+import com.xeiam.xchange.service.polling.DepthLimitedMarketDataService;
+import com.xeiam.xchange.service.polling.OrderBookRequest;
+import com.xeiam.xchange.service.streaming.SnapshotDiffs;
 import com.xeiam.xchange.utils.Assert;
 
-public class KrakenPollingMarketDataService extends BasePollingExchangeService implements PollingMarketDataService {
+public class KrakenPollingMarketDataService extends BasePollingExchangeService implements DepthLimitedMarketDataService {
 
   private static final long PARTIAL_ORDERBOOK_SIZE = 200L;
   private final Kraken kraken;
+  private final Map<CurrencyPair, OrderBook> lastOrderBooks = new ConcurrentHashMap<CurrencyPair, OrderBook>();
 
   public KrakenPollingMarketDataService(ExchangeSpecification exchangeSpecification) {
 
@@ -103,7 +105,17 @@ public class KrakenPollingMarketDataService extends BasePollingExchangeService i
   @Override
   public OrderBook getFullOrderBook(String tradableIdentifier, String currency) throws IOException {
 
-    return getOrderBook(tradableIdentifier, currency, null);
+    return getOrderBook(tradableIdentifier, currency, (Long) null);
+  }
+
+  /**
+   * Maps the levels to Kraken's count parameter; a price window is applied to the full book on the client side
+   */
+  @Override
+  public OrderBook getOrderBook(String tradableIdentifier, String currency, OrderBookRequest request) throws IOException {
+
+    Long count = request.hasMaxLevels() ? Long.valueOf(request.getMaxLevels()) : null;
+    return request.truncate(getOrderBook(tradableIdentifier, currency, count));
   }
 
   private OrderBook getOrderBook(String tradableIdentifier, String currency, Long count) throws IOException {
@@ -116,19 +128,24 @@ public class KrakenPollingMarketDataService extends BasePollingExchangeService i
       throw new ExchangeException(Arrays.toString(krakenDepthReturn.getError()));
     }
     KrakenDepth krakenDepth = krakenDepthReturn.getResult().get(krakenCurrencyPair);
-    List<LimitOrder> bids = KrakenAdapters.adaptOrders(krakenDepth.getBids(), currency, tradableIdentifier, "bids");
-    List<LimitOrder> asks = KrakenAdapters.adaptOrders(krakenDepth.getAsks(), currency, tradableIdentifier, "asks");
-    Comparator<LimitOrder> dateComparator = new Comparator<LimitOrder>() {
-
-      @Override
-      public int compare(LimitOrder o1, LimitOrder o2) {
-
-        return o1.getTimestamp().compareTo(o2.getTimestamp());
-      }
-    };
-    bids.addAll(asks);
-    Date timeStamp = Collections.max(bids, dateComparator).getTimestamp();
-    return new OrderBook(timeStamp, asks, bids);
+    return KrakenAdapters.adaptOrderBook(krakenDepth, currency, tradableIdentifier);
+  }
+
+  /**
+   * Polls the order book and returns only the price levels that changed since the previous call for the same pair. Kraken's Depth call has no
+   * <code>since</code> parameter, so the previous snapshot is kept here and diffed in a single merge-walk.
+   * 
+   * @param tradableIdentifier The tradable identifier (e.g. BTC in BTC/USD)
+   * @param currency The transaction currency (e.g. USD in BTC/USD)
+   * @param count The number of levels per side, null for the full book
+   * @return The changed levels, with a total volume of zero for levels that disappeared; every level on the first call
+   * @throws IOException
+   */
+  public List<OrderBookUpdate> getOrderBookUpdates(String tradableIdentifier, String currency, Long count) throws IOException {
+
+    OrderBook current = getOrderBook(tradableIdentifier, currency, count);
+    OrderBook previous = lastOrderBooks.put(new CurrencyPair(tradableIdentifier, currency), current);
+    return SnapshotDiffs.diff(previous, current, tradableIdentifier, currency);
   }
 
   @Override
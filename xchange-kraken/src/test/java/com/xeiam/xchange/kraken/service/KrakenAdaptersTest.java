@@ -37,17 +37,23 @@ import org.junit.Test;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xeiam.xchange.currency.Currencies;
 import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBook;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.OpenOrders;
 import com.xeiam.xchange.kraken.KrakenAdapters;
 import com.xeiam.xchange.kraken.dto.account.KrakenBalanceResult;
 import com.xeiam.xchange.kraken.dto.marketdata.KrakenAssetPairsResult;
+import com.xeiam.xchange.kraken.dto.marketdata.KrakenDepth;
+import com.xeiam.xchange.kraken.dto.marketdata.KrakenDepthResult;
 import com.xeiam.xchange.kraken.dto.marketdata.KrakenTickerResult;
 import com.xeiam.xchange.kraken.dto.marketdata.KrakenTradesResult;
 import com.xeiam.xchange.kraken.dto.trade.KrakenOpenOrdersResult;
 import com.xeiam.xchange.kraken.service.marketdata.KrakenAssetPairsJSONTest;
+import com.xeiam.xchange.kraken.service.marketdata.KrakenDepthJSONTest;
 import com.xeiam.xchange.kraken.service.marketdata.KrakenTickerJSONTest;
 import com.xeiam.xchange.kraken.service.marketdata.KrakenTradesJSONTest;
 import com.xeiam.xchange.kraken.service.trading.KrakenOpenOrdersTest;
@@ -71,6 +77,35 @@ public class KrakenAdaptersTest {
     assertThat(ticker.getVolume()).isZero();
   }
 
+  @Test
+  public void testAdaptOrderBook() throws IOException {
+
+    // Read in the JSON from the example resources
+    InputStream is = KrakenDepthJSONTest.class.getResourceAsStream("/marketdata/example-depth-data.json");
+
+    // Use Jackson to parse it
+    ObjectMapper mapper = new ObjectMapper();
+    KrakenDepthResult krakenDepthResult = mapper.readValue(is, KrakenDepthResult.class);
+    KrakenDepth krakenDepth = krakenDepthResult.getResult().get("XBTCZEUR");
+    OrderBook orderBook = KrakenAdapters.adaptOrderBook(krakenDepth, Currencies.EUR, Currencies.BTC);
+
+    assertThat(orderBook.getAsks()).hasSize(krakenDepth.getAsks().size());
+    assertThat(orderBook.getBids()).hasSize(krakenDepth.getBids().size());
+    for (LimitOrder bid : orderBook.getBids()) {
+      assertThat(bid.getType()).isEqualTo(OrderType.BID);
+    }
+    assertThat(orderBook.getAsks().get(0).getLimitPrice().getAmount()).isEqualTo("96.99999");
+
+    long latest = 0;
+    for (BigDecimal[] level : krakenDepth.getAsks()) {
+      latest = Math.max(latest, level[2].longValue());
+    }
+    for (BigDecimal[] level : krakenDepth.getBids()) {
+      latest = Math.max(latest, level[2].longValue());
+    }
+    assertThat(orderBook.getTimeStamp()).isEqualTo(new Date(latest * 1000));
+  }
+
   @Test
   public void testAdaptCurrencyPairs() throws IOException {
 
@@ -27,6 +27,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
 
 import com.xeiam.xchange.currency.Currencies;
 import com.xeiam.xchange.currency.MoneyUtils;
@@ -72,7 +73,7 @@ public final class MtGoxAdapters {
     // place a limit order
     OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
     String tradableIdentifier = Currencies.BTC;
-    BigMoney limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     return new LimitOrder(orderType, amount, tradableIdentifier, currency, id, null, limitPrice);
 
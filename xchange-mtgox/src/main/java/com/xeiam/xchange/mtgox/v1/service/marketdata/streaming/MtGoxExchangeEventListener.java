@@ -29,10 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xeiam.xchange.ExchangeException;
 import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
 import com.xeiam.xchange.dto.marketdata.Ticker;
@@ -45,6 +42,7 @@ import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
 import com.xeiam.xchange.service.streaming.ExchangeEvent;
 import com.xeiam.xchange.service.streaming.ExchangeEventListener;
 import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.utils.jackson.JacksonRegistry;
 
 /**
  * @author timmolter
@@ -55,8 +53,6 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
 
   private static final Logger log = LoggerFactory.getLogger(MtGoxExchangeEventListener.class);
 
-  private final ObjectMapper streamObjectMapper;
-
   private final BlockingQueue<ExchangeEvent> consumerEventQueue;
 
   /**
@@ -67,8 +63,6 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
   public MtGoxExchangeEventListener(BlockingQueue<ExchangeEvent> consumerEventQueue) {
 
     this.consumerEventQueue = consumerEventQueue;
-    streamObjectMapper = new ObjectMapper();
-    streamObjectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
   }
 
@@ -89,10 +83,8 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
     case MESSAGE:
       try {
         // Get raw JSON
-        // Map<String, Object> rawJSON = JSONUtils.getJsonGenericMap(exchangeEvent.getData(), streamObjectMapper);
         Map<String, Object> rawJSON;
-        rawJSON = streamObjectMapper.readValue(exchangeEvent.getData(), new TypeReference<Map<String, Object>>() {
-        });
+        rawJSON = JacksonRegistry.getMapReader().readValue(exchangeEvent.getData());
 
         String operation = (String) rawJSON.get("op");
         if ("private".equals(operation)) {
@@ -129,8 +121,7 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
         if (rawJSON.containsKey("ticker")) {
 
           // Get MtGoxTicker from JSON String
-          // MtGoxTicker mtGoxTicker = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("ticker"), streamObjectMapper), MtGoxTicker.class, streamObjectMapper);
-          MtGoxTicker mtGoxTicker = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("ticker")), MtGoxTicker.class);
+          MtGoxTicker mtGoxTicker = JacksonRegistry.convert(rawJSON.get("ticker"), MtGoxTicker.class);
 
           // Adapt to XChange DTOs
           Ticker ticker = MtGoxAdapters.adaptTicker(mtGoxTicker);
@@ -146,8 +137,7 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
             // log.debug("exchangeEvent: " + exchangeEvent.getEventType());
 
             // Get MtGoxTradeStream from JSON String
-            // MtGoxTrade mtGoxTradeStream = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("trade"), streamObjectMapper), MtGoxTrade.class, streamObjectMapper);
-            MtGoxTrade mtGoxTradeStream = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("trade")), MtGoxTrade.class);
+            MtGoxTrade mtGoxTradeStream = JacksonRegistry.convert(rawJSON.get("trade"), MtGoxTrade.class);
 
             // Adapt to XChange DTOs
             Trade trade = MtGoxAdapters.adaptTrade(mtGoxTradeStream);
@@ -161,8 +151,7 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
             if (rawJSON.containsKey("depth")) {
 
               // Get MtGoxDepthStream from JSON String
-              // MtGoxDepthUpdate mtGoxDepthStream = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("depth"), streamObjectMapper), MtGoxDepthUpdate.class, streamObjectMapper);
-              MtGoxDepthUpdate mtGoxDepthStream = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("depth")), MtGoxDepthUpdate.class);
+              MtGoxDepthUpdate mtGoxDepthStream = JacksonRegistry.convert(rawJSON.get("depth"), MtGoxDepthUpdate.class);
 
               // Adapt to XChange DTOs
               OrderBookUpdate orderBookUpdate = MtGoxAdapters.adaptDepthUpdate(mtGoxDepthStream);
@@ -186,6 +175,8 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
         log.error("Error parsing returned JSON", e);
       } catch (IOException e) {
         log.error("Error parsing returned JSON", e);
+      } catch (IllegalArgumentException e) {
+        log.error("Error mapping returned JSON", e);
       }
       break;
     case ERROR:
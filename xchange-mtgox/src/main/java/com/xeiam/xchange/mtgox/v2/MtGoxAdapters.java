@@ -27,11 +27,13 @@ import java.util.Date;
 import java.util.List;
 
 import org.joda.money.BigMoney;
+import org.joda.money.CurrencyUnit;
 
 import com.xeiam.xchange.currency.Currencies;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.marketdata.Ticker.TickerBuilder;
@@ -40,15 +42,19 @@ import com.xeiam.xchange.dto.marketdata.Trades;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.Wallet;
 import com.xeiam.xchange.mtgox.MtGoxUtils;
+import com.xeiam.xchange.mtgox.v2.dto.MtGoxValue;
 import com.xeiam.xchange.mtgox.v2.dto.account.polling.MtGoxAccountInfo;
 import com.xeiam.xchange.mtgox.v2.dto.account.polling.MtGoxWallet;
 import com.xeiam.xchange.mtgox.v2.dto.account.polling.Wallets;
+import com.xeiam.xchange.mtgox.v2.dto.account.streaming.MtGoxWalletUpdate;
 import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxDepthUpdate;
 import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxOrder;
 import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxTicker;
 import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxTrade;
 import com.xeiam.xchange.mtgox.v2.dto.trade.polling.MtGoxOpenOrder;
-import com.xeiam.xchange.utils.DateUtils;
+import com.xeiam.xchange.mtgox.v2.dto.trade.streaming.MtGoxOrderCanceled;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
 
 /**
  * Various adapters for converting from mtgox DTOs to XChange DTOs
@@ -89,7 +95,7 @@ public final class MtGoxAdapters {
     OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
     String tradableIdentifier = Currencies.BTC;
     String transactionCurrency = currency;
-    BigMoney limitPrice = MoneyUtils.parse(currency + " " + price);
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
     LimitOrder limitOrder = new LimitOrder(orderType, amount, tradableIdentifier, transactionCurrency, id, timestamp, limitPrice);
 
@@ -107,18 +113,19 @@ public final class MtGoxAdapters {
    */
   public static List<LimitOrder> adaptOrders(List<MtGoxOrder> mtGoxOrders, String currency, String orderType, String id) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    OrderType type = orderType.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+    OrderBookBuilder.Side side = new OrderBookBuilder.Side(type, Currencies.BTC, currency, mtGoxOrders.size());
 
     for (MtGoxOrder mtGoxOrder : mtGoxOrders) {
-      limitOrders.add(adaptOrder(mtGoxOrder.getAmount(), mtGoxOrder.getPrice(), currency, orderType, id, new Date(mtGoxOrder.getStamp() / 1000)));
+      side.add(mtGoxOrder.getPrice(), mtGoxOrder.getAmount(), id, new Date(mtGoxOrder.getStamp() / 1000));
     }
 
-    return limitOrders;
+    return side.build();
   }
 
   public static List<LimitOrder> adaptOrders(MtGoxOpenOrder[] mtGoxOpenOrders) {
 
-    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
+    List<LimitOrder> limitOrders = new ArrayList<LimitOrder>(mtGoxOpenOrders.length);
 
     for (int i = 0; i < mtGoxOpenOrders.length; i++) {
       limitOrders.add(adaptOrder(mtGoxOpenOrders[i].getAmount().getValue(), mtGoxOpenOrders[i].getPrice().getValue(), mtGoxOpenOrders[i].getCurrency(), mtGoxOpenOrders[i].getType(),
@@ -179,9 +186,9 @@ public final class MtGoxAdapters {
     String tradableIdentifier = mtGoxTrade.getItem();
     String transactionCurrency = mtGoxTrade.getPriceCurrency();
     BigMoney price = MtGoxUtils.getPrice(transactionCurrency, mtGoxTrade.getPriceInt());
-    Date dateTime = DateUtils.fromMillisUtc(mtGoxTrade.getTid() / 1000L); // Note: the getDate is not millisecond precise therefore we use getTid()!
+    long timestampMicros = mtGoxTrade.getTid(); // Note: the getDate is not millisecond precise therefore we use getTid()!
 
-    return new Trade(orderType, amount, tradableIdentifier, transactionCurrency, price, dateTime, mtGoxTrade.getTid());
+    return new Trade(orderType, amount, tradableIdentifier, transactionCurrency, price, timestampMicros, mtGoxTrade.getTid());
   }
 
   public static OrderBookUpdate adaptDepthUpdate(MtGoxDepthUpdate mtGoxDepthUpdate) {
@@ -228,4 +235,60 @@ public final class MtGoxAdapters {
         .withTimestamp(new Date(mtGoxTicker.getNow() / 1000)).build();
 
   }
+
+  /**
+   * Adapts a streamed wallet update to a Wallet holding the new balance
+   * 
+   * @param mtGoxWalletUpdate
+   * @return
+   */
+  public static Wallet adaptWalletUpdate(MtGoxWalletUpdate mtGoxWalletUpdate) {
+
+    MtGoxValue balance = mtGoxWalletUpdate.getBalance();
+    return Wallet.createInstance(balance.getCurrency(), balance.getValue());
+  }
+
+  /**
+   * Adapts a streamed user order to a LimitOrder holding the remaining amount
+   * 
+   * @param mtGoxOpenOrder
+   * @return The LimitOrder, or null if the message only carries the id of an order that is gone
+   */
+  public static LimitOrder adaptOpenOrder(MtGoxOpenOrder mtGoxOpenOrder) {
+
+    if (mtGoxOpenOrder.getAmount() == null || mtGoxOpenOrder.getPrice() == null) {
+      return null;
+    }
+    OrderType orderType = mtGoxOpenOrder.getType().equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+    String tradableIdentifier = mtGoxOpenOrder.getItem() == null ? Currencies.BTC : mtGoxOpenOrder.getItem();
+    BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(mtGoxOpenOrder.getCurrency()), mtGoxOpenOrder.getPrice().getValue());
+
+    return new LimitOrder(orderType, mtGoxOpenOrder.getAmount().getValue(), tradableIdentifier, mtGoxOpenOrder.getCurrency(), mtGoxOpenOrder.getOid(), new Date(
+        mtGoxOpenOrder.getDate() * 1000), limitPrice);
+  }
+
+  /**
+   * Adapts the payload of a private streaming event (USER_WALLET_UPDATE, USER_ORDER or USER_ORDER_CANCELED) to the core DTOs expected by the generic account
+   * and order state services
+   * 
+   * @param exchangeEvent
+   * @return The adapted event, or the given one if it is not a private event
+   */
+  public static ExchangeEvent adaptUserEvent(ExchangeEvent exchangeEvent) {
+
+    Object payload = exchangeEvent.getPayload();
+
+    if (payload instanceof MtGoxWalletUpdate) {
+      return new DefaultExchangeEvent(exchangeEvent.getEventType(), exchangeEvent.getData(), adaptWalletUpdate((MtGoxWalletUpdate) payload));
+    }
+    if (payload instanceof MtGoxOpenOrder) {
+      MtGoxOpenOrder mtGoxOpenOrder = (MtGoxOpenOrder) payload;
+      LimitOrder limitOrder = adaptOpenOrder(mtGoxOpenOrder);
+      return new DefaultExchangeEvent(exchangeEvent.getEventType(), exchangeEvent.getData(), limitOrder == null ? mtGoxOpenOrder.getOid() : limitOrder);
+    }
+    if (payload instanceof MtGoxOrderCanceled) {
+      return new DefaultExchangeEvent(exchangeEvent.getEventType(), exchangeEvent.getData(), ((MtGoxOrderCanceled) payload).getOid());
+    }
+    return exchangeEvent;
+  }
 }
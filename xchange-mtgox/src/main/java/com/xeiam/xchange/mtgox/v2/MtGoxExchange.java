@@ -21,16 +21,35 @@
  */
 package com.xeiam.xchange.mtgox.v2;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
 import com.xeiam.xchange.BaseExchange;
 import com.xeiam.xchange.Exchange;
 import com.xeiam.xchange.ExchangeSpecification;
 import com.xeiam.xchange.currency.CurrencyPair;
 import com.xeiam.xchange.mtgox.MtGoxUtils;
+import com.xeiam.xchange.mtgox.v2.dto.account.polling.MtGoxAccountInfo;
+import com.xeiam.xchange.mtgox.v2.dto.account.streaming.MtGoxWalletUpdate;
+import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxDepthUpdate;
+import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxTicker;
+import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxTrade;
+import com.xeiam.xchange.mtgox.v2.dto.trade.polling.MtGoxOpenOrder;
+import com.xeiam.xchange.mtgox.v2.dto.trade.streaming.MtGoxOrderCanceled;
+import com.xeiam.xchange.mtgox.v2.dto.trade.streaming.MtGoxTradeLag;
 import com.xeiam.xchange.mtgox.v2.service.polling.MtGoxPollingAccountService;
 import com.xeiam.xchange.mtgox.v2.service.polling.MtGoxPollingMarketDataService;
 import com.xeiam.xchange.mtgox.v2.service.polling.MtGoxPollingTradeService;
+import com.xeiam.xchange.mtgox.v2.service.streaming.MtGoxExchangeEventListener;
 import com.xeiam.xchange.mtgox.v2.service.streaming.MtGoxStreamingConfiguration;
 import com.xeiam.xchange.mtgox.v2.service.streaming.MtGoxWebsocketService;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
 import com.xeiam.xchange.service.streaming.ExchangeStreamingConfiguration;
 import com.xeiam.xchange.service.streaming.StreamingExchangeService;
 
@@ -44,6 +63,8 @@ import com.xeiam.xchange.service.streaming.StreamingExchangeService;
  */
 public class MtGoxExchange extends BaseExchange implements Exchange {
 
+  private static final String[] WARM_UP_MESSAGES = { "warmup/ticker.json", "warmup/trade.json", "warmup/depth.json" };
+
   @Override
   public void applySpecification(ExchangeSpecification exchangeSpecification) {
 
@@ -71,6 +92,58 @@ public class MtGoxExchange extends BaseExchange implements Exchange {
     return exchangeSpecification;
   }
 
+  @Override
+  protected Class<?>[] getWarmUpTypes() {
+
+    return new Class<?>[] { MtGoxTicker.class, MtGoxTrade.class, MtGoxDepthUpdate.class, MtGoxOpenOrder.class, MtGoxOpenOrder[].class, MtGoxAccountInfo.class,
+        MtGoxWalletUpdate.class, MtGoxOrderCanceled.class, MtGoxTradeLag.class };
+  }
+
+  /**
+   * Feeds the bundled ticker, trade and depth messages through the streaming listener, i.e. the JSON mapping and the adapters
+   */
+  @Override
+  protected int warmUpAdapters(int iterations) throws IOException {
+
+    String[] messages = new String[WARM_UP_MESSAGES.length];
+    for (int i = 0; i < WARM_UP_MESSAGES.length; i++) {
+      messages[i] = readResource(WARM_UP_MESSAGES[i]);
+    }
+
+    BlockingQueue<ExchangeEvent> queue = new LinkedBlockingQueue<ExchangeEvent>();
+    MtGoxExchangeEventListener listener = new MtGoxExchangeEventListener(queue);
+    int adapted = 0;
+    for (int i = 0; i < iterations; i++) {
+      for (String message : messages) {
+        listener.handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, message));
+      }
+      // the listener logs and drops messages it fails to map
+      adapted += queue.size();
+      queue.clear();
+    }
+    return adapted;
+  }
+
+  private static String readResource(String name) throws IOException {
+
+    InputStream is = MtGoxExchange.class.getResourceAsStream(name);
+    if (is == null) {
+      throw new IOException("Missing resource " + name);
+    }
+    try {
+      Reader reader = new InputStreamReader(is, "UTF-8");
+      StringBuilder sb = new StringBuilder(2048);
+      char[] buffer = new char[1024];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        sb.append(buffer, 0, read);
+      }
+      return sb.toString();
+    } finally {
+      is.close();
+    }
+  }
+
   @Override
   public StreamingExchangeService getStreamingExchangeService(ExchangeStreamingConfiguration configuration) {
 
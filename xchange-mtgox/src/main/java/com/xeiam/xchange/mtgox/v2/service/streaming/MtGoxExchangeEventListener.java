@@ -22,6 +22,8 @@
 package com.xeiam.xchange.mtgox.v2.service.streaming;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
@@ -29,10 +31,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.xeiam.xchange.ExchangeException;
 import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
 import com.xeiam.xchange.dto.marketdata.Ticker;
@@ -46,10 +46,13 @@ import com.xeiam.xchange.mtgox.v2.dto.marketdata.MtGoxTrade;
 import com.xeiam.xchange.mtgox.v2.dto.trade.polling.MtGoxOpenOrder;
 import com.xeiam.xchange.mtgox.v2.dto.trade.streaming.MtGoxOrderCanceled;
 import com.xeiam.xchange.mtgox.v2.dto.trade.streaming.MtGoxTradeLag;
-import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.EventDataMode;
 import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventFactory;
 import com.xeiam.xchange.service.streaming.ExchangeEventListener;
 import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.service.streaming.PayloadExchangeEvent;
+import com.xeiam.xchange.utils.jackson.JacksonRegistry;
 
 /**
  * @author timmolter
@@ -58,20 +61,42 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
 
   private static final Logger log = LoggerFactory.getLogger(MtGoxExchangeEventListener.class);
 
-  private final ObjectMapper streamObjectMapper;
+  /** The DTO types of the payload fields, bound straight from the message */
+  private static final Map<String, Class<?>> PAYLOAD_TYPES = new HashMap<String, Class<?>>();
+
+  static {
+    PAYLOAD_TYPES.put("ticker", MtGoxTicker.class);
+    PAYLOAD_TYPES.put("trade", MtGoxTrade.class);
+    PAYLOAD_TYPES.put("depth", MtGoxDepthUpdate.class);
+    PAYLOAD_TYPES.put("user_order", MtGoxOpenOrder.class);
+    PAYLOAD_TYPES.put("lag", MtGoxTradeLag.class);
+    PAYLOAD_TYPES.put("wallet", MtGoxWalletUpdate.class);
+  }
 
   private final BlockingQueue<ExchangeEvent> consumerEventQueue;
 
+  private final ExchangeEventFactory eventFactory;
+
   /**
-   * Constructor
+   * Constructor, keeping the raw message of each event as bytes ({@link EventDataMode#COMPACT})
    * 
    * @param consumerEventQueue
    */
   public MtGoxExchangeEventListener(BlockingQueue<ExchangeEvent> consumerEventQueue) {
 
+    this(consumerEventQueue, new ExchangeEventFactory(EventDataMode.COMPACT, 0));
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param consumerEventQueue
+   * @param eventFactory creates the events put on the queue
+   */
+  public MtGoxExchangeEventListener(BlockingQueue<ExchangeEvent> consumerEventQueue, ExchangeEventFactory eventFactory) {
+
     this.consumerEventQueue = consumerEventQueue;
-    streamObjectMapper = new ObjectMapper();
-    streamObjectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    this.eventFactory = eventFactory;
 
   }
 
@@ -93,160 +118,16 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
     case MESSAGE:
 
       try {
-        // Get raw JSON
-        // Map<String, Object> rawJSON = JSONUtils.getJsonGenericMap(exchangeEvent.getData(), streamObjectMapper);
-        Map<String, Object> rawJSON;
-        rawJSON = streamObjectMapper.readValue(exchangeEvent.getData(), new TypeReference<Map<String, Object>>() {
-        });
-
-        String operation = (String) rawJSON.get("op");
-        if ("private".equals(operation)) {
-          String priv = (String) rawJSON.get("private");
-          if ("user_order".equals(priv)) {
-            // MtGoxOpenOrder order = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("user_order"), streamObjectMapper), MtGoxOpenOrder.class, streamObjectMapper);
-            MtGoxOpenOrder order = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("user_order")), MtGoxOpenOrder.class);
-            ExchangeEvent userOrderEvent = new DefaultExchangeEvent(ExchangeEventType.USER_ORDER, exchangeEvent.getData(), order);
-            addToEventQueue(userOrderEvent);
-            break;
-          }
-          else if ("lag".equals(priv)) {
-            // MtGoxTradeLag lag = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("lag"), streamObjectMapper), MtGoxTradeLag.class, streamObjectMapper);
-            MtGoxTradeLag lag = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("lag")), MtGoxTradeLag.class);
-            ExchangeEvent lagEvent = new DefaultExchangeEvent(ExchangeEventType.TRADE_LAG, exchangeEvent.getData(), lag);
-            addToEventQueue(lagEvent);
-            break;
-          }
-          else if ("wallet".equals(priv)) {
-            // MtGoxWalletUpdate walletUpdate = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("wallet"), streamObjectMapper), MtGoxWalletUpdate.class, streamObjectMapper);
-            MtGoxWalletUpdate walletUpdate = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("wallet")), MtGoxWalletUpdate.class);
-            ExchangeEvent walletUpdateEvent = new DefaultExchangeEvent(ExchangeEventType.USER_WALLET_UPDATE, exchangeEvent.getData(), walletUpdate);
-            addToEventQueue(walletUpdateEvent);
-            break;
-          }
-
+        JsonParser parser = JacksonRegistry.createParser(exchangeEvent.getData());
+        try {
+          handleMessage(parser, exchangeEvent.getData(), exchangeEvent, null);
+        } finally {
+          parser.close();
         }
-        else if ("result".equals(operation)) {
-
-          String id = (String) rawJSON.get("id");
-
-          if ("idkey".equals(id)) {
-            ExchangeEvent idEvent = new DefaultExchangeEvent(ExchangeEventType.PRIVATE_ID_KEY, null, rawJSON.get("result"));
-            addToEventQueue(idEvent);
-            break;
-          }
-          else if ("orders".equals(id)) {
-            MtGoxOpenOrder[] orders = null;
-
-            if (rawJSON.get("result") != null) {
-              // orders = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("result"), streamObjectMapper), MtGoxOpenOrder[].class, streamObjectMapper);
-              orders = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("result")), MtGoxOpenOrder[].class);
-            }
-
-            ExchangeEvent ordersEvent = new DefaultExchangeEvent(ExchangeEventType.USER_ORDERS_LIST, exchangeEvent.getData(), orders);
-            addToEventQueue(ordersEvent);
-            break;
-
-          }
-          else if ("info".equals(id)) {
-            // MtGoxAccountInfo accountInfo = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("result"), streamObjectMapper), MtGoxAccountInfo.class, streamObjectMapper);
-            MtGoxAccountInfo accountInfo = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("result")), MtGoxAccountInfo.class);
-            ExchangeEvent accountInfoEvent = new DefaultExchangeEvent(ExchangeEventType.ACCOUNT_INFO, exchangeEvent.getData(), accountInfo);
-            addToEventQueue(accountInfoEvent);
-            break;
-
-          }
-          else if (id.startsWith("order_add")) {
-            ExchangeEvent userOrderAddedEvent = new DefaultExchangeEvent(ExchangeEventType.USER_ORDER_ADDED, exchangeEvent.getData(), rawJSON.get("result"));
-            addToEventQueue(userOrderAddedEvent);
-            break;
-
-          }
-          else if (id.startsWith("order_cancel")) {
-
-            // TODO implement the case when the following message comes in from MtGox
-            // {id=order_cancel:c8fa912b-d929-4cc5-98e6-3ea23667cfa5, message=Order not found, op=remark, success=false}
-
-            // if (((String) rawJSON.get("message")).equals("Order not found")) {
-            // ExchangeEvent userOrderCanceledEvent = new DefaultExchangeEvent(ExchangeEventType.USER_ORDER_NOT_FOUND, exchangeEvent.getData(), rawJSON.get("message"));
-            // addToEventQueue(userOrderCanceledEvent);
-            // }
-            // else {
-            // MtGoxOrderCanceled orderCanceled = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("result"), streamObjectMapper), MtGoxOrderCanceled.class, streamObjectMapper);
-            MtGoxOrderCanceled orderCanceled = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("result")), MtGoxOrderCanceled.class);
-            ExchangeEvent userOrderCanceledEvent = new DefaultExchangeEvent(ExchangeEventType.USER_ORDER_CANCELED, exchangeEvent.getData(), orderCanceled);
-            addToEventQueue(userOrderCanceledEvent);
-            // }
-
-            break;
-          }
-
-        }
-        else if ("remark".equals(operation)) {
-          System.out.println("Msg from server: " + rawJSON.toString());
-          break;
-        }
-
-        // Determine what has been sent
-        if (rawJSON.containsKey("ticker")) {
-
-          // Get MtGoxTicker from JSON String
-          // MtGoxTicker mtGoxTicker = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("ticker"), streamObjectMapper), MtGoxTicker.class, streamObjectMapper);
-          MtGoxTicker mtGoxTicker = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("ticker")), MtGoxTicker.class);
-
-          // Adapt to XChange DTOs
-          Ticker ticker = MtGoxAdapters.adaptTicker(mtGoxTicker);
-
-          // Create a ticker event
-          ExchangeEvent tickerEvent = new DefaultExchangeEvent(ExchangeEventType.TICKER, exchangeEvent.getData(), ticker);
-          addToEventQueue(tickerEvent);
-          break;
-        }
-        else {
-          if (rawJSON.containsKey("trade")) {
-
-            // log.debug("exchangeEvent: " + exchangeEvent.getEventType());
-
-            // Get MtGoxTradeStream from JSON String
-            // MtGoxTrade mtGoxTradeStream = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("trade"), streamObjectMapper), MtGoxTrade.class, streamObjectMapper);
-            MtGoxTrade mtGoxTradeStream = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("trade")), MtGoxTrade.class);
-
-            // Adapt to XChange DTOs
-            Trade trade = MtGoxAdapters.adaptTrade(mtGoxTradeStream);
-
-            // Create a trade event
-            ExchangeEvent tradeEvent = new DefaultExchangeEvent(ExchangeEventType.TRADE, exchangeEvent.getData(), trade);
-            addToEventQueue(tradeEvent);
-            break;
-          }
-          else {
-            if (rawJSON.containsKey("depth")) {
-
-              // Get MtGoxDepthStream from JSON String
-              // MtGoxDepthUpdate mtGoxDepthStream = JSONUtils.getJsonObject(JSONUtils.getJSONString(rawJSON.get("depth"), streamObjectMapper), MtGoxDepthUpdate.class, streamObjectMapper);
-              MtGoxDepthUpdate mtGoxDepthStream = streamObjectMapper.readValue(streamObjectMapper.writeValueAsString(rawJSON.get("depth")), MtGoxDepthUpdate.class);
-
-              // Adapt to XChange DTOs
-              OrderBookUpdate orderBookUpdate = MtGoxAdapters.adaptDepthUpdate(mtGoxDepthStream);
-
-              // Create a depth event
-              ExchangeEvent depthEvent = new DefaultExchangeEvent(ExchangeEventType.DEPTH, exchangeEvent.getData(), orderBookUpdate);
-              addToEventQueue(depthEvent);
-              break;
-            }
-            else {
-
-              log.debug("MtGox operational message");
-              System.out.println("msg: " + rawJSON.toString());
-              addToEventQueue(exchangeEvent);
-            }
-          }
-        }
-      } catch (JsonParseException e) {
-        log.error("Error parsing returned JSON", e);
-      } catch (JsonMappingException e) {
-        log.error("Error parsing returned JSON", e);
       } catch (IOException e) {
         log.error("Error parsing returned JSON", e);
+      } catch (IllegalArgumentException e) {
+        log.error("Error mapping returned JSON", e);
       }
       break;
     case ERROR:
@@ -259,7 +140,213 @@ public class MtGoxExchangeEventListener extends ExchangeEventListener {
 
   }
 
-  private void addToEventQueue(ExchangeEvent event) {
+  /**
+   * Parses a websocket frame straight from its UTF-8 bytes. The raw message is handed to the event factory as bytes, so no String is built unless
+   * the factory is in {@link EventDataMode#RETAIN} mode.
+   */
+  @Override
+  public void handleMessage(ByteBuffer message) {
+
+    try {
+      JsonParser parser = JacksonRegistry.createParser(message);
+      try {
+        handleMessage(parser, null, null, message);
+      } finally {
+        parser.close();
+      }
+    } catch (IOException e) {
+      log.error("Error parsing returned JSON", e);
+    } catch (IllegalArgumentException e) {
+      log.error("Error mapping returned JSON", e);
+    } catch (ExchangeException e) {
+      log.error("Error decoding returned JSON", e);
+    }
+  }
+
+  /**
+   * Streams through the top level fields of a message. The payloads whose type is known from their field name (see {@link #PAYLOAD_TYPES}) are
+   * bound straight into their DTOs; only the rare "result" replies go through a generic value, and only unknown messages are parsed into a Map.
+   * 
+   * @param parser The parser of the message, before its first token
+   * @param data The raw message, null if it came in as bytes
+   * @param exchangeEvent The event the message came in, null if it came in as bytes
+   * @param bytes The message bytes, null if it came in as an event
+   */
+  private void handleMessage(JsonParser parser, String data, ExchangeEvent exchangeEvent, ByteBuffer bytes) throws IOException {
+
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException("Expected a JSON object", parser.getCurrentLocation());
+    }
+
+    String operation = null;
+    String priv = null;
+    String id = null;
+    String payloadField = null;
+    Object payload = null;
+    Object result = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      Class<?> payloadType = PAYLOAD_TYPES.get(field);
+      if (payloadType != null) {
+        payloadField = field;
+        payload = JacksonRegistry.getReader(payloadType).readValue(parser);
+      }
+      else if ("op".equals(field)) {
+        operation = token == JsonToken.VALUE_NULL ? null : parser.getText();
+      }
+      else if ("private".equals(field)) {
+        priv = token == JsonToken.VALUE_NULL ? null : parser.getText();
+      }
+      else if ("id".equals(field)) {
+        id = token == JsonToken.VALUE_NULL ? null : parser.getText();
+      }
+      else if ("result".equals(field)) {
+        result = JacksonRegistry.getReader(Object.class).readValue(parser);
+      }
+      else {
+        parser.skipChildren();
+      }
+    }
+
+    if ("private".equals(operation)) {
+      Object privatePayload = priv != null && priv.equals(payloadField) ? payload : null;
+      if ("user_order".equals(priv)) {
+        ExchangeEvent userOrderEvent = withData(eventFactory.createEvent(ExchangeEventType.USER_ORDER, data, privatePayload), bytes);
+        addToEventQueue(userOrderEvent);
+        return;
+      }
+      else if ("lag".equals(priv)) {
+        ExchangeEvent lagEvent = withData(eventFactory.createEvent(ExchangeEventType.TRADE_LAG, data, privatePayload), bytes);
+        addToEventQueue(lagEvent);
+        return;
+      }
+      else if ("wallet".equals(priv)) {
+        ExchangeEvent walletUpdateEvent = withData(eventFactory.createEvent(ExchangeEventType.USER_WALLET_UPDATE, data, privatePayload), bytes);
+        addToEventQueue(walletUpdateEvent);
+        return;
+      }
+
+    }
+    else if ("result".equals(operation) && id != null) {
+
+      if ("idkey".equals(id)) {
+        ExchangeEvent idEvent = eventFactory.createEvent(ExchangeEventType.PRIVATE_ID_KEY, null, result);
+        addToEventQueue(idEvent);
+        return;
+      }
+      else if ("orders".equals(id)) {
+        MtGoxOpenOrder[] orders = null;
+
+        if (result != null) {
+          orders = JacksonRegistry.convert(result, MtGoxOpenOrder[].class);
+        }
+
+        ExchangeEvent ordersEvent = withData(eventFactory.createEvent(ExchangeEventType.USER_ORDERS_LIST, data, orders), bytes);
+        addToEventQueue(ordersEvent);
+        return;
+
+      }
+      else if ("info".equals(id)) {
+        MtGoxAccountInfo accountInfo = JacksonRegistry.convert(result, MtGoxAccountInfo.class);
+        ExchangeEvent accountInfoEvent = withData(eventFactory.createEvent(ExchangeEventType.ACCOUNT_INFO, data, accountInfo), bytes);
+        addToEventQueue(accountInfoEvent);
+        return;
+
+      }
+      else if (id.startsWith("order_add")) {
+        ExchangeEvent userOrderAddedEvent = withData(eventFactory.createEvent(ExchangeEventType.USER_ORDER_ADDED, data, result), bytes);
+        addToEventQueue(userOrderAddedEvent);
+        return;
+
+      }
+      else if (id.startsWith("order_cancel")) {
+
+        // TODO implement the case when the following message comes in from MtGox
+        // {id=order_cancel:c8fa912b-d929-4cc5-98e6-3ea23667cfa5, message=Order not found, op=remark, success=false}
+
+        // if (((String) rawJSON.get("message")).equals("Order not found")) {
+        // ExchangeEvent userOrderCanceledEvent = new DefaultExchangeEvent(ExchangeEventType.USER_ORDER_NOT_FOUND, data, rawJSON.get("message"));
+        // addToEventQueue(userOrderCanceledEvent);
+        // }
+        // else {
+        MtGoxOrderCanceled orderCanceled = JacksonRegistry.convert(result, MtGoxOrderCanceled.class);
+        ExchangeEvent userOrderCanceledEvent = withData(eventFactory.createEvent(ExchangeEventType.USER_ORDER_CANCELED, data, orderCanceled), bytes);
+        addToEventQueue(userOrderCanceledEvent);
+        // }
+
+        return;
+      }
+
+    }
+    else if ("remark".equals(operation)) {
+      if (log.isDebugEnabled()) {
+        log.debug("Msg from server: {}", readMap(data, bytes));
+      }
+      return;
+    }
+
+    // Determine what has been sent
+    if ("ticker".equals(payloadField)) {
+
+      // Adapt to XChange DTOs
+      Ticker ticker = MtGoxAdapters.adaptTicker((MtGoxTicker) payload);
+
+      // Create a ticker event
+      ExchangeEvent tickerEvent = withData(eventFactory.createTickerEvent(data, ticker), bytes);
+      addToEventQueue(tickerEvent);
+    }
+    else if ("trade".equals(payloadField)) {
+
+      // Adapt to XChange DTOs
+      Trade trade = MtGoxAdapters.adaptTrade((MtGoxTrade) payload);
+
+      // Create a trade event
+      ExchangeEvent tradeEvent = withData(eventFactory.createTradeEvent(data, trade), bytes);
+      addToEventQueue(tradeEvent);
+    }
+    else if ("depth".equals(payloadField)) {
+
+      // Adapt to XChange DTOs
+      OrderBookUpdate orderBookUpdate = MtGoxAdapters.adaptDepthUpdate((MtGoxDepthUpdate) payload);
+
+      // Create a depth event
+      ExchangeEvent depthEvent = withData(eventFactory.createDepthEvent(data, orderBookUpdate), bytes);
+      addToEventQueue(depthEvent);
+    }
+    else {
+
+      Map<String, Object> rawJSON = readMap(data, bytes);
+      log.debug("MtGox operational message: {}", rawJSON);
+      addToEventQueue(exchangeEvent != null ? exchangeEvent : withData(eventFactory.createEvent(ExchangeEventType.MESSAGE, data, rawJSON), bytes));
+    }
+  }
+
+  /**
+   * Keeps the raw message of an event that came in as bytes, according to the factory's {@link EventDataMode}
+   */
+  private <E extends PayloadExchangeEvent<?>> E withData(E event, ByteBuffer bytes) {
+
+    return bytes == null ? event : eventFactory.setData(event, bytes);
+  }
+
+  /**
+   * Parses a whole message into a Map, for the messages that are not bound field by field
+   */
+  private Map<String, Object> readMap(String data, ByteBuffer bytes) throws IOException {
+
+    if (bytes != null) {
+      return JacksonRegistry.readValue(JacksonRegistry.getMapReader(), bytes);
+    }
+    return JacksonRegistry.getMapReader().readValue(data);
+  }
+
+  /**
+   * Hands an event to the consumer; override to route events elsewhere
+   * 
+   * @param event
+   */
+  protected void addToEventQueue(ExchangeEvent event) {
 
     try {
       consumerEventQueue.put(event);
@@ -0,0 +1,579 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.mtgox.v2.service.streaming;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xeiam.xchange.ExchangeException;
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.OrderBookUpdate;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trade;
+import com.xeiam.xchange.service.streaming.BaseWebSocketExchangeService;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventFactory;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.service.streaming.StreamingExchangeService;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Streaming service multiplexing the MtGox market data of many currency pairs over a single websocket
+ * </p>
+ * <ul>
+ * <li>Channels are subscribed and unsubscribed on the open connection, and shared channels (trade.BTC) are reference counted</li>
+ * <li>Ticker, trade and depth events are routed to one bounded queue per currency pair, see {@link #getNextEvent(CurrencyPair)}; when a
+ * pair's consumer falls behind, the oldest queued event of the pair is dropped rather than blocking the socket</li>
+ * <li>All other events (connection state, private data, operational messages) go to {@link #getNextEvent()}, whose queue is bounded the
+ * same way, so a consumer reading only the pair queues never stalls the socket</li>
+ * <li>The connection is watched internally and re-established on errors or timeouts, restoring every subscription; once the attempts are
+ * exhausted an ERROR event is sent to every queue</li>
+ * </ul>
+ */
+public class MtGoxMultiplexedWebsocketService extends BaseWebSocketExchangeService implements StreamingExchangeService {
+
+  private final Logger logger = LoggerFactory.getLogger(MtGoxMultiplexedWebsocketService.class);
+
+  private static final int PAIR_QUEUE_CAPACITY = 1024;
+
+  private final MtGoxStreamingConfiguration configuration;
+
+  private final ExchangeEventFactory eventFactory;
+
+  /** The listener of the current socket; events of replaced sockets are ignored */
+  private volatile RoutingEventListener exchangeEventListener;
+
+  private final SocketMessageFactory socketMessageFactory = new SocketMessageFactory();
+
+  private final Map<CurrencyPair, BlockingQueue<ExchangeEvent>> pairQueues = new ConcurrentHashMap<CurrencyPair, BlockingQueue<ExchangeEvent>>();
+
+  /** Guarded by this */
+  private final Map<CurrencyPair, Set<String>> pairChannels = new HashMap<CurrencyPair, Set<String>>();
+
+  /** Number of subscribed pairs per channel, guarded by this */
+  private final Map<String, Integer> channelReferences = new HashMap<String, Integer>();
+
+  private final ScheduledExecutorService reconnectExecutor;
+
+  private final AtomicLong droppedEvents = new AtomicLong();
+
+  private volatile boolean connected = false;
+  private volatile long lastEventTime;
+
+  /** Guarded by this */
+  private boolean disconnectRequested = true;
+  private boolean reconnectPending = false;
+  private int reconnectAttempts = 0;
+  private boolean reconnectTerminated = false;
+
+  /**
+   * Constructor
+   * 
+   * @param exchangeSpecification The {@link ExchangeSpecification}
+   * @param configuration The {@link MtGoxStreamingConfiguration}, its channel is ignored
+   */
+  public MtGoxMultiplexedWebsocketService(ExchangeSpecification exchangeSpecification, MtGoxStreamingConfiguration configuration) {
+
+    super(exchangeSpecification, configuration);
+
+    // reconnection is handled here since most events never pass through getNextEvent()
+    this.reconnectService = null;
+
+    this.configuration = configuration;
+    this.eventFactory = new ExchangeEventFactory(configuration.getEventDataMode(), configuration.getEventPoolCapacity());
+    this.exchangeEventListener = new RoutingEventListener();
+    this.reconnectExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+
+        Thread thread = new Thread(runnable, "mtgox-multiplexed-reconnect");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    if (configuration.getTimeoutInMs() > 0) {
+      long period = Math.max(1, configuration.getTimeoutInMs() / 2);
+      reconnectExecutor.scheduleWithFixedDelay(new Runnable() {
+
+        @Override
+        public void run() {
+
+          checkTimeout();
+        }
+      }, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * @param currencyPair
+   * @return The ticker channel name of the given pair, e.g. ticker.BTCUSD
+   */
+  public static String getTickerChannel(CurrencyPair currencyPair) {
+
+    return "ticker." + currencyPair.baseCurrency + currencyPair.counterCurrency;
+  }
+
+  /**
+   * @param currencyPair
+   * @return The depth channel name of the given pair, e.g. depth.BTCUSD
+   */
+  public static String getDepthChannel(CurrencyPair currencyPair) {
+
+    return "depth." + currencyPair.baseCurrency + currencyPair.counterCurrency;
+  }
+
+  /**
+   * @param currencyPair
+   * @return The trade channel name of the given pair, e.g. trade.BTC (shared by all pairs of the same base currency)
+   */
+  public static String getTradeChannel(CurrencyPair currencyPair) {
+
+    return "trade." + currencyPair.baseCurrency;
+  }
+
+  @Override
+  public synchronized void connect() {
+
+    disconnectRequested = false;
+    reconnectTerminated = false;
+    reconnectAttempts = 0;
+    openSocket();
+  }
+
+  @Override
+  public synchronized void disconnect() {
+
+    disconnectRequested = true;
+    connected = false;
+    super.disconnect();
+  }
+
+  /**
+   * Disconnects and releases the reconnection thread; the service cannot be used afterwards
+   */
+  public void shutdown() {
+
+    disconnect();
+    reconnectExecutor.shutdownNow();
+  }
+
+  /**
+   * Subscribes to the market data of a currency pair, replacing any previous subscription of the pair
+   * 
+   * @param currencyPair
+   * @param ticker true to receive TICKER events
+   * @param depth true to receive DEPTH events
+   * @param trades true to receive TRADE events
+   */
+  public synchronized void subscribe(CurrencyPair currencyPair, boolean ticker, boolean depth, boolean trades) {
+
+    Assert.notNull(currencyPair, "currencyPair cannot be null");
+
+    Set<String> channels = new LinkedHashSet<String>(4);
+    if (ticker) {
+      channels.add(getTickerChannel(currencyPair));
+    }
+    if (depth) {
+      channels.add(getDepthChannel(currencyPair));
+    }
+    if (trades) {
+      channels.add(getTradeChannel(currencyPair));
+    }
+
+    Set<String> previous = pairChannels.put(currencyPair, channels);
+    if (previous != null) {
+      for (String channel : previous) {
+        if (!channels.contains(channel)) {
+          release(channel);
+        }
+      }
+    }
+    for (String channel : channels) {
+      if (previous == null || !previous.contains(channel)) {
+        retain(channel);
+      }
+    }
+
+    if (!pairQueues.containsKey(currencyPair)) {
+      pairQueues.put(currencyPair, new LinkedBlockingQueue<ExchangeEvent>(PAIR_QUEUE_CAPACITY));
+    }
+  }
+
+  /**
+   * Unsubscribes from all market data of a currency pair; events already queued for the pair are discarded and returned to the event pool
+   * 
+   * @param currencyPair
+   */
+  public synchronized void unsubscribe(CurrencyPair currencyPair) {
+
+    Set<String> channels = pairChannels.remove(currencyPair);
+    if (channels != null) {
+      for (String channel : channels) {
+        release(channel);
+      }
+    }
+    BlockingQueue<ExchangeEvent> queue = pairQueues.remove(currencyPair);
+    if (queue != null) {
+      releaseAll(queue);
+    }
+  }
+
+  private void retain(String channel) {
+
+    Integer references = channelReferences.get(channel);
+    if (references == null) {
+      channelReferences.put(channel, 1);
+      sendIfConnected(channel, true);
+    }
+    else {
+      channelReferences.put(channel, references + 1);
+    }
+  }
+
+  private void release(String channel) {
+
+    Integer references = channelReferences.get(channel);
+    if (references == null) {
+      return;
+    }
+    if (references == 1) {
+      channelReferences.remove(channel);
+      sendIfConnected(channel, false);
+    }
+    else {
+      channelReferences.put(channel, references - 1);
+    }
+  }
+
+  private void sendIfConnected(String channel, boolean subscribe) {
+
+    if (!connected) {
+      // sent (or not) when the connection comes up
+      return;
+    }
+    try {
+      send(subscribe ? socketMessageFactory.subscribeWithChannel(channel) : socketMessageFactory.unsubscribeToChannel(channel));
+    } catch (JsonProcessingException e) {
+      throw new ExchangeException("Failed to create the subscription message", e);
+    } catch (RuntimeException e) {
+      // the socket went away, the subscription is restored on reconnect
+      logger.warn("Failed to send the subscription of {}", channel, e);
+    }
+  }
+
+  /**
+   * @param currencyPair A subscribed currency pair
+   * @return The next TICKER, TRADE or DEPTH event of the pair (or ERROR once reconnecting was given up), blocking until one is available
+   * @throws InterruptedException
+   */
+  public ExchangeEvent getNextEvent(CurrencyPair currencyPair) throws InterruptedException {
+
+    BlockingQueue<ExchangeEvent> queue = pairQueues.get(currencyPair);
+    Assert.notNull(queue, "Not subscribed to " + currencyPair);
+    return queue.take();
+  }
+
+  /**
+   * @param currencyPair A subscribed currency pair
+   * @param timeout
+   * @param unit
+   * @return The next TICKER, TRADE or DEPTH event of the pair (or ERROR once reconnecting was given up), or null if none arrived within the
+   *         timeout
+   * @throws InterruptedException
+   */
+  public ExchangeEvent pollNextEvent(CurrencyPair currencyPair, long timeout, TimeUnit unit) throws InterruptedException {
+
+    BlockingQueue<ExchangeEvent> queue = pairQueues.get(currencyPair);
+    Assert.notNull(queue, "Not subscribed to " + currencyPair);
+    return queue.poll(timeout, unit);
+  }
+
+  /**
+   * @return A copy of the subscribed currency pairs
+   */
+  public synchronized Set<CurrencyPair> getSubscribedPairs() {
+
+    return new HashSet<CurrencyPair>(pairChannels.keySet());
+  }
+
+  /**
+   * @return A copy of the channels currently subscribed on the socket
+   */
+  public synchronized Set<String> getSubscribedChannels() {
+
+    return new HashSet<String>(channelReferences.keySet());
+  }
+
+  public boolean isConnected() {
+
+    return connected;
+  }
+
+  /**
+   * @return The number of events dropped because their queue (of a pair, or of {@link #getNextEvent()}) was full
+   */
+  public long getDroppedEventCount() {
+
+    return droppedEvents.get();
+  }
+
+  /**
+   * @return The factory creating this service's events; with pooling enabled, pass events to its release method once consumed
+   */
+  public ExchangeEventFactory getEventFactory() {
+
+    return eventFactory;
+  }
+
+  RoutingEventListener getExchangeEventListener() {
+
+    return exchangeEventListener;
+  }
+
+  private void openSocket() {
+
+    String apiBase = null;
+    if (configuration.isEncryptedChannel()) {
+      apiBase = String.format("%s:%s/mtgox/", exchangeSpecification.getSslUri(), exchangeSpecification.getPort());
+    }
+    else {
+      apiBase = String.format("%s:%s/mtgox/", exchangeSpecification.getHost(), exchangeSpecification.getPort());
+    }
+
+    Map<String, String> headers = new HashMap<String, String>(1);
+    headers.put("Origin", String.format("%s:%s", exchangeSpecification.getHost(), exchangeSpecification.getPort()));
+
+    exchangeEventListener = new RoutingEventListener();
+    lastEventTime = System.currentTimeMillis();
+    internalConnect(URI.create(apiBase), exchangeEventListener, headers);
+  }
+
+  private synchronized void onConnected() {
+
+    connected = true;
+    reconnectAttempts = 0;
+    reconnectTerminated = false;
+    for (String channel : channelReferences.keySet()) {
+      sendIfConnected(channel, true);
+    }
+    logger.debug("Restored {} channel subscriptions", channelReferences.size());
+  }
+
+  private synchronized void onConnectionLost() {
+
+    connected = false;
+    if (disconnectRequested || reconnectPending || reconnectTerminated) {
+      return;
+    }
+    if (reconnectAttempts >= configuration.getMaxReconnectAttempts()) {
+      logger.warn("Terminating reconnection attempts after {} tries", reconnectAttempts);
+      reconnectTerminated = true;
+      notifyTerminated();
+      return;
+    }
+    reconnectPending = true;
+    reconnectExecutor.schedule(new Runnable() {
+
+      @Override
+      public void run() {
+
+        reconnect();
+      }
+    }, configuration.getReconnectWaitTimeInMs(), TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void reconnect() {
+
+    reconnectPending = false;
+    if (disconnectRequested) {
+      return;
+    }
+    reconnectAttempts++;
+    logger.debug("Attempting reconnect {} of {}", reconnectAttempts, configuration.getMaxReconnectAttempts());
+    connected = false;
+    super.disconnect();
+    openSocket();
+  }
+
+  /**
+   * Tells the consumers of every queue that the connection is gone for good, since the pair consumers never see connection events
+   */
+  private void notifyTerminated() {
+
+    String message = "Terminating reconnection attempts after " + reconnectAttempts + " tries";
+    offer(consumerEventQueue, new DefaultExchangeEvent(ExchangeEventType.ERROR, message));
+    for (BlockingQueue<ExchangeEvent> queue : pairQueues.values()) {
+      offer(queue, new DefaultExchangeEvent(ExchangeEventType.ERROR, message));
+    }
+  }
+
+  /**
+   * Adds an event without blocking, dropping the oldest queued events while the queue is full
+   */
+  private void offer(BlockingQueue<ExchangeEvent> queue, ExchangeEvent event) {
+
+    while (!queue.offer(event)) {
+      ExchangeEvent oldest = queue.poll();
+      if (oldest != null) {
+        droppedEvents.incrementAndGet();
+        eventFactory.release(oldest);
+      }
+    }
+  }
+
+  private void releaseAll(BlockingQueue<ExchangeEvent> queue) {
+
+    ExchangeEvent event;
+    while ((event = queue.poll()) != null) {
+      eventFactory.release(event);
+    }
+  }
+
+  private void checkTimeout() {
+
+    if (System.currentTimeMillis() - lastEventTime > configuration.getTimeoutInMs()) {
+      logger.debug("Time out!");
+      lastEventTime = System.currentTimeMillis();
+      onConnectionLost();
+    }
+  }
+
+  /**
+   * @param payload
+   * @return The currency pair of a market data payload, or null for anything else
+   */
+  static CurrencyPair getCurrencyPair(Object payload) {
+
+    if (payload instanceof Ticker) {
+      Ticker ticker = (Ticker) payload;
+      if (ticker.getTradableIdentifier() == null || ticker.getLast() == null) {
+        return null;
+      }
+      return new CurrencyPair(ticker.getTradableIdentifier(), ticker.getLast().getCurrencyUnit().getCurrencyCode());
+    }
+    if (payload instanceof Trade) {
+      Trade trade = (Trade) payload;
+      return new CurrencyPair(trade.getTradableIdentifier(), trade.getTransactionCurrency());
+    }
+    if (payload instanceof OrderBookUpdate) {
+      OrderBookUpdate update = (OrderBookUpdate) payload;
+      return new CurrencyPair(update.getLimitOrder().getTradableIdentifier(), update.getLimitOrder().getTransactionCurrency());
+    }
+    return null;
+  }
+
+  /**
+   * Parses as {@link MtGoxExchangeEventListener} does, then routes market data to the per pair queues
+   */
+  class RoutingEventListener extends MtGoxExchangeEventListener {
+
+    RoutingEventListener() {
+
+      super(consumerEventQueue, eventFactory);
+    }
+
+    @Override
+    public void handleEvent(ExchangeEvent exchangeEvent) {
+
+      if (this != exchangeEventListener) {
+        // e.g. the DISCONNECT of the socket closed by a reconnect
+        return;
+      }
+      lastEventTime = System.currentTimeMillis();
+
+      switch (exchangeEvent.getEventType()) {
+      case CONNECT:
+        onConnected();
+        break;
+      case DISCONNECT:
+      case ERROR:
+        onConnectionLost();
+        break;
+      default:
+        break;
+      }
+
+      super.handleEvent(exchangeEvent);
+    }
+
+    @Override
+    public void handleMessage(ByteBuffer message) {
+
+      if (this != exchangeEventListener) {
+        return;
+      }
+      lastEventTime = System.currentTimeMillis();
+      super.handleMessage(message);
+    }
+
+    @Override
+    protected void addToEventQueue(ExchangeEvent event) {
+
+      // runs on the socket thread, which must never wait for a slow consumer
+      CurrencyPair currencyPair = getCurrencyPair(event.getPayload());
+      if (currencyPair == null) {
+        offer(consumerEventQueue, event);
+        return;
+      }
+
+      BlockingQueue<ExchangeEvent> queue = pairQueues.get(currencyPair);
+      if (queue == null) {
+        // e.g. the default channels MtGox joins on connect, or trade.BTC for an unsubscribed counter currency
+        eventFactory.release(event);
+        return;
+      }
+      offer(queue, event);
+      if (pairQueues.get(currencyPair) != queue) {
+        // the pair was unsubscribed meanwhile
+        releaseAll(queue);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+
+    return "MtGoxMultiplexedWebsocketService [pairs=" + getSubscribedPairs() + ", connected=" + connected + "]";
+  }
+}
@@ -21,6 +21,8 @@
  */
 package com.xeiam.xchange.mtgox.v2.service.streaming;
 
+import com.xeiam.xchange.service.streaming.EventDataMode;
+import com.xeiam.xchange.service.streaming.ExchangeEventFactory;
 import com.xeiam.xchange.service.streaming.ExchangeStreamingConfiguration;
 
 /**
@@ -38,9 +40,11 @@ public class MtGoxStreamingConfiguration implements ExchangeStreamingConfigurati
   private final int timeoutInMs;
   private final boolean isEncryptedChannel;
   private final String channel;
+  private final EventDataMode eventDataMode;
+  private final int eventPoolCapacity;
 
   /**
-   * Constructor
+   * Constructor, keeping the raw message of each event as bytes ({@link EventDataMode#COMPACT}) and without pooling
    * 
    * @param maxReconnectAttempts
    * @param reconnectWaitTimeInMs
@@ -50,11 +54,30 @@ public class MtGoxStreamingConfiguration implements ExchangeStreamingConfigurati
    */
   public MtGoxStreamingConfiguration(int maxReconnectAttempts, int reconnectWaitTimeInMs, int timeoutInMs, boolean isEncryptedChannel, String channel) {
 
+    this(maxReconnectAttempts, reconnectWaitTimeInMs, timeoutInMs, isEncryptedChannel, channel, EventDataMode.COMPACT, 0);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param maxReconnectAttempts
+   * @param reconnectWaitTimeInMs
+   * @param timeoutInMs
+   * @param isEncryptedChannel - should it use an encrypted channel or not? (ws vs. wss protocol)
+   * @param channel - the specific data channel you want to tap into (https://mtgox.com/api/2/stream/list_public), null if none
+   * @param eventDataMode - how much of the raw message to keep on each event
+   * @param eventPoolCapacity - the number of released events to recycle per event class, 0 to disable pooling (see {@link ExchangeEventFactory})
+   */
+  public MtGoxStreamingConfiguration(int maxReconnectAttempts, int reconnectWaitTimeInMs, int timeoutInMs, boolean isEncryptedChannel, String channel, EventDataMode eventDataMode,
+      int eventPoolCapacity) {
+
     this.maxReconnectAttempts = maxReconnectAttempts;
     this.reconnectWaitTimeInMs = reconnectWaitTimeInMs;
     this.timeoutInMs = timeoutInMs;
     this.isEncryptedChannel = isEncryptedChannel;
     this.channel = channel;
+    this.eventDataMode = eventDataMode;
+    this.eventPoolCapacity = eventPoolCapacity;
   }
 
   @Override
@@ -85,4 +108,14 @@ public class MtGoxStreamingConfiguration implements ExchangeStreamingConfigurati
 
     return channel;
   }
+
+  public EventDataMode getEventDataMode() {
+
+    return eventDataMode;
+  }
+
+  public int getEventPoolCapacity() {
+
+    return eventPoolCapacity;
+  }
 }
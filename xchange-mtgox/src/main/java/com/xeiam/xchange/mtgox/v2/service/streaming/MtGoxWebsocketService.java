@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import com.xeiam.xchange.ExchangeSpecification;
 import com.xeiam.xchange.service.streaming.BaseWebSocketExchangeService;
+import com.xeiam.xchange.service.streaming.ExchangeEventFactory;
 import com.xeiam.xchange.service.streaming.ExchangeEventListener;
 import com.xeiam.xchange.service.streaming.StreamingExchangeService;
 
@@ -47,6 +48,8 @@ public class MtGoxWebsocketService extends BaseWebSocketExchangeService implemen
 
   private final ExchangeEventListener exchangeEventListener;
 
+  private final ExchangeEventFactory eventFactory;
+
   /**
    * Ensures that exchange-specific configuration is available
    */
@@ -64,7 +67,8 @@ public class MtGoxWebsocketService extends BaseWebSocketExchangeService implemen
     this.configuration = configuration;
 
     // Create the listener for the specified eventType
-    this.exchangeEventListener = new MtGoxExchangeEventListener(consumerEventQueue);
+    this.eventFactory = new ExchangeEventFactory(configuration.getEventDataMode(), configuration.getEventPoolCapacity());
+    this.exchangeEventListener = new MtGoxExchangeEventListener(consumerEventQueue, eventFactory);
 
   }
 
@@ -97,4 +101,12 @@ public class MtGoxWebsocketService extends BaseWebSocketExchangeService implemen
     // Use the default internal connect
     internalConnect(uri, exchangeEventListener, headers);
   }
+
+  /**
+   * @return The factory creating this service's events; with pooling enabled, pass events to its release method once consumed
+   */
+  public ExchangeEventFactory getEventFactory() {
+
+    return eventFactory;
+  }
 }
@@ -33,10 +33,10 @@ import javax.crypto.spec.SecretKeySpec;
 import org.joda.money.BigMoney;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xeiam.xchange.dto.Order;
 import com.xeiam.xchange.mtgox.MtGoxUtils;
 import com.xeiam.xchange.utils.Base64;
+import com.xeiam.xchange.utils.jackson.JacksonRegistry;
 
 /**
  * @author macarse
@@ -46,6 +46,15 @@ public class SocketMessageFactory {
   private final String apiKey;
   private final String apiSecret;
 
+  /**
+   * Constructor for the public (unsigned) subscription messages only
+   */
+  public SocketMessageFactory() {
+
+    this.apiKey = null;
+    this.apiSecret = null;
+  }
+
   /**
    * Constructor
    * 
@@ -72,8 +81,7 @@ public class SocketMessageFactory {
     map.put("op", "unsubscribe");
     map.put("channel", channel);
 
-    ObjectMapper mapper = new ObjectMapper();
-    return mapper.writeValueAsString(map);
+    return JacksonRegistry.getWriter().writeValueAsString(map);
 
   }
 
@@ -83,8 +91,7 @@ public class SocketMessageFactory {
     map.put("op", "mtgox.subscribe");
     map.put("channel", channel);
 
-    ObjectMapper mapper = new ObjectMapper();
-    return mapper.writeValueAsString(map);
+    return JacksonRegistry.getWriter().writeValueAsString(map);
   }
 
   public String subscribeWithType(String type) throws JsonProcessingException {
@@ -93,8 +100,7 @@ public class SocketMessageFactory {
     map.put("op", "mtgox.subscribe");
     map.put("type", type);
 
-    ObjectMapper mapper = new ObjectMapper();
-    return mapper.writeValueAsString(map);
+    return JacksonRegistry.getWriter().writeValueAsString(map);
   }
 
   public String subscribeWithKey(String key) throws JsonProcessingException {
@@ -103,8 +109,7 @@ public class SocketMessageFactory {
     map.put("op", "mtgox.subscribe");
     map.put("key", key);
 
-    ObjectMapper mapper = new ObjectMapper();
-    return mapper.writeValueAsString(map);
+    return JacksonRegistry.getWriter().writeValueAsString(map);
   }
 
   public String cancelOrder(String oid) throws UnsupportedEncodingException, JsonProcessingException {
@@ -152,6 +157,10 @@ public class SocketMessageFactory {
 
   private String signedCall(String endPoint, Map<String, String> params, String reqId) throws JsonProcessingException, UnsupportedEncodingException {
 
+    if (apiKey == null) {
+      throw new IllegalStateException("mtgox api key and/or secret is missing");
+    }
+
     long nonce = MtGoxUtils.getNonce();
 
     HashMap<String, Object> call = new HashMap<String, Object>(6);
@@ -160,8 +169,7 @@ public class SocketMessageFactory {
     call.put("nonce", nonce);
     call.put("params", params);
 
-    ObjectMapper mapper = new ObjectMapper();
-    String callString = mapper.writeValueAsString(call);
+    String callString = JacksonRegistry.getWriter().writeValueAsString(call);
     String signedCall = null;
 
     try {
@@ -192,8 +200,7 @@ public class SocketMessageFactory {
     msg.put("id", reqId);
     msg.put("context", "mtgox.com");
 
-    mapper = new ObjectMapper();
-    return mapper.writeValueAsString(msg);
+    return JacksonRegistry.getWriter().writeValueAsString(msg);
   }
 
   private static byte[] fromHexString(String hex) {
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.mtgox.v2.service.streaming;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.currency.CurrencyPair;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.mtgox.v2.MtGoxExchange;
+import com.xeiam.xchange.mtgox.v2.dto.trade.streaming.MtGoxTradeLag;
+import com.xeiam.xchange.service.streaming.DefaultExchangeEvent;
+import com.xeiam.xchange.service.streaming.EventDataMode;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventFactory;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+import com.xeiam.xchange.service.streaming.TickerEvent;
+
+/**
+ * Test subscription bookkeeping and per pair routing of MtGoxMultiplexedWebsocketService
+ */
+public class MtGoxMultiplexedWebsocketServiceTest {
+
+  private static final CurrencyPair BTC_EUR = new CurrencyPair("BTC", "EUR");
+
+  private MtGoxMultiplexedWebsocketService service;
+
+  @Before
+  public void setUp() {
+
+    service = new MtGoxMultiplexedWebsocketService(new ExchangeSpecification(MtGoxExchange.class.getName()), new MtGoxStreamingConfiguration(3, 1000, 0, false, null));
+  }
+
+  @After
+  public void tearDown() {
+
+    service.shutdown();
+  }
+
+  @Test
+  public void testSharedChannelsAreReferenceCounted() {
+
+    service.subscribe(CurrencyPair.BTC_USD, true, true, true);
+    service.subscribe(BTC_EUR, false, false, true);
+
+    assertThat(service.getSubscribedChannels()).containsOnly("ticker.BTCUSD", "depth.BTCUSD", "trade.BTC");
+
+    service.unsubscribe(CurrencyPair.BTC_USD);
+    assertThat(service.getSubscribedChannels()).containsOnly("trade.BTC");
+    assertThat(service.getSubscribedPairs()).containsOnly(BTC_EUR);
+
+    service.subscribe(BTC_EUR, true, false, false);
+    assertThat(service.getSubscribedChannels()).containsOnly("ticker.BTCEUR");
+  }
+
+  @Test
+  public void testMarketDataIsRoutedPerPair() throws IOException, InterruptedException {
+
+    service.subscribe(CurrencyPair.BTC_USD, true, true, true);
+    service.subscribe(BTC_EUR, true, true, true);
+
+    MtGoxMultiplexedWebsocketService.RoutingEventListener listener = service.getExchangeEventListener();
+    listener.handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, read("example-ticker-streaming-data.json")));
+    listener.handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, read("example-trade-streaming-data.json")));
+    listener.handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, read("example-depth-streaming-data.json")));
+
+    ExchangeEvent event = service.pollNextEvent(CurrencyPair.BTC_USD, 1, TimeUnit.SECONDS);
+    assertThat(event.getEventType()).isEqualTo(ExchangeEventType.TICKER);
+    assertThat(((Ticker) event.getPayload()).getTradableIdentifier()).isEqualTo("BTC");
+    assertThat(service.pollNextEvent(CurrencyPair.BTC_USD, 1, TimeUnit.SECONDS).getEventType()).isEqualTo(ExchangeEventType.TRADE);
+    assertThat(service.pollNextEvent(CurrencyPair.BTC_USD, 1, TimeUnit.SECONDS).getEventType()).isEqualTo(ExchangeEventType.DEPTH);
+    assertThat(service.pollNextEvent(BTC_EUR, 0, TimeUnit.SECONDS)).isNull();
+  }
+
+  @Test
+  public void testFramesAreParsedFromBytes() throws IOException, InterruptedException {
+
+    service.subscribe(CurrencyPair.BTC_USD, true, true, true);
+
+    MtGoxMultiplexedWebsocketService.RoutingEventListener listener = service.getExchangeEventListener();
+    String message = read("example-depth-streaming-data.json");
+    ByteBuffer frame = ByteBuffer.wrap(("xx" + message).getBytes("UTF-8"));
+    frame.position(2);
+    listener.handleMessage(frame.slice());
+
+    ExchangeEvent event = service.pollNextEvent(CurrencyPair.BTC_USD, 1, TimeUnit.SECONDS);
+    assertThat(event.getEventType()).isEqualTo(ExchangeEventType.DEPTH);
+    assertThat(event.getData()).isEqualTo(message);
+  }
+
+  @Test
+  public void testOtherMessagesAreParsedFromBytes() throws IOException, InterruptedException {
+
+    MtGoxMultiplexedWebsocketService.RoutingEventListener listener = service.getExchangeEventListener();
+    listener.handleMessage(ByteBuffer.wrap("{\"lag\":{\"age\":12,\"qid\":\"q1\",\"stamp\":\"1\"},\"op\":\"private\",\"private\":\"lag\"}".getBytes("UTF-8")));
+    listener.handleMessage(ByteBuffer.wrap("{\"channel\":\"abc\",\"op\":\"subscribe\"}".getBytes("UTF-8")));
+
+    ExchangeEvent lag = service.getNextEvent();
+    assertThat(lag.getEventType()).isEqualTo(ExchangeEventType.TRADE_LAG);
+    assertThat(((MtGoxTradeLag) lag.getPayload()).getQid()).isEqualTo("q1");
+
+    ExchangeEvent operational = service.getNextEvent();
+    assertThat(operational.getEventType()).isEqualTo(ExchangeEventType.MESSAGE);
+    assertThat(((Map<?, ?>) operational.getPayload()).get("channel")).isEqualTo("abc");
+  }
+
+  @Test
+  public void testUnsubscribedPairIsDropped() throws IOException, InterruptedException {
+
+    service.subscribe(BTC_EUR, true, true, true);
+
+    service.getExchangeEventListener().handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, read("example-ticker-streaming-data.json")));
+
+    assertThat(service.pollNextEvent(BTC_EUR, 0, TimeUnit.SECONDS)).isNull();
+  }
+
+  @Test
+  public void testFullPairQueueDropsOldestEvents() throws IOException, InterruptedException {
+
+    service.subscribe(CurrencyPair.BTC_USD, true, false, false);
+
+    MtGoxMultiplexedWebsocketService.RoutingEventListener listener = service.getExchangeEventListener();
+    String ticker = read("example-ticker-streaming-data.json");
+    for (int i = 0; i < 1026; i++) {
+      listener.handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, ticker));
+    }
+
+    assertThat(service.getDroppedEventCount()).isEqualTo(2);
+    int queued = 0;
+    while (service.pollNextEvent(CurrencyPair.BTC_USD, 0, TimeUnit.SECONDS) != null) {
+      queued++;
+    }
+    assertThat(queued).isEqualTo(1024);
+  }
+
+  @Test
+  public void testFullConsumerQueueDropsOldestEvents() throws IOException, InterruptedException {
+
+    // nobody reads getNextEvent(), e.g. a consumer of the pair queues only
+    MtGoxMultiplexedWebsocketService.RoutingEventListener listener = service.getExchangeEventListener();
+    for (int i = 0; i < 1026; i++) {
+      listener.handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, "{\"channel\":\"abc\",\"op\":\"subscribe\",\"n\":" + i + "}"));
+    }
+
+    assertThat(service.getDroppedEventCount()).isEqualTo(2);
+    assertThat(service.getNextEvent().getData()).endsWith("\"n\":2}");
+  }
+
+  @Test
+  public void testUnsubscribeReleasesQueuedEvents() throws IOException, InterruptedException {
+
+    service.shutdown();
+    service = new MtGoxMultiplexedWebsocketService(new ExchangeSpecification(MtGoxExchange.class.getName()), new MtGoxStreamingConfiguration(3, 1000, 0, false, null,
+        EventDataMode.RETAIN, 4));
+    ExchangeEventFactory eventFactory = service.getEventFactory();
+    TickerEvent pooled = eventFactory.createTickerEvent(null, null);
+    eventFactory.release(pooled);
+
+    service.subscribe(CurrencyPair.BTC_USD, true, false, false);
+    // the queued event is the pooled instance
+    service.getExchangeEventListener().handleEvent(new DefaultExchangeEvent(ExchangeEventType.MESSAGE, read("example-ticker-streaming-data.json")));
+    service.unsubscribe(CurrencyPair.BTC_USD);
+
+    assertThat(eventFactory.createTickerEvent(null, null)).isSameAs(pooled);
+  }
+
+  @Test
+  public void testExhaustedReconnectsAreSignalled() throws IOException, InterruptedException {
+
+    ServerSocket serverSocket = new ServerSocket(0);
+    int closedPort = serverSocket.getLocalPort();
+    serverSocket.close();
+
+    ExchangeSpecification exchangeSpecification = new ExchangeSpecification(MtGoxExchange.class.getName());
+    exchangeSpecification.setHost("ws://127.0.0.1");
+    exchangeSpecification.setPort(closedPort);
+    service.shutdown();
+    service = new MtGoxMultiplexedWebsocketService(exchangeSpecification, new MtGoxStreamingConfiguration(1, 10, 0, false, null));
+    service.subscribe(CurrencyPair.BTC_USD, true, true, true);
+    service.connect();
+
+    ExchangeEvent event = service.pollNextEvent(CurrencyPair.BTC_USD, 10, TimeUnit.SECONDS);
+    assertThat(event).isNotNull();
+    assertThat(event.getEventType()).isEqualTo(ExchangeEventType.ERROR);
+    assertThat(event.getData()).startsWith("Terminating reconnection attempts");
+
+    // the general queue also holds the socket's own events before it
+    do {
+      event = service.getNextEvent();
+    } while (event.getData() == null || !event.getData().startsWith("Terminating"));
+    assertThat(event.getEventType()).isEqualTo(ExchangeEventType.ERROR);
+  }
+
+  private String read(String name) throws IOException {
+
+    InputStream is = MtGoxMultiplexedWebsocketServiceTest.class.getResourceAsStream("/v2/marketdata/streaming/" + name);
+    try {
+      return new Scanner(is, "UTF-8").useDelimiter("\\A").next();
+    } finally {
+      is.close();
+    }
+  }
+}
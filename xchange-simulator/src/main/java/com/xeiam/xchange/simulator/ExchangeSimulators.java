@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Ready made routes and feeds built from the payloads captured in each module's <code>src/test/resources</code>
+ * </p>
+ * <p>
+ * Payload names are relative to the XChange checkout root, so the {@link PayloadSource} should be created with that directory.
+ * </p>
+ */
+public final class ExchangeSimulators {
+
+  private static final Logger log = LoggerFactory.getLogger(ExchangeSimulators.class);
+
+  private static final String MTGOX = "xchange-mtgox/src/test/resources/v2/";
+  private static final String BITSTAMP = "xchange-bitstamp/src/test/resources/";
+  private static final String BTCE = "xchange-btce/src/test/resources/v3/";
+
+  private static final String MTGOX_PAIR = "[A-Z]{6}";
+  /** Most MtGox captures hold only the "data" member of the response */
+  private static final String MTGOX_ENVELOPE = "{\"result\":\"success\",\"data\":%s}";
+
+  /**
+   * private Constructor
+   */
+  private ExchangeSimulators() {
+
+  }
+
+  /**
+   * Routes for {@link com.xeiam.xchange.mtgox.v2.MtGoxV2}. Use the simulator root as the sslUri.
+   * 
+   * @param simulator The simulator to configure
+   * @return the simulator
+   */
+  public static RestExchangeSimulator addMtGoxV2Routes(RestExchangeSimulator simulator) {
+
+    String api = "/api/2/";
+    return simulator.addRoute("GET", api + MTGOX_PAIR + "/money/ticker", null, MTGOX + "marketdata/polling/example-ticker-data.json", MTGOX_ENVELOPE)
+        .addRoute("GET", api + MTGOX_PAIR + "/money/depth/fetch", null, MTGOX + "marketdata/polling/example-depth-data.json", MTGOX_ENVELOPE)
+        .addRoute("GET", api + MTGOX_PAIR + "/money/depth/full", null, MTGOX + "marketdata/polling/example-fulldepth-data.json", MTGOX_ENVELOPE)
+        .addRoute("GET", api + MTGOX_PAIR + "/money/trades/fetch", null, MTGOX + "marketdata/polling/example-trades-data.json", MTGOX_ENVELOPE)
+        .addRoute("GET", api + "money/order/lag", null, MTGOX + "trade/polling/lag.json", MTGOX_ENVELOPE)
+        .addRoute("POST", api + "money/info", null, MTGOX + "account/example-accountinfo-data.json", MTGOX_ENVELOPE)
+        .addRoute("POST", api + "money/bitcoin/address", null, MTGOX + "account/example-deposit-response.json", MTGOX_ENVELOPE)
+        .addRoute("POST", api + "money/bitcoin/send_simple", null, MTGOX + "account/example-withdrawal-response.json", MTGOX_ENVELOPE)
+        .addRoute("POST", api + "money/wallet/history", MTGOX + "account/example-wallethistory-response.json")
+        .addRoute("POST", api + "money/orders", null, MTGOX + "trade/polling/example-openorders-data.json", MTGOX_ENVELOPE)
+        .addRoute("POST", api + MTGOX_PAIR + "/money/order/(add|cancel)", MTGOX + "trade/polling/example-success-response-data.json");
+  }
+
+  /**
+   * Routes for the Bitstamp API. Use the simulator root as the sslUri.
+   * 
+   * @param simulator The simulator to configure
+   * @return the simulator
+   */
+  public static RestExchangeSimulator addBitstampRoutes(RestExchangeSimulator simulator) {
+
+    return simulator.addRoute("GET", "/api/ticker/?", BITSTAMP + "marketdata/example-ticker-data.json")
+        .addRoute("GET", "/api/order_book/?", BITSTAMP + "marketdata/example-full-depth-data.json")
+        .addRoute("GET", "/api/transactions/?", BITSTAMP + "marketdata/example-trades-data.json")
+        .addRoute("POST", "/api/balance/?", BITSTAMP + "account/example-accountinfo-data.json")
+        .addRoute("POST", "/api/bitcoin_deposit_address/?", BITSTAMP + "account/example-deposit-response.json")
+        .addRoute("POST", "/api/open_orders/?", BITSTAMP + "trade/example-openorders.json")
+        .addRoute("POST", "/api/(buy|sell)/?", BITSTAMP + "trade/example-place-limit-order.json")
+        .addRoute("POST", "/api/cancel_order/?", BITSTAMP + "trade/example-cancel-order.json")
+        .addRoute("POST", "/api/user_transactions/?", BITSTAMP + "trade/example-user-transactions.json");
+  }
+
+  /**
+   * Routes for the BTC-E v3 public API and the trade API. Use the simulator root as the sslUri.
+   * 
+   * @param simulator The simulator to configure
+   * @return the simulator
+   */
+  public static RestExchangeSimulator addBTCEV3Routes(RestExchangeSimulator simulator) {
+
+    String pairs = "[a-z]{3}_[a-z]{3}(-[a-z]{3}_[a-z]{3})*";
+    return simulator.addRoute("GET", "/api/3/ticker/" + pairs, BTCE + "marketdata/example-ticker-data.json")
+        .addRoute("GET", "/api/3/depth/" + pairs, BTCE + "marketdata/example-depth-data.json")
+        .addRoute("GET", "/api/3/trades/" + pairs, BTCE + "marketdata/example-trades-data.json")
+        .addRoute("POST", "/tapi/?", "method=getInfo", BTCE + "account/example-account-info-data.json")
+        .addRoute("POST", "/tapi/?", "method=(ActiveOrders|OrderList)", BTCE + "trade/example-open-orders-data.json")
+        .addRoute("POST", "/tapi/?", "method=Trade(&|$)", BTCE + "trade/example-place-order-data.json")
+        .addRoute("POST", "/tapi/?", "method=CancelOrder", BTCE + "trade/example-cancel-order-data.json")
+        .addRoute("POST", "/tapi/?", "method=TradeHistory", BTCE + "trade/example-trade-history-data.json");
+  }
+
+  /**
+   * Ticker, trade and depth feed for the MtGox websocket simulator
+   * 
+   * @param simulator The simulator to configure
+   * @return the simulator
+   * @throws IOException if a payload cannot be read
+   */
+  public static MtGoxWebSocketSimulator addMtGoxFeed(MtGoxWebSocketSimulator simulator) throws IOException {
+
+    return simulator.addFeedMessage("ticker.BTCUSD", MTGOX + "marketdata/streaming/example-ticker-streaming-data.json")
+        .addFeedMessage("trade.BTC", MTGOX + "marketdata/streaming/example-trade-streaming-data.json")
+        .addFeedMessage("depth.BTCUSD", MTGOX + "marketdata/streaming/example-depth-streaming-data.json");
+  }
+
+  /**
+   * Runs MtGox, Bitstamp and BTC-E REST simulators and the MtGox websocket simulator until the process is killed
+   * <p>
+   * Arguments: [checkout root] [first port] [latency ms] [error rate] [messages per second]. The REST simulators take the first three ports, the websocket simulator the fourth.
+   * </p>
+   */
+  public static void main(String[] args) throws IOException {
+
+    File root = new File(args.length > 0 ? args[0] : ".");
+    int port = args.length > 1 ? Integer.parseInt(args[1]) : 9000;
+
+    SimulatorConfiguration configuration = new SimulatorConfiguration();
+    if (args.length > 2) {
+      configuration.setLatencyInMs(Integer.parseInt(args[2]));
+    }
+    if (args.length > 3) {
+      configuration.setErrorRate(Double.parseDouble(args[3]));
+    }
+    if (args.length > 4) {
+      configuration.setMessagesPerSecond(Double.parseDouble(args[4]));
+    }
+
+    PayloadSource payloadSource = new PayloadSource(root);
+
+    RestExchangeSimulator mtGox = addMtGoxV2Routes(new RestExchangeSimulator(configuration, payloadSource));
+    mtGox.start(port, 8);
+    RestExchangeSimulator bitstamp = addBitstampRoutes(new RestExchangeSimulator(configuration, payloadSource));
+    bitstamp.start(port + 1, 8);
+    RestExchangeSimulator btce = addBTCEV3Routes(new RestExchangeSimulator(configuration, payloadSource));
+    btce.start(port + 2, 8);
+
+    MtGoxWebSocketSimulator mtGoxStreaming = addMtGoxFeed(new MtGoxWebSocketSimulator(port + 3, configuration, payloadSource));
+    mtGoxStreaming.start();
+
+    log.info("Simulating MtGox on {}, Bitstamp on {}, BTC-E on {} and MtGox streaming on {} with {}", port, port + 1, port + 2, port + 3, configuration);
+  }
+
+}
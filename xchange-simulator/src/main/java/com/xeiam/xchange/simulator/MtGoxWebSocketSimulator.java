@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xeiam.xchange.utils.jackson.JacksonRegistry;
+
+/**
+ * <p>
+ * Local stand-in for the MtGox websocket streaming API
+ * </p>
+ * <ul>
+ * <li>Pushes captured streaming payloads round robin at the configured message rate</li>
+ * <li>Honours the <code>?Channel=</code> query as well as <code>mtgox.subscribe</code> (by channel or type) and <code>unsubscribe</code> operations</li>
+ * <li>Connections without any subscription receive every payload, as on MtGox</li>
+ * <li>Error injection drops the connection, which exercises the client reconnect logic</li>
+ * </ul>
+ * <p>
+ * Point an ExchangeSpecification at it with <code>setHost("ws://localhost")</code> and <code>setPort(simulator.getPort())</code>, and connect without an encrypted channel.
+ * </p>
+ */
+public class MtGoxWebSocketSimulator extends WebSocketServer {
+
+  private final Logger log = LoggerFactory.getLogger(MtGoxWebSocketSimulator.class);
+
+  private final SimulatorConfiguration configuration;
+  private final PayloadSource payloadSource;
+  private final Random random;
+
+  private final List<FeedMessage> feed = new CopyOnWriteArrayList<FeedMessage>();
+  private final Map<WebSocket, Set<String>> subscriptions = new ConcurrentHashMap<WebSocket, Set<String>>();
+
+  private final AtomicLong sentCount = new AtomicLong();
+  private final AtomicLong droppedConnectionCount = new AtomicLong();
+
+  private ScheduledExecutorService scheduler;
+  private int feedIndex = 0;
+
+  /**
+   * Constructor
+   * 
+   * @param port The port to listen on
+   * @param configuration The rate and error configuration
+   * @param payloadSource The source of the pushed payloads
+   */
+  public MtGoxWebSocketSimulator(int port, SimulatorConfiguration configuration, PayloadSource payloadSource) {
+
+    super(new InetSocketAddress(port));
+    this.configuration = configuration;
+    this.payloadSource = payloadSource;
+    this.random = configuration.newRandom();
+  }
+
+  /**
+   * Adds a payload to the round robin feed
+   * 
+   * @param channel The MtGox channel the payload belongs to (e.g. "ticker.BTCUSD", "trade.BTC", "depth.BTCUSD")
+   * @param payloadName The payload to push, as understood by the {@link PayloadSource}
+   * @return this simulator, for chaining
+   * @throws IOException if the payload cannot be read
+   */
+  public MtGoxWebSocketSimulator addFeedMessage(String channel, String payloadName) throws IOException {
+
+    feed.add(new FeedMessage(channel, new String(payloadSource.get(payloadName), "UTF-8")));
+    return this;
+  }
+
+  @Override
+  public void start() {
+
+    super.start();
+
+    long periodInMicros = Math.max(1L, (long) (1000000 / configuration.getMessagesPerSecond()));
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    scheduler.scheduleAtFixedRate(new Runnable() {
+
+      @Override
+      public void run() {
+
+        try {
+          pushNext();
+        } catch (RuntimeException e) {
+          log.error("Error pushing simulated message", e);
+        }
+      }
+    }, periodInMicros, periodInMicros, TimeUnit.MICROSECONDS);
+  }
+
+  @Override
+  public void stop() throws IOException, InterruptedException {
+
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    super.stop();
+  }
+
+  private void pushNext() {
+
+    if (feed.isEmpty() || subscriptions.isEmpty()) {
+      return;
+    }
+    FeedMessage message = feed.get(feedIndex++ % feed.size());
+
+    for (Map.Entry<WebSocket, Set<String>> entry : subscriptions.entrySet()) {
+      WebSocket conn = entry.getKey();
+      if (!conn.isOpen() || !isSubscribed(entry.getValue(), message.channel)) {
+        continue;
+      }
+      if (configuration.nextIsError(random)) {
+        droppedConnectionCount.incrementAndGet();
+        conn.close(CloseFrame.ABNORMAL_CLOSE);
+        continue;
+      }
+      conn.send(message.payload);
+      sentCount.incrementAndGet();
+    }
+  }
+
+  private static boolean isSubscribed(Set<String> channels, String channel) {
+
+    if (channels.isEmpty() || channels.contains(channel)) {
+      return true;
+    }
+    int dot = channel.indexOf('.');
+    return dot > 0 && channels.contains(channel.substring(0, dot));
+  }
+
+  @Override
+  public void onOpen(WebSocket conn, ClientHandshake handshake) {
+
+    Set<String> channels = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    String resource = handshake.getResourceDescriptor();
+    int index = resource.indexOf("Channel=");
+    if (index >= 0) {
+      String channel = resource.substring(index + "Channel=".length());
+      int end = channel.indexOf('&');
+      channels.add(end < 0 ? channel : channel.substring(0, end));
+    }
+    subscriptions.put(conn, channels);
+    log.debug("Simulated client connected to {}", resource);
+  }
+
+  @Override
+  public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+
+    subscriptions.remove(conn);
+  }
+
+  @Override
+  public void onMessage(WebSocket conn, String message) {
+
+    Map<String, Object> command;
+    try {
+      command = JacksonRegistry.getMapReader().readValue(message);
+    } catch (IOException e) {
+      log.debug("Ignoring unparseable message {}", message);
+      return;
+    }
+
+    Set<String> channels = subscriptions.get(conn);
+    String op = (String) command.get("op");
+    Object key = command.containsKey("channel") ? command.get("channel") : command.get("type");
+    if (channels == null || op == null) {
+      return;
+    }
+    if ("mtgox.subscribe".equals(op) && key != null) {
+      channels.add(key.toString());
+    }
+    else if ("unsubscribe".equals(op) && key != null) {
+      channels.remove(key.toString());
+    }
+    else if ("call".equals(op)) {
+      conn.send("{\"op\":\"remark\",\"success\":false,\"message\":\"Not supported by the simulator\",\"id\":\"" + command.get("id") + "\"}");
+    }
+  }
+
+  @Override
+  public void onError(WebSocket conn, Exception ex) {
+
+    log.debug("Simulator connection error: {}", ex.getMessage());
+  }
+
+  public long getSentCount() {
+
+    return sentCount.get();
+  }
+
+  public long getDroppedConnectionCount() {
+
+    return droppedConnectionCount.get();
+  }
+
+  private static final class FeedMessage {
+
+    private final String channel;
+    private final String payload;
+
+    private FeedMessage(String channel, String payload) {
+
+      this.channel = channel;
+      this.payload = payload;
+    }
+  }
+
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Loads captured payloads from disk or the classpath
+ * </p>
+ * <p>
+ * Payload names are resolved against the base directory first (typically the XChange checkout root, so that names such as
+ * "xchange-mtgox/src/test/resources/v2/marketdata/polling/example-ticker-data.json" resolve), then against the classpath. Each payload is read once and cached.
+ * </p>
+ */
+public class PayloadSource {
+
+  private final File baseDirectory;
+
+  private final ConcurrentMap<String, byte[]> cache = new ConcurrentHashMap<String, byte[]>();
+
+  /**
+   * Constructor
+   * 
+   * @param baseDirectory The directory payload names are resolved against, null to use the classpath only
+   */
+  public PayloadSource(File baseDirectory) {
+
+    this.baseDirectory = baseDirectory;
+  }
+
+  /**
+   * @param name The payload name
+   * @return The payload bytes
+   * @throws IOException if the payload cannot be found or read
+   */
+  public byte[] get(String name) throws IOException {
+
+    byte[] payload = cache.get(name);
+    if (payload == null) {
+      payload = load(name);
+      cache.putIfAbsent(name, payload);
+    }
+    return payload;
+  }
+
+  private byte[] load(String name) throws IOException {
+
+    InputStream is = null;
+    try {
+      if (baseDirectory != null && new File(baseDirectory, name).isFile()) {
+        is = new FileInputStream(new File(baseDirectory, name));
+      }
+      else {
+        is = PayloadSource.class.getResourceAsStream(name.startsWith("/") ? name : "/" + name);
+      }
+      if (is == null) {
+        throw new IOException("Payload not found: " + name);
+      }
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      if (is != null) {
+        is.close();
+      }
+    }
+  }
+
+}
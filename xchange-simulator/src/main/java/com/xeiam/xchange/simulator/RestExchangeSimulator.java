@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Local stand-in for an exchange REST API
+ * </p>
+ * <ul>
+ * <li>Serves captured JSON payloads for registered method and path patterns</li>
+ * <li>Applies the latency and error injection of a {@link SimulatorConfiguration}</li>
+ * <li>Unmatched requests get a 404</li>
+ * </ul>
+ * <p>
+ * Point an ExchangeSpecification at it with e.g. <code>setSslUri("http://localhost:" + simulator.getPort())</code>.
+ * </p>
+ */
+public class RestExchangeSimulator {
+
+  private final Logger log = LoggerFactory.getLogger(RestExchangeSimulator.class);
+
+  private static final byte[] ERROR_BODY = "{\"result\":\"error\",\"error\":\"Simulated error\"}".getBytes();
+
+  private final SimulatorConfiguration configuration;
+  private final PayloadSource payloadSource;
+  private final List<Route> routes = new CopyOnWriteArrayList<Route>();
+
+  private final Random random;
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong errorCount = new AtomicLong();
+
+  private HttpServer server;
+  private ExecutorService executorService;
+
+  /**
+   * Constructor
+   * 
+   * @param configuration The latency and error configuration
+   * @param payloadSource The source of the served payloads
+   */
+  public RestExchangeSimulator(SimulatorConfiguration configuration, PayloadSource payloadSource) {
+
+    Assert.notNull(configuration, "configuration cannot be null");
+    Assert.notNull(payloadSource, "payloadSource cannot be null");
+
+    this.configuration = configuration;
+    this.payloadSource = payloadSource;
+    this.random = configuration.newRandom();
+  }
+
+  /**
+   * Registers a payload for every request matching the method and path
+   * 
+   * @param method The HTTP method (e.g. "GET"), null to match any
+   * @param pathRegex A regular expression matched against the whole request path (e.g. "/api/2/BTC[A-Z]{3}/money/ticker")
+   * @param payloadName The payload to serve, as understood by the {@link PayloadSource}
+   * @return this simulator, for chaining
+   */
+  public RestExchangeSimulator addRoute(String method, String pathRegex, String payloadName) {
+
+    return addRoute(method, pathRegex, null, payloadName);
+  }
+
+  /**
+   * Registers a payload for every request matching the method, path and body. Useful for APIs that multiplex calls over one path (e.g. BTC-E's "method=getInfo" form parameter).
+   * 
+   * @param method The HTTP method (e.g. "POST"), null to match any
+   * @param pathRegex A regular expression matched against the whole request path
+   * @param bodyRegex A regular expression that must be found in the request body, null to match any
+   * @param payloadName The payload to serve, as understood by the {@link PayloadSource}
+   * @return this simulator, for chaining
+   */
+  public RestExchangeSimulator addRoute(String method, String pathRegex, String bodyRegex, String payloadName) {
+
+    return addRoute(method, pathRegex, bodyRegex, payloadName, null);
+  }
+
+  /**
+   * Registers a payload wrapped in an envelope, for captures that only hold the data part of the real response (e.g. MtGox's "data" member)
+   * 
+   * @param method The HTTP method (e.g. "POST"), null to match any
+   * @param pathRegex A regular expression matched against the whole request path
+   * @param bodyRegex A regular expression that must be found in the request body, null to match any
+   * @param payloadName The payload to serve, as understood by the {@link PayloadSource}
+   * @param envelope A format string with one "%s" for the payload (e.g. <code>{"result":"success","data":%s}</code>), null to serve the payload as is
+   * @return this simulator, for chaining
+   */
+  public RestExchangeSimulator addRoute(String method, String pathRegex, String bodyRegex, String payloadName, String envelope) {
+
+    routes.add(new Route(method, Pattern.compile(pathRegex), bodyRegex == null ? null : Pattern.compile(bodyRegex), payloadName, envelope));
+    return this;
+  }
+
+  /**
+   * Starts serving
+   * 
+   * @param port The port to listen on, 0 for any free port
+   * @param threads The number of request handling threads (latency is simulated by blocking one of them)
+   * @throws IOException if the port cannot be bound
+   */
+  public synchronized void start(int port, int threads) throws IOException {
+
+    Assert.isTrue(server == null, "simulator already started");
+
+    executorService = Executors.newFixedThreadPool(threads);
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.setExecutor(executorService);
+    server.createContext("/", new SimulatorHandler());
+    server.start();
+
+    log.debug("REST simulator listening on port {}", getPort());
+  }
+
+  /**
+   * Stops serving
+   */
+  public synchronized void stop() {
+
+    if (server != null) {
+      server.stop(0);
+      executorService.shutdownNow();
+      server = null;
+    }
+  }
+
+  /**
+   * @return The port the simulator listens on
+   */
+  public synchronized int getPort() {
+
+    Assert.notNull(server, "simulator not started");
+    return server.getAddress().getPort();
+  }
+
+  public long getRequestCount() {
+
+    return requestCount.get();
+  }
+
+  public long getErrorCount() {
+
+    return errorCount.get();
+  }
+
+  private Route findRoute(String method, String path, String body) {
+
+    for (Route route : routes) {
+      if ((route.method == null || route.method.equalsIgnoreCase(method)) && route.pathPattern.matcher(path).matches()
+          && (route.bodyPattern == null || route.bodyPattern.matcher(body).find())) {
+        return route;
+      }
+    }
+    return null;
+  }
+
+  private long nextLatency() {
+
+    synchronized (random) {
+      return configuration.nextLatency(random);
+    }
+  }
+
+  private boolean nextIsError() {
+
+    synchronized (random) {
+      return configuration.nextIsError(random);
+    }
+  }
+
+  private class SimulatorHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+
+      try {
+        requestCount.incrementAndGet();
+
+        String body = readBody(exchange.getRequestBody());
+
+        long latency = nextLatency();
+        if (latency > 0) {
+          Thread.sleep(latency);
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        Route route = findRoute(exchange.getRequestMethod(), path, body);
+
+        if (route == null) {
+          log.debug("No route for {} {}", exchange.getRequestMethod(), path);
+          respond(exchange, 404, ERROR_BODY);
+        }
+        else if (nextIsError()) {
+          errorCount.incrementAndGet();
+          respond(exchange, configuration.getErrorStatusCode(), ERROR_BODY);
+        }
+        else {
+          respond(exchange, 200, route.getBody(payloadSource));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        exchange.close();
+      }
+    }
+
+    private String readBody(InputStream is) throws IOException {
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toString("UTF-8");
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(status, body.length);
+      OutputStream os = exchange.getResponseBody();
+      os.write(body);
+      os.close();
+    }
+  }
+
+  private static final class Route {
+
+    private final String method;
+    private final Pattern pathPattern;
+    private final Pattern bodyPattern;
+    private final String payloadName;
+    private final String envelope;
+
+    private volatile byte[] body;
+
+    private Route(String method, Pattern pathPattern, Pattern bodyPattern, String payloadName, String envelope) {
+
+      this.method = method;
+      this.pathPattern = pathPattern;
+      this.bodyPattern = bodyPattern;
+      this.payloadName = payloadName;
+      this.envelope = envelope;
+    }
+
+    private byte[] getBody(PayloadSource payloadSource) throws IOException {
+
+      byte[] payload = payloadSource.get(payloadName);
+      if (envelope == null) {
+        return payload;
+      }
+      if (body == null) {
+        body = String.format(envelope, new String(payload, "UTF-8")).getBytes("UTF-8");
+      }
+      return body;
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import java.util.Random;
+
+import com.xeiam.xchange.utils.Assert;
+
+/**
+ * <p>
+ * Value object to provide the following to the simulators:
+ * </p>
+ * <ul>
+ * <li>Artificial latency added to every response</li>
+ * <li>Error injection rate</li>
+ * <li>Streaming message rate</li>
+ * <li>Random seed, so that a given configuration always produces the same sequence of latencies and errors</li>
+ * </ul>
+ */
+public class SimulatorConfiguration {
+
+  private int latencyInMs = 0;
+  private int latencyJitterInMs = 0;
+  private double errorRate = 0.0;
+  private int errorStatusCode = 500;
+  private double messagesPerSecond = 10.0;
+  private long seed = 42L;
+
+  /**
+   * @return The fixed latency added to every response
+   */
+  public int getLatencyInMs() {
+
+    return latencyInMs;
+  }
+
+  public void setLatencyInMs(int latencyInMs) {
+
+    Assert.isTrue(latencyInMs >= 0, "latencyInMs cannot be negative");
+    this.latencyInMs = latencyInMs;
+  }
+
+  /**
+   * @return The upper bound of a uniformly distributed latency added on top of {@link #getLatencyInMs()}
+   */
+  public int getLatencyJitterInMs() {
+
+    return latencyJitterInMs;
+  }
+
+  public void setLatencyJitterInMs(int latencyJitterInMs) {
+
+    Assert.isTrue(latencyJitterInMs >= 0, "latencyJitterInMs cannot be negative");
+    this.latencyJitterInMs = latencyJitterInMs;
+  }
+
+  /**
+   * @return The probability (0 to 1) that a request fails, or that a streaming connection is dropped per message
+   */
+  public double getErrorRate() {
+
+    return errorRate;
+  }
+
+  public void setErrorRate(double errorRate) {
+
+    Assert.isTrue(errorRate >= 0 && errorRate <= 1, "errorRate must be between 0 and 1");
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * @return The HTTP status returned for injected errors
+   */
+  public int getErrorStatusCode() {
+
+    return errorStatusCode;
+  }
+
+  public void setErrorStatusCode(int errorStatusCode) {
+
+    this.errorStatusCode = errorStatusCode;
+  }
+
+  /**
+   * @return The rate at which streaming payloads are pushed to each connection
+   */
+  public double getMessagesPerSecond() {
+
+    return messagesPerSecond;
+  }
+
+  public void setMessagesPerSecond(double messagesPerSecond) {
+
+    Assert.isTrue(messagesPerSecond > 0, "messagesPerSecond must be positive");
+    this.messagesPerSecond = messagesPerSecond;
+  }
+
+  public long getSeed() {
+
+    return seed;
+  }
+
+  public void setSeed(long seed) {
+
+    this.seed = seed;
+  }
+
+  /**
+   * @return A new random source seeded from this configuration
+   */
+  public Random newRandom() {
+
+    return new Random(seed);
+  }
+
+  /**
+   * @param random The random source
+   * @return The latency to apply to the next response
+   */
+  public long nextLatency(Random random) {
+
+    return latencyInMs + (latencyJitterInMs > 0 ? random.nextInt(latencyJitterInMs + 1) : 0);
+  }
+
+  /**
+   * @param random The random source
+   * @return true if the next response should be an injected error
+   */
+  public boolean nextIsError(Random random) {
+
+    return errorRate > 0 && random.nextDouble() < errorRate;
+  }
+
+  @Override
+  public String toString() {
+
+    return "SimulatorConfiguration [latencyInMs=" + latencyInMs + ", latencyJitterInMs=" + latencyJitterInMs + ", errorRate=" + errorRate + ", errorStatusCode=" + errorStatusCode
+        + ", messagesPerSecond=" + messagesPerSecond + ", seed=" + seed + "]";
+  }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.mtgox.v2.MtGoxExchange;
+import com.xeiam.xchange.mtgox.v2.service.streaming.MtGoxStreamingConfiguration;
+import com.xeiam.xchange.mtgox.v2.service.streaming.MtGoxWebsocketService;
+import com.xeiam.xchange.service.streaming.ExchangeEvent;
+import com.xeiam.xchange.service.streaming.ExchangeEventType;
+
+/**
+ * Test the XChange MtGox streaming client against the websocket simulator
+ */
+public class MtGoxWebSocketSimulatorTest {
+
+  private SimulatorConfiguration configuration;
+  private MtGoxWebSocketSimulator simulator;
+  private MtGoxWebsocketService service;
+
+  @Before
+  public void setUp() throws IOException {
+
+    configuration = new SimulatorConfiguration();
+    configuration.setMessagesPerSecond(200);
+    simulator = ExchangeSimulators.addMtGoxFeed(new MtGoxWebSocketSimulator(freePort(), configuration, new PayloadSource(new File(".."))));
+    simulator.start();
+  }
+
+  @After
+  public void tearDown() throws IOException, InterruptedException {
+
+    // the server first: Java-WebSocket 1.3.0 can deadlock stopping a server while it handles a close from the client
+    simulator.stop();
+    if (service != null) {
+      service.disconnect();
+    }
+  }
+
+  @Test
+  public void testStreamsEveryChannel() throws InterruptedException {
+
+    service = connect(null);
+
+    assertThat(service.getNextEvent().getEventType()).isEqualTo(ExchangeEventType.CONNECT);
+    Set<ExchangeEventType> types = new HashSet<ExchangeEventType>();
+    for (int i = 0; i < 30 && types.size() < 3; i++) {
+      types.add(service.getNextEvent().getEventType());
+    }
+    assertThat(types).containsOnly(ExchangeEventType.TICKER, ExchangeEventType.TRADE, ExchangeEventType.DEPTH);
+    assertThat(simulator.getSentCount()).isGreaterThanOrEqualTo(3);
+  }
+
+  @Test
+  public void testChannelQuery() throws InterruptedException {
+
+    service = connect("trade.BTC");
+
+    assertThat(service.getNextEvent().getEventType()).isEqualTo(ExchangeEventType.CONNECT);
+    for (int i = 0; i < 5; i++) {
+      assertThat(service.getNextEvent().getEventType()).isEqualTo(ExchangeEventType.TRADE);
+    }
+  }
+
+  @Test
+  public void testInjectedErrorDropsConnection() throws InterruptedException {
+
+    configuration.setErrorRate(1.0);
+    service = connect(null);
+
+    assertThat(service.getNextEvent().getEventType()).isEqualTo(ExchangeEventType.CONNECT);
+    ExchangeEvent event = service.getNextEvent();
+    assertThat(event.getEventType()).isEqualTo(ExchangeEventType.DISCONNECT);
+    // with no reconnect attempts left the ReconnectService interrupts the consuming thread to end its loop
+    assertThat(Thread.interrupted()).isTrue();
+    assertThat(simulator.getDroppedConnectionCount()).isGreaterThanOrEqualTo(1);
+  }
+
+  private MtGoxWebsocketService connect(String channel) {
+
+    ExchangeSpecification exchangeSpecification = new ExchangeSpecification(MtGoxExchange.class.getName());
+    exchangeSpecification.setHost("ws://localhost");
+    exchangeSpecification.setPort(simulator.getPort());
+    MtGoxWebsocketService websocketService = new MtGoxWebsocketService(exchangeSpecification, new MtGoxStreamingConfiguration(0, 0, 60000, false, channel));
+    websocketService.connect();
+    return websocketService;
+  }
+
+  private static int freePort() throws IOException {
+
+    ServerSocket socket = new ServerSocket(0);
+    try {
+      return socket.getLocalPort();
+    } finally {
+      socket.close();
+    }
+  }
+
+}
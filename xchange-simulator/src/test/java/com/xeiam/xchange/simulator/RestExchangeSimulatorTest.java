@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test RestExchangeSimulator routing and fault injection against the captured exchange payloads
+ */
+public class RestExchangeSimulatorTest {
+
+  private SimulatorConfiguration configuration;
+  private RestExchangeSimulator simulator;
+
+  @Before
+  public void setUp() throws IOException {
+
+    configuration = new SimulatorConfiguration();
+    simulator = new RestExchangeSimulator(configuration, new PayloadSource(new File("..")));
+    ExchangeSimulators.addMtGoxV2Routes(simulator);
+    ExchangeSimulators.addBTCEV3Routes(simulator);
+    simulator.start(0, 2);
+  }
+
+  @After
+  public void tearDown() {
+
+    simulator.stop();
+  }
+
+  @Test
+  public void testServesPayloadForRoute() throws IOException {
+
+    HttpURLConnection connection = open("GET", "/api/2/BTCUSD/money/ticker", null);
+
+    assertThat(connection.getResponseCode()).isEqualTo(200);
+    assertThat(read(connection.getInputStream())).contains("\"high\"");
+    assertThat(simulator.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRoutesOnBody() throws IOException {
+
+    HttpURLConnection info = open("POST", "/tapi", "method=getInfo&nonce=1");
+    assertThat(info.getResponseCode()).isEqualTo(200);
+    assertThat(read(info.getInputStream())).contains("funds");
+
+    HttpURLConnection cancel = open("POST", "/tapi", "method=CancelOrder&order_id=1&nonce=2");
+    assertThat(cancel.getResponseCode()).isEqualTo(200);
+    assertThat(read(cancel.getInputStream())).contains("order_id");
+  }
+
+  @Test
+  public void testUnknownRoute() throws IOException {
+
+    assertThat(open("GET", "/api/2/BTCUSD/money/unknown", null).getResponseCode()).isEqualTo(404);
+  }
+
+  @Test
+  public void testInjectedErrors() throws IOException {
+
+    configuration.setErrorRate(1.0);
+
+    assertThat(open("GET", "/api/2/BTCUSD/money/ticker", null).getResponseCode()).isEqualTo(configuration.getErrorStatusCode());
+    assertThat(simulator.getErrorCount()).isEqualTo(1);
+  }
+
+  private HttpURLConnection open(String method, String path, String body) throws IOException {
+
+    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + simulator.getPort() + path).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      OutputStream out = connection.getOutputStream();
+      out.write(body.getBytes("UTF-8"));
+      out.close();
+    }
+    return connection;
+  }
+
+  private String read(InputStream in) throws IOException {
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    in.close();
+    return out.toString("UTF-8");
+  }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2012 - 2013 Xeiam LLC http://xeiam.com
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xeiam.xchange.simulator;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.xeiam.xchange.BaseExchange;
+import com.xeiam.xchange.Exchange;
+import com.xeiam.xchange.ExchangeFactory;
+import com.xeiam.xchange.ExchangeSpecification;
+import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.Ticker;
+import com.xeiam.xchange.dto.marketdata.Trades;
+import com.xeiam.xchange.dto.trade.OpenOrders;
+import com.xeiam.xchange.mtgox.v2.MtGoxExchange;
+
+/**
+ * Test the XChange MtGox client against the REST simulator
+ */
+public class SimulatedExchangeTest {
+
+  private SimulatorConfiguration configuration;
+  private RestExchangeSimulator simulator;
+  private Exchange exchange;
+
+  @Before
+  public void setUp() throws IOException {
+
+    configuration = new SimulatorConfiguration();
+    simulator = ExchangeSimulators.addMtGoxV2Routes(new RestExchangeSimulator(configuration, new PayloadSource(new File(".."))));
+    simulator.start(0, 2);
+
+    exchange = ExchangeFactory.INSTANCE.createExchange(newSpecification());
+  }
+
+  private ExchangeSpecification newSpecification() {
+
+    ExchangeSpecification exchangeSpecification = new ExchangeSpecification(MtGoxExchange.class.getName());
+    exchangeSpecification.setSslUri("http://localhost:" + simulator.getPort());
+    exchangeSpecification.setApiKey("simulated");
+    exchangeSpecification.setSecretKey("c2ltdWxhdGVk");
+    return exchangeSpecification;
+  }
+
+  @After
+  public void tearDown() {
+
+    simulator.stop();
+  }
+
+  @Test
+  public void testMarketData() throws IOException {
+
+    Ticker ticker = exchange.getPollingMarketDataService().getTicker("BTC", "USD");
+    assertThat(ticker.getTradableIdentifier()).isEqualTo("BTC");
+    assertThat(ticker.getLast()).isNotNull();
+
+    Trades trades = exchange.getPollingMarketDataService().getTrades("BTC", "USD");
+    assertThat(trades.getTrades()).isNotEmpty();
+
+    assertThat(simulator.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testAccountInfo() throws IOException {
+
+    AccountInfo accountInfo = exchange.getPollingAccountService().getAccountInfo();
+    assertThat(accountInfo.getWallets()).isNotEmpty();
+  }
+
+  @Test
+  public void testOpenOrders() throws IOException {
+
+    OpenOrders openOrders = exchange.getPollingTradeService().getOpenOrders();
+    assertThat(openOrders.getOpenOrders()).isNotEmpty();
+  }
+
+  @Test
+  public void testRequestsAreScheduled() throws IOException {
+
+    // off unless the caller opts in
+    assertThat(((BaseExchange) exchange).getRequestScheduler()).isNull();
+
+    ExchangeSpecification exchangeSpecification = newSpecification();
+    exchangeSpecification.setMarketDataRefreshIntervalInMs(600L);
+    Exchange limited = ExchangeFactory.INSTANCE.createExchange(exchangeSpecification);
+    assertThat(((BaseExchange) limited).getRequestScheduler()).isNotNull();
+
+    // a burst of three, then one call per 200 ms
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 4; i++) {
+      limited.getPollingMarketDataService().getTicker("BTC", "USD");
+    }
+    assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(150);
+
+    // local methods are not charged a token
+    start = System.currentTimeMillis();
+    for (int i = 0; i < 10; i++) {
+      limited.getPollingMarketDataService().getExchangeSymbols();
+    }
+    assertThat(System.currentTimeMillis() - start).isLessThan(150);
+  }
+
+  @Test(expected = Exception.class)
+  public void testInjectedErrorReachesClient() throws IOException {
+
+    configuration.setErrorRate(1.0);
+    exchange.getPollingMarketDataService().getTicker("BTC", "USD");
+  }
+
+}
@@ -33,6 +33,7 @@ import org.joda.money.IllegalCurrencyException;
 import com.xeiam.xchange.currency.MoneyUtils;
 import com.xeiam.xchange.dto.Order.OrderType;
 import com.xeiam.xchange.dto.account.AccountInfo;
+import com.xeiam.xchange.dto.marketdata.OrderBookBuilder;
 import com.xeiam.xchange.dto.marketdata.Ticker;
 import com.xeiam.xchange.dto.trade.LimitOrder;
 import com.xeiam.xchange.dto.trade.Wallet;
@@ -57,8 +58,7 @@ public final class VircurexAdapters {
 
 		// place a limit order
 		OrderType orderType = orderTypeString.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
-		BigMoney limitPrice;
-		limitPrice = MoneyUtils.parse(currency + " " + price);
+		BigMoney limitPrice = MoneyUtils.of(CurrencyUnit.of(currency), price);
 
 		return new LimitOrder(orderType, amount, tradableIdentifier, currency, limitPrice);
 
@@ -66,19 +66,17 @@ public final class VircurexAdapters {
 
 	public static List<LimitOrder> adaptOrders(List<BigDecimal[]> someOrders, String tradableIdentifier, String currency, String orderType, String id) {
 
-		List<LimitOrder> limitOrders = new ArrayList<LimitOrder>();
-
-		// Bid orderbook is reversed order. Insert at index 0 instead of
+		OrderType type = orderType.equalsIgnoreCase("bid") ? OrderType.BID : OrderType.ASK;
+		OrderBookBuilder.Side side = new OrderBookBuilder.Side(type, tradableIdentifier, currency, someOrders.size());
+		// Bid orderbook is reversed order
+		if (type == OrderType.BID) {
+			side.reversed();
+		}
 		for (BigDecimal[] order : someOrders) {
-			// appending
-			if (orderType.equalsIgnoreCase("bid")) {
-				limitOrders.add(0, adaptOrder(order[1], order[0], tradableIdentifier, currency, orderType, id));
-			} else {
-				limitOrders.add(adaptOrder(order[1], order[0], tradableIdentifier, currency, orderType, id));
-			}
+			side.add(order[0], order[1], null, null);
 		}
 
-		return limitOrders;
+		return side.build();
 	}
 
 	public static Ticker adaptTicker(Object bTCETicker, String tradableIdentifier, String currency) {